@@ -0,0 +1,77 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.binary.BinArray;
+import dk.dma.ais.binary.SixbitException;
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.message.AisMessageException;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.sentence.Vdm;
+
+/**
+ * Benchmark of {@link AisMessage#getInstance(Vdm)} per message type. The VDM sentences are assembled up front, so
+ * only the message decoding is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AisMessageDecodeBenchmark {
+
+    @Param({ "1", "3", "4", "5", "8", "18", "21", "24" })
+    public int msgId;
+
+    private Vdm[] vdms;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<AisPacket> packets = BenchmarkData.packets(msgId);
+        vdms = new Vdm[packets.size()];
+        for (int i = 0; i < vdms.length; i++) {
+            vdms[i] = packets.get(i).getVdm();
+        }
+    }
+
+    @Benchmark
+    public AisMessage getInstance() throws AisMessageException, SixbitException {
+        int i = next;
+        next = i + 1 == vdms.length ? 0 : i + 1;
+        Vdm vdm = vdms[i];
+        // Rewind to where the VDM parser leaves the binary array, just after the message id
+        BinArray binArray = vdm.getBinArray();
+        binArray.doneReading();
+        binArray.getVal(6);
+        return AisMessage.getInstance(vdm);
+    }
+}
@@ -0,0 +1,86 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketFilters;
+
+/**
+ * Benchmark of evaluating {@link AisPacketFilters} predicates on already decoded packets
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AisPacketFiltersBenchmark {
+
+    private AisPacket[] packets;
+    private int next;
+
+    private Predicate<AisPacket> messageId;
+    private Predicate<AisPacket> messageMmsi;
+    private Predicate<AisPacket> expression;
+
+    @Setup
+    public void setup() {
+        List<AisPacket> l = BenchmarkData.packets();
+        packets = l.toArray(new AisPacket[l.size()]);
+        // Decode up front so only the predicate evaluation is measured
+        for (AisPacket p : packets) {
+            p.tryGetAisMessage();
+        }
+        messageId = AisPacketFilters.filterOnMessageId(1, 2, 3);
+        messageMmsi = AisPacketFilters.filterOnMessageMmsi(219000000, 220000000, 244000000, 265000000);
+        expression = AisPacketFilters.parseExpressionFilter("m.id = 1,2,3 & m.sog > 5 & m.pos within bbox(50,9,60,12)");
+    }
+
+    private AisPacket nextPacket() {
+        int i = next;
+        next = i + 1 == packets.length ? 0 : i + 1;
+        return packets[i];
+    }
+
+    @Benchmark
+    public boolean filterOnMessageId() {
+        return messageId.test(nextPacket());
+    }
+
+    @Benchmark
+    public boolean filterOnMessageMmsi() {
+        return messageMmsi.test(nextPacket());
+    }
+
+    @Benchmark
+    public boolean expressionFilter() {
+        return expression.test(nextPacket());
+    }
+}
@@ -0,0 +1,98 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketParser;
+import dk.dma.ais.sentence.SentenceException;
+
+/**
+ * Benchmark of {@link AisPacketParser#readLine(String)}. Each operation is a single line, so a packet is assembled
+ * every second or third operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AisPacketParserBenchmark {
+
+    private String[] lines;
+    private byte[][] bytes;
+    private int next;
+
+    private final AisPacketParser parser = new AisPacketParser();
+
+    @Setup
+    public void setup() {
+        List<String> l = BenchmarkData.lines(BenchmarkData.STREAM);
+        lines = l.toArray(new String[l.size()]);
+        bytes = new byte[lines.length][];
+        for (int i = 0; i < lines.length; i++) {
+            bytes[i] = lines[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == lines.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public AisPacket readLine() {
+        try {
+            return parser.readLine(lines[nextIndex()]);
+        } catch (SentenceException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public AisPacket readLineBytes() {
+        byte[] b = bytes[nextIndex()];
+        try {
+            return parser.readLine(b, 0, b.length);
+        } catch (SentenceException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Object readLineAndDecode() {
+        try {
+            AisPacket packet = parser.readLine(lines[nextIndex()]);
+            return packet == null ? null : packet.tryGetAisMessage();
+        } catch (SentenceException e) {
+            return null;
+        }
+    }
+}
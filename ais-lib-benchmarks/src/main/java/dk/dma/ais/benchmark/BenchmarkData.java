@@ -0,0 +1,108 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketParser;
+import dk.dma.ais.sentence.SentenceException;
+
+/**
+ * Sample data shared by the benchmarks. The data is the stream example used by the communication tests.
+ */
+final class BenchmarkData {
+
+    /** Stream of proprietary tags and VDM sentences */
+    static final String STREAM = "stream_example.txt";
+
+    /** Lines with comment blocks */
+    static final String COMMENT_BLOCKS = "small_cb_example.txt";
+
+    private BenchmarkData() {}
+
+    /**
+     * Read all non empty lines of a resource
+     * 
+     * @param resource
+     * @return
+     */
+    static List<String> lines(String resource) {
+        InputStream is = BenchmarkData.class.getClassLoader().getResourceAsStream(resource);
+        if (is == null) {
+            throw new IllegalStateException("Missing benchmark resource " + resource);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+
+    /**
+     * Assemble the lines of the stream into packets
+     * 
+     * @return
+     */
+    static List<AisPacket> packets() {
+        AisPacketParser parser = new AisPacketParser();
+        List<AisPacket> packets = new ArrayList<>();
+        for (String line : lines(STREAM)) {
+            try {
+                AisPacket packet = parser.readLine(line);
+                if (packet != null) {
+                    packets.add(packet);
+                }
+            } catch (SentenceException ignore) {
+                // The sample contains a few broken sentences
+            }
+        }
+        return packets;
+    }
+
+    /**
+     * Assemble the lines of the stream into packets and return the ones that decode to a message of the given type
+     * 
+     * @param msgId
+     * @return
+     */
+    static List<AisPacket> packets(int msgId) {
+        List<AisPacket> packets = new ArrayList<>();
+        for (AisPacket packet : packets()) {
+            if (packet.getVdm() != null && packet.getVdm().getMsgId() == msgId && packet.tryGetAisMessage() != null) {
+                packets.add(packet);
+            }
+        }
+        if (packets.isEmpty()) {
+            throw new IllegalStateException("No messages of type " + msgId + " in " + STREAM);
+        }
+        return packets;
+    }
+
+}
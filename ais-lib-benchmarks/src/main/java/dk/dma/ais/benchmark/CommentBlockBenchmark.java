@@ -0,0 +1,81 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.sentence.CommentBlock;
+import dk.dma.ais.sentence.CommentBlockException;
+import dk.dma.ais.sentence.SentenceLine;
+
+/**
+ * Benchmark of parsing single line comment blocks with {@link CommentBlock#addLine(String)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentBlockBenchmark {
+
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> l = new ArrayList<>();
+        SentenceLine sl = new SentenceLine();
+        for (String line : BenchmarkData.lines(BenchmarkData.COMMENT_BLOCKS)) {
+            sl.parse(line);
+            String prefix = sl.getPrefix();
+            if (prefix == null || !CommentBlock.hasCommentBlock(prefix)) {
+                continue;
+            }
+            // Keep only the comment blocks that parse on their own
+            try {
+                new CommentBlock().addLine(prefix);
+                l.add(prefix);
+            } catch (CommentBlockException ignore) {
+            }
+        }
+        if (l.isEmpty()) {
+            throw new IllegalStateException("No comment blocks in " + BenchmarkData.COMMENT_BLOCKS);
+        }
+        prefixes = l.toArray(new String[l.size()]);
+    }
+
+    @Benchmark
+    public CommentBlock addLine() throws CommentBlockException {
+        int i = next;
+        next = i + 1 == prefixes.length ? 0 : i + 1;
+        CommentBlock cb = new CommentBlock();
+        cb.addLine(prefixes[i]);
+        return cb;
+    }
+}
@@ -0,0 +1,81 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.binary.SixbitEncoder;
+import dk.dma.ais.binary.SixbitException;
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+
+/**
+ * Benchmark of {@link SixbitEncoder#encode()} and of building the encoder from a decoded message
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SixbitEncoderBenchmark {
+
+    @Param({ "1", "5" })
+    public int msgId;
+
+    private AisMessage[] messages;
+    private SixbitEncoder[] encoders;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<AisPacket> packets = BenchmarkData.packets(msgId);
+        messages = new AisMessage[packets.size()];
+        encoders = new SixbitEncoder[packets.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = packets.get(i).tryGetAisMessage();
+            encoders[i] = messages[i].getEncoded();
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == messages.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public String encode() throws SixbitException {
+        return encoders[nextIndex()].encode();
+    }
+
+    @Benchmark
+    public String getEncodedAndEncode() throws SixbitException {
+        return messages[nextIndex()].getEncoded().encode();
+    }
+}
@@ -0,0 +1,73 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.tracker.targetTracker.TargetTracker;
+
+/**
+ * Benchmark of {@link TargetTracker#update(AisPacket)}. A new tracker is used for every iteration so the number of
+ * tracked targets stays bounded by the sample data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetTrackerBenchmark {
+
+    private AisPacket[] packets;
+    private int next;
+
+    private TargetTracker tracker;
+
+    @Setup
+    public void setup() {
+        List<AisPacket> l = BenchmarkData.packets();
+        packets = l.toArray(new AisPacket[l.size()]);
+        for (AisPacket p : packets) {
+            p.tryGetAisMessage();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newTracker() {
+        tracker = new TargetTracker();
+    }
+
+    @Benchmark
+    public TargetTracker update() {
+        int i = next;
+        next = i + 1 == packets.length ? 0 : i + 1;
+        tracker.update(packets[i]);
+        return tracker;
+    }
+}
@@ -0,0 +1,83 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.lib;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beust.jcommander.Parameter;
+import com.google.inject.Injector;
+
+import dk.dma.ais.reader.AisArchiveIndex;
+import dk.dma.commons.app.AbstractCommandLineTool;
+
+/**
+ * Builds a sidecar index for each of a list of uncompressed archive files, mapping MMSI and time buckets to byte
+ * ranges of the file. The index is written next to the file with the suffix {@link AisArchiveIndex#SUFFIX}, and is
+ * used by {@link dk.dma.ais.reader.AisIndexedFileReader}.
+ */
+public class AisIndexBuilder extends AbstractCommandLineTool {
+
+    /** The logger. */
+    static final Logger LOG = LoggerFactory.getLogger(AisIndexBuilder.class);
+
+    @Parameter(required = true, description = "files to index...")
+    List<String> sources;
+
+    @Parameter(names = "-bucketMinutes", required = false, description = "Size of the time buckets in minutes")
+    int bucketMinutes = (int) TimeUnit.MILLISECONDS.toMinutes(AisArchiveIndex.DEFAULT_BUCKET_SIZE);
+
+    @Parameter(names = "-blockSize", required = false, description = "Approximate size of the indexed blocks in bytes")
+    int blockSize = AisArchiveIndex.DEFAULT_BLOCK_SIZE;
+
+    @Parameter(names = "-threads", required = false, description = "Number of files indexed concurrently")
+    int threads = 4;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void run(Injector injector) throws Exception {
+        ThreadPoolExecutor threadpoolexecutor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(10000), new ThreadPoolExecutor.CallerRunsPolicy());
+        for (final String s : sources) {
+            threadpoolexecutor.execute(() -> {
+                Path path = Paths.get(s);
+                try {
+                    LOG.debug("Started indexing file " + path);
+                    AisArchiveIndex index = AisArchiveIndex.build(path, TimeUnit.MINUTES.toMillis(bucketMinutes),
+                            blockSize);
+                    index.write(AisArchiveIndex.indexFileFor(path));
+                    LOG.info("Indexed " + path + ": " + index.getBlockCount() + " blocks, " + index.getEntryCount()
+                            + " entries");
+                } catch (Exception e) {
+                    LOG.error("Failed to index file " + path, e);
+                }
+            });
+        }
+
+        threadpoolexecutor.shutdown();
+        threadpoolexecutor.awaitTermination(999, TimeUnit.DAYS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new AisIndexBuilder().execute(args);
+    }
+}
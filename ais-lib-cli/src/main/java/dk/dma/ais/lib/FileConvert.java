@@ -70,7 +70,7 @@ public class FileConvert extends AbstractCommandLineTool {
     @Parameter(names = "-fileEnding", required = false, description = "File ending")
     String fileEnding;
 
-    @Parameter(names = "-outputFormat", required = false, description = "Output formats: [OUTPUT_TO_TEXT, OUTPUT_PREFIXED_SENTENCES, OUTPUT_TO_HTML, table, csv, csv_stateful, json, jsonobject, kml, kmz]")
+    @Parameter(names = "-outputFormat", required = false, description = "Output formats: [OUTPUT_TO_TEXT, OUTPUT_PREFIXED_SENTENCES, OUTPUT_TO_HTML, table, csv, csv_stateful, json, jsonobject, kml, kmz, columnar]")
     String outputSinkFormat = "OUTPUT_PREFIXED_SENTENCES";
 
     @Parameter(names = "-columns", required = false, description = "Optional columns, required with -outputFormat table. use ; as delimiter. Example: -columns mmsi;time;lat;lon")
@@ -203,6 +203,8 @@ public class FileConvert extends AbstractCommandLineTool {
                     fileEnding = ".json";
             } else if (outputSinkFormat.startsWith("kml")) {
                 fileEnding = ".kml";
+            } else if (outputSinkFormat.startsWith("columnar")) {
+                fileEnding = ".aisc";
             } else {
                 fileEnding = ".txt";
             }
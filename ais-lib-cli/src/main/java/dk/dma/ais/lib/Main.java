@@ -32,6 +32,7 @@ public class Main {
         c.add(AisBusLauncher.class, "aisbus", "AisBus launcher application");
         c.add(FileConvert.class, "fileconvert", "converts a list of aisfiles into a different format");
         c.add(AisGapsToCSV.class, "aisgapstocsv", "finds timegaps in a directory of aisdata and outputs a csv file with utc timestamps per every second of missing data");
+        c.add(AisIndexBuilder.class, "index", "builds sidecar indexes of archive files for fast lookup of packets by mmsi and time");
         c.invoke(args);
     }
 
@@ -27,9 +27,10 @@ import org.slf4j.LoggerFactory;
 
 import dk.dma.ais.bus.status.AisBusComponentStatus.State;
 import dk.dma.ais.packet.AisPacket;
-import dk.dma.ais.queue.BlockingMessageQueue;
 import dk.dma.ais.queue.IMessageQueue;
 import dk.dma.ais.queue.MessageQueueOverflowException;
+import dk.dma.ais.queue.MessageQueueType;
+import dk.dma.ais.queue.WaitStrategy;
 
 /**
  * Bus for exchanging AIS packets
@@ -59,6 +60,8 @@ public class AisBus extends AisBusComponent implements Runnable {
 
     private volatile int busPullMaxElements = 1000;
     private volatile int busQueueSize = 10000;
+    private volatile MessageQueueType busQueueType = MessageQueueType.BLOCKING;
+    private volatile WaitStrategy busQueueWaitStrategy = WaitStrategy.PARK;
 
     public AisBus() {
 
@@ -70,7 +73,7 @@ public class AisBus extends AisBusComponent implements Runnable {
     @Override
     public synchronized void init() {
         // Create the bus
-        busQueue = new BlockingMessageQueue<>(busQueueSize);
+        busQueue = busQueueType.newQueue(busQueueSize, busQueueWaitStrategy);
         super.init();
     }
 
@@ -262,12 +265,9 @@ public class AisBus extends AisBusComponent implements Runnable {
             } catch (InterruptedException e) {
                 break;
             }
-            // Iterate through consumers
+            // Distribute the elements to each consumer as one batch
             for (AisBusConsumer consumer : consumers) {
-                // Distribute elements
-                for (AisBusElement element : elements) {
-                    consumer.push(element);
-                }
+                consumer.push(elements);
             }
         }
 
@@ -287,6 +287,14 @@ public class AisBus extends AisBusComponent implements Runnable {
         this.busQueueSize = busQueueSize;
     }
 
+    public void setBusQueueType(MessageQueueType busQueueType) {
+        this.busQueueType = busQueueType;
+    }
+
+    public void setBusQueueWaitStrategy(WaitStrategy busQueueWaitStrategy) {
+        this.busQueueWaitStrategy = busQueueWaitStrategy;
+    }
+
     public Set<AisBusConsumer> getConsumers() {
         return Collections.unmodifiableSet(consumers);
     }
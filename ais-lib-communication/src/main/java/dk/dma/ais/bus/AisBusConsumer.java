@@ -14,17 +14,20 @@
  */
 package dk.dma.ais.bus;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 import dk.dma.ais.packet.AisPacket;
-import dk.dma.ais.queue.BlockingMessageQueue;
 import dk.dma.ais.queue.IMessageQueue;
 import dk.dma.ais.queue.IQueueEntryHandler;
 import dk.dma.ais.queue.MessageQueueOverflowException;
 import dk.dma.ais.queue.MessageQueueReader;
+import dk.dma.ais.queue.MessageQueueType;
+import dk.dma.ais.queue.WaitStrategy;
 
 @ThreadSafe
 public abstract class AisBusConsumer extends AisBusSocket implements IQueueEntryHandler<AisBusElement> {
@@ -39,6 +42,12 @@ public abstract class AisBusConsumer extends AisBusSocket implements IQueueEntry
     @GuardedBy("this")
     private int consumerPullMaxElements = 1000;
 
+    @GuardedBy("this")
+    private MessageQueueType consumerQueueType = MessageQueueType.BLOCKING;
+
+    @GuardedBy("this")
+    private WaitStrategy consumerQueueWaitStrategy = WaitStrategy.PARK;
+
     public AisBusConsumer() {
         super();
     }
@@ -81,10 +90,32 @@ public abstract class AisBusConsumer extends AisBusSocket implements IQueueEntry
         }
     }
 
+    /**
+     * Push a batch of elements onto the queue with a single queue operation
+     * 
+     * @param elements
+     */
+    public final void push(List<AisBusElement> elements) {
+        IMessageQueue<AisBusElement> queue = consumerThread.getQueue();
+        try {
+            if (blocking) {
+                queue.putAll(elements);
+            } else {
+                int dropped = elements.size() - queue.pushAll(elements);
+                if (dropped > 0) {
+                    status.batchOverflow(dropped);
+                    overflowLogger.log("Consumer overflow [rate=" + status.getOverflowRate() + " packet/sec]");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public synchronized void init() {
         // Create consumer queue
-        IMessageQueue<AisBusElement> consumerQueue = new BlockingMessageQueue<>(consumerQueueSize);
+        IMessageQueue<AisBusElement> consumerQueue = consumerQueueType.newQueue(consumerQueueSize, consumerQueueWaitStrategy);
         // Make consumer thread
         consumerThread = new MessageQueueReader<>(this, consumerQueue, consumerPullMaxElements);
         super.init();
@@ -122,4 +153,12 @@ public abstract class AisBusConsumer extends AisBusSocket implements IQueueEntry
         this.consumerPullMaxElements = consumerPullMaxElements;
     }
 
+    public synchronized void setConsumerQueueType(MessageQueueType consumerQueueType) {
+        this.consumerQueueType = consumerQueueType;
+    }
+
+    public synchronized void setConsumerQueueWaitStrategy(WaitStrategy consumerQueueWaitStrategy) {
+        this.consumerQueueWaitStrategy = consumerQueueWaitStrategy;
+    }
+
 }
@@ -16,6 +16,8 @@ package dk.dma.ais.bus.consumer;
 
 import dk.dma.ais.bus.AisBusConsumer;
 import dk.dma.ais.bus.AisBusElement;
+import dk.dma.ais.bus.tcp.TcpBroadcastServer;
+import dk.dma.ais.bus.tcp.TcpBroadcastServerConf;
 import dk.dma.ais.bus.tcp.TcpClientConf;
 import dk.dma.ais.bus.tcp.TcpServer;
 import dk.dma.ais.bus.tcp.TcpServerConf;
@@ -28,6 +30,11 @@ public class TcpServerConsumer extends AisBusConsumer {
 
     private final TcpWriteServer server = new TcpWriteServer();
 
+    /** Used instead of server if non-blocking I/O is configured */
+    private volatile TcpBroadcastServer broadcastServer;
+
+    private TcpBroadcastServerConf broadcastConf = new TcpBroadcastServerConf();
+
     public TcpServerConsumer() {
 
     }
@@ -39,16 +46,24 @@ public class TcpServerConsumer extends AisBusConsumer {
 
     @Override
     public synchronized void start() {
-        setThread(server);
-        server.start();
+        if (broadcastConf.isNonBlocking() && !server.getClientConf().isGzipCompress()) {
+            broadcastServer = new TcpBroadcastServer();
+            broadcastServer.setServerConf(server.getServerConf());
+            broadcastServer.setClientConf(server.getClientConf());
+            broadcastServer.setBroadcastConf(broadcastConf);
+        }
+        TcpServer s = getServer();
+        setThread(s);
+        s.start();
         super.start();
     }
     
     @Override
     public void cancel() {
-        server.cancel();
+        TcpServer s = getServer();
+        s.cancel();
         try {
-            server.join(THREAD_STOP_WAIT_MAX);
+            s.join(THREAD_STOP_WAIT_MAX);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
@@ -58,7 +73,12 @@ public class TcpServerConsumer extends AisBusConsumer {
 
     @Override
     public void receiveFiltered(AisBusElement queueElement) {
-        server.send(queueElement.getPacket().getStringMessage());
+        TcpBroadcastServer b = broadcastServer;
+        if (b != null) {
+            b.send(queueElement.getPacket().getStringMessage());
+        } else {
+            server.send(queueElement.getPacket().getStringMessage());
+        }
     }
     
     public void setClientConf(TcpClientConf clientConf) {
@@ -68,9 +88,14 @@ public class TcpServerConsumer extends AisBusConsumer {
     public void setServerConf(TcpServerConf serverConf) {
         server.setServerConf(serverConf);
     }
+
+    public void setBroadcastConf(TcpBroadcastServerConf broadcastConf) {
+        this.broadcastConf = broadcastConf;
+    }
     
     public TcpServer getServer() {
-        return server;
+        TcpBroadcastServer b = broadcastServer;
+        return b != null ? b : server;
     }
 
 }
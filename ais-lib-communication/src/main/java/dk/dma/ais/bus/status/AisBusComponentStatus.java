@@ -55,6 +55,10 @@ public class AisBusComponentStatus {
      * Number of packets that cannot be delivered due to overflow at the receiver
      */
     private long overflowCount;
+    /**
+     * Number of batches where some or all packets could not be delivered due to overflow at the receiver
+     */
+    private long batchOverflowCount;
 
     /**
      * Statistics for in count the last flowStatInterval
@@ -93,6 +97,17 @@ public class AisBusComponentStatus {
         inCount++;
     }
 
+    /**
+     * Indicate a number of receptions that are not filtered away
+     * 
+     * @param count
+     *            the number of packets received
+     */
+    public synchronized void receive(int count) {
+        inCountStat.received(count);
+        inCount += count;
+    }
+
     /**
      * Indicate a reception that is rejected by filter
      */
@@ -109,6 +124,18 @@ public class AisBusComponentStatus {
         overflowCount++;
     }
 
+    /**
+     * Indicate overflow when delivering a batch of packets
+     * 
+     * @param dropped
+     *            the number of packets in the batch that could not be delivered
+     */
+    public synchronized void batchOverflow(int dropped) {
+        overflowCountStat.received(dropped);
+        overflowCount += dropped;
+        batchOverflowCount++;
+    }
+
     public synchronized State getState() {
         return state;
     }
@@ -175,6 +202,10 @@ public class AisBusComponentStatus {
         return overflowCount;
     }
     
+    public synchronized long getBatchOverflowCount() {
+        return batchOverflowCount;
+    }
+
     public synchronized double getOverflowRate() {
         return overflowCountStat.getRate();
     }
@@ -194,6 +225,8 @@ public class AisBusComponentStatus {
         builder.append(filteredCount);
         builder.append(", overflowCount=");
         builder.append(overflowCount);
+        builder.append(", batchOverflowCount=");
+        builder.append(batchOverflowCount);
         builder.append(", inCountStat=");
         builder.append(inCountStat);
         builder.append(", overflowCountStat=");
@@ -14,21 +14,32 @@
  */
 package dk.dma.ais.bus.status;
 
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
-import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
 
 /**
- * Class that holds flow statistics
+ * Class that holds flow statistics.
+ * <p>
+ * Receptions are counted in a ring of time buckets, each covering a fixed part of the interval, so memory use is
+ * constant and updates are lock-free.
  */
-@NotThreadSafe
+@ThreadSafe
 public class FlowStat {
 
+    /** Number of buckets the interval is divided into */
+    private static final int BUCKETS_PER_INTERVAL = 60;
+
     private final long interval;
     private final long created;
-    private Long lastReceived;
-    // Timestamps for receives
-    private LinkedList<Long> receives = new LinkedList<>();
+    private volatile long lastReceived;
+
+    /** Width of a bucket in milliseconds */
+    private final long bucketWidth;
+
+    /** Buckets indexed by (time / bucketWidth) modulo the length */
+    private final AtomicReferenceArray<Bucket> buckets;
 
     /**
      * Default interval of one minute to calculate rate
@@ -44,6 +55,9 @@ public class FlowStat {
     public FlowStat(long interval) {
         this.created = System.currentTimeMillis();
         this.interval = interval;
+        this.bucketWidth = Math.max(1, interval / BUCKETS_PER_INTERVAL);
+        // One extra bucket for the partly elapsed bucket at the start of the interval
+        this.buckets = new AtomicReferenceArray<>((int) (interval / bucketWidth) + 2);
     }
 
     /**
@@ -51,7 +65,8 @@ public class FlowStat {
      * @return
      */
     public Long getLastReceived() {
-        return lastReceived;
+        long last = lastReceived;
+        return last == 0 ? null : last;
     }
 
     /**
@@ -67,36 +82,80 @@ public class FlowStat {
      * @return
      */
     public double getRate() {
-        long now = System.currentTimeMillis();
-        truncateReceives(now);
-        if (receives.size() == 0) {
-            return 0;
+        return getRate(System.currentTimeMillis());
+    }
+
+    double getRate(long now) {
+        long count = 0;
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket b = buckets.get(i);
+            if (b != null && isWithinInterval(b, now)) {
+                long c = b.count.sum();
+                if (c > 0) {
+                    count += c;
+                    oldest = Math.min(oldest, Math.max(b.epoch * bucketWidth, now - interval));
+                }
+            }
         }
-        long last = receives.getLast();
-        if (last == now) {
+        if (count == 0 || oldest >= now) {
             return 0;
         }
-        return receives.size() / ((double) (now - last) / 1000);
+        return count / ((double) (now - oldest) / 1000);
+    }
+
+    /**
+     * Returns the number of receptions within the interval
+     * @return
+     */
+    public long getCount() {
+        long now = System.currentTimeMillis();
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket b = buckets.get(i);
+            if (b != null && isWithinInterval(b, now)) {
+                count += b.count.sum();
+            }
+        }
+        return count;
+    }
+
+    private boolean isWithinInterval(Bucket b, long now) {
+        long end = (b.epoch + 1) * bucketWidth;
+        return end > now - interval && b.epoch <= now / bucketWidth;
     }
 
     /**
      * Indicate a reception
      */
     public void received() {
-        lastReceived = System.currentTimeMillis();
-        receives.addFirst(lastReceived);
-        truncateReceives(lastReceived);
+        received(1, System.currentTimeMillis());
     }
 
-    private void truncateReceives(long now) {
-        while (receives.size() > 0) {
-            long last = receives.getLast();
-            if (now - last > interval) {
-                receives.removeLast();
+    /**
+     * Indicate a number of receptions at the same time
+     * @param count
+     */
+    public void received(int count) {
+        received(count, System.currentTimeMillis());
+    }
+
+    void received(int count, long now) {
+        lastReceived = now;
+        long epoch = now / bucketWidth;
+        int index = (int) (epoch % buckets.length());
+        Bucket b = buckets.get(index);
+        while (b == null || b.epoch < epoch) {
+            // Start a new bucket. Counts added concurrently to the old bucket are older than the interval
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, b, fresh)) {
+                b = fresh;
             } else {
-                break;
+                b = buckets.get(index);
             }
         }
+        // A late thread may find a newer bucket in the slot, it is counted there
+        b.count.add(count);
     }
 
     @Override
@@ -107,14 +166,25 @@ public class FlowStat {
         builder.append(", created=");
         builder.append(created);
         builder.append(", lastReceived=");
-        builder.append(lastReceived);
+        builder.append(getLastReceived());
         builder.append(", receives=");
-        builder.append(receives.size());
+        builder.append(getCount());
         builder.append(", rate=");
         builder.append(getRate());
         builder.append("]");
         return builder.toString();
     }
 
+    /**
+     * The receptions within a bucket width of time
+     */
+    private static final class Bucket {
+        final long epoch;
+        final LongAdder count = new LongAdder();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
 
 }
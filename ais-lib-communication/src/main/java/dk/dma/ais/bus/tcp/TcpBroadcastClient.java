@@ -0,0 +1,70 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.bus.tcp;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * A client of a {@link TcpBroadcastServer}. It has no thread of its own, instead it is written to by the server thread
+ * and keeps its position in the server's ring buffer.
+ */
+@NotThreadSafe
+public class TcpBroadcastClient extends TcpClient {
+
+    final TcpBroadcastServer server;
+
+    final SocketChannel channel;
+
+    SelectionKey key;
+
+    /** The ring buffer chunk to write from next */
+    long chunk;
+
+    /** The position in the chunk to write from next */
+    int offset;
+
+    /** The rest of partly written messages from buffers that have since been reused, if any */
+    ByteBuffer tail;
+
+    /** Whether the socket was full at the last write */
+    boolean waitingForWrite;
+
+    /** Reused for gathering writes */
+    final ByteBuffer[] sources = new ByteBuffer[TcpBroadcastServer.MAX_GATHER];
+
+    public TcpBroadcastClient(TcpBroadcastServer server, SocketChannel channel, TcpClientConf conf) {
+        super(server, channel.socket(), conf);
+        this.server = server;
+        this.channel = channel;
+    }
+
+    /**
+     * Does nothing, the client has no thread of its own and is written to once the server has accepted it
+     */
+    @Override
+    public synchronized void start() {}
+
+    /**
+     * Disconnects the client
+     */
+    @Override
+    public void cancel() {
+        server.disconnect(this);
+    }
+}
@@ -0,0 +1,425 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.bus.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TCP server sending the same stream of messages to all clients from a single thread using non-blocking I/O.
+ * <p>
+ * Each message is encoded once and appended to a ring of direct buffers shared by all clients. Every client keeps its
+ * own position in the ring and is written to with gathering writes straight from the shared buffers, so there are no
+ * per-client queues or copies. A client that falls more than the ring behind is handled according to
+ * {@link TcpBroadcastServerConf#getSlowClientPolicy()}.
+ * <p>
+ * Gzip compression is per client and can not be shared, so {@link TcpClientConf#isGzipCompress()} is not supported.
+ */
+@ThreadSafe
+public class TcpBroadcastServer extends TcpServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TcpBroadcastServer.class);
+
+    /** The size of each buffer in the ring */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /** The maximum number of buffers in a single write */
+    static final int MAX_GATHER = 16;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /** Encoded messages waiting to be added to the ring */
+    private volatile BlockingQueue<byte[]> incoming;
+
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    /** Tasks to run in the server thread */
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile Selector selector;
+
+    private TcpBroadcastServerConf broadcastConf = new TcpBroadcastServerConf();
+
+    // The following fields are only accessed by the server thread
+
+    private ByteBuffer[] ring;
+
+    /** The buffer being filled */
+    private long head;
+
+    private SelectionKey acceptKey;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+
+    public TcpBroadcastServer() {
+        super();
+    }
+
+    @Override
+    protected TcpBroadcastClient newClient(Socket socket) {
+        return new TcpBroadcastClient(this, socket.getChannel(), clientConf);
+    }
+
+    /**
+     * Send message to all clients
+     * 
+     * @param msg
+     * @return false if the message was dropped because the server thread is behind
+     */
+    public boolean send(String msg) {
+        byte[] bytes = new byte[msg.length() + LINE_SEPARATOR.length];
+        for (int i = 0; i < msg.length(); i++) {
+            bytes[i] = (byte) msg.charAt(i);
+        }
+        System.arraycopy(LINE_SEPARATOR, 0, bytes, msg.length(), LINE_SEPARATOR.length);
+        BlockingQueue<byte[]> incoming = this.incoming;
+        if (incoming == null) {
+            return false;
+        }
+        if (!incoming.offer(bytes)) {
+            for (TcpClient client : clients) {
+                client.status.overflow();
+            }
+            return false;
+        }
+        if (wakeupPending.compareAndSet(false, true)) {
+            Selector selector = this.selector;
+            if (selector != null) {
+                selector.wakeup();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects a client from the server thread
+     */
+    void disconnect(final TcpBroadcastClient client) {
+        execute(() -> close(client));
+    }
+
+    private void execute(Runnable r) {
+        tasks.add(r);
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void clientStopped(TcpClient client) {
+        clients.remove(client);
+        if (acceptKey != null && acceptKey.isValid()) {
+            acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        int chunks = Math.max(2, broadcastConf.getRingBufferSize() / CHUNK_SIZE);
+        ring = new ByteBuffer[chunks];
+        for (int i = 0; i < chunks; i++) {
+            ring[i] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        incoming = new ArrayBlockingQueue<>(clientConf.getBufferSize());
+        super.start();
+    }
+
+    @Override
+    public void run() {
+        try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+            this.selector = selector;
+            try {
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                server.bind(new InetSocketAddress(serverConf.getPort()));
+                server.configureBlocking(false);
+            } catch (IOException e) {
+                LOG.error("Failed to setup server socket: " + e.getMessage());
+                return;
+            }
+            serverSocket.set(server.socket());
+            acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+            LOG.info("Waiting for connections on port " + serverConf.getPort());
+
+            List<byte[]> batch = new ArrayList<>();
+            while (!isInterrupted() && server.isOpen()) {
+                selector.select();
+                for (Runnable r = tasks.poll(); r != null; r = tasks.poll()) {
+                    r.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key == acceptKey) {
+                        accept(server);
+                    } else {
+                        handle(key, (TcpBroadcastClient) key.attachment());
+                    }
+                }
+
+                // Append new messages to the ring and write them to the clients that can take them
+                wakeupPending.set(false);
+                batch.clear();
+                incoming.drainTo(batch);
+                if (!batch.isEmpty()) {
+                    for (byte[] msg : batch) {
+                        append(msg);
+                    }
+                    for (TcpClient c : clients) {
+                        TcpBroadcastClient client = (TcpBroadcastClient) c;
+                        client.status.receive(batch.size());
+                        if (!client.waitingForWrite) {
+                            write(client);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!isInterrupted()) {
+                LOG.error(getName() + ": " + e.getMessage());
+            }
+        } finally {
+            for (TcpClient client : clients) {
+                close((TcpBroadcastClient) client);
+            }
+            this.selector = null;
+        }
+        LOG.info("Stopped");
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            LOG.info("Accepting connection from " + channel.getRemoteAddress());
+            TcpBroadcastClient client = newClient(channel.socket());
+            client.chunk = head;
+            client.offset = chunk(head).position();
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            client.status.setConnected();
+            clients.add(client);
+        } catch (IOException e) {
+            LOG.info(getName() + ": " + e.getMessage());
+            channel.close();
+        }
+        // Maybe wait if max connections is exceeded
+        if (clients.size() >= serverConf.getMaxClients()) {
+            acceptKey.interestOps(0);
+        }
+    }
+
+    private void handle(SelectionKey key, TcpBroadcastClient client) {
+        try {
+            if (key.isReadable()) {
+                // Clients are not expected to send anything, but reading detects when they disconnect
+                readBuffer.clear();
+                if (client.channel.read(readBuffer) < 0) {
+                    close(client);
+                    return;
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                write(client);
+            }
+        } catch (IOException e) {
+            LOG.info(client.getRemoteHost() + ": " + e.getMessage());
+            close(client);
+        }
+    }
+
+    private ByteBuffer chunk(long index) {
+        return ring[(int) (index % ring.length)];
+    }
+
+    /**
+     * Appends a message to the ring, moving to the next buffer if it does not fit. Before moving on, the full buffer
+     * is written to the clients that can take it, so a large batch does not wrap the ring past clients that are
+     * keeping up.
+     */
+    private void append(byte[] msg) {
+        if (msg.length > CHUNK_SIZE) {
+            LOG.error("Dropping message longer than " + CHUNK_SIZE + " bytes");
+            return;
+        }
+        if (chunk(head).remaining() < msg.length) {
+            for (TcpClient c : clients) {
+                TcpBroadcastClient client = (TcpBroadcastClient) c;
+                if (!client.waitingForWrite) {
+                    write(client);
+                }
+            }
+            head++;
+            long reused = head - ring.length;
+            for (TcpClient c : clients) {
+                TcpBroadcastClient client = (TcpBroadcastClient) c;
+                if (client.chunk <= reused) {
+                    slow(client, reused);
+                }
+            }
+            chunk(head).clear();
+        }
+        chunk(head).put(msg);
+    }
+
+    /** Handles a client that still has not received the buffer about to be reused */
+    private void slow(TcpBroadcastClient client, long reused) {
+        if (broadcastConf.getSlowClientPolicy() == TcpBroadcastServerConf.SlowClientPolicy.DISCONNECT) {
+            LOG.info("Disconnecting slow client " + client.getRemoteHost());
+            close(client);
+            return;
+        }
+        ByteBuffer b = chunk(reused);
+        int from = client.offset;
+        if (from > 0 && b.get(from - 1) != '\n') {
+            // The client has received part of a message, keep the rest of it so the line is not cut
+            int end = from;
+            while (end < b.position() && b.get(end) != '\n') {
+                end++;
+            }
+            if (end < b.position()) {
+                end++; // include the line separator
+            }
+            // Keep any earlier tail that has not been sent yet in front of it
+            ByteBuffer previous = client.tail;
+            int kept = previous == null ? 0 : previous.remaining();
+            ByteBuffer tail = ByteBuffer.allocate(kept + end - from);
+            if (previous != null) {
+                tail.put(previous);
+            }
+            for (int i = from; i < end; i++) {
+                tail.put(b.get(i));
+            }
+            tail.flip();
+            client.tail = tail;
+            from = end;
+        }
+        int dropped = 0;
+        for (int i = from; i < b.position(); i++) {
+            if (b.get(i) == '\n') {
+                dropped++;
+            }
+        }
+        // Buffers always start at a message, so skipping to the next buffer is safe
+        if (dropped > 0) {
+            client.status.batchOverflow(dropped);
+        }
+        client.chunk = reused + 1;
+        client.offset = 0;
+    }
+
+    /** Writes as much as the socket will take to the client */
+    private void write(TcpBroadcastClient client) {
+        try {
+            for (;;) {
+                while (client.chunk < head && client.offset == chunk(client.chunk).position()) {
+                    client.chunk++;
+                    client.offset = 0;
+                }
+                ByteBuffer[] sources = client.sources;
+                int first = 0;
+                if (client.tail != null) {
+                    sources[first++] = client.tail;
+                }
+                int count = (int) Math.min(head - client.chunk + 1, MAX_GATHER - first);
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer b = chunk(client.chunk + i).duplicate();
+                    b.limit(b.position());
+                    b.position(i == 0 ? client.offset : 0);
+                    sources[first + i] = b;
+                }
+                if (first == 0 && count == 1 && !sources[0].hasRemaining()) {
+                    setWaitingForWrite(client, false);
+                    return;
+                }
+                client.channel.write(sources, 0, first + count);
+                if (client.tail != null) {
+                    if (client.tail.hasRemaining()) {
+                        setWaitingForWrite(client, true);
+                        return;
+                    }
+                    client.tail = null;
+                }
+                int i = 0;
+                while (i < count - 1 && !sources[first + i].hasRemaining()) {
+                    i++;
+                }
+                client.chunk += i;
+                client.offset = sources[first + i].position();
+                if (sources[first + i].hasRemaining()) {
+                    setWaitingForWrite(client, true);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            LOG.info(client.getRemoteHost() + ": " + e.getMessage());
+            close(client);
+        }
+    }
+
+    private void setWaitingForWrite(TcpBroadcastClient client, boolean waiting) {
+        if (client.waitingForWrite != waiting && client.key.isValid()) {
+            client.waitingForWrite = waiting;
+            client.key.interestOps(waiting ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private void close(TcpBroadcastClient client) {
+        if (!clients.contains(client)) {
+            return;
+        }
+        LOG.info("Stopping client " + client.getRemoteHost());
+        if (client.key != null) {
+            client.key.cancel();
+        }
+        try {
+            client.channel.close();
+        } catch (IOException ignored) {}
+        client.stopping();
+    }
+
+    public TcpBroadcastServerConf getBroadcastConf() {
+        return broadcastConf;
+    }
+
+    public void setBroadcastConf(TcpBroadcastServerConf broadcastConf) {
+        this.broadcastConf = broadcastConf;
+    }
+
+}
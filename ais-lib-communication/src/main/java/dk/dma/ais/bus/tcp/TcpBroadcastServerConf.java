@@ -0,0 +1,75 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.bus.tcp;
+
+/**
+ * Configuration of a non-blocking {@link TcpBroadcastServer}
+ */
+public class TcpBroadcastServerConf {
+
+    /**
+     * What the server does with a client that has fallen more than the ring buffer behind
+     */
+    public enum SlowClientPolicy {
+        /** Skip the client ahead, dropping the messages it has not received */
+        DROP,
+        /** Disconnect the client */
+        DISCONNECT
+    }
+
+    private boolean nonBlocking;
+    private int ringBufferSize = 4 * 1024 * 1024;
+    private SlowClientPolicy slowClientPolicy = SlowClientPolicy.DROP;
+
+    public TcpBroadcastServerConf() {
+
+    }
+
+    /**
+     * Whether writing servers should serve all clients from a single thread using a {@link TcpBroadcastServer}. Not
+     * used with gzip compression.
+     * 
+     * @return whether to use non-blocking I/O
+     */
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+
+    public void setNonBlocking(boolean nonBlocking) {
+        this.nonBlocking = nonBlocking;
+    }
+
+    /**
+     * The number of bytes of outgoing data kept for slow clients
+     * 
+     * @return the ring buffer size in bytes
+     */
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public SlowClientPolicy getSlowClientPolicy() {
+        return slowClientPolicy;
+    }
+
+    public void setSlowClientPolicy(SlowClientPolicy slowClientPolicy) {
+        this.slowClientPolicy = slowClientPolicy;
+    }
+
+}
@@ -36,12 +36,16 @@ import dk.dma.ais.bus.AisBusConsumer;
 import dk.dma.ais.bus.AisBusProvider;
 import dk.dma.ais.configuration.bus.consumer.AisBusConsumerConfiguration;
 import dk.dma.ais.configuration.bus.provider.AisBusProviderConfiguration;
+import dk.dma.ais.queue.MessageQueueType;
+import dk.dma.ais.queue.WaitStrategy;
 
 @XmlRootElement
 public class AisBusConfiguration extends AisBusComponentConfiguration {
 
     private int busPullMaxElements = 1000;
     private int busQueueSize = 10000;
+    private MessageQueueType busQueueType = MessageQueueType.BLOCKING;
+    private WaitStrategy busQueueWaitStrategy = WaitStrategy.PARK;
 
     private List<AisBusProviderConfiguration> providers = new ArrayList<>();
     private List<AisBusConsumerConfiguration> consumers = new ArrayList<>();
@@ -66,6 +70,22 @@ public class AisBusConfiguration extends AisBusComponentConfiguration {
         this.busQueueSize = busQueueSize;
     }
 
+    public MessageQueueType getBusQueueType() {
+        return busQueueType;
+    }
+
+    public void setBusQueueType(MessageQueueType busQueueType) {
+        this.busQueueType = busQueueType;
+    }
+
+    public WaitStrategy getBusQueueWaitStrategy() {
+        return busQueueWaitStrategy;
+    }
+
+    public void setBusQueueWaitStrategy(WaitStrategy busQueueWaitStrategy) {
+        this.busQueueWaitStrategy = busQueueWaitStrategy;
+    }
+
     @XmlElement(name = "provider")
     public List<AisBusProviderConfiguration> getProviders() {
         return providers;
@@ -90,6 +110,8 @@ public class AisBusConfiguration extends AisBusComponentConfiguration {
         AisBus aisBus = new AisBus();
         aisBus.setBusQueueSize(busQueueSize);
         aisBus.setBusPullMaxElements(busPullMaxElements);
+        aisBus.setBusQueueType(busQueueType);
+        aisBus.setBusQueueWaitStrategy(busQueueWaitStrategy);
         configure(aisBus);
         aisBus.init();
         for (AisBusConsumerConfiguration consumerConf : consumers) {
@@ -18,6 +18,8 @@ import javax.xml.bind.annotation.XmlSeeAlso;
 
 import dk.dma.ais.bus.AisBusConsumer;
 import dk.dma.ais.configuration.bus.AisBusSocketConfiguration;
+import dk.dma.ais.queue.MessageQueueType;
+import dk.dma.ais.queue.WaitStrategy;
 
 @XmlSeeAlso({ StdoutConsumerConfiguration.class, TcpWriterConsumerConfiguration.class, TcpServerConsumerConfiguration.class,
         DistributerConsumerConfiguration.class })
@@ -25,6 +27,8 @@ public abstract class AisBusConsumerConfiguration extends AisBusSocketConfigurat
 
     private int consumerPullMaxElements = 1000;
     private int consumerQueueSize = 10000;
+    private MessageQueueType consumerQueueType = MessageQueueType.BLOCKING;
+    private WaitStrategy consumerQueueWaitStrategy = WaitStrategy.PARK;
 
     public AisBusConsumerConfiguration() {
 
@@ -46,9 +50,27 @@ public abstract class AisBusConsumerConfiguration extends AisBusSocketConfigurat
         this.consumerPullMaxElements = consumerPullMaxElements;
     }
 
+    public MessageQueueType getConsumerQueueType() {
+        return consumerQueueType;
+    }
+
+    public void setConsumerQueueType(MessageQueueType consumerQueueType) {
+        this.consumerQueueType = consumerQueueType;
+    }
+
+    public WaitStrategy getConsumerQueueWaitStrategy() {
+        return consumerQueueWaitStrategy;
+    }
+
+    public void setConsumerQueueWaitStrategy(WaitStrategy consumerQueueWaitStrategy) {
+        this.consumerQueueWaitStrategy = consumerQueueWaitStrategy;
+    }
+
     protected AisBusConsumer configure(AisBusConsumer consumer) {
         consumer.setConsumerPullMaxElements(consumerPullMaxElements);
         consumer.setConsumerQueueSize(consumerQueueSize);
+        consumer.setConsumerQueueType(consumerQueueType);
+        consumer.setConsumerQueueWaitStrategy(consumerQueueWaitStrategy);
         super.configure(consumer);
         return consumer;
     }
@@ -19,6 +19,7 @@ import javax.xml.bind.annotation.XmlTransient;
 
 import dk.dma.ais.bus.AisBusComponent;
 import dk.dma.ais.bus.consumer.TcpServerConsumer;
+import dk.dma.ais.bus.tcp.TcpBroadcastServerConf;
 import dk.dma.ais.bus.tcp.TcpClientConf;
 import dk.dma.ais.bus.tcp.TcpServerConf;
 
@@ -27,6 +28,7 @@ public class TcpServerConsumerConfiguration extends AisBusConsumerConfiguration
 
     private TcpClientConf clientConf = new TcpClientConf();
     private TcpServerConf serverConf = new TcpServerConf();
+    private TcpBroadcastServerConf broadcastConf = new TcpBroadcastServerConf();
 
     public TcpServerConsumerConfiguration() {
 
@@ -47,6 +49,14 @@ public class TcpServerConsumerConfiguration extends AisBusConsumerConfiguration
     public void setServerConf(TcpServerConf serverConf) {
         this.serverConf = serverConf;
     }
+
+    public TcpBroadcastServerConf getBroadcastConf() {
+        return broadcastConf;
+    }
+
+    public void setBroadcastConf(TcpBroadcastServerConf broadcastConf) {
+        this.broadcastConf = broadcastConf;
+    }
     
     @Override
     @XmlTransient
@@ -54,6 +64,7 @@ public class TcpServerConsumerConfiguration extends AisBusConsumerConfiguration
         TcpServerConsumer server = new TcpServerConsumer();
         server.setClientConf(clientConf);
         server.setServerConf(serverConf);
+        server.setBroadcastConf(broadcastConf);
         return super.configure(server);
     }
 
@@ -18,6 +18,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
 
 import dk.dma.ais.filter.DuplicateFilter;
+import dk.dma.ais.filter.DuplicateWindow;
 import dk.dma.ais.filter.IPacketFilter;
 
 @XmlRootElement
@@ -28,6 +29,11 @@ public class DuplicateFilterConfiguration extends FilterConfiguration {
      */
     private long windowSize = 10000;
 
+    /**
+     * Maximum number of messages to remember
+     */
+    private int maxEntries = DuplicateWindow.DEFAULT_MAX_ENTRIES;
+
     public DuplicateFilterConfiguration() {
 
     }
@@ -39,11 +45,19 @@ public class DuplicateFilterConfiguration extends FilterConfiguration {
     public void setWindowSize(long windowSize) {
         this.windowSize = windowSize;
     }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
     
     @Override
     @XmlTransient
     public IPacketFilter getInstance() {
-        return new DuplicateFilter(windowSize);
+        return new DuplicateFilter(windowSize, maxEntries);
     }
 
 }
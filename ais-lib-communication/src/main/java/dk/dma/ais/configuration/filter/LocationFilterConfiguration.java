@@ -24,6 +24,7 @@ import javax.xml.bind.annotation.XmlTransient;
 import dk.dma.ais.configuration.filter.geometry.GeometryConfiguration;
 import dk.dma.ais.filter.IPacketFilter;
 import dk.dma.ais.filter.LocationFilter;
+import dk.dma.enav.model.geometry.Area;
 
 @XmlRootElement
 public class LocationFilterConfiguration extends FilterConfiguration {
@@ -47,9 +48,16 @@ public class LocationFilterConfiguration extends FilterConfiguration {
     @XmlTransient
     public IPacketFilter getInstance() {
         LocationFilter locFilter = new LocationFilter();
+        List<Area> areas = new ArrayList<>();
         for (GeometryConfiguration geo : geometries) {
-            locFilter.addFilterGeometry(geo.getPredicate());
+            Area area = geo.getArea();
+            if (area != null) {
+                areas.add(area);
+            } else {
+                locFilter.addFilterGeometry(geo.getPredicate());
+            }
         }
+        locFilter.addFilterAreas(areas);
         return locFilter;
     }
 
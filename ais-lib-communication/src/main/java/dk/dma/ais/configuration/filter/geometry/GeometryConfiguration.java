@@ -16,6 +16,7 @@ package dk.dma.ais.configuration.filter.geometry;
 
 import javax.xml.bind.annotation.XmlSeeAlso;
 
+import dk.dma.enav.model.geometry.Area;
 import dk.dma.enav.model.geometry.Position;
 import java.util.function.Predicate;
 
@@ -24,4 +25,14 @@ public abstract class GeometryConfiguration {
 
     public abstract Predicate<? super Position> getPredicate();
 
+    /**
+     * Returns the geometry as an area, which can be indexed, or null if it is not an area. The default returns null,
+     * and filters then test the predicate instead.
+     * 
+     * @return
+     */
+    public Area getArea() {
+        return null;
+    }
+
 }
@@ -0,0 +1,240 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.filter;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+import dk.dma.enav.model.geometry.Area;
+import dk.dma.enav.model.geometry.BoundingBox;
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * A spatial index over a set of areas, answering if a position is within any of them.
+ * <p>
+ * The bounding box of all the areas is divided into a uniform grid of latitude/longitude cells. Each cell holds the
+ * areas whose bounding box overlaps it, or is marked as covered if a {@link BoundingBox} area contains the whole
+ * cell. A lookup therefore tests only the few areas near the position, regardless of how many areas are indexed.
+ * <p>
+ * Areas that may cross the antimeridian are not put in the grid, and are tested one by one on every lookup. These are
+ * areas whose bounding box has a minimum longitude greater than its maximum longitude, reaches ±180°, or spans more
+ * than half the globe, as a bounding box clipped or widened at the antimeridian does not cover the area.
+ */
+@Immutable
+public final class AreaIndex {
+
+    /** Upper limit on the number of cells in the grid */
+    private static final int MAX_CELLS = 1 << 18;
+
+    /** Number of cells to aim at per area, so a small index does not get a large grid */
+    private static final int CELLS_PER_AREA = 1024;
+
+    /** Marks a cell that is covered completely by an area */
+    private static final Area[] COVERED = new Area[0];
+
+    /** An index without any areas */
+    public static final AreaIndex EMPTY = new AreaIndex(Collections.<Area> emptyList());
+
+    private final List<Area> areas;
+
+    /** The areas crossing the antimeridian, which are not in the grid */
+    private final Area[] wrapped;
+
+    private final double minLat;
+    private final double minLon;
+    private final double maxLat;
+    private final double maxLon;
+    private final double cellSize;
+    private final int rows;
+    private final int columns;
+
+    /** The areas overlapping each cell, row by row, null if none */
+    private final Area[][] cells;
+
+    /**
+     * Creates a new index of the areas
+     * 
+     * @param areas
+     */
+    public AreaIndex(Collection<? extends Area> areas) {
+        this.areas = Collections.unmodifiableList(new ArrayList<Area>(areas));
+        List<Area> gridded = new ArrayList<>(this.areas.size());
+        List<Area> wrapped = new ArrayList<>();
+        for (Area area : this.areas) {
+            BoundingBox bb = requireNonNull(area).getBoundingBox();
+            (crossesAntimeridian(bb) ? wrapped : gridded).add(area);
+        }
+        this.wrapped = wrapped.toArray(new Area[wrapped.size()]);
+        if (gridded.isEmpty()) {
+            minLat = minLon = 0;
+            maxLat = maxLon = -1;
+            cellSize = 1;
+            rows = columns = 0;
+            cells = new Area[0][];
+            return;
+        }
+
+        // Find the extent of all areas
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (Area area : gridded) {
+            BoundingBox bb = area.getBoundingBox();
+            minLat = Math.min(minLat, bb.getMinLat());
+            maxLat = Math.max(maxLat, bb.getMaxLat());
+            minLon = Math.min(minLon, bb.getMinLon());
+            maxLon = Math.max(maxLon, bb.getMaxLon());
+        }
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.maxLon = maxLon;
+
+        // Square cells, as many as allowed
+        int maxCells = (int) Math.min(MAX_CELLS, (long) CELLS_PER_AREA * gridded.size());
+        double height = Math.max(maxLat - minLat, 1e-6);
+        double width = Math.max(maxLon - minLon, 1e-6);
+        this.cellSize = Math.sqrt(height * width / maxCells);
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+
+        @SuppressWarnings("unchecked")
+        List<Area>[] overlapping = new List[rows * columns];
+        boolean[] covered = new boolean[rows * columns];
+        for (Area area : gridded) {
+            BoundingBox bb = area.getBoundingBox();
+            int row0 = row(bb.getMinLat()), row1 = row(bb.getMaxLat());
+            int col0 = column(bb.getMinLon()), col1 = column(bb.getMaxLon());
+            for (int r = row0; r <= row1; r++) {
+                for (int c = col0; c <= col1; c++) {
+                    int i = r * columns + c;
+                    if (area instanceof BoundingBox && covers(bb, r, c)) {
+                        covered[i] = true;
+                    } else if (!covered[i]) {
+                        if (overlapping[i] == null) {
+                            overlapping[i] = new ArrayList<>(2);
+                        }
+                        overlapping[i].add(area);
+                    }
+                }
+            }
+        }
+        this.cells = new Area[rows * columns][];
+        for (int i = 0; i < cells.length; i++) {
+            if (covered[i]) {
+                cells[i] = COVERED;
+            } else if (overlapping[i] != null) {
+                cells[i] = overlapping[i].toArray(new Area[overlapping[i].size()]);
+            }
+        }
+    }
+
+    /** Returns true if the area of the bounding box may cross the antimeridian */
+    private static boolean crossesAntimeridian(BoundingBox bb) {
+        return bb.getMinLon() > bb.getMaxLon() || bb.getMinLon() <= -180 || bb.getMaxLon() >= 180
+                || bb.getMaxLon() - bb.getMinLon() > 180;
+    }
+
+    /** Returns true if the bounding box contains the whole cell */
+    private boolean covers(BoundingBox bb, int row, int column) {
+        double lat0 = minLat + row * cellSize;
+        double lon0 = minLon + column * cellSize;
+        return bb.getMinLat() <= lat0 && lat0 + cellSize <= bb.getMaxLat() && bb.getMinLon() <= lon0
+                && lon0 + cellSize <= bb.getMaxLon();
+    }
+
+    private int row(double lat) {
+        return Math.min(rows - 1, Math.max(0, (int) ((lat - minLat) / cellSize)));
+    }
+
+    private int column(double lon) {
+        return Math.min(columns - 1, Math.max(0, (int) ((lon - minLon) / cellSize)));
+    }
+
+    /**
+     * Returns true if the position is within any of the areas
+     * 
+     * @param position
+     * @return
+     */
+    public boolean contains(Position position) {
+        Area[] cell = cellOf(position.getLatitude(), position.getLongitude());
+        if (cell == COVERED) {
+            return true;
+        } else if (cell != null) {
+            for (Area area : cell) {
+                if (area.contains(position)) {
+                    return true;
+                }
+            }
+        }
+        for (Area area : wrapped) {
+            if (area.contains(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Area[] cellOf(double lat, double lon) {
+        if (!(lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon)) {
+            return null;
+        }
+        return cells[row(lat) * columns + column(lon)];
+    }
+
+    /**
+     * Returns the indexed areas
+     * 
+     * @return
+     */
+    public List<Area> getAreas() {
+        return areas;
+    }
+
+    /**
+     * Returns a new index with the area added
+     * 
+     * @param area
+     * @return
+     */
+    public AreaIndex with(Area area) {
+        return with(Collections.singletonList(requireNonNull(area)));
+    }
+
+    /**
+     * Returns a new index with the areas added. The grid is built once for all of them.
+     * 
+     * @param areas
+     * @return
+     */
+    public AreaIndex with(Collection<? extends Area> areas) {
+        List<Area> l = new ArrayList<>(this.areas.size() + areas.size());
+        l.addAll(this.areas);
+        l.addAll(areas);
+        return new AreaIndex(l);
+    }
+
+    @Override
+    public String toString() {
+        return "AreaIndex [areas=" + areas.size() + ", rows=" + rows + ", columns=" + columns + ", cellSize="
+                + cellSize + "]";
+    }
+
+}
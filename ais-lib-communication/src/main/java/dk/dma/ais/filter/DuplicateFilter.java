@@ -14,48 +14,30 @@
  */
 package dk.dma.ais.filter;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
-import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 import dk.dma.ais.message.AisMessage;
 
 /**
  * A doublet filter.
  * 
- * The doublet filter works by only allowing the same message through once in a time window. The six bit string of the message is
- * used as unique identifier.
+ * The doublet filter works by only allowing the same message through once in a time window. A 64-bit hash of the six
+ * bit string of the message is used as unique identifier.
  * 
+ * @see DuplicateWindow
  */
 @ThreadSafe
 public class DuplicateFilter extends MessageFilterBase {
 
     /**
-     * Number of message receptions between cleanups
-     */
-    private static final long MAX_CLEANUP_AGE = 10000;
-
-    /**
-     * A TreeMap is used with raw six bit string as key. compareTo is used which is rather effective for differing messages. Using
-     * HashMap can result in wrong filtering as two strings can produce the same hash code.
+     * Hashes of the messages seen within the window
      */
-    @GuardedBy("this")
-    private final Map<DoubletEntry, Long> sixbitReceived = new TreeMap<>();
+    private final DuplicateWindow window;
 
     /**
      * A default window size of 10 seconds is used
      */
-    private volatile long windowSize = 10000;
-
-    /**
-     * Number of message receptions since last cleanup
-     */
-    private volatile long cleanupAge;
-
     public DuplicateFilter() {
+        this(10000);
     }
 
     /**
@@ -65,69 +47,40 @@ public class DuplicateFilter extends MessageFilterBase {
      *            size in milliseconds
      */
     public DuplicateFilter(long windowSize) {
-        this.windowSize = windowSize;
+        this(windowSize, DuplicateWindow.DEFAULT_MAX_ENTRIES);
     }
 
-    @Override
-    public synchronized boolean rejectedByFilter(AisMessage message) {
-        // Get time now
-        Long now = System.currentTimeMillis();
-
-        // Make new entry
-        DoubletEntry newEntry = new DoubletEntry(message.getVdm().getSixbitString(), now);
-
-        // Try to find matching received
-        Long lastReceived = sixbitReceived.get(newEntry);
-        if (lastReceived == null) {
-            lastReceived = 0L;
-        }
-
-        // Elapsed in msecs
-        long elapsed = now - lastReceived;
-
-        if (elapsed < windowSize) {
-            // Doublet within window
-            // System.out.println("Doublet: " + newEntry.getSixbit() +
-            // " elapsed: " + elapsed);
-            return true;
-        }
-
-        // Save message in map
-        sixbitReceived.put(newEntry, now);
-
-        // Update message reception count
-        cleanupAge++;
-
-        // Do cleanup for every 1.000 inserts/updates
-        if (cleanupAge >= MAX_CLEANUP_AGE) {
-            List<DoubletEntry> oldEntries = new ArrayList<>(sixbitReceived.size());
-            // Iterate through all elements
-            for (DoubletEntry entry : sixbitReceived.keySet()) {
-                if (now - entry.getReceived() > windowSize) {
-                    oldEntries.add(entry);
-                }
-            }
-            for (DoubletEntry oldEntry : oldEntries) {
-                sixbitReceived.remove(oldEntry);
-            }
-            cleanupAge = 0;
-        }
+    /**
+     * Constructor given window size and the maximum number of messages to remember
+     * 
+     * @param windowSize
+     *            size in milliseconds
+     * @param maxEntries
+     */
+    public DuplicateFilter(long windowSize, int maxEntries) {
+        this.window = new DuplicateWindow(windowSize, maxEntries);
+    }
 
-        // Send message
-        return false;
+    @Override
+    public boolean rejectedByFilter(AisMessage message) {
+        return window.isDuplicate(DuplicateWindow.hash(message.getVdm().getSixbitString()), System.currentTimeMillis());
     }
 
     public long getWindowSize() {
-        return windowSize;
+        return window.getWindowSize();
     }
 
     public void setWindowSize(long windowSize) {
-        this.windowSize = windowSize;
+        window.setWindowSize(windowSize);
     }
 
     /**
      * An entry class with sixbit string and reception date
+     * 
+     * @deprecated no longer used by the filter, which remembers hashes of the six bit strings in a
+     *             {@link DuplicateWindow}
      */
+    @Deprecated
     public class DoubletEntry implements Comparable<DoubletEntry> {
 
         private String sixbit;
@@ -0,0 +1,302 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Remembers 64-bit hashes of messages seen within a time window, for doublet filtering.
+ * <p>
+ * The hashes are kept in a timing wheel of generations. Each generation is an open addressing hash table, and holds
+ * the hashes first seen within one tick of the wheel. When time passes into a new tick, or the current generation is
+ * full, a new generation is started and the oldest is dropped. Once the wheel is full, the table of the dropped
+ * generation is cleared and reused for the new one, so nothing is allocated per tick. Memory use is thereby bounded by
+ * the maximum number of entries, and expiry is done a whole generation at a time without scanning. Under overload, where more than the
+ * maximum number of entries are seen within the window, generations are dropped before their entries expire, and
+ * some doublets may pass.
+ * <p>
+ * Lookups and inserts are lock-free. Only starting a new generation takes a lock, and waits for inserts in progress
+ * into the previous generation, so that they are seen by lookups in the older generations.
+ */
+@ThreadSafe
+public class DuplicateWindow {
+
+    /** Default maximum number of remembered hashes */
+    public static final int DEFAULT_MAX_ENTRIES = 250000;
+
+    /** Number of generations in the wheel */
+    private static final int GENERATIONS = 8;
+
+    private volatile long windowSize;
+
+    /** Generations from the newest, the one inserted into, to the oldest */
+    private volatile Generation[] wheel;
+
+    /** Maximum number of entries in a generation */
+    private final int generationMaxEntries;
+
+    /**
+     * Constructor given window size and maximum number of entries
+     * 
+     * @param windowSize
+     *            size in milliseconds
+     * @param maxEntries
+     *            the maximum number of hashes to remember
+     */
+    public DuplicateWindow(long windowSize, int maxEntries) {
+        if (maxEntries < GENERATIONS) {
+            throw new IllegalArgumentException("maxEntries must be at least " + GENERATIONS + ", was " + maxEntries);
+        }
+        this.windowSize = windowSize;
+        this.generationMaxEntries = maxEntries / GENERATIONS;
+        this.wheel = new Generation[] { new Generation(Long.MIN_VALUE, generationMaxEntries) };
+    }
+
+    /**
+     * Returns true if the hash has been seen within the window before now. Otherwise the hash is remembered as seen at
+     * now, and false is returned.
+     * 
+     * @param hash
+     * @param now
+     *            time in milliseconds
+     * @return
+     */
+    public boolean isDuplicate(long hash, long now) {
+        if (hash == 0) {
+            // 0 marks empty slots
+            hash = 1;
+        }
+        long window = windowSize;
+        Generation[] wheel = this.wheel;
+        for (;;) {
+            Generation current = wheel[0];
+            if (now >= current.end) {
+                // A new tick has started
+                wheel = rotate(wheel, now);
+                continue;
+            }
+            // Look in the older generations
+            for (int i = 1; i < wheel.length; i++) {
+                long received = wheel[i].get(hash);
+                if (received != 0 && now - received < window) {
+                    return true;
+                }
+            }
+            int result = current.putIfAbsent(hash, now, window);
+            if (result == Generation.INSERTED) {
+                return false;
+            } else if (result == Generation.DUPLICATE) {
+                return true;
+            }
+            // The current generation is full
+            wheel = rotate(wheel, now);
+        }
+    }
+
+    /**
+     * Starts a new generation if the wheel has not been rotated since it was read
+     */
+    private synchronized Generation[] rotate(Generation[] seen, long now) {
+        Generation[] wheel = this.wheel;
+        if (wheel == seen) {
+            Generation current = wheel[0];
+            current.seal();
+            // The tick width is fixed when the generation is started, so a change of the window size only affects
+            // the ticks of new generations
+            long width = tickWidth(windowSize);
+            long end = Math.max((Math.floorDiv(now, width) + 1) * width, current.end);
+            Generation[] rotated = new Generation[Math.min(wheel.length + 1, GENERATIONS)];
+            if (wheel.length < GENERATIONS) {
+                rotated[0] = new Generation(end, generationMaxEntries);
+            } else {
+                // The oldest generation was sealed when it was the newest, and nothing has been inserted since
+                rotated[0] = wheel[GENERATIONS - 1].reuse(end);
+            }
+            System.arraycopy(wheel, 0, rotated, 1, rotated.length - 1);
+            this.wheel = wheel = rotated;
+        }
+        return wheel;
+    }
+
+    /** The width of a tick, so that the window is covered by the older generations */
+    private static long tickWidth(long window) {
+        return Math.max(1, (window + GENERATIONS - 2) / (GENERATIONS - 1));
+    }
+
+    /**
+     * Returns the number of remembered hashes, including expired ones not yet dropped
+     * 
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Generation g : wheel) {
+            size += g.count.get();
+        }
+        return size;
+    }
+
+    public long getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(long windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns a 64-bit hash of the characters
+     * 
+     * @param s
+     * @return
+     */
+    public static long hash(CharSequence s) {
+        // FNV-1a followed by a final avalanche
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Open addressing hash table of hashes and their reception time
+     */
+    private static final class Generation {
+
+        static final int INSERTED = 0;
+        static final int DUPLICATE = 1;
+        static final int FULL = 2;
+
+        /** The end of the tick of the generation, exclusive */
+        volatile long end;
+        final int maxEntries;
+        final AtomicLongArray keys;
+        final AtomicLongArray times;
+        final int mask;
+        final AtomicInteger count = new AtomicInteger();
+
+        /** The number of inserts in progress */
+        final AtomicInteger inserting = new AtomicInteger();
+
+        /** Set when a newer generation is started, after which nothing is inserted */
+        volatile boolean sealed;
+
+        Generation(long end, int maxEntries) {
+            this.end = end;
+            this.maxEntries = maxEntries;
+            // Keep the load factor below 3/4
+            int capacity = Integer.highestOneBit(maxEntries + maxEntries / 3) << 1;
+            this.keys = new AtomicLongArray(capacity);
+            this.times = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Returns the time hash was seen, or 0 if not found or still being inserted
+         */
+        long get(long hash) {
+            int index = (int) hash & mask;
+            for (int i = 0; i <= mask; i++) {
+                long key = keys.get(index);
+                if (key == hash) {
+                    return times.get(index);
+                } else if (key == 0) {
+                    return 0;
+                }
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+
+        /**
+         * Clears the sealed generation and starts it again as the newest generation, ending at the specified time.
+         * Lookups in the older wheels may still see it while it is cleared, and miss hashes as under overload.
+         */
+        Generation reuse(long end) {
+            if (count.get() > 0) {
+                for (int i = 0; i <= mask; i++) {
+                    keys.set(i, 0);
+                    times.set(i, 0);
+                }
+                count.set(0);
+            }
+            this.end = end;
+            sealed = false;
+            return this;
+        }
+
+        /**
+         * Stops inserts and waits for inserts in progress
+         */
+        void seal() {
+            sealed = true;
+            while (inserting.get() != 0) {
+                Thread.yield();
+            }
+        }
+
+        /**
+         * Inserts the hash if not seen within the window
+         */
+        int putIfAbsent(long hash, long now, long window) {
+            inserting.incrementAndGet();
+            try {
+                return sealed ? FULL : putIfAbsent0(hash, now, window);
+            } finally {
+                inserting.decrementAndGet();
+            }
+        }
+
+        private int putIfAbsent0(long hash, long now, long window) {
+            int index = (int) hash & mask;
+            for (int i = 0; i <= mask; i++) {
+                long key = keys.get(index);
+                if (key == 0) {
+                    if (count.get() >= maxEntries) {
+                        return FULL;
+                    }
+                    if (keys.compareAndSet(index, 0, hash)) {
+                        count.incrementAndGet();
+                        times.set(index, now);
+                        return INSERTED;
+                    }
+                    key = keys.get(index);
+                }
+                if (key == hash) {
+                    long received = times.get(index);
+                    // A zero time is an insert in progress by another thread
+                    if (received == 0 || now - received < window) {
+                        return DUPLICATE;
+                    }
+                    // Expired, claim it for this reception unless another thread did so
+                    return times.compareAndSet(index, received, now) ? INSERTED : DUPLICATE;
+                }
+                index = (index + 1) & mask;
+            }
+            return FULL;
+        }
+    }
+
+}
@@ -36,17 +36,12 @@ public class GeoMaskFilter implements IPacketFilter {
     public GeoMaskFilter(List<BoundingBox> suppressedBoundingBoxes) {
         this.suppressedBoundingBoxes = suppressedBoundingBoxes;
 
-        Predicate<AisPacket> oredPredicates = null;
-
-        for (BoundingBox bbox : suppressedBoundingBoxes) {
-            if (oredPredicates == null) {
-                oredPredicates = AisPacketFilters.filterOnMessagePositionWithin(bbox);
-            } else {
-                oredPredicates = oredPredicates.or(AisPacketFilters.filterOnMessagePositionWithin(bbox));
-            }
+        // Index several boxes, rather than testing them one by one
+        if (suppressedBoundingBoxes.size() == 1) {
+            this.blocked = AisPacketFilters.filterOnMessagePositionWithin(suppressedBoundingBoxes.get(0));
+        } else {
+            this.blocked = AisPacketFilters.filterOnMessagePositionWithin(new AreaIndex(suppressedBoundingBoxes));
         }
-
-        this.blocked = oredPredicates;
     }
 
     public List<BoundingBox> getSuppressedBoundingBoxes() {
@@ -14,6 +14,8 @@
  */
 package dk.dma.ais.filter;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,6 +24,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import net.jcip.annotations.ThreadSafe;
 import dk.dma.ais.message.AisMessage;
 import dk.dma.ais.message.IPositionMessage;
+import dk.dma.enav.model.geometry.Area;
 import dk.dma.enav.model.geometry.Position;
 import java.util.function.Predicate;
 
@@ -41,9 +44,15 @@ public class LocationFilter extends MessageFilterBase {
      */
     private List<Predicate<? super Position>> geomtries = new CopyOnWriteArrayList<>();
 
+    /**
+     * Index of areas
+     */
+    private volatile AreaIndex areas = AreaIndex.EMPTY;
+
     @Override
     public boolean rejectedByFilter(AisMessage message) {
-        if (geomtries.size() == 0) {
+        AreaIndex areas = this.areas;
+        if (geomtries.size() == 0 && areas.getAreas().isEmpty()) {
             return false;
         }
 
@@ -60,6 +69,9 @@ public class LocationFilter extends MessageFilterBase {
             return true;
         }
 
+        if (areas.contains(loc)) {
+            return false;
+        }
         for (Predicate<? super Position> geometry : geomtries) {
             if (geometry.test(loc)) {
                 return false;
@@ -73,4 +85,23 @@ public class LocationFilter extends MessageFilterBase {
         geomtries.add(geometry);
     }
 
+    /**
+     * Add an area to filter on. Areas are indexed, so they are faster to test than general geometries.
+     * 
+     * @param area
+     */
+    public void addFilterArea(Area area) {
+        addFilterAreas(Collections.singletonList(area));
+    }
+
+    /**
+     * Add areas to filter on. The index is rebuilt once for all of them, so prefer this to adding many areas one by
+     * one.
+     * 
+     * @param areas
+     */
+    public synchronized void addFilterAreas(Collection<? extends Area> areas) {
+        this.areas = this.areas.with(areas);
+    }
+
 }
@@ -25,13 +25,22 @@ import dk.dma.ais.packet.AisPacket;
 public abstract class MessageFilterBase implements IMessageFilter, IPacketFilter {
 
     /**
-     * Helper method to extract message from packet and do test
+     * Helper method to extract message from packet and do test. The message is decoded lazily, so filters only looking
+     * at the message type or MMSI do not pay for decoding the rest of the message.
      */
     @Override
     public boolean rejectedByFilter(AisPacket packet) {
-        AisMessage message = packet.tryGetAisMessage();
+        // Only decode the fields the filter reads
+        AisMessage message = packet.tryGetLazyAisMessage();
         if (message != null) {
-            return this.rejectedByFilter(message);
+            try {
+                return this.rejectedByFilter(message);
+            } catch (IllegalStateException e) {
+                // The fields after the header could not be decoded
+                if (!message.isLazy()) {
+                    throw e;
+                }
+            }
         }
         return false;
     }
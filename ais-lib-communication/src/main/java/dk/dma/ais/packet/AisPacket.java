@@ -41,7 +41,11 @@ import dk.dma.enav.model.geometry.PositionTime;
 @NotThreadSafe
 public class AisPacket implements Comparable<AisPacket> {
 
-    private final String rawMessage;
+    private String rawMessage;
+
+    /** The raw message as ISO-8859-1 bytes, if the packet was parsed from bytes and not from a string */
+    private final byte[] rawBytes;
+
     private transient Vdm vdm;
     private transient AisPacketTags tags;
     private AisMessage message;
@@ -49,6 +53,7 @@ public class AisPacket implements Comparable<AisPacket> {
 
     private AisPacket(String stringMessage) {
         this.rawMessage = requireNonNull(stringMessage);
+        this.rawBytes = null;
     }
 
     AisPacket(Vdm vdm, String stringMessage) {
@@ -56,6 +61,14 @@ public class AisPacket implements Comparable<AisPacket> {
         this.vdm = vdm;
     }
 
+    /**
+     * Constructor given the raw message as ISO-8859-1 bytes. The string of the message is only created if asked for.
+     */
+    AisPacket(Vdm vdm, byte[] rawBytes) {
+        this.rawBytes = requireNonNull(rawBytes);
+        this.vdm = vdm;
+    }
+
     public static AisPacket fromByteBuffer(ByteBuffer buffer) {
         int cap = buffer.remaining();
         byte[] buf = new byte[cap];
@@ -67,8 +80,23 @@ public class AisPacket implements Comparable<AisPacket> {
         return from(new String(array, StandardCharsets.US_ASCII));
     }
 
+    /**
+     * Returns the raw message as US-ASCII bytes. Characters outside US-ASCII are replaced by '?'.
+     * 
+     * @return the raw message as bytes
+     */
     public byte[] toByteArray() {
-        return rawMessage.getBytes(StandardCharsets.US_ASCII);
+        if (rawBytes == null) {
+            return rawMessage.getBytes(StandardCharsets.US_ASCII);
+        }
+        // The raw bytes are ISO-8859-1, replace the characters outside US-ASCII like the encoder does
+        byte[] bytes = rawBytes.clone();
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] < 0) {
+                bytes[i] = '?';
+            }
+        }
+        return bytes;
     }
 
     /**
@@ -86,11 +114,15 @@ public class AisPacket implements Comparable<AisPacket> {
     }
 
     public String getStringMessage() {
+        String rawMessage = this.rawMessage;
+        if (rawMessage == null) {
+            this.rawMessage = rawMessage = new String(rawBytes, StandardCharsets.ISO_8859_1);
+        }
         return rawMessage;
     }
 
     public List<String> getStringMessageLines() {
-        return Arrays.asList(rawMessage.split("\\r?\\n"));
+        return Arrays.asList(getStringMessage().split("\\r?\\n"));
     }
 
     /**
@@ -102,7 +134,7 @@ public class AisPacket implements Comparable<AisPacket> {
         if (vdm == null) {
             AisPacket packet;
             try {
-                packet = readFromString(rawMessage);
+                packet = readFromString(getStringMessage());
                 if (packet != null) {
                     vdm = packet.getVdm();
                 }
@@ -144,12 +176,42 @@ public class AisPacket implements Comparable<AisPacket> {
      * @throws AisMessageException
      */
     public AisMessage getAisMessage() throws AisMessageException, SixbitException {
-        if (message != null || getVdm() == null) {
+        AisMessage message = this.message;
+        if (message != null) {
+            message.decode();
             return message;
         }
+        if (getVdm() == null) {
+            return null;
+        }
         return this.message = AisMessage.getInstance(getVdm());
     }
 
+    /**
+     * Try to get AIS message from packet, only decoding the message id, repeat indicator and MMSI. The remaining fields
+     * are decoded the first time they are accessed. Use this when only the header of the message is needed, as when
+     * filtering on message type or MMSI.
+     * <p>
+     * The message is only validated as far as the header and the length required by its type, so packets too short
+     * for their type are rejected as by {@link #tryGetAisMessage()}. If the remaining fields cannot be decoded,
+     * {@link #tryGetAisMessage()} returns null for the packet and the accessors of the fields throw an
+     * {@link IllegalStateException}.
+     * 
+     * @return the lazily decoded message, or null if the header cannot be decoded
+     * @see AisMessage#getInstance(Vdm, boolean)
+     */
+    public AisMessage tryGetLazyAisMessage() {
+        AisMessage message = this.message;
+        if (message != null || getVdm() == null) {
+            return message;
+        }
+        try {
+            return this.message = AisMessage.getInstance(getVdm(), true);
+        } catch (AisMessageException | SixbitException ignore) {
+            return null;
+        }
+    }
+
     /**
      * Check if VDM contains a valid AIS message
      * 
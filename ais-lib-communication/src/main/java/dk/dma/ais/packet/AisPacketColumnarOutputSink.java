@@ -0,0 +1,252 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static dk.dma.ais.packet.ColumnarFormat.COLUMNS;
+import static dk.dma.ais.packet.ColumnarFormat.MMSI;
+import static dk.dma.ais.packet.ColumnarFormat.PAYLOAD;
+import static dk.dma.ais.packet.ColumnarFormat.PAYLOAD_LENGTHS;
+import static dk.dma.ais.packet.ColumnarFormat.SOURCE;
+import static dk.dma.ais.packet.ColumnarFormat.TEMPLATE;
+import static dk.dma.ais.packet.ColumnarFormat.TIME;
+import static dk.dma.ais.packet.ColumnarFormat.TYPE;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import net.jcip.annotations.NotThreadSafe;
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.ColumnarFormat.ColumnOutput;
+import dk.dma.commons.util.io.OutputStreamSink;
+
+/**
+ * A sink writing packets in a binary columnar archive format. Packets are written in blocks of a fixed number of
+ * packets, with timestamp, source id, MMSI, message type and the packed payload bits stored column by column, and each
+ * column compressed on its own. Each block has the minimum and maximum timestamp and MMSI in its header, so
+ * {@link AisPacketColumnarReader} can skip blocks without decompressing them. Packets are restored exactly as read.
+ * <p>
+ * The sink keeps the current block, so a new instance must be used for each stream.
+ */
+@NotThreadSafe
+public class AisPacketColumnarOutputSink extends OutputStreamSink<AisPacket> {
+
+    /** The number of packets in each block */
+    private final int blockSize;
+
+    private final ColumnOutput[] columns = new ColumnOutput[COLUMNS];
+
+    /** The indexes of the source ids in the current block */
+    private final ColumnOutput sourceIndexes = new ColumnOutput();
+
+    private final Map<String, Integer> sourceDictionary = new HashMap<>();
+
+    private final List<String> sources = new ArrayList<>();
+
+    private final Deflater deflater = new Deflater();
+
+    private final byte[] deflateBuffer = new byte[1 << 16];
+
+    private final ColumnOutput compressed = new ColumnOutput();
+
+    private final StringBuilder template = new StringBuilder();
+
+    private final List<Integer> payloadLengths = new ArrayList<>();
+
+    /** The number of packets in the current block */
+    private int count;
+
+    private long lastTime;
+
+    private long minTime;
+
+    private long maxTime;
+
+    private int minMmsi;
+
+    private int maxMmsi;
+
+    public AisPacketColumnarOutputSink() {
+        this(ColumnarFormat.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize
+     *            the number of packets in each block
+     */
+    public AisPacketColumnarOutputSink(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive, was " + blockSize);
+        }
+        this.blockSize = blockSize;
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new ColumnOutput();
+        }
+        resetBlock();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void header(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(ColumnarFormat.MAGIC);
+        out.writeInt(ColumnarFormat.VERSION);
+        out.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void process(OutputStream stream, AisPacket packet, long count) throws IOException {
+        long time = packet.getBestTimestamp();
+        AisMessage m = packet.tryGetLazyAisMessage();
+        int mmsi = m == null ? 0 : m.getUserId();
+        int type = m == null ? 0 : m.getMsgId();
+        String sourceId = packet.getTags().getSourceId();
+
+        columns[TIME].writeZigZag(time - lastTime);
+        lastTime = time;
+        columns[MMSI].writeVarLong(mmsi & 0xFFFFFFFFL);
+        columns[TYPE].write(type);
+        sourceIndexes.writeVarLong(sourceId == null ? 0 : sourceDictionary.computeIfAbsent(sourceId, s -> {
+            sources.add(s);
+            return sources.size();
+        }));
+        writeText(packet.getStringMessage());
+
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        minMmsi = Math.min(minMmsi, mmsi);
+        maxMmsi = Math.max(maxMmsi, mmsi);
+        if (++this.count == blockSize) {
+            writeBlock(stream);
+        }
+    }
+
+    /** Splits the text into a template and payloads */
+    private void writeText(String raw) {
+        template.setLength(0);
+        payloadLengths.clear();
+        int copied = 0;
+        for (int lineStart = 0; lineStart < raw.length();) {
+            int lineEnd = raw.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = raw.length();
+            }
+            int start = ColumnarFormat.payloadStart(raw, lineStart, lineEnd);
+            if (start >= 0) {
+                int end = raw.indexOf(',', start);
+                boolean armored = true;
+                for (int i = start; i < end && armored; i++) {
+                    armored = ColumnarFormat.fromArmor(raw.charAt(i)) >= 0;
+                }
+                if (armored) {
+                    for (int i = start; i < end; i++) {
+                        columns[PAYLOAD].writeSixBits(ColumnarFormat.fromArmor(raw.charAt(i)));
+                    }
+                    template.append(raw, copied, start);
+                    copied = end;
+                    payloadLengths.add(end - start);
+                } else {
+                    payloadLengths.add(0); // left in the template
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        template.append(raw, copied, raw.length());
+
+        byte[] bytes = template.toString().getBytes(StandardCharsets.UTF_8);
+        columns[TEMPLATE].writeVarLong(bytes.length);
+        columns[TEMPLATE].write(bytes, 0, bytes.length);
+        columns[PAYLOAD_LENGTHS].writeVarLong(payloadLengths.size());
+        for (int length : payloadLengths) {
+            columns[PAYLOAD_LENGTHS].writeVarLong(length);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void footer(OutputStream stream, long count) throws IOException {
+        if (this.count > 0) {
+            writeBlock(stream);
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(0);
+        out.flush();
+        deflater.end();
+    }
+
+    private void writeBlock(OutputStream stream) throws IOException {
+        columns[PAYLOAD].flushBits();
+        ColumnOutput source = columns[SOURCE];
+        source.writeVarLong(sources.size());
+        for (String s : sources) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            source.writeVarLong(bytes.length);
+            source.write(bytes, 0, bytes.length);
+        }
+        sourceIndexes.writeTo(source);
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(count);
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        out.writeInt(minMmsi);
+        out.writeInt(maxMmsi);
+        byte[][] data = new byte[COLUMNS][];
+        for (int i = 0; i < COLUMNS; i++) {
+            data[i] = compress(columns[i]);
+            out.writeInt(data[i].length);
+            out.writeInt(columns[i].size());
+        }
+        for (byte[] d : data) {
+            out.write(d);
+        }
+        out.flush();
+        resetBlock();
+    }
+
+    private byte[] compress(ColumnOutput column) {
+        deflater.reset();
+        deflater.setInput(column.buffer(), 0, column.size());
+        deflater.finish();
+        compressed.reset();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(deflateBuffer);
+            compressed.write(deflateBuffer, 0, n);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void resetBlock() {
+        for (ColumnOutput c : columns) {
+            c.reset();
+        }
+        sourceIndexes.reset();
+        sourceDictionary.clear();
+        sources.clear();
+        count = 0;
+        lastTime = 0;
+        minTime = Long.MAX_VALUE;
+        maxTime = Long.MIN_VALUE;
+        minMmsi = Integer.MAX_VALUE;
+        maxMmsi = Integer.MIN_VALUE;
+    }
+}
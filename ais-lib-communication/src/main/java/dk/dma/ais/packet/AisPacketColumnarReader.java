@@ -0,0 +1,425 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static dk.dma.ais.packet.ColumnarFormat.COLUMNS;
+import static dk.dma.ais.packet.ColumnarFormat.MMSI;
+import static dk.dma.ais.packet.ColumnarFormat.PAYLOAD;
+import static dk.dma.ais.packet.ColumnarFormat.PAYLOAD_LENGTHS;
+import static dk.dma.ais.packet.ColumnarFormat.SOURCE;
+import static dk.dma.ais.packet.ColumnarFormat.TEMPLATE;
+import static dk.dma.ais.packet.ColumnarFormat.TIME;
+import static dk.dma.ais.packet.ColumnarFormat.TYPE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import com.google.common.collect.AbstractIterator;
+
+import dk.dma.ais.packet.ColumnarFormat.ColumnInput;
+
+/**
+ * Reads packets written by {@link AisPacketColumnarOutputSink}.
+ * <p>
+ * If a time interval or MMSI range is set, only packets within them are returned. Blocks whose statistics show that
+ * none of their packets match are skipped without being decompressed. If message types or source ids are set, the
+ * type and source columns of a block are decompressed first, and the other columns only if some packet matches.
+ */
+@NotThreadSafe
+public class AisPacketColumnarReader implements AutoCloseable, Iterable<AisPacket> {
+
+    private final DataInputStream in;
+
+    private final Inflater inflater = new Inflater();
+
+    private boolean headerRead;
+
+    private boolean ended;
+
+    private long from = Long.MIN_VALUE;
+
+    private long to = Long.MAX_VALUE;
+
+    private int minMmsi = Integer.MIN_VALUE;
+
+    private int maxMmsi = Integer.MAX_VALUE;
+
+    /** The accepted message types indexed by type, or null if all are */
+    private boolean[] messageTypes;
+
+    /** The accepted source ids, or null if all are */
+    private Set<String> sourceIds;
+
+    /** Whether the source ids of the current block are accepted indexed by their index, or null if all are */
+    private boolean[] sources;
+
+    /** The number of packets left in the current block */
+    private int remaining;
+
+    private long time;
+
+    private ColumnInput[] columns;
+
+    private long blocksRead;
+
+    private long blocksSkipped;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * @param stream
+     *            the input stream to read data from
+     */
+    public AisPacketColumnarReader(InputStream stream) {
+        this.in = new DataInputStream(new BufferedInputStream(requireNonNull(stream), 1 << 16));
+    }
+
+    /**
+     * Creates a new reader from the specified file
+     * 
+     * @param p
+     *            the path of the file
+     * @return a new reader
+     * @throws IOException
+     *             if the file could not be opened
+     */
+    public static AisPacketColumnarReader createFromFile(Path p) throws IOException {
+        return new AisPacketColumnarReader(Files.newInputStream(p));
+    }
+
+    /**
+     * Only returns packets with a timestamp within the specified interval. Must be set before reading.
+     * 
+     * @param from
+     *            the start of the interval in milliseconds since the epoch (inclusive)
+     * @param to
+     *            the end of the interval in milliseconds since the epoch (exclusive)
+     * @return this reader
+     */
+    public AisPacketColumnarReader setTimeInterval(long from, long to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Only returns packets with an MMSI within the specified range. Must be set before reading.
+     * 
+     * @param minMmsi
+     *            the lowest MMSI (inclusive)
+     * @param maxMmsi
+     *            the highest MMSI (inclusive)
+     * @return this reader
+     */
+    public AisPacketColumnarReader setMmsiRange(int minMmsi, int maxMmsi) {
+        this.minMmsi = minMmsi;
+        this.maxMmsi = maxMmsi;
+        return this;
+    }
+
+    /**
+     * Only returns packets of the specified message types. Must be set before reading.
+     * 
+     * @param types
+     *            the message types
+     * @return this reader
+     */
+    public AisPacketColumnarReader setMessageTypes(int... types) {
+        messageTypes = new boolean[256];
+        for (int type : types) {
+            if (type >= 0 && type < messageTypes.length) {
+                messageTypes[type] = true;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Only returns packets with one of the specified source ids. Must be set before reading.
+     * 
+     * @param ids
+     *            the source ids
+     * @return this reader
+     */
+    public AisPacketColumnarReader setSourceIds(String... ids) {
+        sourceIds = new HashSet<>(Arrays.asList(ids));
+        return this;
+    }
+
+    /**
+     * Returns the number of blocks decompressed by this reader.
+     * 
+     * @return the number of blocks decompressed by this reader
+     */
+    public long getNumberOfBlocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * Returns the number of blocks skipped by this reader, without being decompressed.
+     * 
+     * @return the number of blocks skipped by this reader
+     */
+    public long getNumberOfBlocksSkipped() {
+        return blocksSkipped;
+    }
+
+    /**
+     * @return the next packet or null if the end of the stream has been reached
+     * @throws IOException
+     *             if an exception occurred while reading the packet
+     */
+    public AisPacket readPacket() throws IOException {
+        for (;;) {
+            while (remaining == 0) {
+                if (ended || !readBlock()) {
+                    return null;
+                }
+            }
+            remaining--;
+            time += columns[TIME].readZigZag();
+            int mmsi = columns[MMSI].readVarInt();
+            int type = columns[TYPE].readByte();
+            int source = columns[SOURCE].readVarInt();
+            if (time >= from && time < to && mmsi >= minMmsi && mmsi <= maxMmsi
+                    && (messageTypes == null || messageTypes[type])
+                    && (sources == null || source < sources.length && sources[source])) {
+                return AisPacket.from(readText());
+            }
+            skipText();
+        }
+    }
+
+    /** Reads the header of the next block, and decompresses it unless it can be skipped */
+    private boolean readBlock() throws IOException {
+        if (!headerRead) {
+            if (in.readInt() != ColumnarFormat.MAGIC) {
+                throw new IOException("Not a columnar AIS archive");
+            }
+            int version = in.readInt();
+            if (version != ColumnarFormat.VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+            headerRead = true;
+        }
+        int count = in.readInt();
+        if (count == 0) {
+            ended = true;
+            return false;
+        }
+        long minTime = in.readLong();
+        long maxTime = in.readLong();
+        int blockMinMmsi = in.readInt();
+        int blockMaxMmsi = in.readInt();
+        int[] compressedSizes = new int[COLUMNS];
+        int[] sizes = new int[COLUMNS];
+        long total = 0;
+        for (int i = 0; i < COLUMNS; i++) {
+            compressedSizes[i] = in.readInt();
+            sizes[i] = in.readInt();
+            total += compressedSizes[i];
+        }
+        if (maxTime < from || minTime >= to || blockMaxMmsi < minMmsi || blockMinMmsi > maxMmsi) {
+            blocksSkipped++;
+            skipFully(total);
+            return true;
+        }
+        byte[][] compressed = new byte[COLUMNS][];
+        for (int i = 0; i < COLUMNS; i++) {
+            compressed[i] = new byte[compressedSizes[i]];
+            in.readFully(compressed[i]);
+        }
+        columns = new ColumnInput[COLUMNS];
+        // Filter on the type and source columns before decompressing the rest
+        columns[SOURCE] = new ColumnInput(inflate(compressed[SOURCE], sizes[SOURCE]));
+        if (!readSources(columns[SOURCE])) {
+            blocksSkipped++;
+            return true;
+        }
+        byte[] types = inflate(compressed[TYPE], sizes[TYPE]);
+        if (!anyMessageType(types)) {
+            blocksSkipped++;
+            return true;
+        }
+        columns[TYPE] = new ColumnInput(types);
+        blocksRead++;
+        for (int i = 0; i < COLUMNS; i++) {
+            if (columns[i] == null) {
+                columns[i] = new ColumnInput(inflate(compressed[i], sizes[i]));
+            }
+        }
+        remaining = count;
+        time = 0;
+        return true;
+    }
+
+    /**
+     * Reads the dictionary of source ids of a block, the text of the packets holds their tags
+     * 
+     * @return false if no source id of the block is accepted
+     */
+    private boolean readSources(ColumnInput source) throws EOFException {
+        int n = source.readVarInt();
+        if (sourceIds == null) {
+            sources = null;
+            for (int i = n; i > 0; i--) {
+                source.skipString();
+            }
+            return true;
+        }
+        // Index 0 is packets without a source id
+        sources = new boolean[n + 1];
+        boolean any = false;
+        for (int i = 1; i <= n; i++) {
+            sources[i] = sourceIds.contains(source.readString());
+            any |= sources[i];
+        }
+        return any;
+    }
+
+    /** Returns whether any of the message types of a block is accepted */
+    private boolean anyMessageType(byte[] types) {
+        if (messageTypes == null) {
+            return true;
+        }
+        for (byte type : types) {
+            if (messageTypes[type & 0xFF]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private byte[] inflate(byte[] data, int size) throws IOException {
+        byte[] result = new byte[size];
+        inflater.reset();
+        inflater.setInput(data);
+        try {
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int r = inflater.inflate(result, n, size - n);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            if (n != size) {
+                throw new IOException("Corrupt column, expected " + size + " bytes, was " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return result;
+    }
+
+    /** Splices the payloads of the next packet into its template */
+    private String readText() throws EOFException {
+        String template = columns[TEMPLATE].readString();
+        ColumnInput lengths = columns[PAYLOAD_LENGTHS];
+        int payloads = lengths.readVarInt();
+        if (payloads == 0) {
+            return template;
+        }
+        text.setLength(0);
+        int copied = 0;
+        for (int lineStart = 0; lineStart < template.length() && payloads > 0;) {
+            int lineEnd = template.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = template.length();
+            }
+            int start = ColumnarFormat.payloadStart(template, lineStart, lineEnd);
+            if (start >= 0) {
+                text.append(template, copied, start);
+                copied = start;
+                payloads--;
+                for (int i = lengths.readVarInt(); i > 0; i--) {
+                    text.append(ColumnarFormat.toArmor(columns[PAYLOAD].readSixBits()));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return text.append(template, copied, template.length()).toString();
+    }
+
+    private void skipText() throws EOFException {
+        columns[TEMPLATE].skipString();
+        ColumnInput lengths = columns[PAYLOAD_LENGTHS];
+        for (int i = lengths.readVarInt(); i > 0; i--) {
+            columns[PAYLOAD].skipSixBits(lengths.readVarInt());
+        }
+    }
+
+    @SafeVarargs
+    public final void forEachRemaining(Consumer<? super AisPacket>... consumers) throws IOException {
+        requireNonNull(consumers);
+        AisPacket p;
+        while ((p = readPacket()) != null) {
+            for (Consumer<? super AisPacket> c : consumers) {
+                c.accept(p);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<AisPacket> iterator() {
+        return new AbstractIterator<AisPacket>() {
+            @Override
+            protected AisPacket computeNext() {
+                try {
+                    AisPacket p = readPacket();
+                    return p == null ? endOfData() : p;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+}
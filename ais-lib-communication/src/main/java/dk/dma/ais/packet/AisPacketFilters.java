@@ -15,6 +15,7 @@
 
 package dk.dma.ais.packet;
 
+import dk.dma.ais.filter.AreaIndex;
 import dk.dma.ais.filter.ReplayDownSampleFilter;
 import dk.dma.ais.filter.ReplayDuplicateFilter;
 import dk.dma.ais.message.AisMessage;
@@ -207,6 +208,31 @@ public class AisPacketFilters extends AisPacketFiltersBase {
         });
     }
 
+    /**
+     * Filter on message to have known position inside any of the areas of the given index.
+     *
+     * @param index
+     *            The areas that the position must reside inside one of.
+     * @return
+     */
+    public static Predicate<AisPacket> filterOnMessagePositionWithin(final AreaIndex index) {
+        requireNonNull(index);
+        return filterOnMessageType(IPositionMessage.class, new Predicate<IPositionMessage>() {
+            public boolean test(IPositionMessage element) {
+                AisPosition pos = element.getPos();
+                if (pos != null) {
+                    Position p = pos.getGeoLocation();
+                    return p != null && index.contains(p);
+                }
+                return false;
+            }
+
+            public String toString() {
+                return "position within = " + index.getAreas();
+            }
+        });
+    }
+
     /**
      * Block position messages outside of given area; let all other messages pass.
      *
@@ -484,7 +510,7 @@ public class AisPacketFilters extends AisPacketFiltersBase {
     public static Predicate<AisPacket> filterOnMessageId(final CompareToOperator operator, final Integer id) {
         return new Predicate<AisPacket>() {
             public boolean test(AisPacket p) {
-                AisMessage aisMessage = p.tryGetAisMessage();
+                AisMessage aisMessage = p.tryGetLazyAisMessage();
                 return aisMessage == null ? false : compare(aisMessage.getMsgId(), id, operator);
             }
 
@@ -497,7 +523,7 @@ public class AisPacketFilters extends AisPacketFiltersBase {
     public static Predicate<AisPacket> filterOnMessageMmsi(final CompareToOperator operator, final Integer mmsi) {
         return new Predicate<AisPacket>() {
             public boolean test(AisPacket p) {
-                AisMessage aisMessage = p.tryGetAisMessage();
+                AisMessage aisMessage = p.tryGetLazyAisMessage();
                 return aisMessage == null ? false : compare(aisMessage.getUserId(), mmsi, operator);
             }
 
@@ -746,7 +772,7 @@ public class AisPacketFilters extends AisPacketFiltersBase {
         return new Predicate<AisPacket>() {
             public boolean test(AisPacket p) {
                 boolean pass = false;
-                AisMessage aisMessage = p.tryGetAisMessage();
+                AisMessage aisMessage = p.tryGetLazyAisMessage();
                 if (aisMessage != null) {
                     pass = Arrays.binarySearch(m, aisMessage.getMsgId()) >= 0;
                 }
@@ -765,7 +791,7 @@ public class AisPacketFilters extends AisPacketFiltersBase {
         return new Predicate<AisPacket>() {
             public boolean test(AisPacket p) {
                 boolean pass = false;
-                AisMessage aisMessage = p.tryGetAisMessage();
+                AisMessage aisMessage = p.tryGetLazyAisMessage();
                 if (aisMessage != null) {
                     pass = Arrays.binarySearch(m, aisMessage.getUserId()) >= 0;
                 }
@@ -902,7 +928,7 @@ public class AisPacketFilters extends AisPacketFiltersBase {
         return new Predicate<AisPacket>() {
             public boolean test(AisPacket p) {
                 boolean pass = false;
-                AisMessage aisMessage = p.tryGetAisMessage();
+                AisMessage aisMessage = p.tryGetLazyAisMessage();
                 if (aisMessage != null) {
                     pass = inRange(min, max, aisMessage.getMsgId());
                 }
@@ -919,7 +945,7 @@ public class AisPacketFilters extends AisPacketFiltersBase {
         return new Predicate<AisPacket>() {
             public boolean test(AisPacket p) {
                 boolean pass = false;
-                AisMessage aisMessage = p.tryGetAisMessage();
+                AisMessage aisMessage = p.tryGetLazyAisMessage();
                 if (aisMessage != null) {
                     pass = inRange(min, max, aisMessage.getUserId());
                 }
@@ -1103,8 +1129,19 @@ public class AisPacketFilters extends AisPacketFiltersBase {
          */
         @Override
         public boolean test(AisPacket element) {
-            AisMessage m = element.tryGetAisMessage();
-            return m != null && test(m);
+            AisMessage m = element.tryGetLazyAisMessage();
+            if (m == null) {
+                return false;
+            }
+            try {
+                return test(m);
+            } catch (IllegalStateException e) {
+                // The fields after the header could not be decoded
+                if (m.isLazy()) {
+                    return false;
+                }
+                throw e;
+            }
         }
     }
 
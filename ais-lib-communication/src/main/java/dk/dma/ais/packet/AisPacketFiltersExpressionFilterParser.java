@@ -17,44 +17,106 @@ package dk.dma.ais.packet;
 import java.util.function.Predicate;
 import dk.dma.internal.ais.generated.parser.expressionfilter.ExpressionFilterBaseVisitor;
 import dk.dma.internal.ais.generated.parser.expressionfilter.ExpressionFilterParser;
+import dk.dma.internal.ais.generated.parser.expressionfilter.ExpressionFilterParser.FilterExpressionContext;
 import dk.dma.internal.ais.generated.parser.expressionfilter.ExpressionFilterParser.OrAndContext;
 import dk.dma.internal.ais.generated.parser.expressionfilter.ExpressionFilterParser.ParensContext;
 import dk.dma.internal.ais.generated.parser.expressionfilter.ExpressionFilterParser.SourceBasestationContext;
 import org.antlr.v4.runtime.misc.NotNull;
 
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Kasper Nielsen
  */
 class AisPacketFiltersExpressionFilterParser extends ExpressionFilterParserBase {
 
+    /** Maximum number of compiled expressions to keep in the cache */
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * Compiled filters of stateless expressions by expression text. Filters on targets keep state, and are not cached.
+     */
+    private static final Map<String, Predicate<AisPacket>> CACHE = newCache();
+
+    /**
+     * Trees of stateless expressions by expression text, as parsed by {@link #parseExpressionTree(String)}.
+     */
+    private static final Map<String, Predicate<AisPacket>> TREE_CACHE = newCache();
+
+    private static Map<String, Predicate<AisPacket>> newCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Predicate<AisPacket>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Predicate<AisPacket>> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+    }
+
     static Predicate<AisPacket> parseExpressionFilter(String filter) {
-        return createFilterContext(filter).filterExpression().accept(new ExpressionFilterToPredicateVisitor());
+        Predicate<AisPacket> predicate = CACHE.get(filter);
+        if (predicate == null) {
+            ExpressionFilterToPredicateVisitor visitor = new ExpressionFilterToPredicateVisitor();
+            predicate = ExpressionFilterCompiler.compile(visitor.visitCondition(createFilterContext(filter).filterExpression()));
+            if (!visitor.isStateful()) {
+                CACHE.put(filter, predicate);
+            }
+        }
+        return predicate;
+    }
+
+    /**
+     * Parses the expression into a tree of {@link ExpressionFilterCompiler.Junction}s of leaf conditions. Leaves
+     * without state are {@link ExpressionFilterCompiler.Condition}s, which can be shared between expressions. The parts
+     * of the tree without such conditions are compiled, see {@link FilterNetwork#compilePrivateParts(Predicate)}. Like
+     * compiled filters, the trees of stateless expressions are cached.
+     */
+    static Predicate<AisPacket> parseExpressionTree(String filter) {
+        Predicate<AisPacket> tree = TREE_CACHE.get(filter);
+        if (tree == null) {
+            ExpressionFilterToPredicateVisitor visitor = new ExpressionFilterToPredicateVisitor();
+            tree = FilterNetwork.compilePrivateParts(visitor.visitCondition(createFilterContext(filter)
+                    .filterExpression()));
+            if (!visitor.isStateful()) {
+                TREE_CACHE.put(filter, tree);
+            }
+        }
+        return tree;
     }
 
     static class ExpressionFilterToPredicateVisitor extends ExpressionFilterBaseVisitor<Predicate<AisPacket>> {
 
         @Override
         public Predicate<AisPacket> visitOrAnd(OrAndContext ctx) {
-            return ctx.op.getType() ==
-                    ExpressionFilterParser.AND ?
-                    visit(ctx.filterExpression(0)).and(visit(ctx.filterExpression(1))) :
-                    visit(ctx.filterExpression(0)).or(visit(ctx.filterExpression(1)));
+            return new ExpressionFilterCompiler.Junction(ctx.op.getType() == ExpressionFilterParser.AND,
+                    visitCondition(ctx.filterExpression(0)), visitCondition(ctx.filterExpression(1)));
         }
 
         @Override
         public Predicate<AisPacket> visitParens(ParensContext ctx) {
-            final Predicate<AisPacket> p = visit(ctx.filterExpression());
-            return new Predicate<AisPacket>() {
-                public boolean test(AisPacket element) {
-                    return p.test(element);
-                }
-
-                public String toString() {
-                    return "(" + p.toString() + ")";
+            return new ExpressionFilterCompiler.Group(visitCondition(ctx.filterExpression()));
+        }
+
+        /**
+         * Visits a sub expression. If it is a leaf without state it is returned as a condition keyed on its text.
+         */
+        Predicate<AisPacket> visitCondition(FilterExpressionContext ctx) {
+            boolean stateful = statefulLeaf;
+            statefulLeaf = false;
+            try {
+                Predicate<AisPacket> p = visit(ctx);
+                if (p == null || statefulLeaf || p instanceof ExpressionFilterCompiler.Junction
+                        || p instanceof ExpressionFilterCompiler.Group) {
+                    return p;
                 }
-            };
+                return new ExpressionFilterCompiler.Condition(ctx.getText(), p);
+            } finally {
+                statefulLeaf |= stateful;
+            }
         }
 
         //
@@ -448,7 +510,18 @@ class AisPacketFiltersExpressionFilterParser extends ExpressionFilterParserBase
 
         private FilterPredicateFactory statefulFilterPredicateFactory;
 
+        /**
+         * Returns true if the visited expression has filters on targets, which keep state
+         */
+        boolean isStateful() {
+            return statefulFilterPredicateFactory != null;
+        }
+
+        /** Set when a leaf on targets has been visited */
+        private boolean statefulLeaf;
+
         private void setupStatefulFilterPredicateFactory() {
+            statefulLeaf = true;
             if (statefulFilterPredicateFactory == null) {
                 statefulFilterPredicateFactory = new AisPacketFiltersStateful();
             }
@@ -299,6 +299,16 @@ public class AisPacketOutputSinks {
         return new AisPacketCSVStatefulOutputSink(format);
     }
 
+    /**
+     * Returns a new sink writing packets in the binary columnar archive format, which can be read with
+     * {@link AisPacketColumnarReader}.
+     * 
+     * @return a new columnar sink
+     */
+    public static OutputStreamSink<AisPacket> newColumnarSink() {
+        return new AisPacketColumnarOutputSink();
+    }
+
     public static OutputStreamSink<AisPacket> newKmlSink() {
         return new AisPacketKMLOutputSink();
     }
@@ -358,6 +368,8 @@ public class AisPacketOutputSinks {
         case "json":
             return AisPacketOutputSinks.jsonMessageSink();
 
+        case "columnar":
+            return AisPacketOutputSinks.newColumnarSink();
         case "csv":
             return params.length > 1 && params[1] != null ? AisPacketOutputSinks.newCsvSink(params[1]) : AisPacketOutputSinks.newCsvSink();
         case "csv_stateful":
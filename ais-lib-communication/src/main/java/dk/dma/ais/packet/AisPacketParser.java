@@ -16,17 +16,18 @@ package dk.dma.ais.packet;
 
 import dk.dma.ais.proprietary.IProprietaryTag;
 import dk.dma.ais.proprietary.ProprietaryFactory;
-import dk.dma.ais.sentence.CommentBlock;
+import dk.dma.ais.sentence.LineList;
 import dk.dma.ais.sentence.SentenceException;
 import dk.dma.ais.sentence.SentenceLine;
 import dk.dma.ais.sentence.Vdm;
 import net.jcip.annotations.NotThreadSafe;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedList;
 
 /**
@@ -42,27 +43,68 @@ public class AisPacketParser {
     private static final int SENTENCE_TRACE_COUNT = 20;
 
     /** List of the raw lines of the AIS packet. */
-    private final ArrayList<String> packetLines = new ArrayList<>();
+    private final LineList packetLines = new LineList();
 
-    private final ArrayDeque<String> sentenceTrace = new ArrayDeque<>(SENTENCE_TRACE_COUNT);
+    /** The last lines read, as bytes in buffers that are reused, for the sentence trace of exceptions */
+    private final byte[][] traceLines = new byte[SENTENCE_TRACE_COUNT][];
+    private final int[] traceLengths = new int[SENTENCE_TRACE_COUNT];
+    private int traceNext;
+    private int traceSize;
 
     /** Possible proprietary tags for current VDM. */
     private final ArrayDeque<IProprietaryTag> tags = new ArrayDeque<>();
 
     /** A received VDO/VDM */
     private Vdm vdm = new Vdm();
-    
+
+    /** If recycling, the VDM of the packet returned last, which is reused after the next packet is returned */
+    private Vdm returnedVdm;
+
     /**
      * Sentence line parser
      */
     private SentenceLine sentenceLine = new SentenceLine();
 
     void newVdm() {
-        vdm = new Vdm();
+        if (returnedVdm != null) {
+            vdm.reset();
+        } else {
+            vdm = new Vdm();
+        }
         tags.clear();
         packetLines.clear();
     }
 
+    /**
+     * Sets whether the VDMs of the returned packets are recycled. If recycling, the VDM of a packet is only valid until
+     * the next packet is returned, after which it is cleared and used for assembling packets again. This avoids
+     * allocating a VDM with its binary array and sentence buffers for every packet. Only the VDM is recycled, a new
+     * packet and a new array of its raw bytes are still created for every packet.
+     * <p>
+     * Recycling is meant for consumers that handle each packet, including decoding its message, before the next packet
+     * is returned, and never keep it. The default is not to recycle.
+     * 
+     * @param recycling
+     *            whether to recycle
+     */
+    public void setRecycling(boolean recycling) {
+        if (recycling && returnedVdm == null) {
+            returnedVdm = new Vdm();
+        } else if (!recycling) {
+            returnedVdm = null;
+        }
+    }
+
+    /**
+     * Returns whether the VDMs of the returned packets are recycled.
+     * 
+     * @return whether recycling
+     * @see #setRecycling(boolean)
+     */
+    public boolean isRecycling() {
+        return returnedVdm != null;
+    }
+
     /**
      * Handle a single line. If a complete packet is assembled the package will be returned. Otherwise null is returned.
      * 
@@ -71,55 +113,80 @@ public class AisPacketParser {
      * @throws SentenceException
      */
     public AisPacket readLine(String line) throws SentenceException {
-        return readLine(line, false);
+        sentenceLine.parse(line);
+        return readLine(false);
     }
 
     /**
-     * If an out of sequence packet is encountered, the parsing will be restarted at the out of sequence packet
+     * Handle a single line given as length bytes of buffer starting at offset. The bytes are parsed in place, fields
+     * are not turned into strings unless needed. If a complete packet is assembled the package will be returned.
+     * Otherwise null is returned.
      * 
-     * @param line
-     * @param retry
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return
+     * @throws SentenceException
+     */
+    public AisPacket readLine(byte[] buffer, int offset, int length) throws SentenceException {
+        sentenceLine.parse(buffer, offset, length);
+        return readLine(false);
+    }
+
+    /**
+     * Handle a single line given as the remaining bytes of the buffer, as read from a memory mapped file. The position
+     * of the buffer is not changed. If a complete packet is assembled the package will be returned. Otherwise null is
+     * returned.
+     * 
+     * @param buffer
      * @return
      * @throws SentenceException
      */
-    private AisPacket readLine(String line, boolean retry) throws SentenceException {
+    public AisPacket readLine(ByteBuffer buffer) throws SentenceException {
+        sentenceLine.parse(buffer);
+        return readLine(false);
+    }
 
+    /**
+     * Handle the line currently parsed by the sentence line parser. If an out of sequence packet is encountered, the
+     * parsing will be restarted at the out of sequence packet
+     * 
+     * @param retry
+     * @return
+     * @throws SentenceException
+     */
+    private AisPacket readLine(boolean retry) throws SentenceException {
         if (!retry) {
             // Save line for later trace
-            while (sentenceTrace.size() > SENTENCE_TRACE_COUNT) {
-                sentenceTrace.removeFirst();
-            }
-            sentenceTrace.addLast(line);
+            trace();
         }
-        
-        sentenceLine.parse(line);
 
         // Ignore everything else than sentences
         if (!sentenceLine.hasSentence()) {
             // Gracefully ignore empty lines
-            if (line.length() == 0) {
+            if (sentenceLine.getLineLength() == 0) {
                 newVdm();
                 return null;
             }
             // Special case is a single comment without sentence
-            if (CommentBlock.hasCommentBlock(line)) {
-                packetLines.add(line);
+            if (sentenceLine.hasCommentBlock()) {
+                packetLines.addLine(sentenceLine);
                 try {
-                    vdm.addSingleCommentBlock(line);
+                    vdm.addSingleCommentBlock(sentenceLine.getLine());
                 } catch (SentenceException e) {
                     newVdm();
-                    throw new SentenceException(e, sentenceTrace);
+                    throw new SentenceException(e, sentenceTrace());
                 }
                 return null;
             } else {
                 // Non sentence line
                 newVdm();
-                throw new SentenceException("Non sentence line in stream: " + line, sentenceTrace);
+                throw new SentenceException("Non sentence line in stream: " + sentenceLine.getLine(), sentenceTrace());
             }
         }
 
         // Add line to raw packet
-        packetLines.add(line);
+        packetLines.addLine(sentenceLine);
 
         // Check if proprietary line
         if (sentenceLine.isProprietary()) {
@@ -147,9 +214,9 @@ public class AisPacketParser {
             // Do a single retry with the current line. The faulty sentence may be the last, not this one.
             if (!retry) {
                 LOG.debug("Discarding current sentence group. New start: " + e.getMessage());
-                return readLine(line, true);
+                return readLine(true);
             }
-            throw new SentenceException(e, sentenceTrace);
+            throw new SentenceException(e, sentenceTrace());
         }
 
         // If not complete package wait for more
@@ -164,11 +231,44 @@ public class AisPacketParser {
             vdm.setTags(new LinkedList<>(tags));
         }
 
-        // Make packet
-        AisPacket packet = new AisPacket(vdm, StringUtils.join(packetLines, "\r\n"));
+        // Make packet. The raw text is kept as bytes and only turned into a string if asked for.
+        AisPacket packet = new AisPacket(vdm, packetLines.toJoinedBytes());
 
+        if (returnedVdm != null) {
+            // Keep the VDM of the packet until the next packet is returned, and reuse the previous one
+            Vdm v = returnedVdm;
+            returnedVdm = vdm;
+            vdm = v;
+        }
         newVdm();
 
         return packet;
     }
+
+    /**
+     * Copies the current line into the trace, reusing the buffer of the oldest line
+     */
+    private void trace() {
+        int length = sentenceLine.getLineLength();
+        byte[] buffer = traceLines[traceNext];
+        if (buffer == null || buffer.length < length) {
+            buffer = traceLines[traceNext] = new byte[Math.max(length, 128)];
+        }
+        sentenceLine.getLineBytes(buffer, 0);
+        traceLengths[traceNext] = length;
+        traceNext = (traceNext + 1) % SENTENCE_TRACE_COUNT;
+        traceSize = Math.min(traceSize + 1, SENTENCE_TRACE_COUNT);
+    }
+
+    /**
+     * Returns the traced lines from the oldest to the current one
+     */
+    private Deque<String> sentenceTrace() {
+        ArrayDeque<String> trace = new ArrayDeque<>(traceSize);
+        for (int i = traceSize; i > 0; i--) {
+            int index = (traceNext - i + SENTENCE_TRACE_COUNT) % SENTENCE_TRACE_COUNT;
+            trace.addLast(new String(traceLines[index], 0, traceLengths[index], StandardCharsets.ISO_8859_1));
+        }
+        return trace;
+    }
 }
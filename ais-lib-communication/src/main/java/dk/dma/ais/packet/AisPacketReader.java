@@ -69,6 +69,12 @@ public class AisPacketReader implements AutoCloseable, Iterable<AisPacket> {
     /** The number of packets read by this instance. */
     private final AtomicLong packetsRead = new AtomicLong();
 
+    /** The number of threads decoding messages, or 0 to read packets in the calling thread. */
+    private int decodingThreads;
+
+    /** Decodes packets in parallel if decoding threads have been set, created on the first read. */
+    private ParallelPacketDecoder decoder;
+
     /** The wrapped reader. */
     final BufferedReader reader;
 
@@ -99,6 +105,9 @@ public class AisPacketReader implements AutoCloseable, Iterable<AisPacket> {
     }
 
     public void close() throws IOException {
+        if (decoder != null) {
+            decoder.close();
+        }
         stream.close();
         closed = true;
     }
@@ -130,6 +139,48 @@ public class AisPacketReader implements AutoCloseable, Iterable<AisPacket> {
         return packetsRead.get();
     }
 
+    /**
+     * Sets the number of threads used for decoding the AIS messages of the packets. If set to a positive number, packets
+     * are read in a separate thread and their messages are decoded in parallel by the specified number of threads.
+     * Packets are still returned in the order they were read, and with their message decoded. The default is 0, which
+     * reads packets in the calling thread and leaves the messages to be decoded on demand.
+     * <p>
+     * Must be set before the first packet is read. {@link #handleAbk(Abk)} is invoked from the reading thread when
+     * decoding in parallel.
+     *
+     * @param decodingThreads
+     *            the number of decoding threads
+     * @return this reader
+     */
+    public AisPacketReader setDecodingThreads(int decodingThreads) {
+        if (decodingThreads < 0) {
+            throw new IllegalArgumentException("decodingThreads must be non-negative, was " + decodingThreads);
+        } else if (decoder != null) {
+            throw new IllegalStateException("Cannot change the number of decoding threads after reading has started");
+        } else if (decodingThreads > 0 && packetReader.isRecycling()) {
+            throw new IllegalStateException("Cannot decode in parallel when recycling packets");
+        }
+        this.decodingThreads = decodingThreads;
+        return this;
+    }
+
+    /**
+     * Sets whether the VDMs of packets are recycled, see {@link AisPacketParser#setRecycling(boolean)}. If recycling, the
+     * VDM of a packet is only valid until the next packet is read, so the packet must not be kept or handed to other
+     * threads. Can not be combined with decoding in parallel.
+     *
+     * @param recycling
+     *            whether to recycle the VDMs of packets
+     * @return this reader
+     */
+    public AisPacketReader setRecycling(boolean recycling) {
+        if (recycling && decodingThreads > 0) {
+            throw new IllegalStateException("Cannot recycle packets when decoding in parallel");
+        }
+        packetReader.setRecycling(recycling);
+        return this;
+    }
+
     /**
      * Override this method to handle {@link Abk} sentences.
      *
@@ -215,6 +266,12 @@ public class AisPacketReader implements AutoCloseable, Iterable<AisPacket> {
      *             if an exception occurred while reading the packet
      */
     public AisPacket readPacket() throws IOException {
+        if (decodingThreads > 0) {
+            if (decoder == null) {
+                decoder = new ParallelPacketDecoder(this, decodingThreads);
+            }
+            return decoder.next();
+        }
         return readPacket0();
     }
 
@@ -181,6 +181,16 @@ public class AisPacketSource implements Serializable {
         return new AisPacketSource(sourceId, sourceBaseStation, sourceCountry, sourceType, region);
     }
 
+    /**
+     * Creates a packet source from its parts, for example when reading a source that was written out earlier.
+     *
+     * @return the packet source
+     */
+    public static AisPacketSource create(String sourceId, Integer sourceBaseStation, Country sourceCountry,
+            SourceType sourceType, String sourceRegion) {
+        return new AisPacketSource(sourceId, sourceBaseStation, sourceCountry, sourceType, sourceRegion);
+    }
+
     public static Predicate<AisPacketSource> createPredicate(String expression) {
         return AisPacketSourceFilters.parseSourceFilter(expression);
     }
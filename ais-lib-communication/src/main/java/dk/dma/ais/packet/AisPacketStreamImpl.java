@@ -16,6 +16,8 @@ package dk.dma.ais.packet;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
@@ -38,11 +40,17 @@ class AisPacketStreamImpl extends AisPacketStream {
     /** The logger */
     static final Logger LOG = LoggerFactory.getLogger(AisPacketStreamImpl.class);
 
-    /** A lock we use to make sure packets are delivered in order. */
+    /**
+     * A lock we use to make sure packets are filtered and queued for all subscriptions in the same order. Filters on
+     * targets and sampling filters keep state, so packets are filtered one at a time in the order they are added.
+     */
     private final Object deliveryLock = new Object();
 
     final ConcurrentHashMap<SubscriptionImpl, SubscriptionImpl> subscriptions;
 
+    /** The filters of all subscriptions, evaluated under the delivery lock. */
+    final FilterNetwork network;
+
     final Predicate<? super AisPacket> predicate;
 
     final AisPacketStreamImpl root;
@@ -50,6 +58,7 @@ class AisPacketStreamImpl extends AisPacketStream {
     AisPacketStreamImpl() {
         predicate = null;
         subscriptions = new ConcurrentHashMap<>();
+        network = new FilterNetwork();
         root = null;
     }
 
@@ -57,6 +66,7 @@ class AisPacketStreamImpl extends AisPacketStream {
         this.root = requireNonNull(parent);
         this.predicate = requireNonNull(predicate);
         this.subscriptions = parent.subscriptions;
+        this.network = parent.network;
     }
 
     public void add(AisPacket p) {
@@ -64,12 +74,26 @@ class AisPacketStreamImpl extends AisPacketStream {
         if (root != null) {
             throw new UnsupportedOperationException("Can only add elements to the root stream");
         }
+        List<SubscriptionImpl> accepted = null;
         synchronized (deliveryLock) {
+            FilterNetwork.Evaluation evaluation = network.evaluate(p);
             for (SubscriptionImpl s : subscriptions.keySet()) {
-                s.packets.add(p);
-                s.deliver();
+                if (s.accepts(evaluation)) {
+                    if (accepted == null) {
+                        accepted = new ArrayList<>();
+                    }
+                    accepted.add(s);
+                    s.packets.add(p);
+                }
             }
         }
+        if (accepted == null) {
+            return;
+        }
+        // Consumers are called without the delivery lock, each subscription delivers its queue in order
+        for (SubscriptionImpl s : accepted) {
+            s.deliver();
+        }
         // This approach does not work, as we cannot guarantee in-order delivery
         // map.forEachKeyInParallel(new Action<SubscriptionImpl>() {
         // @Override
@@ -84,19 +108,22 @@ class AisPacketStreamImpl extends AisPacketStream {
         requireNonNull(predicate);
         return new AisPacketStreamImpl(root == null ? this : root,
                 (Predicate<? super AisPacket>) (this.predicate == null ? predicate
-                        : this.predicate.and((Predicate) predicate)));
+                        : new ExpressionFilterCompiler.Junction(true, (Predicate) this.predicate,
+                                (Predicate) predicate)));
     }
 
-    void handlePacket(AisPacket p, SubscriptionImpl s) {
-        if (s.predicate == null || s.predicate.test(p)) {
-            s.consumer.accept(p);
-        }
+    /** {@inheritDoc} */
+    @Override
+    public AisPacketStream filter(String expression) {
+        // Use the tree of conditions, so they can be shared with other subscriptions. The tree is cached like the
+        // compiled filter of the expression.
+        return filter(AisPacketFiltersExpressionFilterParser.parseExpressionTree(expression));
     }
 
     /** {@inheritDoc} */
     @Override
     public Subscription subscribe(Consumer<AisPacket> c) {
-        SubscriptionImpl s = new SubscriptionImpl(predicate, c);
+        SubscriptionImpl s = new SubscriptionImpl(predicate == null ? null : network.compile(predicate), c);
         subscriptions.put(s, s);
         return s;
     }
@@ -107,13 +134,31 @@ class AisPacketStreamImpl extends AisPacketStream {
         final AtomicLong count = new AtomicLong();
         final ReentrantLock lock = new ReentrantLock();
         final ConcurrentLinkedQueue<AisPacket> packets = new ConcurrentLinkedQueue<>();
-        final Predicate<? super AisPacket> predicate;
+        final FilterNetwork.Node node;
 
-        SubscriptionImpl(Predicate<? super AisPacket> predicate, Consumer<? super AisPacket> consumer) {
-            this.predicate = predicate;
+        SubscriptionImpl(FilterNetwork.Node node, Consumer<? super AisPacket> consumer) {
+            this.node = node;
             this.consumer = requireNonNull(consumer);
         }
 
+        /**
+         * Tests the packet against the filter of the subscription.
+         * 
+         * @param evaluation
+         *            the evaluation of the packet
+         * @return whether the packet should be delivered
+         */
+        boolean accepts(FilterNetwork.Evaluation evaluation) {
+            try {
+                return node == null || node.test(evaluation);
+            } catch (RuntimeException e) {
+                try {
+                    cancel(e == AisPacketStream.CANCEL ? null : e);
+                } catch (RuntimeException ignore) {}
+                return false;
+            }
+        }
+
         /** {@inheritDoc} */
         @Override
         public void awaitCancelled() throws InterruptedException {
@@ -141,6 +186,9 @@ class AisPacketStreamImpl extends AisPacketStream {
                 }
                 if (cancelled.getCount() > 0) {
                     subscriptions.remove(this);
+                    if (node != null) {
+                        network.release(node);
+                    }
                     cancelled.countDown();
                     if (consumer instanceof AisPacketStream.StreamConsumer) {
                         try {
@@ -166,12 +214,10 @@ class AisPacketStreamImpl extends AisPacketStream {
                     }
                     for (AisPacket p = packets.poll(); p != null; p = packets.poll()) {
                         try {
-                            if (predicate == null || predicate.test(p)) {
-                                if (count.getAndIncrement() == 0 && consumer instanceof AisPacketStream.StreamConsumer) {
-                                    ((AisPacketStream.StreamConsumer<?>) consumer).begin();
-                                }
-                                consumer.accept(p);
+                            if (count.getAndIncrement() == 0 && consumer instanceof AisPacketStream.StreamConsumer) {
+                                ((AisPacketStream.StreamConsumer<?>) consumer).begin();
                             }
+                            consumer.accept(p);
                         } catch (RuntimeException e) {
                             try {
                                 cancel(e == AisPacketStream.CANCEL ? null : e);
@@ -0,0 +1,235 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and encoding helpers of the binary columnar archive format, shared by {@link AisPacketColumnarOutputSink}
+ * and {@link AisPacketColumnarReader}.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION}, followed by blocks and ending with a block of 0 packets.
+ * Each block has a header with the number of packets, the minimum and maximum timestamp and MMSI of the packets, and
+ * the compressed and uncompressed size of each column. The columns follow the header, each compressed on its own.
+ * <p>
+ * The text of a packet is stored as a template, where the payload of each VDM sentence has been cut out. The payloads
+ * are stored as packed 6 bit values in a separate column, and spliced back into the template when reading. Payloads
+ * with characters outside the armoring alphabet are left in the template, so any packet is restored exactly.
+ */
+final class ColumnarFormat {
+
+    static final int MAGIC = 0x41495343; // AISC
+
+    static final int VERSION = 1;
+
+    /** Timestamp in milliseconds, -1 if unknown, as zigzag encoded deltas */
+    static final int TIME = 0;
+
+    /** MMSI, 0 if unknown */
+    static final int MMSI = 1;
+
+    /** Message type, 0 if unknown */
+    static final int TYPE = 2;
+
+    /** Block dictionary of source ids followed by an index for each packet, 0 if none */
+    static final int SOURCE = 3;
+
+    /** Text of each packet without VDM payloads */
+    static final int TEMPLATE = 4;
+
+    /** Number of payloads of each packet followed by their lengths */
+    static final int PAYLOAD_LENGTHS = 5;
+
+    /** Packed 6 bit payload characters */
+    static final int PAYLOAD = 6;
+
+    static final int COLUMNS = 7;
+
+    /** The default number of packets in a block */
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private ColumnarFormat() {}
+
+    /**
+     * Returns the start of the payload of the sentence on the specified line, or -1 if the line is not a VDM or VDO
+     * sentence with a payload field followed by a comma.
+     */
+    static int payloadStart(CharSequence s, int lineStart, int lineEnd) {
+        int i = lineStart;
+        // The sentence starts after any comment blocks
+        for (int j = lineStart; j < lineEnd; j++) {
+            if (s.charAt(j) == '\\') {
+                i = j + 1;
+            }
+        }
+        if (lineEnd - i < 7 || s.charAt(i) != '!' && s.charAt(i) != '$' || s.charAt(i + 3) != 'V'
+                || s.charAt(i + 4) != 'D' || s.charAt(i + 5) != 'M' && s.charAt(i + 5) != 'O') {
+            return -1;
+        }
+        int commas = 0;
+        int start = -1;
+        for (int j = i + 6; j < lineEnd; j++) {
+            if (s.charAt(j) == ',') {
+                if (++commas == 5) {
+                    start = j + 1;
+                } else if (commas == 6) {
+                    return start;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the 6 bit value of an armored payload character, or -1 if not valid */
+    static int fromArmor(char c) {
+        if (c >= '0' && c <= 'W') {
+            return c - '0';
+        } else if (c >= '`' && c <= 'w') {
+            return c - '0' - 8;
+        }
+        return -1;
+    }
+
+    /** Returns the armored payload character of a 6 bit value */
+    static char toArmor(int v) {
+        return (char) (v < 40 ? v + '0' : v + '0' + 8);
+    }
+
+    /** A column being written */
+    static final class ColumnOutput extends ByteArrayOutputStream {
+
+        private long bits;
+        private int bitCount;
+
+        ColumnOutput() {
+            super(1024);
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeZigZag(long v) {
+            writeVarLong(v << 1 ^ v >> 63);
+        }
+
+        /** Writes the lowest 6 bits of the value */
+        void writeSixBits(int v) {
+            bits = bits << 6 | v & 0x3F;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                write((int) (bits >>> bitCount));
+            }
+        }
+
+        /** Writes any remaining bits, padded with zeros */
+        void flushBits() {
+            if (bitCount > 0) {
+                write((int) (bits << 8 - bitCount));
+                bitCount = 0;
+            }
+            bits = 0;
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    /** A column being read */
+    static final class ColumnInput {
+        private final byte[] data;
+        private int pos;
+        private long bitPos;
+
+        ColumnInput(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarLong() throws EOFException {
+            long v = 0;
+            for (int shift = 0;; shift += 7) {
+                if (pos == data.length) {
+                    throw new EOFException("Column ended unexpectedly");
+                }
+                byte b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+        }
+
+        int readVarInt() throws EOFException {
+            return (int) readVarLong();
+        }
+
+        long readZigZag() throws EOFException {
+            long v = readVarLong();
+            return v >>> 1 ^ -(v & 1);
+        }
+
+        int readByte() throws EOFException {
+            if (pos == data.length) {
+                throw new EOFException("Column ended unexpectedly");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        String readString() throws EOFException {
+            int length = readVarInt();
+            if (pos + length > data.length) {
+                throw new EOFException("Column ended unexpectedly");
+            }
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        void skipString() throws EOFException {
+            int length = readVarInt();
+            pos += length;
+        }
+
+        int readSixBits() throws EOFException {
+            int index = (int) (bitPos >>> 3);
+            if (index >= data.length) {
+                throw new EOFException("Column ended unexpectedly");
+            }
+            int offset = (int) (bitPos & 7);
+            int v = (data[index] & 0xFF) << 8 | (index + 1 < data.length ? data[index + 1] & 0xFF : 0);
+            bitPos += 6;
+            return v >>> 10 - offset & 0x3F;
+        }
+
+        void skipSixBits(int count) {
+            bitPos += 6L * count;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static java.util.Objects.requireNonNull;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the predicate tree of a parsed expression filter into a single class.
+ * <p>
+ * The parser produces a tree of {@link Junction}s of leaf predicates. The compiler generates a class with a field per
+ * leaf and a <tt>test</tt> method that evaluates the whole expression with inlined short-circuit jumps. As each
+ * compiled expression has its own class, every call to a leaf is a separate call site that stays monomorphic, and can
+ * be inlined by the JIT. Evaluating the nested predicates of a tree instead goes through the same few megamorphic
+ * <tt>test</tt> calls for all expressions.
+ */
+final class ExpressionFilterCompiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpressionFilterCompiler.class);
+
+    private static final String PREDICATE = "java/util/function/Predicate";
+    private static final String PREDICATE_DESC = "L" + PREDICATE + ";";
+    private static final String PACKET = "dk/dma/ais/packet/AisPacket";
+
+    /** Slot of the packet in the generated test method */
+    private static final int PACKET_SLOT = 2;
+
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private ExpressionFilterCompiler() {}
+
+    /**
+     * Compiles the predicate. If compilation fails the predicate is returned as is.
+     * 
+     * @param predicate
+     *            the predicate produced by the parser
+     * @return a predicate equivalent to the given one
+     */
+    static Predicate<AisPacket> compile(Predicate<AisPacket> predicate) {
+        requireNonNull(predicate);
+        if (!(predicate instanceof Junction) && !(predicate instanceof Group)) {
+            // A single leaf, nothing to gain
+            return predicate;
+        }
+        List<Predicate<AisPacket>> leaves = new ArrayList<>();
+        String name = "dk/dma/ais/packet/CompiledExpressionFilter$" + CLASS_COUNTER.incrementAndGet();
+        try {
+            byte[] b = generate(name, predicate, leaves);
+            Class<?> c = new Loader(ExpressionFilterCompiler.class.getClassLoader()).define(name.replace('/', '.'), b);
+            @SuppressWarnings("unchecked")
+            Predicate<AisPacket> compiled = (Predicate<AisPacket>) c.getConstructor(Predicate.class, Predicate[].class)
+                    .newInstance(predicate, leaves.toArray(new Predicate[leaves.size()]));
+            return compiled;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOG.warn("Could not compile expression filter " + predicate + ", using it uncompiled", e);
+            return predicate;
+        }
+    }
+
+    private static byte[] generate(String name, Predicate<AisPacket> predicate, List<Predicate<AisPacket>> leaves) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // The generated code only merges frames of identical types
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, "java/lang/Object",
+                new String[] { PREDICATE });
+
+        // The test method, which also collects the leaves
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "test", "(Ljava/lang/Object;)Z", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, PACKET);
+        mv.visitVarInsn(ASTORE, PACKET_SLOT);
+        Label onTrue = new Label();
+        Label onFalse = new Label();
+        emit(mv, name, predicate, onTrue, onFalse, leaves);
+        mv.visitLabel(onTrue);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(onFalse);
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // A field per leaf, and one for the source used by toString
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "source", PREDICATE_DESC, null, null).visitEnd();
+        for (int i = 0; i < leaves.size(); i++) {
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, "p" + i, PREDICATE_DESC, null, null).visitEnd();
+        }
+
+        // Constructor(Predicate source, Predicate[] leaves)
+        mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + PREDICATE_DESC + "[" + PREDICATE_DESC + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, name, "source", PREDICATE_DESC);
+        for (int i = 0; i < leaves.size(); i++) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(AALOAD);
+            mv.visitFieldInsn(PUTFIELD, name, "p" + i, PREDICATE_DESC);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // toString
+        mv = cw.visitMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, "source", PREDICATE_DESC);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Emits code that jumps to onTrue if the predicate is true for the packet, and to onFalse otherwise
+     */
+    private static void emit(MethodVisitor mv, String name, Predicate<AisPacket> p, Label onTrue, Label onFalse,
+            List<Predicate<AisPacket>> leaves) {
+        if (p instanceof Group) {
+            emit(mv, name, ((Group) p).predicate, onTrue, onFalse, leaves);
+        } else if (p instanceof Condition) {
+            emit(mv, name, ((Condition) p).predicate, onTrue, onFalse, leaves);
+        } else if (p instanceof Junction) {
+            Junction j = (Junction) p;
+            for (int i = 0; i < j.predicates.length - 1; i++) {
+                Label next = new Label();
+                if (j.and) {
+                    emit(mv, name, j.predicates[i], next, onFalse, leaves);
+                } else {
+                    emit(mv, name, j.predicates[i], onTrue, next, leaves);
+                }
+                mv.visitLabel(next);
+            }
+            emit(mv, name, j.predicates[j.predicates.length - 1], onTrue, onFalse, leaves);
+        } else {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, name, "p" + leaves.size(), PREDICATE_DESC);
+            mv.visitVarInsn(ALOAD, PACKET_SLOT);
+            mv.visitMethodInsn(INVOKEINTERFACE, PREDICATE, "test", "(Ljava/lang/Object;)Z", true);
+            mv.visitJumpInsn(IFEQ, onFalse);
+            mv.visitJumpInsn(GOTO, onTrue);
+            leaves.add(requireNonNull(p));
+        }
+    }
+
+    /**
+     * A conjunction or disjunction of two or more predicates. Nested junctions of the same kind are flattened.
+     */
+    static final class Junction implements Predicate<AisPacket> {
+
+        final boolean and;
+        final Predicate<AisPacket>[] predicates;
+
+        @SuppressWarnings("unchecked")
+        Junction(boolean and, Predicate<AisPacket> left, Predicate<AisPacket> right) {
+            this.and = and;
+            List<Predicate<AisPacket>> l = new ArrayList<>();
+            for (Predicate<AisPacket> p : Arrays.asList(left, right)) {
+                if (p instanceof Junction && ((Junction) p).and == and) {
+                    l.addAll(Arrays.asList(((Junction) p).predicates));
+                } else {
+                    l.add(requireNonNull(p));
+                }
+            }
+            this.predicates = l.toArray(new Predicate[l.size()]);
+        }
+
+        @Override
+        public boolean test(AisPacket packet) {
+            for (Predicate<AisPacket> p : predicates) {
+                if (p.test(packet) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Predicate<AisPacket> p : predicates) {
+                if (sb.length() > 0) {
+                    sb.append(and ? " & " : " | ");
+                }
+                sb.append(p);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A leaf condition without state. Conditions with the same key are equivalent, and may be evaluated once for all
+     * of them.
+     */
+    static final class Condition implements Predicate<AisPacket> {
+
+        /** The normalized text of the condition */
+        final String key;
+        final Predicate<AisPacket> predicate;
+
+        Condition(String key, Predicate<AisPacket> predicate) {
+            this.key = requireNonNull(key);
+            this.predicate = requireNonNull(predicate);
+        }
+
+        @Override
+        public boolean test(AisPacket packet) {
+            return predicate.test(packet);
+        }
+
+        @Override
+        public String toString() {
+            return predicate.toString();
+        }
+    }
+
+    /**
+     * A parenthesized predicate
+     */
+    static final class Group implements Predicate<AisPacket> {
+
+        final Predicate<AisPacket> predicate;
+
+        Group(Predicate<AisPacket> predicate) {
+            this.predicate = requireNonNull(predicate);
+        }
+
+        @Override
+        public boolean test(AisPacket packet) {
+            return predicate.test(packet);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + predicate + ")";
+        }
+    }
+
+    /**
+     * A class loader per compiled class, so the class can be unloaded when the filter is no longer used
+     */
+    private static final class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] b) {
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+}
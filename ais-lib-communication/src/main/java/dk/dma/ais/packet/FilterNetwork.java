@@ -0,0 +1,277 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import dk.dma.ais.packet.ExpressionFilterCompiler.Condition;
+import dk.dma.ais.packet.ExpressionFilterCompiler.Group;
+import dk.dma.ais.packet.ExpressionFilterCompiler.Junction;
+
+/**
+ * A network of the filters of all subscriptions on a stream, in which each distinct condition is evaluated at most once
+ * per packet.
+ * <p>
+ * The predicate of each subscription is compiled into a tree of nodes. Stateless conditions parsed from expressions
+ * ({@link Condition}s) with the same text share a single node. Each shared node has a slot in the {@link Evaluation}
+ * of a packet, where its result is kept for the other subscriptions. Parts of the predicate without shared conditions
+ * are compiled by the {@link ExpressionFilterCompiler} into private nodes of the subscription.
+ * <p>
+ * Compiling and releasing nodes is thread-safe. Several packets may be evaluated at the same time, each with an
+ * evaluation of its own.
+ * 
+ * @see AisPacketStreamImpl
+ */
+@ThreadSafe
+final class FilterNetwork {
+
+    /** The shared conditions by key */
+    private final ConcurrentHashMap<String, SharedCondition> conditions = new ConcurrentHashMap<>();
+
+    /** The slots used by shared conditions */
+    @GuardedBy("slots")
+    private final BitSet slots = new BitSet();
+
+    /** One more than the highest slot used so far */
+    private volatile int slotCount;
+
+    /**
+     * Starts evaluation of a packet
+     * 
+     * @param packet
+     * @return the evaluation to test the nodes with
+     */
+    Evaluation evaluate(AisPacket packet) {
+        return new Evaluation(requireNonNull(packet), slotCount);
+    }
+
+    /**
+     * Compiles the predicate into the network
+     * 
+     * @param predicate
+     * @return the node for the predicate, which must be released when no longer used
+     */
+    @SuppressWarnings("unchecked")
+    Node compile(Predicate<? super AisPacket> predicate) {
+        requireNonNull(predicate);
+        if (!hasCondition(predicate)) {
+            return new PredicateNode(ExpressionFilterCompiler.compile((Predicate<AisPacket>) predicate));
+        } else if (predicate instanceof Group) {
+            return compile(((Group) predicate).predicate);
+        } else if (predicate instanceof Junction) {
+            Junction j = (Junction) predicate;
+            Node[] nodes = new Node[j.predicates.length];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = compile(j.predicates[i]);
+            }
+            return new JunctionNode(j.and, nodes);
+        }
+        final Condition c = (Condition) predicate;
+        return conditions.compute(c.key, (k, v) -> {
+            SharedCondition s = v == null ? new SharedCondition(c, allocateSlot()) : v;
+            s.references++;
+            return s;
+        });
+    }
+
+    /**
+     * Compiles the parts of the predicate without shareable conditions with the {@link ExpressionFilterCompiler},
+     * keeping the junctions around the conditions. Compiling a node for the result then generates no further classes.
+     * 
+     * @param predicate
+     * @return an equivalent predicate
+     */
+    static Predicate<AisPacket> compilePrivateParts(Predicate<AisPacket> predicate) {
+        if (!hasCondition(predicate)) {
+            return ExpressionFilterCompiler.compile(predicate);
+        } else if (predicate instanceof Group) {
+            return compilePrivateParts(((Group) predicate).predicate);
+        } else if (predicate instanceof Junction) {
+            Junction j = (Junction) predicate;
+            Predicate<AisPacket> result = new Junction(j.and, compilePrivateParts(j.predicates[0]),
+                    compilePrivateParts(j.predicates[1]));
+            for (int i = 2; i < j.predicates.length; i++) {
+                result = new Junction(j.and, result, compilePrivateParts(j.predicates[i]));
+            }
+            return result;
+        }
+        return predicate;
+    }
+
+    /** Returns whether the predicate is or contains a condition that can be shared */
+    private static boolean hasCondition(Predicate<?> predicate) {
+        if (predicate instanceof Group) {
+            return hasCondition(((Group) predicate).predicate);
+        } else if (predicate instanceof Junction) {
+            for (Predicate<?> p : ((Junction) predicate).predicates) {
+                if (hasCondition(p)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return predicate instanceof Condition;
+    }
+
+    /**
+     * Releases a node returned by {@link #compile(Predicate)}
+     * 
+     * @param node
+     */
+    void release(Node node) {
+        if (node instanceof JunctionNode) {
+            for (Node n : ((JunctionNode) node).nodes) {
+                release(n);
+            }
+        } else if (node instanceof SharedCondition) {
+            conditions.computeIfPresent(((SharedCondition) node).condition.key, (k, v) -> {
+                if (--v.references > 0) {
+                    return v;
+                }
+                releaseSlot(v.slot);
+                return null;
+            });
+        }
+    }
+
+    private int allocateSlot() {
+        synchronized (slots) {
+            int slot = slots.nextClearBit(0);
+            slots.set(slot);
+            if (slot >= slotCount) {
+                slotCount = slot + 1;
+            }
+            return slot;
+        }
+    }
+
+    private void releaseSlot(int slot) {
+        synchronized (slots) {
+            slots.clear(slot);
+        }
+    }
+
+    /**
+     * Returns the number of distinct shared conditions in the network
+     * 
+     * @return
+     */
+    int getSharedConditionCount() {
+        return conditions.size();
+    }
+
+    /**
+     * The results of the shared conditions for a single packet. An evaluation is used by one thread only, so the
+     * conditions are evaluated without any locks held.
+     */
+    @NotThreadSafe
+    static final class Evaluation {
+        final AisPacket packet;
+
+        /** The condition each result is for, a slot may be reused by a new condition during the evaluation */
+        private final SharedCondition[] evaluated;
+        private final boolean[] results;
+
+        Evaluation(AisPacket packet, int slots) {
+            this.packet = packet;
+            this.evaluated = new SharedCondition[slots];
+            this.results = new boolean[slots];
+        }
+    }
+
+    /** A node of the network */
+    abstract static class Node {
+
+        /**
+         * Tests the packet of the evaluation
+         * 
+         * @param evaluation
+         * @return
+         */
+        abstract boolean test(Evaluation evaluation);
+    }
+
+    /** A conjunction or disjunction, evaluated with short-circuit */
+    static final class JunctionNode extends Node {
+        final boolean and;
+        final Node[] nodes;
+
+        JunctionNode(boolean and, Node[] nodes) {
+            this.and = and;
+            this.nodes = nodes;
+        }
+
+        @Override
+        boolean test(Evaluation evaluation) {
+            for (Node n : nodes) {
+                if (n.test(evaluation) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+    }
+
+    /** A predicate private to a subscription */
+    static final class PredicateNode extends Node {
+        final Predicate<AisPacket> predicate;
+
+        PredicateNode(Predicate<AisPacket> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean test(Evaluation evaluation) {
+            return predicate.test(evaluation.packet);
+        }
+    }
+
+    /** A condition shared by all subscriptions using it, evaluated once per packet */
+    static final class SharedCondition extends Node {
+        final Condition condition;
+
+        /** The slot of the result in an evaluation */
+        final int slot;
+
+        /** Guarded by the lock of the map of conditions */
+        int references;
+
+        SharedCondition(Condition condition, int slot) {
+            this.condition = condition;
+            this.slot = slot;
+        }
+
+        @Override
+        boolean test(Evaluation evaluation) {
+            if (slot >= evaluation.results.length) {
+                // Added after the evaluation started
+                return condition.predicate.test(evaluation.packet);
+            }
+            if (evaluation.evaluated[slot] != this) {
+                evaluation.results[slot] = condition.predicate.test(evaluation.packet);
+                evaluation.evaluated[slot] = this;
+            }
+            return evaluation.results[slot];
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Reads packets from an {@link AisPacketReader} in a separate thread, and decodes the AIS messages of the packets in
+ * a pool of worker threads.
+ * <p>
+ * The reading thread assembles the packets from lines, and hands them to the workers in batches. The batches are
+ * queued in the order they were read, so packets are returned in input order, each with its message decoded. At most
+ * a fixed number of batches are in flight, so the reading thread waits if the consumer falls behind.
+ * <p>
+ * The reading thread always ends the queue, also if reading fails, so the consumer never waits forever. The workers
+ * are stopped when the reading thread is done, but a decoder abandoned in the middle of the stream must be closed to
+ * stop the reading thread.
+ * 
+ * @see AisPacketReader#setDecodingThreads(int)
+ */
+@NotThreadSafe
+final class ParallelPacketDecoder implements AutoCloseable {
+
+    /** The number of packets decoded in each task */
+    static final int BATCH_SIZE = 1024;
+
+    /** The number of batches in flight per worker */
+    private static final int BATCHES_PER_WORKER = 4;
+
+    /** Marks the end of the packets */
+    private static final List<AisPacket> END = Collections.emptyList();
+
+    /** Used for naming threads */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** The batches in the order they were read */
+    private final BlockingQueue<Future<List<AisPacket>>> batches;
+
+    /** The packets of the current batch */
+    private Iterator<AisPacket> current = Collections.emptyIterator();
+
+    /** Whether all packets have been returned */
+    private boolean done;
+
+    /** An exception thrown while reading */
+    private volatile Throwable failure;
+
+    /** Set when the decoder has been closed */
+    private volatile boolean closed;
+
+    /** The reader to read packets from */
+    private final AisPacketReader reader;
+
+    /** The thread reading the packets */
+    private final Thread splitter;
+
+    /** The workers decoding messages */
+    private final ExecutorService workers;
+
+    ParallelPacketDecoder(AisPacketReader reader, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+        }
+        this.reader = requireNonNull(reader);
+        String name = "AisPacketDecoder-" + INSTANCES.incrementAndGet();
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, name + "-worker-" + workerCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.batches = new ArrayBlockingQueue<>(threads * BATCHES_PER_WORKER);
+        this.splitter = new Thread(this::split, name + "-reader");
+        splitter.setDaemon(true);
+        splitter.start();
+    }
+
+    /**
+     * Returns the next packet, with its message decoded.
+     * 
+     * @return the next packet or null if the end of the stream has been reached
+     * @throws IOException
+     *             if an exception occurred while reading the packets
+     */
+    AisPacket next() throws IOException {
+        while (!current.hasNext()) {
+            if (done) {
+                return null;
+            }
+            List<AisPacket> batch;
+            try {
+                batch = batches.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            if (batch == END) {
+                done = true;
+                workers.shutdown();
+                Throwable f = failure;
+                if (f instanceof IOException) {
+                    throw (IOException) f;
+                } else if (f instanceof RuntimeException) {
+                    throw (RuntimeException) f;
+                } else if (f instanceof Error) {
+                    throw (Error) f;
+                } else if (f != null) {
+                    throw new IOException(f);
+                }
+                return null;
+            }
+            current = batch.iterator();
+        }
+        return current.next();
+    }
+
+    /** Reads packets and submits them for decoding in batches, runs in the reading thread. */
+    private void split() {
+        try {
+            List<AisPacket> batch = new ArrayList<>(BATCH_SIZE);
+            for (AisPacket p = reader.readPacket0(); p != null; p = reader.readPacket0()) {
+                batch.add(p);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch);
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            if (!closed) {
+                failure = e;
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            // Batches already submitted are still decoded
+            workers.shutdown();
+            if (!closed) {
+                FutureTask<List<AisPacket>> end = new FutureTask<>(() -> END);
+                end.run();
+                try {
+                    batches.put(end);
+                } catch (InterruptedException ignore) {}
+            }
+        }
+    }
+
+    private void submit(final List<AisPacket> batch) throws InterruptedException {
+        FutureTask<List<AisPacket>> task = new FutureTask<>(() -> {
+            for (AisPacket p : batch) {
+                p.tryGetAisMessage();
+            }
+            return batch;
+        });
+        // Queue before executing, so the queue bounds the number of batches in flight
+        batches.put(task);
+        workers.execute(task);
+    }
+
+    /** Stops reading and decoding. */
+    @Override
+    public void close() {
+        closed = true;
+        done = true;
+        splitter.interrupt();
+        workers.shutdownNow();
+    }
+}
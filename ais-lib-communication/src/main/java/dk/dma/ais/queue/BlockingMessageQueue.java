@@ -14,14 +14,20 @@
  */
 package dk.dma.ais.queue;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 /**
- * Implementation of a IMessageQueue using a Java ArrayBlockingQueue
+ * Implementation of a IMessageQueue using a bounded array guarded by a single lock, in the same way as a Java
+ * ArrayBlockingQueue. Unlike ArrayBlockingQueue, a whole batch of elements is inserted or removed with a single lock
+ * acquisition.
  */
 @ThreadSafe
 public class BlockingMessageQueue<T> implements IMessageQueue<T> {
@@ -29,47 +35,184 @@ public class BlockingMessageQueue<T> implements IMessageQueue<T> {
     private static final int DEFAULT_MAX_SIZE = 1000;
 
     private final int limit;
-    private final BlockingQueue<T> queue;
+
+    @GuardedBy("lock")
+    private final Object[] items;
+    @GuardedBy("lock")
+    private int takeIndex;
+    @GuardedBy("lock")
+    private int putIndex;
+    @GuardedBy("lock")
+    private int count;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
 
     public BlockingMessageQueue() {
         this(DEFAULT_MAX_SIZE);
     }
 
     public BlockingMessageQueue(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, was " + limit);
+        }
         this.limit = limit;
-        this.queue = new ArrayBlockingQueue<>(limit);
+        this.items = new Object[limit];
+    }
+
+    @GuardedBy("lock")
+    private void enqueue(T content) {
+        items[putIndex] = requireNonNull(content);
+        if (++putIndex == limit) {
+            putIndex = 0;
+        }
+        count++;
+    }
+
+    @GuardedBy("lock")
+    private T dequeue() {
+        @SuppressWarnings("unchecked")
+        T entry = (T) items[takeIndex];
+        items[takeIndex] = null;
+        if (++takeIndex == limit) {
+            takeIndex = 0;
+        }
+        count--;
+        return entry;
+    }
+
+    /**
+     * Enqueue elements from contents starting at from, as many as there is room for
+     * 
+     * @return the index of the first element not enqueued
+     */
+    @GuardedBy("lock")
+    private int enqueueAll(List<T> contents, int from) {
+        int to = from + Math.min(contents.size() - from, limit - count);
+        for (int i = from; i < to; i++) {
+            enqueue(contents.get(i));
+        }
+        if (to > from) {
+            notEmpty.signal();
+        }
+        return to;
     }
 
     @Override
     public int push(T content) throws MessageQueueOverflowException {
-        if (!queue.offer(content)) {
-            throw new MessageQueueOverflowException();
+        lock.lock();
+        try {
+            if (count == limit) {
+                throw new MessageQueueOverflowException();
+            }
+            enqueue(content);
+            notEmpty.signal();
+            return count;
+        } finally {
+            lock.unlock();
         }
-        return queue.size();
     }
-    
+
     @Override
     public int put(T content) throws InterruptedException {
-        queue.put(content);
-        return queue.size();
+        lock.lockInterruptibly();
+        try {
+            while (count == limit) {
+                notFull.await();
+            }
+            enqueue(content);
+            notEmpty.signal();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Push the element on the queue, waiting up to the given time for space to become available
+     * 
+     * @param content
+     * @param timeout
+     * @param unit
+     * @return true if the element was pushed, false if the time elapsed before space became available
+     * @throws InterruptedException
+     */
+    public boolean offer(T content, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == limit) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(content);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int pushAll(List<T> contents) {
+        lock.lock();
+        try {
+            return enqueueAll(contents, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(List<T> contents) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            int i = enqueueAll(contents, 0);
+            while (i < contents.size()) {
+                notFull.await();
+                i = enqueueAll(contents, i);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public T pull() throws InterruptedException {
-        T entry = null;
-        do {
-            entry = queue.take();
-        } while (entry == null);
-        return entry;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            T entry = dequeue();
+            notFull.signal();
+            return entry;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public List<T> pull(List<T> l, int maxElements) throws InterruptedException {
-        // Wait for element to become available
-        l.add(queue.take());
-        // Get up to maxElements - 1 more
-        queue.drainTo(l, maxElements - 1);
-        return l;
+        lock.lockInterruptibly();
+        try {
+            // Wait for element to become available
+            while (count == 0) {
+                notEmpty.await();
+            }
+            // Get up to maxElements
+            int n = Math.min(count, Math.max(1, maxElements));
+            for (int i = 0; i < n; i++) {
+                l.add(dequeue());
+            }
+            notFull.signalAll();
+            return l;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -77,6 +220,20 @@ public class BlockingMessageQueue<T> implements IMessageQueue<T> {
         return pull(l, Integer.MAX_VALUE);
     }
 
+    /**
+     * Returns the number of elements on the queue
+     * 
+     * @return
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public int getLimit() {
         return limit;
     }
@@ -42,6 +42,39 @@ public interface IMessageQueue<T> {
      */
     int put(T content) throws InterruptedException;
 
+    /**
+     * Push as many of the elements as there is room for onto the queue, in order. The default implementation pushes
+     * them one at a time, the queues of this package push them as a single queue operation.
+     * 
+     * @param contents
+     * @return the number of elements pushed, the rest are dropped
+     */
+    default int pushAll(List<T> contents) {
+        int pushed = 0;
+        try {
+            for (T content : contents) {
+                push(content);
+                pushed++;
+            }
+        } catch (MessageQueueOverflowException e) {
+            // The rest are dropped
+        }
+        return pushed;
+    }
+
+    /**
+     * Push all the elements on the queue, waiting if necessary for space to become available. The default
+     * implementation puts them one at a time.
+     * 
+     * @param contents
+     * @throws InterruptedException
+     */
+    default void putAll(List<T> contents) throws InterruptedException {
+        for (T content : contents) {
+            put(content);
+        }
+    }
+
     /**
      * Pull message from the queue. This must be implemented as a blocking call.
      * 
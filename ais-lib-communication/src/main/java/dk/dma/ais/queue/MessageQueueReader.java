@@ -29,6 +29,9 @@ public class MessageQueueReader<T> extends Thread {
     private final IMessageQueue<T> queue;
     private final int pullMaxElements;
 
+    /** Set when the reader should stop after the elements of the current pull */
+    private volatile boolean finished;
+
     public MessageQueueReader(IQueueEntryHandler<T> handler, IMessageQueue<T> queue) {
         this(handler, queue, 1);
     }
@@ -43,7 +46,7 @@ public class MessageQueueReader<T> extends Thread {
     public void run() {
         List<T> list = new ArrayList<>();
         // Read loop
-        while (true) {
+        while (!finished) {
             try {
                 queue.pull(list, pullMaxElements);
             } catch (InterruptedException e) {                
@@ -69,4 +72,12 @@ public class MessageQueueReader<T> extends Thread {
         this.interrupt();
     }
 
+    /**
+     * Stops the reader once the elements of the current pull have been handled. Unlike {@link #cancel()} the thread
+     * is not interrupted, so it can be called by the handler without failing blocking calls made by the handler.
+     */
+    public void finish() {
+        finished = true;
+    }
+
 }
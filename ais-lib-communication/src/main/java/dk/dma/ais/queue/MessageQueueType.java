@@ -0,0 +1,49 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.queue;
+
+/**
+ * The implementations of {@link IMessageQueue} that can be selected by configuration
+ */
+public enum MessageQueueType {
+
+    /** {@link BlockingMessageQueue} */
+    BLOCKING {
+        @Override
+        public <T> IMessageQueue<T> newQueue(int limit, WaitStrategy waitStrategy) {
+            return new BlockingMessageQueue<>(limit);
+        }
+    },
+
+    /** {@link RingBufferMessageQueue}, may only be used with a single consumer thread */
+    RING_BUFFER {
+        @Override
+        public <T> IMessageQueue<T> newQueue(int limit, WaitStrategy waitStrategy) {
+            return new RingBufferMessageQueue<>(limit, waitStrategy);
+        }
+    };
+
+    /**
+     * Create a new queue of this type
+     * 
+     * @param limit
+     *            the maximum number of elements on the queue
+     * @param waitStrategy
+     *            how to wait on the queue, ignored by queues that always block
+     * @return the new queue
+     */
+    public abstract <T> IMessageQueue<T> newQueue(int limit, WaitStrategy waitStrategy);
+
+}
@@ -0,0 +1,310 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.queue;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Implementation of a IMessageQueue using a pre-allocated lock-free ring buffer. Any number of threads may push to the
+ * queue, but only a single thread may pull from it.
+ * <p>
+ * Producers claim a sequence number with a compare-and-set on the tail, and publish the element by writing it in the
+ * slot of the sequence. The consumer takes the element from the slot at the head, clears the slot and advances the
+ * head. How threads wait for the queue to become ready is decided by the {@link WaitStrategy}.
+ */
+@ThreadSafe
+public class RingBufferMessageQueue<T> implements IMessageQueue<T> {
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    /** Number of busy spins before yielding. */
+    private static final int SPIN_TRIES = 100;
+
+    /** Number of tries, including the spins, before parking. */
+    private static final int YIELD_TRIES = SPIN_TRIES + 100;
+
+    /** Time a producer waiting for space on a full queue is parked before retrying. */
+    private static final long PRODUCER_PARK_NANOS = 50_000;
+
+    private final int limit;
+    private final WaitStrategy waitStrategy;
+
+    /** The elements, the length is a power of 2 not less than limit. An empty slot is null. */
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+
+    /** The sequence of the next element to be pulled. Only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** The sequence of the next element to be pushed. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The producers may claim sequences below this without reading the head. */
+    private volatile long producerLimit;
+
+    /** The consumer thread if it is parked, or about to park, waiting for elements. */
+    private volatile Thread parkedConsumer;
+
+    public RingBufferMessageQueue() {
+        this(DEFAULT_MAX_SIZE, WaitStrategy.PARK);
+    }
+
+    public RingBufferMessageQueue(int limit) {
+        this(limit, WaitStrategy.PARK);
+    }
+
+    public RingBufferMessageQueue(int limit, WaitStrategy waitStrategy) {
+        if (limit <= 0 || limit > 1 << 30) {
+            throw new IllegalArgumentException("limit must be positive and at most 2^30, was " + limit);
+        }
+        this.limit = limit;
+        this.waitStrategy = requireNonNull(waitStrategy);
+        int capacity = Integer.highestOneBit(limit);
+        if (capacity < limit) {
+            capacity <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.producerLimit = limit;
+    }
+
+    /**
+     * Claims the next sequence, or returns -1 if the queue is full
+     */
+    private long claim() {
+        for (;;) {
+            long t = tail.get();
+            if (t >= producerLimit) {
+                long limit = head.get() + this.limit;
+                if (t >= limit) {
+                    return -1;
+                }
+                producerLimit = limit;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                return t;
+            }
+        }
+    }
+
+    private int publish(long sequence, T content) {
+        buffer.set((int) sequence & mask, content);
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return (int) (sequence + 1 - head.get());
+    }
+
+    @Override
+    public int push(T content) throws MessageQueueOverflowException {
+        requireNonNull(content);
+        long sequence = claim();
+        if (sequence < 0) {
+            throw new MessageQueueOverflowException();
+        }
+        return publish(sequence, content);
+    }
+
+    @Override
+    public int put(T content) throws InterruptedException {
+        requireNonNull(content);
+        long sequence;
+        for (int tries = 0; (sequence = claim()) < 0; tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (idle(tries)) {
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            }
+        }
+        return publish(sequence, content);
+    }
+
+    /**
+     * Claims as many sequences as there is room for, up to the elements of contents starting at from, and publishes
+     * the elements in them
+     * 
+     * @return the index of the first element not published
+     */
+    private int offer(List<T> contents, int from) {
+        int max = contents.size() - from;
+        if (max <= 0) {
+            return from;
+        }
+        long t;
+        int n;
+        do {
+            t = tail.get();
+            long available = producerLimit - t;
+            if (available < max) {
+                long limit = head.get() + this.limit;
+                producerLimit = limit;
+                available = limit - t;
+                if (available <= 0) {
+                    return from;
+                }
+            }
+            n = (int) Math.min(available, max);
+        } while (!tail.compareAndSet(t, t + n));
+        for (int i = 0; i < n; i++) {
+            buffer.set((int) (t + i) & mask, contents.get(from + i));
+        }
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return from + n;
+    }
+
+    /**
+     * A claimed slot must be filled, so null elements are rejected before claiming any
+     */
+    private static void checkElements(List<?> contents) {
+        for (Object o : contents) {
+            requireNonNull(o);
+        }
+    }
+
+    @Override
+    public int pushAll(List<T> contents) {
+        checkElements(contents);
+        return offer(contents, 0);
+    }
+
+    @Override
+    public void putAll(List<T> contents) throws InterruptedException {
+        checkElements(contents);
+        int i = offer(contents, 0);
+        for (int tries = 0; i < contents.size(); tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (idle(tries)) {
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            }
+            int next = offer(contents, i);
+            if (next > i) {
+                tries = 0;
+                i = next;
+            }
+        }
+    }
+
+    /**
+     * Waits for the element at the head to be published, and returns it without removing it
+     */
+    private T await() throws InterruptedException {
+        int index = (int) head.get() & mask;
+        T entry = buffer.get(index);
+        for (int tries = 0; entry == null; tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (idle(tries)) {
+                parkedConsumer = Thread.currentThread();
+                // Check again after announcing that we park, so a producer either sees us or we see its element
+                if (buffer.get(index) == null) {
+                    LockSupport.park(this);
+                }
+                parkedConsumer = null;
+            }
+            entry = buffer.get(index);
+        }
+        return entry;
+    }
+
+    /**
+     * Spins or yields according to the wait strategy, and returns true if the caller should park.
+     */
+    private boolean idle(int tries) {
+        switch (waitStrategy) {
+        case BUSY_SPIN:
+            return false;
+        case YIELD:
+            if (tries >= SPIN_TRIES) {
+                Thread.yield();
+            }
+            return false;
+        default:
+            if (tries >= YIELD_TRIES) {
+                return true;
+            } else if (tries >= SPIN_TRIES) {
+                Thread.yield();
+            }
+            return false;
+        }
+    }
+
+    private void remove(long h) {
+        buffer.lazySet((int) h & mask, null);
+        head.lazySet(h + 1);
+    }
+
+    @Override
+    public T pull() throws InterruptedException {
+        T entry = await();
+        remove(head.get());
+        return entry;
+    }
+
+    @Override
+    public List<T> pull(List<T> l, int maxElements) throws InterruptedException {
+        // Wait for element to become available
+        l.add(pull());
+        // Get up to maxElements - 1 more
+        long h = head.get();
+        for (int i = 1; i < maxElements; i++) {
+            T entry = buffer.get((int) h & mask);
+            if (entry == null) {
+                break;
+            }
+            l.add(entry);
+            remove(h++);
+        }
+        return l;
+    }
+
+    @Override
+    public List<T> pullAll(List<T> l) throws InterruptedException {
+        return pull(l, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of elements on the queue
+     * 
+     * @return
+     */
+    public int size() {
+        long h = head.get();
+        return (int) Math.max(0, Math.min(limit, tail.get() - h));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+}
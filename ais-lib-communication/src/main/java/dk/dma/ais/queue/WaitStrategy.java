@@ -0,0 +1,31 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.queue;
+
+/**
+ * How threads wait on a {@link RingBufferMessageQueue} when the queue is empty, or when full and using blocking puts.
+ */
+public enum WaitStrategy {
+
+    /** Spin until the queue is ready. Lowest latency, but each waiting thread keeps a core busy. */
+    BUSY_SPIN,
+
+    /** Spin shortly, then yield the processor between retries. */
+    YIELD,
+
+    /** Spin and yield shortly, then park the thread until the queue is ready. Uses the least CPU. */
+    PARK
+
+}
@@ -0,0 +1,506 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketParser;
+
+/**
+ * A sidecar index of an uncompressed AIS archive file, mapping MMSI and time buckets to byte ranges of the file.
+ * <p>
+ * The file is divided into blocks of about {@link #DEFAULT_BLOCK_SIZE} bytes, each starting right after a complete
+ * packet. For every MMSI and time bucket the index holds the blocks containing packets from the MMSI with a timestamp
+ * in the bucket, so a query only reads and parses those blocks. The index is stored next to the archive file, with the
+ * suffix {@link #SUFFIX}. The size and last modified time of the archive file are kept in the index, so an index that
+ * is out of date can be detected.
+ * 
+ * @see AisIndexedFileReader
+ */
+@Immutable
+public final class AisArchiveIndex {
+
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger(AisArchiveIndex.class);
+
+    /** The suffix of index files */
+    public static final String SUFFIX = ".idx";
+
+    /** The default size of blocks in bytes */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** The default size of time buckets in milliseconds */
+    public static final long DEFAULT_BUCKET_SIZE = TimeUnit.MINUTES.toMillis(10);
+
+    /** The bucket of packets without a timestamp */
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x41495349; // AISI
+
+    private static final int VERSION = 2;
+
+    /** The size of the archive file when indexed */
+    private final long fileSize;
+
+    /** The last modified time of the archive file in milliseconds when indexed */
+    private final long lastModified;
+
+    /** The size of time buckets in milliseconds */
+    private final long bucketSize;
+
+    /** The start of each block followed by the size of the file */
+    private final long[] blockOffsets;
+
+    /** The MMSI of each entry, entries are sorted by MMSI and bucket */
+    private final int[] mmsis;
+
+    /** The time bucket of each entry */
+    private final long[] buckets;
+
+    /** The index into blocks of the first block of each entry, followed by the number of blocks */
+    private final int[] entryBlocks;
+
+    /** The blocks of all entries */
+    private final int[] blocks;
+
+    private AisArchiveIndex(long fileSize, long lastModified, long bucketSize, long[] blockOffsets, int[] mmsis,
+            long[] buckets, int[] entryBlocks, int[] blocks) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.bucketSize = bucketSize;
+        this.blockOffsets = blockOffsets;
+        this.mmsis = mmsis;
+        this.buckets = buckets;
+        this.entryBlocks = entryBlocks;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Returns the size of the archive file when it was indexed
+     * 
+     * @return the size of the archive file when it was indexed
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns the last modified time of the archive file in milliseconds when it was indexed
+     * 
+     * @return the last modified time of the archive file in milliseconds when it was indexed
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns whether the archive file has the same size and last modified time as when it was indexed
+     * 
+     * @param archive
+     *            the archive file
+     * @return whether the index is up to date with the archive file
+     * @throws IOException
+     *             if the attributes of the file could not be read
+     */
+    public boolean isUpToDate(Path archive) throws IOException {
+        return Files.size(archive) == fileSize && Files.getLastModifiedTime(archive).toMillis() == lastModified;
+    }
+
+    /**
+     * Returns the size of the time buckets in milliseconds
+     * 
+     * @return the size of the time buckets in milliseconds
+     */
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * Returns the number of blocks of the archive file
+     * 
+     * @return the number of blocks of the archive file
+     */
+    public int getBlockCount() {
+        return blockOffsets.length - 1;
+    }
+
+    /**
+     * Returns the number of MMSI and time bucket entries
+     * 
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        return mmsis.length;
+    }
+
+    long getBlockStart(int block) {
+        return blockOffsets[block];
+    }
+
+    long getBlockEnd(int block) {
+        return blockOffsets[block + 1];
+    }
+
+    /**
+     * Finds the blocks that may hold packets from the MMSI with a timestamp in the specified interval. Packets without
+     * a timestamp are only included if from is {@link Long#MIN_VALUE}.
+     * 
+     * @param mmsi
+     * @param from
+     *            the start of the interval (inclusive)
+     * @param to
+     *            the end of the interval (exclusive)
+     * @return the blocks
+     */
+    BitSet findBlocks(int mmsi, long from, long to) {
+        BitSet result = new BitSet(getBlockCount());
+        long fromBucket = from == Long.MIN_VALUE ? NO_TIMESTAMP : bucket(from);
+        // Binary search for the first entry at or after (mmsi, fromBucket)
+        int low = 0;
+        int high = mmsis.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mmsis[mid] < mmsi || mmsis[mid] == mmsi && buckets[mid] < fromBucket) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (to == Long.MIN_VALUE) {
+            return result;
+        }
+        long toBucket = bucket(to - 1);
+        for (int i = low; i < mmsis.length && mmsis[i] == mmsi && buckets[i] <= toBucket; i++) {
+            for (int j = entryBlocks[i]; j < entryBlocks[i + 1]; j++) {
+                result.set(blocks[j]);
+            }
+        }
+        return result;
+    }
+
+    private long bucket(long timestamp) {
+        return Math.floorDiv(timestamp, bucketSize);
+    }
+
+    /**
+     * Writes the index
+     * 
+     * @param indexFile
+     *            the file to write to
+     * @throws IOException
+     *             if the index could not be written
+     */
+    public void write(Path indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeLong(bucketSize);
+            out.writeInt(blockOffsets.length);
+            for (long l : blockOffsets) {
+                out.writeLong(l);
+            }
+            out.writeInt(mmsis.length);
+            for (int i = 0; i < mmsis.length; i++) {
+                out.writeInt(mmsis[i]);
+                out.writeLong(buckets[i]);
+                out.writeInt(entryBlocks[i + 1] - entryBlocks[i]);
+                for (int j = entryBlocks[i]; j < entryBlocks[i + 1]; j++) {
+                    out.writeInt(blocks[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an index
+     * 
+     * @param indexFile
+     *            the file to read from
+     * @return the index
+     * @throws IOException
+     *             if the index could not be read
+     */
+    public static AisArchiveIndex read(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an AIS archive index: " + indexFile);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported index version " + version + ": " + indexFile);
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            long bucketSize = in.readLong();
+            long[] blockOffsets = new long[in.readInt()];
+            for (int i = 0; i < blockOffsets.length; i++) {
+                blockOffsets[i] = in.readLong();
+            }
+            int entries = in.readInt();
+            int[] mmsis = new int[entries];
+            long[] buckets = new long[entries];
+            int[] entryBlocks = new int[entries + 1];
+            int[] blocks = new int[Math.max(16, entries)];
+            for (int i = 0; i < entries; i++) {
+                mmsis[i] = in.readInt();
+                buckets[i] = in.readLong();
+                int count = in.readInt();
+                int start = entryBlocks[i];
+                if (start + count > blocks.length) {
+                    blocks = Arrays.copyOf(blocks, Math.max(start + count, blocks.length * 2));
+                }
+                for (int j = 0; j < count; j++) {
+                    blocks[start + j] = in.readInt();
+                }
+                entryBlocks[i + 1] = start + count;
+            }
+            return new AisArchiveIndex(fileSize, lastModified, bucketSize, blockOffsets, mmsis, buckets, entryBlocks,
+                    Arrays.copyOf(blocks, entryBlocks[entries]));
+        }
+    }
+
+    /**
+     * Returns the path of the index file of the specified archive file
+     * 
+     * @param archive
+     *            the archive file
+     * @return the path of the index file
+     */
+    public static Path indexFileFor(Path archive) {
+        Path parent = archive.toAbsolutePath().getParent();
+        String name = archive.getFileName().toString() + SUFFIX;
+        return parent == null ? Paths.get(name) : parent.resolve(name);
+    }
+
+    /**
+     * Builds an index of the archive file with the default block and bucket sizes
+     * 
+     * @param archive
+     *            the uncompressed archive file
+     * @return the index
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public static AisArchiveIndex build(Path archive) throws IOException {
+        return build(archive, DEFAULT_BUCKET_SIZE, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Builds an index of the archive file
+     * 
+     * @param archive
+     *            the uncompressed archive file
+     * @param bucketSize
+     *            the size of time buckets in milliseconds
+     * @param blockSize
+     *            the approximate size of blocks in bytes
+     * @return the index
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public static AisArchiveIndex build(Path archive, long bucketSize, int blockSize) throws IOException {
+        requireNonNull(archive);
+        if (!MappedArchiveFile.isMappable(archive)) {
+            throw new IllegalArgumentException("Only uncompressed files can be indexed, was " + archive);
+        } else if (bucketSize < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("bucketSize and blockSize must be positive");
+        }
+        return new Builder(bucketSize).build(archive, blockSize);
+    }
+
+    /** Collects the entries of the index while reading the file. */
+    private static final class Builder {
+        final long bucketSize;
+
+        /** Blocks by bucket by MMSI */
+        final HashMap<Integer, TreeMap<Long, Blocks>> entries = new HashMap<>();
+
+        long[] blockOffsets = new long[16];
+
+        int blockCount;
+
+        Builder(long bucketSize) {
+            this.bucketSize = bucketSize;
+        }
+
+        AisArchiveIndex build(Path archive, int blockSize) throws IOException {
+            // Taken before reading, so changes while indexing make the index out of date
+            long lastModified = Files.getLastModifiedTime(archive).toMillis();
+            AisPacketParser parser = new AisPacketParser();
+            byte[] buffer = new byte[1 << 16];
+            // The start of a line continued in the next read
+            byte[] line = new byte[256];
+            int length = 0;
+            long pos = 0;
+            long blockStart = 0;
+            blockOffsets[blockCount++] = 0;
+            try (InputStream in = Files.newInputStream(archive)) {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    int start = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (buffer[i] != '\n') {
+                            continue;
+                        }
+                        AisPacket p;
+                        if (length == 0) {
+                            p = readLine(parser, buffer, start, i - start);
+                        } else {
+                            line = append(line, length, buffer, start, i - start);
+                            p = readLine(parser, line, 0, length + i - start);
+                            length = 0;
+                        }
+                        start = i + 1;
+                        if (p != null) {
+                            blockStart = add(p, pos + start, blockStart, blockSize);
+                        }
+                    }
+                    line = append(line, length, buffer, start, n - start);
+                    length += n - start;
+                    pos += n;
+                }
+            }
+            if (length > 0) {
+                AisPacket p = readLine(parser, line, 0, length);
+                if (p != null) {
+                    blockStart = add(p, pos, blockStart, blockSize);
+                }
+            }
+            if (blockStart == pos && blockCount > 1) {
+                blockCount--; // Empty last block
+            }
+            long[] offsets = Arrays.copyOf(blockOffsets, blockCount + 1);
+            offsets[blockCount] = pos;
+            return toIndex(pos, lastModified, offsets);
+        }
+
+        /** Appends count bytes of the buffer from start to the first length bytes of line, growing it if needed */
+        private static byte[] append(byte[] line, int length, byte[] buffer, int start, int count) {
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(buffer, start, line, length, count);
+            return line;
+        }
+
+        private static AisPacket readLine(AisPacketParser parser, byte[] line, int offset, int length) {
+            if (length > 0 && line[offset + length - 1] == '\r') {
+                length--;
+            }
+            try {
+                return parser.readLine(line, offset, length);
+            } catch (Exception e) {
+                LOG.debug("Skipping line while indexing: " + e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Adds a packet ending at the specified position to the current block, and starts a new block after it if the
+         * current block is full.
+         *
+         * @return the start of the current block
+         */
+        private long add(AisPacket p, long end, long blockStart, int blockSize) {
+            add(p, blockCount - 1);
+            // Blocks start right after a packet, so they can be parsed from the start
+            if (end - blockStart >= blockSize) {
+                if (blockCount == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                }
+                blockOffsets[blockCount++] = blockStart = end;
+            }
+            return blockStart;
+        }
+
+        private void add(AisPacket p, int block) {
+            AisMessage m = p.tryGetLazyAisMessage();
+            if (m == null) {
+                return;
+            }
+            long timestamp = p.getBestTimestamp();
+            Long bucket = timestamp == -1 ? NO_TIMESTAMP : Math.floorDiv(timestamp, bucketSize);
+            entries.computeIfAbsent(m.getUserId(), k -> new TreeMap<>()).computeIfAbsent(bucket, k -> new Blocks())
+                    .add(block);
+        }
+
+        private AisArchiveIndex toIndex(long fileSize, long lastModified, long[] blockOffsets) {
+            int count = 0;
+            int blockTotal = 0;
+            for (TreeMap<Long, Blocks> m : entries.values()) {
+                count += m.size();
+                for (Blocks b : m.values()) {
+                    blockTotal += b.size;
+                }
+            }
+            int[] mmsis = new int[count];
+            long[] buckets = new long[count];
+            int[] entryBlocks = new int[count + 1];
+            int[] blocks = new int[blockTotal];
+            int i = 0;
+            for (Map.Entry<Integer, TreeMap<Long, Blocks>> e : new TreeMap<>(entries).entrySet()) {
+                for (Map.Entry<Long, Blocks> b : e.getValue().entrySet()) {
+                    mmsis[i] = e.getKey();
+                    buckets[i] = b.getKey();
+                    System.arraycopy(b.getValue().blocks, 0, blocks, entryBlocks[i], b.getValue().size);
+                    entryBlocks[i + 1] = entryBlocks[i] + b.getValue().size;
+                    i++;
+                }
+            }
+            return new AisArchiveIndex(fileSize, lastModified, bucketSize, blockOffsets, mmsis, buckets, entryBlocks,
+                    blocks);
+        }
+    }
+
+    /** The increasing blocks of an entry */
+    private static final class Blocks {
+        int[] blocks = new int[2];
+        int size;
+
+        void add(int block) {
+            if (size > 0 && blocks[size - 1] == block) {
+                return;
+            }
+            if (size == blocks.length) {
+                blocks = Arrays.copyOf(blocks, size * 2);
+            }
+            blocks[size++] = block;
+        }
+    }
+}
@@ -14,6 +14,8 @@
  */
 package dk.dma.ais.reader;
 
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketReader;
 import dk.dma.ais.sentence.Abk;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
@@ -32,11 +34,19 @@ import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.util.Objects.requireNonNull;
 
@@ -47,6 +57,11 @@ import static java.util.Objects.requireNonNull;
  * 
  * Default ordering is by full path names. A Comparator<Path> can be provided for alternative ordering. 
  * 
+ * If more than one thread is set with {@link #setThreads(int)}, uncompressed files are memory mapped and split into
+ * chunks that are parsed concurrently, and several files are read at the same time. Packets are still delivered from
+ * the reader thread in file order, unless {@link #setMergeByTimestamp(boolean)} is set, in which case the packets of
+ * all files are merged in timestamp order.
+ * 
  */
 public class AisDirectoryReader extends AisReader {
 
@@ -59,6 +74,15 @@ public class AisDirectoryReader extends AisReader {
     private final Comparator<Path> comparator;
 
     private Long totalNumberOfPacketsToRead;
+
+    /** The number of threads parsing files, 1 to read the files one by one in the reader thread. */
+    private volatile int threads = 1;
+
+    /** Whether to merge the packets of all files in timestamp order when reading with several threads. */
+    private volatile boolean mergeByTimestamp;
+
+    /** The approximate size of the chunks files are split into when reading with several threads. */
+    private volatile int chunkSize = MappedArchiveFile.DEFAULT_CHUNK_SIZE;
     
     AisDirectoryReader(String dir, String pattern, boolean recursive) throws IOException {
         this(dir, pattern, recursive, null);
@@ -77,23 +101,337 @@ public class AisDirectoryReader extends AisReader {
         this.totalNumberOfPacketsToRead = -1L;
     }    
 
+    /**
+     * Sets the number of threads used for parsing files. Must be set before the reader is started.
+     * 
+     * @param threads
+     *            the number of threads, the default is 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether packets should be delivered in timestamp order across all files, when reading with several
+     * threads. The files are merged assuming the packets of each file are in timestamp order. Only the first packet of
+     * each file is read up front, and a file is opened when its first packet is due, so files covering consecutive
+     * periods, for example daily files, are read one or a few at a time. Up to two chunks of every open file are kept
+     * in memory. Must be set before the reader is started.
+     * 
+     * @param mergeByTimestamp
+     *            whether to merge packets by timestamp
+     */
+    public void setMergeByTimestamp(boolean mergeByTimestamp) {
+        this.mergeByTimestamp = mergeByTimestamp;
+    }
+
+    void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
     @Override
     public void run() {
-        new MatchingFileIterator(comparator) {
-            @Override
-            protected void doWithMatchingFile(Path file) throws IOException {
-                try (InputStream in = AisReaders.createFileInputStream(file.toString())) {
-                    LOG.debug("Reading packets from file " + file.getFileName().toString());
-                    readLoop(in);
-                    LOG.debug("Completed reading packets from file " + file.getFileName().toString());
+        if (threads > 1) {
+            readParallel(threads);
+        } else {
+            new MatchingFileIterator(comparator) {
+                @Override
+                protected void doWithMatchingFile(Path file) throws IOException {
+                    readFile(file);
                 }
-            }
-        }.iterate();
+            }.iterate();
+        }
 
         LOG.debug("No more files to read.");
         done = true;
     }
 
+    private void readFile(Path file) throws IOException {
+        try (InputStream in = AisReaders.createFileInputStream(file.toString())) {
+            LOG.debug("Reading packets from file " + file.getFileName().toString());
+            readLoop(in);
+            LOG.debug("Completed reading packets from file " + file.getFileName().toString());
+        }
+    }
+
+    private void readParallel(int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, getName() + "-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Path> files = findMatchingFiles(comparator);
+            if (mergeByTimestamp) {
+                readMerged(files, pool);
+            } else {
+                readInOrder(files, pool, threads * 2);
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Interrupted while reading files");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Reads the files in order, with up to the specified number of chunks being parsed ahead of delivery. */
+    private void readInOrder(List<Path> files, ExecutorService pool, int maxPending) throws InterruptedException {
+        ArrayDeque<Future<List<AisPacket>>> pending = new ArrayDeque<>();
+        for (Path file : files) {
+            if (isShutdown()) {
+                return;
+            } else if (!MappedArchiveFile.isMappable(file)) {
+                // Compressed files are read in this thread, after the packets of previous files have been delivered
+                while (!pending.isEmpty()) {
+                    deliver(pending.poll());
+                }
+                try {
+                    readFile(file);
+                } catch (IOException e) {
+                    if (!isShutdown()) {
+                        LOG.error("Failed to work with file: " + file.toString() + ": " + e.getMessage());
+                    }
+                }
+            } else {
+                MappedArchiveFile f = mapFile(file);
+                for (int i = 0; f != null && i < f.getChunkCount(); i++) {
+                    while (pending.size() >= maxPending) {
+                        deliver(pending.poll());
+                    }
+                    pending.add(pool.submit(chunkParser(f, i)));
+                }
+            }
+        }
+        while (!pending.isEmpty()) {
+            deliver(pending.poll());
+        }
+    }
+
+    private void deliver(Future<List<AisPacket>> chunk) throws InterruptedException {
+        for (AisPacket p : await(chunk)) {
+            if (isShutdown()) {
+                return;
+            }
+            distribute(p);
+        }
+    }
+
+    /**
+     * Reads the files concurrently, and delivers the packet with the lowest timestamp of all files first. A file is
+     * only opened when the first packet read ahead from it is due.
+     */
+    private void readMerged(List<Path> files, ExecutorService pool) throws InterruptedException {
+        PriorityQueue<PacketSource> sources = new PriorityQueue<>();
+        try {
+            for (int i = 0; i < files.size() && !isShutdown(); i++) {
+                Path file = files.get(i);
+                AisPacket first = readFirstPacket(file);
+                if (first != null) {
+                    PacketSource s = MappedArchiveFile.isMappable(file) ? new ChunkSource(i, file, pool)
+                            : new StreamSource(i, file);
+                    s.setHead(first);
+                    sources.add(s);
+                }
+            }
+            while (!sources.isEmpty() && !isShutdown()) {
+                PacketSource s = sources.poll();
+                if (!s.opened) {
+                    // Merge from the packets actually read from the file, in case they differ from the one read ahead
+                    s.open();
+                    if (s.advance()) {
+                        sources.add(s);
+                    } else {
+                        s.close();
+                    }
+                    continue;
+                }
+                distribute(s.head);
+                if (s.advance()) {
+                    sources.add(s);
+                } else {
+                    s.close();
+                }
+            }
+        } finally {
+            for (PacketSource s : sources) {
+                s.close();
+            }
+        }
+    }
+
+    /** Returns the first packet of the file, or null if it has none or cannot be read */
+    private AisPacket readFirstPacket(Path file) {
+        try (AisPacketReader reader = new AisPacketReader(AisReaders.createFileInputStream(file.toString()))) {
+            return reader.readPacket();
+        } catch (IOException e) {
+            if (!isShutdown()) {
+                LOG.error("Failed to work with file: " + file.toString() + ": " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private MappedArchiveFile mapFile(Path file) {
+        try {
+            LOG.debug("Splitting file " + file.getFileName().toString());
+            return new MappedArchiveFile(file, chunkSize);
+        } catch (IOException e) {
+            if (!isShutdown()) {
+                LOG.error("Failed to work with file: " + file.toString() + ": " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private Callable<List<AisPacket>> chunkParser(MappedArchiveFile file, int chunk) {
+        return () -> {
+            try {
+                return file.parseChunk(chunk);
+            } catch (IOException e) {
+                if (!isShutdown()) {
+                    LOG.error("Failed to work with file: " + file.file.toString() + ": " + e.getMessage());
+                }
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    private static List<AisPacket> await(Future<List<AisPacket>> chunk) throws InterruptedException {
+        try {
+            return chunk.get();
+        } catch (ExecutionException e) {
+            LOG.error("Failed to parse chunk", e.getCause());
+            return Collections.emptyList();
+        }
+    }
+
+    /** The packets of a file, ordered by the timestamp of the next packet and then by file order. */
+    private abstract static class PacketSource implements Comparable<PacketSource> {
+        final int index;
+        AisPacket head;
+        long timestamp;
+
+        /** Whether the file has been opened, before which the head is the first packet read ahead */
+        boolean opened;
+
+        PacketSource(int index) {
+            this.index = index;
+        }
+
+        /** Opens the file, after which packets are read with {@link #next()} */
+        abstract void open();
+
+        abstract AisPacket next() throws InterruptedException;
+
+        void setHead(AisPacket packet) {
+            head = packet;
+            timestamp = packet.getBestTimestamp();
+        }
+
+        boolean advance() throws InterruptedException {
+            AisPacket next = next();
+            if (next == null) {
+                return false;
+            }
+            setHead(next);
+            return true;
+        }
+
+        void close() {}
+
+        @Override
+        public int compareTo(PacketSource o) {
+            int c = Long.compare(timestamp, o.timestamp);
+            return c != 0 ? c : Integer.compare(index, o.index);
+        }
+    }
+
+    /** A memory mapped file, parsing the next chunk while the current one is delivered. */
+    private final class ChunkSource extends PacketSource {
+        final Path path;
+        final ExecutorService pool;
+        MappedArchiveFile file;
+        int chunk;
+        Future<List<AisPacket>> next;
+        Iterator<AisPacket> current = Collections.emptyIterator();
+
+        ChunkSource(int index, Path path, ExecutorService pool) {
+            super(index);
+            this.path = path;
+            this.pool = pool;
+        }
+
+        @Override
+        void open() {
+            opened = true;
+            file = mapFile(path);
+            next = file == null || file.getChunkCount() == 0 ? null : pool.submit(chunkParser(file, 0));
+        }
+
+        @Override
+        AisPacket next() throws InterruptedException {
+            while (!current.hasNext()) {
+                if (next == null) {
+                    return null;
+                }
+                Future<List<AisPacket>> f = next;
+                next = ++chunk < file.getChunkCount() ? pool.submit(chunkParser(file, chunk)) : null;
+                current = await(f).iterator();
+            }
+            return current.next();
+        }
+    }
+
+    /** A compressed file, read in the reader thread. */
+    private final class StreamSource extends PacketSource {
+        final Path file;
+        AisPacketReader reader;
+
+        StreamSource(int index, Path file) {
+            super(index);
+            this.file = file;
+        }
+
+        @Override
+        void open() {
+            opened = true;
+            try {
+                reader = new AisPacketReader(AisReaders.createFileInputStream(file.toString()));
+            } catch (IOException e) {
+                if (!isShutdown()) {
+                    LOG.error("Failed to work with file: " + file.toString() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        AisPacket next() {
+            if (reader == null) {
+                return null;
+            }
+            try {
+                return reader.readPacket();
+            } catch (IOException e) {
+                if (!isShutdown()) {
+                    LOG.error("Failed to work with file: " + file.toString() + ": " + e.getMessage());
+                }
+                return null;
+            }
+        }
+
+        @Override
+        void close() {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+
     @Override
     public Status getStatus() {
         return done ? Status.DISCONNECTED : Status.CONNECTED;
@@ -179,47 +517,52 @@ public class AisDirectoryReader extends AisReader {
         }
 
         public void iterate() {
-            final List<Path> files = new ArrayList<>();
-            final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
-            final FileVisitor<Path> fileVisitor = new SimpleFileVisitor<Path>() {
-                boolean firstDir = true;
+            // Iterate through all files
+            for (Path file : findMatchingFiles(comparator)) {
+                handleFile(file);
+            }
+        }
+    }
 
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attribs) {
-                    if (matcher.matches(file.getFileName())) {
-                        files.add(file);
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
+    /**
+     * Finds all matching files, sorted using the comparator or by path if no comparator is specified.
+     */
+    private List<Path> findMatchingFiles(Comparator<Path> comparator) {
+        final List<Path> files = new ArrayList<>();
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        final FileVisitor<Path> fileVisitor = new SimpleFileVisitor<Path>() {
+            boolean firstDir = true;
 
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                    if (recursive || firstDir) {
-                        firstDir = false;
-                        return FileVisitResult.CONTINUE;
-                    }
-                    return FileVisitResult.SKIP_SUBTREE;
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attribs) {
+                if (matcher.matches(file.getFileName())) {
+                    files.add(file);
                 }
-            };
-            try {
-                Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, fileVisitor);
-            } catch (IOException e) {
-                LOG.error("Failed to read directory: " + e.getMessage());
-            }
-            
-            // Sort files
-            if (this.comparator != null) {
-                Collections.sort(files, comparator);
-            } else {
-                Collections.sort(files);
-            }
-            
-            // Iterate through all files
-            for (Path file : files) {                
-                handleFile(file);
+                return FileVisitResult.CONTINUE;
             }
 
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (recursive || firstDir) {
+                    firstDir = false;
+                    return FileVisitResult.CONTINUE;
+                }
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+        };
+        try {
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, fileVisitor);
+        } catch (IOException e) {
+            LOG.error("Failed to read directory: " + e.getMessage());
+        }
+        
+        // Sort files
+        if (comparator != null) {
+            Collections.sort(files, comparator);
+        } else {
+            Collections.sort(files);
         }
+        return files;
     }
     
 }
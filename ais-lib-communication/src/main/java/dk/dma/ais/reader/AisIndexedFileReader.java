@@ -0,0 +1,138 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+
+/**
+ * Reads packets of a single MMSI within a time interval from an archive file, using its {@link AisArchiveIndex} to
+ * read only the parts of the file that may hold matching packets.
+ */
+public class AisIndexedFileReader {
+
+    /** The archive file */
+    private final Path file;
+
+    /** The index of the file */
+    private final AisArchiveIndex index;
+
+    /**
+     * Creates a reader using the sidecar index of the file
+     * 
+     * @param file
+     *            the archive file
+     * @throws IOException
+     *             if the index could not be read or does not match the file
+     */
+    public AisIndexedFileReader(Path file) throws IOException {
+        this(file, AisArchiveIndex.read(AisArchiveIndex.indexFileFor(file)));
+    }
+
+    /**
+     * Creates a reader using the specified index
+     * 
+     * @param file
+     *            the archive file
+     * @param index
+     *            the index of the file
+     * @throws IOException
+     *             if the index does not match the file
+     */
+    public AisIndexedFileReader(Path file, AisArchiveIndex index) throws IOException {
+        this.file = requireNonNull(file);
+        this.index = requireNonNull(index);
+        if (!index.isUpToDate(file)) {
+            throw new IOException("Index is out of date, " + file + " has changed");
+        }
+    }
+
+    /**
+     * Returns the index used by this reader
+     * 
+     * @return the index used by this reader
+     */
+    public AisArchiveIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Finds all packets from the specified MMSI with a timestamp within the specified interval, in file order. Packets
+     * without a timestamp are only included if from is {@link Long#MIN_VALUE}.
+     * 
+     * @param mmsi
+     *            the MMSI
+     * @param from
+     *            the start of the interval in milliseconds since the epoch (inclusive)
+     * @param to
+     *            the end of the interval in milliseconds since the epoch (exclusive)
+     * @return the matching packets
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public List<AisPacket> find(int mmsi, long from, long to) throws IOException {
+        List<AisPacket> result = new ArrayList<>();
+        BitSet blocks = index.findBlocks(mmsi, from, to);
+        if (blocks.isEmpty()) {
+            return result;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int b = blocks.nextSetBit(0); b >= 0;) {
+                // Read adjacent blocks in one go
+                int last = blocks.nextClearBit(b) - 1;
+                ByteBuffer buffer = read(ch, index.getBlockStart(b), index.getBlockEnd(last));
+                for (AisPacket p : MappedArchiveFile.parse(buffer)) {
+                    if (matches(p, mmsi, from, to)) {
+                        result.add(p);
+                    }
+                }
+                b = blocks.nextSetBit(last + 1);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(AisPacket p, int mmsi, long from, long to) {
+        AisMessage m = p.tryGetLazyAisMessage();
+        if (m == null || m.getUserId() != mmsi) {
+            return false;
+        }
+        long timestamp = p.getBestTimestamp();
+        return timestamp == -1 ? from == Long.MIN_VALUE : timestamp >= from && timestamp < to;
+    }
+
+    private static ByteBuffer read(FileChannel ch, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (ch.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file, the index may be out of date");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -55,6 +55,12 @@ public class AisReaderGroup implements Iterable<AisReader> {
     /** The name of the group. */
     final String name;
 
+    /** The number of I/O threads to read on, or 0 to use a thread per reader. */
+    volatile int ioThreads;
+
+    /** The engine the readers are read on while running, if ioThreads is positive. */
+    volatile AisTcpReaderEngine engine;
+
     AisReaderGroup(String name) {
         this.name = requireNonNull(name);
     }
@@ -95,6 +101,11 @@ public class AisReaderGroup implements Iterable<AisReader> {
                             LOG.error("Interrupted while waiting for shutdown", e);
                         }
                     }
+                    AisTcpReaderEngine e = engine;
+                    if (e != null) {
+                        engine = null;
+                        e.close();
+                    }
                 } finally {
                     lock.unlock();
                 }
@@ -104,8 +115,11 @@ public class AisReaderGroup implements Iterable<AisReader> {
             protected void startUp() throws Exception {
                 lock.lock();
                 try {
-                    for (AisReader r : readers.values()) {
-                        r.start();
+                    if (ioThreads > 0) {
+                        engine = new AisTcpReaderEngine(ioThreads);
+                    }
+                    for (AisTcpReader r : readers.values()) {
+                        start(r);
                     }
                 } finally {
                     lock.unlock();
@@ -114,6 +128,18 @@ public class AisReaderGroup implements Iterable<AisReader> {
         };
     }
 
+    /**
+     * Starts the reader, on the engine if the group reads on I/O threads.
+     */
+    void start(AisTcpReader reader) {
+        AisTcpReaderEngine e = engine;
+        if (e != null) {
+            reader.start(e);
+        } else {
+            reader.start();
+        }
+    }
+
     /** {@inheritDoc} */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
@@ -135,6 +161,22 @@ public class AisReaderGroup implements Iterable<AisReader> {
         }
     }
 
+    /**
+     * Sets the number of I/O threads the readers of the group are read on once the group is started. If 0, the
+     * default, each reader gets a thread of its own.
+     * 
+     * @param ioThreads
+     *            the number of I/O threads
+     * @return this group
+     */
+    public AisReaderGroup setIoThreads(int ioThreads) {
+        if (ioThreads < 0) {
+            throw new IllegalArgumentException("ioThreads must be non-negative, was " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
     /**
      * Returns a stream of incoming packets for all the readers this group is managing.
      * 
@@ -79,7 +79,7 @@ class AisReaderGroupMXBeanImpl implements AisReaderGroupMXBean {
         AisTcpReader reader = AisReaders.createReader(oneOrMorHosts);
         reader.setSourceId(sourceId);
         group.add(reader);
-        reader.start();
+        group.start(reader);
     }
 
     /** {@inheritDoc} */
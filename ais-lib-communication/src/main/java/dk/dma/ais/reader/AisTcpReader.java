@@ -63,6 +63,9 @@ public class AisTcpReader extends AisReader {
     List<HostAndPort> hosts = new ArrayList<>();
     int currentHostIndex = -1;
 
+    /** The connection when reading on an {@link AisTcpReaderEngine}, otherwise null */
+    volatile AisTcpReaderEngine.Connection connection;
+
     // /**
     // * Constructor with hostname and port
     // *
@@ -84,6 +87,17 @@ public class AisTcpReader extends AisReader {
         currentHostIndex++;
     }
 
+    /**
+     * Starts reading on the I/O threads of the specified engine instead of in a thread of its own. The reader should
+     * not be started with {@link #start()} as well.
+     * 
+     * @param engine
+     *            the engine to read on
+     */
+    public void start(AisTcpReaderEngine engine) {
+        engine.register(this);
+    }
+
     /**
      * Main read loop
      */
@@ -110,11 +124,16 @@ public class AisTcpReader extends AisReader {
                         return;
                     }
                 }
-                currentHostIndex = (currentHostIndex + 1) % hosts.size();
+                nextHost();
             }
         }
     }
 
+    /** Continues with the next host, round-robin */
+    void nextHost() {
+        currentHostIndex = (currentHostIndex + 1) % hosts.size();
+    }
+
     @Override
     public void stopReader() {
         super.stopReader();
@@ -122,6 +141,10 @@ public class AisTcpReader extends AisReader {
             // Close socket if open
             clientSocket.get().close();
         } catch (IOException ignored) {}
+        AisTcpReaderEngine.Connection c = connection;
+        if (c != null) {
+            c.wakeup();
+        }
     }
 
     protected void connect() throws IOException {
@@ -0,0 +1,501 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.net.HostAndPort;
+
+/**
+ * Reads from many {@link AisTcpReader}s using non-blocking sockets, multiplexed onto a small fixed number of I/O
+ * threads, instead of one thread per reader.
+ * <p>
+ * Each reader is assigned to one I/O thread, which connects to its hosts, reads into a direct buffer and parses the
+ * packets out of it. The connection handling of {@link AisTcpReader} is kept: on errors and read timeouts the reader
+ * waits the reconnect interval and continues with the next host, and when the remote end closes the connection it
+ * reconnects to the same host right away.
+ * <p>
+ * Host names are resolved on a separate thread, so a slow name server does not hold up the other connections of the
+ * I/O thread. A failure in the handling of one connection, including the packet handlers of its reader, only fails that
+ * connection. Bytes sent to a source are queued and written by the I/O thread when the socket accepts them.
+ * 
+ * @see AisTcpReader#start(AisTcpReaderEngine)
+ * @see AisReaderGroup#setIoThreads(int)
+ */
+@ThreadSafe
+public class AisTcpReaderEngine implements AutoCloseable {
+
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger(AisTcpReaderEngine.class);
+
+    /** The size of the read buffer of each connection, and thereby the maximum length of a line */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** How often read and connect timeouts are checked */
+    private static final long TIMEOUT_CHECK_INTERVAL = 1000;
+
+    /** The time allowed for resolving and connecting to a host, if the reader has no read timeout */
+    static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    private final IoThread[] threads;
+
+    /** Resolves host names outside the I/O threads */
+    private final ExecutorService resolver;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new engine and starts its I/O threads
+     * 
+     * @param ioThreads
+     *            the number of I/O threads
+     * @throws IOException
+     *             if a selector could not be opened
+     */
+    public AisTcpReaderEngine(int ioThreads) throws IOException {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("ioThreads must be at least 1, was " + ioThreads);
+        }
+        resolver = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "AisTcpReaderEngine-resolver");
+            t.setDaemon(true);
+            return t;
+        });
+        threads = new IoThread[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            threads[i] = new IoThread("AisTcpReaderEngine-" + i);
+        }
+        for (IoThread t : threads) {
+            t.start();
+        }
+    }
+
+    /**
+     * Starts reading for the reader on one of the I/O threads
+     */
+    void register(AisTcpReader reader) {
+        requireNonNull(reader);
+        if (closed) {
+            throw new IllegalStateException("Engine has been closed");
+        }
+        IoThread t = threads[Math.floorMod(next.getAndIncrement(), threads.length)];
+        Connection c = new Connection(reader, t);
+        reader.connection = c;
+        t.execute(() -> t.connect(c));
+    }
+
+    /**
+     * Stops the I/O threads and closes all connections
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        resolver.shutdownNow();
+        for (IoThread t : threads) {
+            t.selector.wakeup();
+        }
+        for (IoThread t : threads) {
+            t.join();
+        }
+    }
+
+    /** The state of a reader on an I/O thread */
+    static final class Connection {
+        final AisTcpReader reader;
+        final IoThread thread;
+        final ByteLineParser parser;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        volatile SocketChannel channel;
+
+        /** The output of the current channel */
+        volatile ChannelOutputStream output;
+
+        /** Counts the connection attempts, so the result of an outdated host name lookup can be ignored */
+        int attempt;
+
+        /** When the current connection attempt times out, 0 if none is in progress */
+        long connectDeadline;
+
+        /** When something was last read, for read timeouts */
+        long lastRead;
+
+        /** When to reconnect */
+        long reconnectAt;
+
+        Connection(AisTcpReader reader, IoThread thread) {
+            this.reader = reader;
+            this.thread = thread;
+            this.parser = new ByteLineParser(reader, null);
+        }
+
+        /** Wakes up the I/O thread to notice the reader has stopped */
+        void wakeup() {
+            thread.selector.wakeup();
+        }
+    }
+
+    /**
+     * Queues the bytes written for the I/O thread, which writes them to the channel when it accepts them. Used for
+     * sending, which is rare.
+     */
+    static final class ChannelOutputStream extends OutputStream {
+        private final Connection connection;
+
+        private final SocketChannel channel;
+
+        private final ConcurrentLinkedQueue<ByteBuffer> pending = new ConcurrentLinkedQueue<>();
+
+        ChannelOutputStream(Connection connection, SocketChannel channel) {
+            this.connection = connection;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!channel.isOpen()) {
+                throw new IOException("Connection closed");
+            }
+            pending.add(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+            connection.thread.execute(() -> connection.thread.writePending(connection, this));
+        }
+
+        /**
+         * Writes the queued bytes until the channel does not accept more, runs in the I/O thread
+         *
+         * @return true if all queued bytes have been written
+         */
+        boolean writeQueued() throws IOException {
+            for (ByteBuffer bb = pending.peek(); bb != null; bb = pending.peek()) {
+                channel.write(bb);
+                if (bb.hasRemaining()) {
+                    return false;
+                }
+                pending.poll();
+            }
+            return true;
+        }
+    }
+
+    /** An I/O thread with its selector */
+    final class IoThread extends Thread {
+        final Selector selector;
+
+        /** Tasks to run in this thread */
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        /** Connections waiting to reconnect, by time */
+        final PriorityQueue<Connection> reconnects = new PriorityQueue<>(
+                (a, b) -> Long.compare(a.reconnectAt, b.reconnectAt));
+
+        /** All connections of this thread */
+        final List<Connection> connections = new ArrayList<>();
+
+        /** When to check the timeouts next */
+        private long nextTimeoutCheck;
+
+        IoThread(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        void execute(Runnable r) {
+            tasks.add(r);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            nextTimeoutCheck = System.currentTimeMillis() + TIMEOUT_CHECK_INTERVAL;
+            try {
+                while (!closed) {
+                    try {
+                        runOnce();
+                    } catch (RuntimeException e) {
+                        // Failures of a single connection are handled below, this keeps the other connections going
+                        LOG.error("Unexpected failure in I/O thread", e);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("I/O thread failed", e);
+            } finally {
+                for (Connection c : connections) {
+                    close(c);
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignore) {}
+            }
+        }
+
+        /** Waits for and handles the next events */
+        private void runOnce() throws IOException {
+            long now = System.currentTimeMillis();
+            long wait = nextTimeoutCheck - now;
+            Connection first = reconnects.peek();
+            if (first != null) {
+                wait = Math.min(wait, first.reconnectAt - now);
+            }
+            if (wait > 0) {
+                selector.select(wait);
+            } else {
+                selector.selectNow();
+            }
+            for (Runnable r = tasks.poll(); r != null; r = tasks.poll()) {
+                try {
+                    r.run();
+                } catch (RuntimeException e) {
+                    LOG.error("I/O task failed", e);
+                }
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                handle(key, (Connection) key.attachment());
+            }
+            now = System.currentTimeMillis();
+            while (!reconnects.isEmpty() && reconnects.peek().reconnectAt <= now) {
+                Connection c = reconnects.poll();
+                c.reader.nextHost();
+                connect(c);
+            }
+            if (now >= nextTimeoutCheck) {
+                checkTimeouts(now);
+                nextTimeoutCheck = now + TIMEOUT_CHECK_INTERVAL;
+            }
+        }
+
+        /**
+         * Drops stopped readers and fails connections that have not received anything within the timeout, or have not
+         * connected before the deadline
+         */
+        private void checkTimeouts(long now) {
+            for (Iterator<Connection> it = connections.iterator(); it.hasNext();) {
+                Connection c = it.next();
+                if (c.reader.isShutdown()) {
+                    close(c);
+                    reconnects.remove(c);
+                    it.remove();
+                } else if (c.connectDeadline > 0 && now >= c.connectDeadline) {
+                    LOG.error("Could not connect to: " + c.reader.currentHost() + ": Connect timed out");
+                    fail(c, new SocketTimeoutException("Connect timed out"));
+                } else if (c.reader.timeout > 0 && c.channel != null && c.channel.isConnected()
+                        && now - c.lastRead > c.reader.timeout * 1000L) {
+                    fail(c, new SocketTimeoutException("Read timed out"));
+                }
+            }
+        }
+
+        /** Starts connecting to the current host of the reader, by resolving its name on the resolver thread */
+        void connect(Connection c) {
+            if (!connections.contains(c)) {
+                connections.add(c);
+            }
+            if (c.reader.isShutdown()) {
+                return;
+            }
+            HostAndPort host = c.reader.currentHost();
+            LOG.info("Connecting to source " + host);
+            int attempt = ++c.attempt;
+            long timeout = c.reader.timeout > 0 ? c.reader.timeout * 1000L : DEFAULT_CONNECT_TIMEOUT;
+            c.connectDeadline = System.currentTimeMillis() + timeout;
+            try {
+                resolver.execute(() -> {
+                    InetSocketAddress address = new InetSocketAddress(host.getHostText(), host.getPort());
+                    execute(() -> {
+                        // Ignore the lookup if the attempt has timed out or the reader has moved on
+                        if (c.attempt == attempt) {
+                            connect(c, host, address);
+                        }
+                    });
+                });
+            } catch (RejectedExecutionException e) {
+                // the engine has been closed
+            }
+        }
+
+        /** Connects to the resolved address, runs in the I/O thread */
+        private void connect(Connection c, HostAndPort host, InetSocketAddress address) {
+            if (c.reader.isShutdown()) {
+                return;
+            }
+            try {
+                if (address.isUnresolved()) {
+                    LOG.error("Unknown host: " + host.getHostText());
+                    throw new UnknownHostException(host.getHostText());
+                }
+                SocketChannel ch = SocketChannel.open();
+                c.channel = ch;
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                c.reader.clientSocket.set(ch.socket());
+                if (ch.connect(address)) {
+                    connected(c);
+                } else {
+                    ch.register(selector, SelectionKey.OP_CONNECT, c);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!c.reader.isShutdown() && !(e instanceof UnknownHostException)) {
+                    LOG.error("Could not connect to: " + host + ": " + e.getMessage());
+                }
+                fail(c, e);
+            }
+        }
+
+        private void connected(Connection c) throws IOException {
+            SocketChannel ch = c.channel;
+            c.connectDeadline = 0;
+            c.output = new ChannelOutputStream(c, ch);
+            c.reader.outputStream = c.output;
+            c.buffer.clear();
+            c.parser.reset();
+            c.lastRead = System.currentTimeMillis();
+            ch.register(selector, SelectionKey.OP_READ, c);
+            LOG.info("Connected to source " + c.reader.currentHost());
+        }
+
+        private void handle(SelectionKey key, Connection c) {
+            try {
+                if (!key.isValid() || c.reader.isShutdown()) {
+                    close(c);
+                    return;
+                }
+                if (key.isConnectable()) {
+                    c.channel.finishConnect();
+                    connected(c);
+                    return;
+                }
+                if (key.isWritable()) {
+                    writePending(c, c.output);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read(c);
+                }
+            } catch (IOException e) {
+                if (!c.reader.isShutdown()) {
+                    LOG.error("Could not connect to: " + c.reader.currentHost() + ": " + e.getMessage());
+                }
+                fail(c, e);
+            } catch (RuntimeException e) {
+                // Most likely thrown by a packet handler of the reader, only this connection is affected
+                LOG.error("Failed to handle data from " + c.reader.currentHost(), e);
+                fail(c, e);
+            }
+        }
+
+        /** Writes the bytes queued on the output, and waits for the channel to become writable if needed */
+        void writePending(Connection c, ChannelOutputStream output) {
+            if (output == null || output != c.output) {
+                return; // the connection has been closed since
+            }
+            SelectionKey key = c.channel.keyFor(selector);
+            try {
+                boolean done = output.writeQueued();
+                if (key != null && key.isValid()) {
+                    key.interestOps(done ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                if (!c.reader.isShutdown()) {
+                    LOG.error("Could not write to: " + c.reader.currentHost() + ": " + e.getMessage());
+                }
+                fail(c, e);
+            }
+        }
+
+        private void read(Connection c) throws IOException {
+            ByteBuffer buffer = c.buffer;
+            int n = c.channel.read(buffer);
+            if (n < 0) {
+                // Closed by the remote end, reconnect to the same host
+                close(c);
+                connect(c);
+                return;
+            }
+            c.lastRead = System.currentTimeMillis();
+            buffer.flip();
+            int start = c.parser.parse(buffer, false);
+            int limit = buffer.limit();
+            if (start == 0 && limit == buffer.capacity()) {
+                LOG.error("Discarding line longer than " + BUFFER_SIZE + " bytes from " + c.reader.currentHost());
+                buffer.clear();
+            } else {
+                buffer.position(start);
+                buffer.compact();
+            }
+        }
+
+        /** Closes the connection and retries after the reconnect interval */
+        private void fail(Connection c, Exception e) {
+            close(c);
+            AisTcpReader reader = c.reader;
+            if (reader.isShutdown()) {
+                return;
+            }
+            LOG.error("Source communication failed: " + e.getMessage() + ": host:port: " + reader.currentHost()
+                    + " Retry in " + reader.reconnectInterval / 1000 + " seconds");
+            reconnects.remove(c);
+            c.reconnectAt = System.currentTimeMillis() + reader.reconnectInterval;
+            reconnects.add(c);
+        }
+
+        private void close(Connection c) {
+            // Outdates any host name lookup or connect in progress
+            c.attempt++;
+            c.connectDeadline = 0;
+            c.output = null;
+            SocketChannel ch = c.channel;
+            if (ch != null) {
+                try {
+                    ch.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+}
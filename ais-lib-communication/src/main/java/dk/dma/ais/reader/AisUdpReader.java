@@ -15,32 +15,62 @@
 package dk.dma.ais.reader;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
-
 import dk.dma.ais.sentence.Abk;
-import java.util.function.Consumer;
+import dk.dma.commons.management.ManagedAttribute;
 
 /**
  * Thread class for reading AIS messages from UDP
- * 
+ * <p>
+ * Datagrams are received into a direct buffer that is reused for every datagram, and the sentences are parsed directly
+ * from it. Each datagram may contain one or more lines, the last line does not have to be terminated.
+ * <p>
+ * More receive threads can be used with {@link #setReceiveThreads(int)}. Each thread then has a socket of its own bound
+ * to the same address with SO_REUSEPORT, and the operating system spreads the senders over the sockets. All datagrams
+ * from one sender are received by the same thread, so multi-sentence messages are assembled correctly. Packet handlers
+ * are called from all of the receive threads.
  */
 public class AisUdpReader extends AisReader {
 
     private static final Logger LOG = LoggerFactory.getLogger(AisUdpReader.class);
 
+    /** The size of the receive buffers, which can hold any datagram */
+    static final int BUFFER_SIZE = 64 * 1024;
+
     private final InetSocketAddress addr;
-    private volatile DatagramSocket socket;
-    private volatile Thread reader;
+
+    private final List<DatagramChannel> channels = new CopyOnWriteArrayList<>();
+
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    private volatile int receiveThreads = 1;
+
+    private volatile int receiveBufferSize;
+
+    /** The number of datagrams received */
+    private final AtomicLong datagramsReceived = new AtomicLong();
+
+    /** The number of bytes received */
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /** The number of lines dropped because they could not be parsed */
+    private final AtomicLong invalidLines = new AtomicLong();
+
+    /** The number of datagrams dropped because they could not be received */
+    private final AtomicLong datagramsDropped = new AtomicLong();
 
     AisUdpReader(int port) {
         this(null, port);
@@ -56,43 +86,116 @@ public class AisUdpReader extends AisReader {
     @Override
     public void run() {
         try {
-            final UdpSentenceInputStream stream = new UdpSentenceInputStream();
-            socket = new DatagramSocket(addr);
-            reader = new Thread() {
-                @Override
-                public void run() {
-                    final byte[] receiveData = new byte[256];
-                    while (true) {
-                        try {
-                            DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                            socket.receive(receivePacket);
-                            String sentence = new String(receivePacket.getData(), 0, receivePacket.getLength(), Charsets.US_ASCII);
-                            stream.push(sentence.getBytes(StandardCharsets.US_ASCII));
-                        } catch (IOException | InterruptedException e) {
-                            if (isShutdown() || isInterrupted()) {
-                                return;
-                            }
-                            LOG.error("Failed to read datagrams", e);
-                            return;
-                        }
-                    }
-                }
-            };
-            reader.start();
-            readLoop(stream);
+            open();
         } catch (IOException e) {
+            closeChannels();
             if (isShutdown() || isInterrupted()) {
                 return;
             }
             LOG.error("Failed to listen for datagrams", e);
+            return;
+        }
+        for (int i = 1; i < channels.size(); i++) {
+            final DatagramChannel channel = channels.get(i);
+            Thread t = new Thread(() -> receiveLoop(channel), getName() + "-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        receiveLoop(channels.get(0));
+        closeChannels();
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** Opens the channels, one for each receive thread if SO_REUSEPORT is supported */
+    private void open() throws IOException {
+        int count = receiveThreads;
+        SocketOption<Boolean> reusePort = null;
+        for (int i = 0; i < count; i++) {
+            DatagramChannel channel = DatagramChannel.open();
+            channels.add(channel);
+            if (count > 1) {
+                if (i == 0) {
+                    reusePort = reusePortOption(channel);
+                    if (reusePort == null) {
+                        LOG.warn("SO_REUSEPORT is not supported, receiving with a single thread");
+                        count = 1;
+                    }
+                }
+                if (reusePort != null) {
+                    channel.setOption(reusePort, true);
+                }
+            }
+            if (receiveBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            }
+            channel.bind(addr);
+        }
+    }
+
+    /**
+     * Returns the SO_REUSEPORT option if the platform supports it. It is looked up by name as it is not available
+     * before Java 9.
+     */
+    @SuppressWarnings("unchecked")
+    static SocketOption<Boolean> reusePortOption(DatagramChannel channel) {
+        for (SocketOption<?> o : channel.supportedOptions()) {
+            if (o.name().equals("SO_REUSEPORT") && o.type() == Boolean.class) {
+                return (SocketOption<Boolean>) o;
+            }
+        }
+        return null;
+    }
+
+    private void receiveLoop(DatagramChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteLineParser parser = new ByteLineParser(this, invalidLines);
+        while (!isShutdown()) {
+            buffer.clear();
+            try {
+                channel.receive(buffer);
+            } catch (IOException e) {
+                if (isShutdown() || !channel.isOpen()) {
+                    return;
+                }
+                datagramsDropped.incrementAndGet();
+                LOG.error("Failed to read datagram", e);
+                continue;
+            }
+            buffer.flip();
+            datagramsReceived.incrementAndGet();
+            bytesReceived.addAndGet(buffer.remaining());
+            try {
+                parser.parse(buffer, true);
+            } catch (RuntimeException e) {
+                // Thrown by a packet handler, the following datagrams are still handled
+                LOG.error("Failed to handle datagram", e);
+            }
+        }
+    }
+
+    private void closeChannels() {
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
         }
     }
 
     @Override
     public void stopReader() {
         super.stopReader();
-        socket.close();
-        reader.interrupt();
+        closeChannels();
+        for (Thread t : threads) {
+            t.interrupt();
+        }
     }
 
     @Override
@@ -101,62 +204,63 @@ public class AisUdpReader extends AisReader {
     }
 
     public Status getStatus() {
-        return (socket != null) ? Status.CONNECTED : Status.DISCONNECTED;
+        return (!channels.isEmpty() && channels.get(0).isOpen()) ? Status.CONNECTED : Status.DISCONNECTED;
     }
 
-    public String toString() {
-        return "AisUdpReader [sourceId = " + getSourceId() + "]";
-    }
-    
-    private class UdpSentenceInputStream extends InputStream {
-
-        private final ArrayBlockingQueue<byte[]> queue;
-
-        public UdpSentenceInputStream() {
-            this(1024);
+    /**
+     * Sets the number of threads receiving datagrams. More than one thread requires SO_REUSEPORT, without it a single
+     * thread is used. Must be called before the reader is started.
+     * 
+     * @param receiveThreads
+     *            the number of receive threads
+     * @return this reader
+     */
+    public AisUdpReader setReceiveThreads(int receiveThreads) {
+        if (receiveThreads < 1) {
+            throw new IllegalArgumentException("receiveThreads must be at least 1, was " + receiveThreads);
         }
+        this.receiveThreads = receiveThreads;
+        return this;
+    }
 
-        public UdpSentenceInputStream(int maxLines) {
-            queue = new ArrayBlockingQueue<>(maxLines);
-        }
-        
-        public void push(byte[] packet) throws InterruptedException {
-            queue.put(packet);
+    /**
+     * Sets the size of the socket receive buffer (SO_RCVBUF) in bytes. A larger buffer absorbs larger bursts before the
+     * operating system starts dropping datagrams. Must be called before the reader is started.
+     * 
+     * @param receiveBufferSize
+     *            the size in bytes, or 0 for the operating system default
+     * @return this reader
+     */
+    public AisUdpReader setReceiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize < 0) {
+            throw new IllegalArgumentException("receiveBufferSize must be non-negative, was " + receiveBufferSize);
         }
-        
-        @Override
-        public int read(byte[] b, int off, int len) throws IOException {
-            byte[] packet;
-            try {
-                packet = queue.take();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return 0;
-            }
-            if (len < packet.length) {
-                throw new IOException("Read with too small buffer");
-            }
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
 
-            System.arraycopy(packet, 0, b, off, packet.length);
-            return packet.length;
-        }
+    @ManagedAttribute
+    public long getNumberOfDatagramsReceived() {
+        return datagramsReceived.get();
+    }
 
-        @Override
-        public int read() throws IOException {
-            throw new UnsupportedOperationException();
-        }
+    @ManagedAttribute
+    public long getNumberOfDatagramsDropped() {
+        return datagramsDropped.get();
+    }
 
-        @Override
-        public int read(byte[] b) throws IOException {
-            throw new UnsupportedOperationException();
-        }
-        
-        @Override
-        public long skip(long n) throws IOException {
-            throw new UnsupportedOperationException();
-        }
+    @ManagedAttribute
+    public long getNumberOfInvalidLines() {
+        return invalidLines.get();
+    }
 
+    @Override
+    public long getNumberOfBytesRead() {
+        return bytesReceived.get();
     }
 
+    public String toString() {
+        return "AisUdpReader [sourceId = " + getSourceId() + "]";
+    }
 
 }
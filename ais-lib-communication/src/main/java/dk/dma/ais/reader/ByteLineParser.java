@@ -0,0 +1,171 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketParser;
+import dk.dma.ais.sentence.Abk;
+import dk.dma.ais.sentence.SentenceException;
+import dk.dma.ais.sentence.SentenceLine;
+
+/**
+ * Parses lines directly from a byte buffer and hands the packets to a reader, the way
+ * {@link AisReader#readLoop(java.io.InputStream)} does for streams.
+ */
+@NotThreadSafe
+final class ByteLineParser {
+
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger(ByteLineParser.class);
+
+    private static final byte[] ABK = { '$', 'A', 'I', 'A', 'B', 'K' };
+
+    private final AisReader reader;
+
+    /** Counts lines that could not be parsed, may be null */
+    private final AtomicLong invalidLines;
+
+    private AisPacketParser parser = new AisPacketParser();
+
+    /** The buffer last parsed */
+    private ByteBuffer source;
+
+    /** A view of the source used for single lines */
+    private ByteBuffer line;
+
+    ByteLineParser(AisReader reader, AtomicLong invalidLines) {
+        this.reader = reader;
+        this.invalidLines = invalidLines;
+    }
+
+    /**
+     * Forgets any partly received packet
+     */
+    void reset() {
+        parser = new AisPacketParser();
+    }
+
+    /**
+     * Parses the lines between the position and the limit of the buffer. The buffer is not changed. Lines that cannot
+     * be parsed are logged and counted as invalid, while exceptions thrown by the packet handlers of the reader are
+     * passed on to the caller.
+     * 
+     * @param buffer
+     *            the buffer
+     * @param endsLine
+     *            whether the limit ends a line, as for datagrams, or a line may continue in later data
+     * @return the index of the first byte not parsed, which is the limit if endsLine is true
+     */
+    int parse(ByteBuffer buffer, boolean endsLine) {
+        if (buffer != source) {
+            source = buffer;
+            line = buffer.duplicate();
+        }
+        int start = buffer.position();
+        int limit = buffer.limit();
+        for (int i = start; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(start, i);
+                start = i + 1;
+            }
+        }
+        if (endsLine && start < limit) {
+            parseLine(start, limit);
+            start = limit;
+        }
+        return start;
+    }
+
+    private void parseLine(int start, int end) {
+        line.clear();
+        if (end > start && line.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+        line.position(start);
+        line.limit(end);
+        if (isAbk(line)) {
+            String s = text(line);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Received ABK: " + s);
+            }
+            Abk abk = new Abk();
+            try {
+                abk.parse(new SentenceLine(s));
+                reader.sendThreadPool.handleAbk(abk);
+            } catch (Exception e) {
+                LOG.error("Failed to parse ABK: " + s + ": " + e.getMessage());
+            }
+            reset();
+            return;
+        }
+        AisPacket p;
+        try {
+            p = parser.readLine(line);
+        } catch (SentenceException se) {
+            invalid();
+            LOG.error("Sentence error: " + text(line) + " (possible related proptag: "
+                    + se.getPossibleProprietaryTag() + ")");
+            LOG.debug("Sentence trace: " + se.getMessage());
+            return;
+        } catch (Exception e) {
+            invalid();
+            LOG.error("Sentence line error: " + text(line));
+            LOG.debug("Sentence line error: " + e.getMessage());
+            return;
+        }
+        // Exceptions thrown by the packet handlers are not line errors, and are left to the caller
+        if (p != null) {
+            reader.distribute(p);
+        }
+    }
+
+    private void invalid() {
+        if (invalidLines != null) {
+            invalidLines.incrementAndGet();
+        }
+    }
+
+    /** Returns whether the line contains $AIABK, as {@link Abk#isAbk(String)} */
+    static boolean isAbk(ByteBuffer line) {
+        for (int i = line.position(); i <= line.limit() - ABK.length; i++) {
+            int j = 0;
+            while (j < ABK.length && line.get(i + j) == ABK[j]) {
+                j++;
+            }
+            if (j == ABK.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String text(ByteBuffer line) {
+        byte[] bytes = new byte[line.remaining()];
+        line.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,253 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketParser;
+import dk.dma.ais.sentence.SentenceException;
+
+/**
+ * An uncompressed AIS archive file, read through memory mapping in chunks that can be parsed concurrently.
+ * <p>
+ * The file is split after lines ending a VDM sentence group, so a packet never spans two chunks. Comment blocks and
+ * proprietary tags precede the sentences of their packet, so parsing the chunks one by one gives the same packets as
+ * reading the file from the start.
+ */
+final class MappedArchiveFile {
+
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger(MappedArchiveFile.class);
+
+    /** The default size of chunks */
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /** The file */
+    final Path file;
+
+    /** The start of each chunk followed by the size of the file */
+    private final long[] boundaries;
+
+    /**
+     * Splits the file into chunks
+     * 
+     * @param file
+     *            the file to read
+     * @param chunkSize
+     *            the approximate size of each chunk
+     * @throws IOException
+     *             if the file could not be read
+     */
+    MappedArchiveFile(Path file, int chunkSize) throws IOException {
+        this.file = requireNonNull(file);
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive, was " + chunkSize);
+        }
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long next = chunkSize; next < size;) {
+                long start = findGroupEnd(ch, next, chunkSize);
+                if (start >= size) {
+                    break;
+                }
+                starts.add(start);
+                next = start + chunkSize;
+            }
+            boundaries = new long[starts.size() + 1];
+            for (int i = 0; i < starts.size(); i++) {
+                boundaries[i] = starts.get(i);
+            }
+            boundaries[starts.size()] = size;
+        }
+    }
+
+    /**
+     * Returns the number of chunks.
+     * 
+     * @return the number of chunks
+     */
+    int getChunkCount() {
+        return boundaries.length - 1;
+    }
+
+    /**
+     * Parses the packets of the specified chunk. May be called concurrently for different chunks.
+     * 
+     * @param chunk
+     *            the index of the chunk
+     * @return the packets of the chunk in file order
+     * @throws IOException
+     *             if the file could not be mapped
+     */
+    List<AisPacket> parseChunk(int chunk) throws IOException {
+        long start = boundaries[chunk];
+        int length = (int) (boundaries[chunk + 1] - start);
+        MappedByteBuffer buffer;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ch.map(MapMode.READ_ONLY, start, length);
+        }
+        return parse(buffer);
+    }
+
+    /**
+     * Parses the packets of the lines in the buffer, from position 0 to the limit of the buffer.
+     * 
+     * @param buffer
+     *            the buffer to parse
+     * @return the packets in the buffer
+     */
+    static List<AisPacket> parse(ByteBuffer buffer) {
+        int length = buffer.limit();
+        AisPacketParser parser = new AisPacketParser();
+        List<AisPacket> packets = new ArrayList<>(length / 100);
+        ByteBuffer line = buffer.duplicate();
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(i) == '\n') {
+                readLine(parser, line, lineStart, i, packets);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < length) {
+            readLine(parser, line, lineStart, length, packets);
+        }
+        return packets;
+    }
+
+    private static void readLine(AisPacketParser parser, ByteBuffer line, int start, int end, List<AisPacket> packets) {
+        line.clear();
+        if (end > start && line.get(end - 1) == '\r') {
+            end--;
+        }
+        line.position(start);
+        line.limit(end);
+        try {
+            AisPacket p = parser.readLine(line);
+            if (p != null) {
+                packets.add(p);
+            }
+        } catch (SentenceException se) {
+            LOG.error("Sentence error: " + text(line) + " (possible related proptag: " + se.getPossibleProprietaryTag()
+                    + ")");
+            LOG.debug("Sentence trace: " + se.getMessage());
+        } catch (Exception e) {
+            LOG.error("Sentence line error: " + text(line));
+            LOG.debug("Sentence line error: " + e.getMessage());
+        }
+    }
+
+    private static String text(ByteBuffer line) {
+        byte[] bytes = new byte[line.remaining()];
+        line.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Finds the first position after the specified position, where a line ending a VDM sentence group ends. If no such
+     * line is found within the specified number of bytes, the end of the line at that point is returned.
+     */
+    private static long findGroupEnd(FileChannel ch, long from, int limit) throws IOException {
+        ch.position(from);
+        // Not closed, as that would close the channel
+        InputStream in = new BufferedInputStream(Channels.newInputStream(ch));
+        long pos = from;
+        // Skip the rest of the line we start in
+        for (int b = in.read(); b != -1; b = in.read()) {
+            pos++;
+            if (b == '\n') {
+                break;
+            }
+        }
+        byte[] line = new byte[256];
+        int length = 0;
+        for (int b = in.read(); b != -1; b = in.read()) {
+            pos++;
+            if (b != '\n') {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (byte) b;
+            } else if (endsGroup(line, length) || pos - from > limit) {
+                return pos;
+            } else {
+                length = 0;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Returns whether the line is the last sentence of a VDM or VDO sentence group, that is, whether its fragment
+     * number equals the number of fragments.
+     * 
+     * @param line
+     * @param length
+     * @return
+     */
+    static boolean endsGroup(byte[] line, int length) {
+        // The sentence starts after any comment blocks
+        int i = 0;
+        for (int j = 0; j < length; j++) {
+            if (line[j] == '\\') {
+                i = j + 1;
+            }
+        }
+        if (length - i < 7 || line[i] != '!' && line[i] != '$' || line[i + 3] != 'V' || line[i + 4] != 'D'
+                || line[i + 5] != 'M' && line[i + 5] != 'O' || line[i + 6] != ',') {
+            return false;
+        }
+        int total = 0;
+        for (i += 7; i < length && line[i] != ','; i++) {
+            total = total * 10 + line[i] - '0';
+        }
+        int number = 0;
+        for (i++; i < length && line[i] != ','; i++) {
+            number = number * 10 + line[i] - '0';
+        }
+        return i < length && total > 0 && total == number;
+    }
+
+    /**
+     * Returns whether the file can be memory mapped, that is, whether it is not compressed.
+     * 
+     * @param file
+     * @return
+     */
+    static boolean isMappable(Path file) {
+        String name = file.getFileName().toString();
+        return !name.endsWith(".gz") && !name.endsWith(".zip");
+    }
+}
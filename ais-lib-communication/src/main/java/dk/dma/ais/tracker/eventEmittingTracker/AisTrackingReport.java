@@ -16,22 +16,38 @@
 
 package dk.dma.ais.tracker.eventEmittingTracker;
 
+import com.google.common.base.MoreObjects;
 import dk.dma.ais.message.AisMessage;
 import dk.dma.ais.message.IVesselPositionMessage;
 import dk.dma.ais.packet.AisPacket;
 import dk.dma.commons.util.DateTimeUtil;
 import dk.dma.enav.model.geometry.Position;
-import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 /**
  * A tracking report based on AisPacket (AIS data)
+ *
+ * The values of the report are read from the position message when the report is created. A report read from the
+ * history of a track only has the raw message, and the packet is parsed again when asked for.
  */
-@Immutable
+@NotThreadSafe
 public final class AisTrackingReport extends TrackingReport {
 
-    private final AisPacket packet;
+    /** The packet, created from the raw message when first asked for */
+    private AisPacket packet;
+
+    /** The raw message as ISO-8859-1 bytes, shared with the history and never modified */
+    private final byte[] rawMessage;
+
+    private final long timestamp;
+    private final Position position;
+    private final float courseOverGround;
+    private final float speedOverGround;
+    private final float trueHeading;
 
     public AisTrackingReport(AisPacket aisPacket) {
         AisMessage aisMessage = aisPacket.tryGetAisMessage();
@@ -39,41 +55,92 @@ public final class AisTrackingReport extends TrackingReport {
             throw new IllegalArgumentException("aisPacket must be a position report.");
         }
 
+        IVesselPositionMessage positionMessage = (IVesselPositionMessage) aisMessage;
         this.packet = aisPacket;
+        this.rawMessage = aisPacket.getStringMessage().getBytes(StandardCharsets.ISO_8859_1);
+        this.timestamp = aisPacket.getBestTimestamp();
+        this.position = positionMessage.getPos().getGeoLocation();
+        this.courseOverGround = (float) (positionMessage.getCog() / 10.0);
+        this.speedOverGround = (float) (positionMessage.getSog() / 10.0);
+        int trueHeading = positionMessage.getTrueHeading();
+        this.trueHeading = trueHeading > 500 /* 511 */ ? Float.NaN : trueHeading;
+    }
+
+    /** Creates a report of a raw message kept by a history, with the values read from it when it was added */
+    AisTrackingReport(byte[] rawMessage, long timestamp, Position position, float courseOverGround,
+            float speedOverGround, float trueHeading) {
+        this.rawMessage = rawMessage;
+        this.timestamp = timestamp;
+        this.position = position;
+        this.courseOverGround = courseOverGround;
+        this.speedOverGround = speedOverGround;
+        this.trueHeading = trueHeading;
     }
 
     public AisPacket getPacket() {
+        AisPacket packet = this.packet;
+        if (packet == null) {
+            this.packet = packet = AisPacket.from(new String(rawMessage, StandardCharsets.ISO_8859_1));
+        }
         return packet;
     }
 
+    /** Returns the raw message, which must not be modified */
+    byte[] rawMessage() {
+        return rawMessage;
+    }
+
     @Override
     public long getTimestamp() {
-        return packet.getBestTimestamp();
+        return timestamp;
     }
 
     @Override
     public LocalDateTime getTimestampTyped() {
-        return DateTimeUtil.MILLIS_TO_LOCALDATETIME_UTC.apply(packet.getBestTimestamp());
+        return DateTimeUtil.MILLIS_TO_LOCALDATETIME_UTC.apply(timestamp);
     }
 
     @Override
     public Position getPosition() {
-        return ((IVesselPositionMessage) packet.tryGetAisMessage()).getPos().getGeoLocation();
+        return position;
     }
 
     @Override
     public float getCourseOverGround() {
-        return (float) (((IVesselPositionMessage) packet.tryGetAisMessage()).getCog() / 10.0);
+        return courseOverGround;
     }
 
     @Override
     public float getSpeedOverGround() {
-        return (float) (((IVesselPositionMessage) packet.tryGetAisMessage()).getSog() / 10.0);
+        return speedOverGround;
     }
 
     @Override
     public float getTrueHeading() {
-        int trueHeading = ((IVesselPositionMessage) packet.tryGetAisMessage()).getTrueHeading();
-        return trueHeading > 500 /* 511 */ ? Float.NaN : trueHeading;
+        return trueHeading;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AisTrackingReport)) {
+            return false;
+        }
+        AisTrackingReport that = (AisTrackingReport) o;
+        return timestamp == that.timestamp && Arrays.equals(rawMessage, that.rawMessage);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(rawMessage);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("packet", new String(rawMessage, StandardCharsets.ISO_8859_1))
+                .toString();
     }
 }
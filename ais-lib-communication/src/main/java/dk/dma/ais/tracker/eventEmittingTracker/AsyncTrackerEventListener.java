@@ -0,0 +1,191 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.tracker.eventEmittingTracker;
+
+import dk.dma.ais.bus.OverflowLogger;
+import dk.dma.ais.queue.BlockingMessageQueue;
+import dk.dma.ais.queue.IMessageQueue;
+import dk.dma.ais.queue.MessageQueueOverflowException;
+import dk.dma.ais.queue.MessageQueueReader;
+import dk.dma.ais.queue.RingBufferMessageQueue;
+import dk.dma.ais.queue.WaitStrategy;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackerEvent;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A TrackerEventListener which hands the events to another listener on a thread of its own, through a bounded
+ * queue. A slow listener then no longer holds up the thread updating the tracker.
+ *
+ * When the queue is full the {@link OverflowPolicy} decides whether the tracker waits for the listener or the event
+ * is dropped. A waiting tracker blocks on a {@link BlockingMessageQueue} until the listener has made room, while
+ * dropped events are pushed to a lock free {@link RingBufferMessageQueue}. Events are handed to the listener in the order they were emitted. The listener must be closed to stop
+ * its thread. Events received after the listener has been closed are dropped.
+ */
+@ThreadSafe
+public class AsyncTrackerEventListener implements TrackerEventListener, AutoCloseable {
+
+    static final Logger LOG = LoggerFactory.getLogger(AsyncTrackerEventListener.class);
+
+    /** What to do with an event when the queue of the listener is full */
+    public enum OverflowPolicy {
+        /** Wait for the listener to catch up, holding up the tracker */
+        BLOCK,
+        /** Drop the event */
+        DROP
+    }
+
+    /** The default number of events queued for the listener */
+    public static final int DEFAULT_QUEUE_SIZE = 8192;
+
+    /** The number of events handed to the listener per pull from the queue */
+    static final int PULL_MAX_ELEMENTS = 256;
+
+    /** How long to wait for room in the queue before checking again if the listener has been closed */
+    static final long OFFER_TIMEOUT_MS = 100;
+
+    /** Marks the end of the events */
+    private static final TrackerEvent END = new TrackerEvent() {};
+
+    /** Used for naming threads */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final TrackerEventListener listener;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final IMessageQueue<TrackerEvent> queue;
+
+    /** The queue if waiting when it is full, otherwise null */
+    private final BlockingMessageQueue<TrackerEvent> blockingQueue;
+
+    private final IntSupplier queueSize;
+
+    private final MessageQueueReader<TrackerEvent> reader;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final OverflowLogger overflowLogger = new OverflowLogger(LOG);
+
+    private volatile boolean closed;
+
+    /**
+     * Create an asynchronous listener with the default queue size, waiting when the queue is full.
+     *
+     * @param listener the listener to hand the events to
+     */
+    public AsyncTrackerEventListener(TrackerEventListener listener) {
+        this(listener, DEFAULT_QUEUE_SIZE, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Create an asynchronous listener.
+     *
+     * @param listener the listener to hand the events to
+     * @param queueSize the maximum number of events queued for the listener
+     * @param overflowPolicy what to do with an event when the queue is full
+     */
+    public AsyncTrackerEventListener(TrackerEventListener listener, int queueSize, OverflowPolicy overflowPolicy) {
+        this.listener = requireNonNull(listener);
+        this.overflowPolicy = requireNonNull(overflowPolicy);
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            BlockingMessageQueue<TrackerEvent> q = new BlockingMessageQueue<>(queueSize);
+            this.queue = q;
+            this.blockingQueue = q;
+            this.queueSize = q::size;
+        } else {
+            RingBufferMessageQueue<TrackerEvent> q = new RingBufferMessageQueue<>(queueSize, WaitStrategy.PARK);
+            this.queue = q;
+            this.blockingQueue = null;
+            this.queueSize = q::size;
+        }
+        this.reader = new MessageQueueReader<>(this::receive, queue, PULL_MAX_ELEMENTS);
+        reader.setName("AsyncTrackerEventListener-" + INSTANCES.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void onEvent(TrackerEvent event) {
+        if (closed) {
+            return; // the reader has stopped or is about to
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                // The listener may be closed while waiting, after which the reader no longer makes room
+                while (!blockingQueue.offer(event, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        try {
+            queue.push(event);
+        } catch (MessageQueueOverflowException e) {
+            dropped.incrementAndGet();
+            overflowLogger.log("Tracker event listener overflow [dropped=" + dropped.get() + "]");
+        }
+    }
+
+    /** Hands an event to the listener, runs in the thread of the listener. */
+    private void receive(TrackerEvent event) {
+        if (event == END) {
+            // Makes the reader stop once the events pulled with END are handled
+            reader.finish();
+            return;
+        }
+        try {
+            listener.onEvent(event);
+        } catch (RuntimeException e) {
+            LOG.error("Tracker event listener failed on " + event, e);
+        }
+    }
+
+    /** Returns the number of events dropped because the queue was full. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Returns the number of events waiting to be handed to the listener. */
+    public int getQueueSize() {
+        return queueSize.getAsInt();
+    }
+
+    /**
+     * Stops the thread of the listener once the events already queued have been handed to the listener.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        if (reader.isAlive()) {
+            queue.put(END);
+            reader.join();
+        }
+    }
+}
@@ -19,5 +19,25 @@ package dk.dma.ais.tracker.eventEmittingTracker;
 import dk.dma.ais.tracker.Tracker;
 
 public interface EventEmittingTracker extends Tracker {
+
+    /**
+     * Register a subscriber with the EventBus of the tracker. The events are posted to the methods of the subscriber
+     * annotated with {@link com.google.common.eventbus.Subscribe}.
+     */
     void registerSubscriber(Object subscriber);
+
+    /**
+     * Add a listener which is called directly for each event, on the thread posting the events.
+     *
+     * @param listener the listener
+     * @see AsyncTrackerEventListener
+     */
+    void addListener(TrackerEventListener listener);
+
+    /**
+     * Remove a listener previously added.
+     *
+     * @param listener the listener
+     */
+    void removeListener(TrackerEventListener listener);
 }
@@ -29,6 +29,7 @@ import dk.dma.ais.tracker.eventEmittingTracker.events.CellChangedEvent;
 import dk.dma.ais.tracker.eventEmittingTracker.events.PositionChangedEvent;
 import dk.dma.ais.tracker.eventEmittingTracker.events.TimeEvent;
 import dk.dma.ais.tracker.eventEmittingTracker.events.TrackStaleEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackerEvent;
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.enav.model.geometry.PositionTime;
 import dk.dma.enav.model.geometry.grid.Cell;
@@ -46,16 +47,19 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoField;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 import static java.time.temporal.ChronoUnit.MINUTES;
 import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.util.Objects.requireNonNull;
 
 /**
  * EventEmittingTracker is a tracker which receives a (potentially never-ending) series of AisPackets. It uses these
@@ -79,8 +83,14 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
 
     private final EventBus eventBus = new EventBus();
 
+    /** Whether any subscribers have been registered with the EventBus */
+    private volatile boolean hasSubscribers;
+
+    /** The listeners called directly for each event */
+    private final List<TrackerEventListener> listeners = new CopyOnWriteArrayList<>();
+
     @GuardedBy("tracksLock")
-    final HashMap<Integer, Track> tracks = new HashMap<>(256);
+    final Map<Integer, Track> tracks;
     private final Lock tracksLock = new ReentrantLock();
 
     final Grid grid;
@@ -133,7 +143,15 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
      * @param grid
      */
     public EventEmittingTrackerImpl(Grid grid, int... blackListedMmsis) {
+        this(grid, new HashMap<>(256), blackListedMmsis);
+    }
+
+    /**
+     * Initialize the tracker with the map to keep the tracks in.
+     */
+    EventEmittingTrackerImpl(Grid grid, Map<Integer, Track> tracks, int... blackListedMmsis) {
         this.grid = grid;
+        this.tracks = tracks;
 
         if (blackListedMmsis != null) {
             for (int blackListedMmsi : blackListedMmsis) {
@@ -169,6 +187,14 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
     }
 
     private void performUpdate(long timeOfCurrentUpdate, AisMessage aisMessage, Consumer<Track> trackUpdater) {
+        updateTrack(timeOfCurrentUpdate, aisMessage, trackUpdater);
+        updateTime(timeOfCurrentUpdate);
+    }
+
+    /**
+     * Update the track of the message and post the resulting track events.
+     */
+    void updateTrack(long timeOfCurrentUpdate, AisMessage aisMessage, Consumer<Track> trackUpdater) {
         final int mmsi = aisMessage.getUserId();
 
         if (LOG.isDebugEnabled()) {
@@ -219,11 +245,33 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
                 }
             }
         }
+    }
 
+    /**
+     * Advance the time of the data stream to the time of the current update.
+     */
+    void updateTime(long timeOfCurrentUpdate) {
         mark(timeOfCurrentUpdate);
         tryFireTimeEvent(timeOfCurrentUpdate);
     }
 
+    /**
+     * Post an event to the listeners and subscribers. A failing listener is logged, and does not keep the event from
+     * the other listeners or fail the update, in the same way as a failing subscriber of the EventBus.
+     */
+    void post(TrackerEvent event) {
+        for (TrackerEventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                LOG.error("Tracker event listener failed on " + event, e);
+            }
+        }
+        if (hasSubscribers) {
+            eventBus.post(event);
+        }
+    }
+
     private void firePositionRelatedEvents(Track track, TrackingReport oldTrackingReport, TrackingReport newTrackingReport) {
         Position oldPosition = null;
         Cell oldCell = null;
@@ -236,10 +284,10 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
         Cell newCell = grid.getCell(newPosition);
 
         if (hasChanged(oldPosition, newPosition)) {
-            eventBus.post(new PositionChangedEvent(track, oldPosition));
+            post(new PositionChangedEvent(track, oldPosition));
         }
         if (hasChanged(oldCell, newCell)) {
-            eventBus.post(new CellChangedEvent(track, oldCell == null ? null : oldCell.getCellId()));
+            post(new CellChangedEvent(track, oldCell == null ? null : oldCell.getCellId()));
         }
     }
 
@@ -276,7 +324,7 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
         interpolatedPositions.forEach((t, p) -> {
             Position oldPosition = track.getPosition();
             track.update(t, p, (float) (posMessage.getCog() / 10.0), (float) (posMessage.getSog() / 10.0), posMessage.getTrueHeading());
-            eventBus.post(new PositionChangedEvent(track, oldPosition));
+            post(new PositionChangedEvent(track, oldPosition));
         });
     }
 
@@ -321,18 +369,18 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
         return lastPositionUpdate > 0L && currentPositionUpdate - lastPositionUpdate >= TRACK_INTERPOLATION_REQUIRED_MILLIS;
     }
 
-    private void removeTrack(int mmsi) {
+    void removeTrack(int mmsi) {
         tracksLock.lock();
         try {
             Track track = tracks.get(mmsi);
             tracks.remove(mmsi);
-            eventBus.post(new TrackStaleEvent(track));
+            post(new TrackStaleEvent(track));
         } finally {
             tracksLock.unlock();
         }
     }
 
-    private Track getOrCreateTrack(int mmsi) {
+    Track getOrCreateTrack(int mmsi) {
         Track track;
         tracksLock.lock();
         try {
@@ -361,6 +409,23 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
      */
     public void registerSubscriber(Object subscriber) {
         eventBus.register(subscriber);
+        hasSubscribers = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addListener(TrackerEventListener listener) {
+        listeners.add(requireNonNull(listener));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeListener(TrackerEventListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -447,7 +512,7 @@ public class EventEmittingTrackerImpl implements EventEmittingTracker {
 
         if (millisSinceLastTimeEvent >= TIME_EVENT_PERIOD_MILLIS) {
             TimeEvent timeEvent = new TimeEvent(Instant.ofEpochMilli(timestampMillis), lastTimeEventMillis == 0 ? null : Duration.ofMillis(millisSinceLastTimeEvent));
-            eventBus.post(timeEvent);
+            post(timeEvent);
             lastTimeEventMillis = timestampMillis;
             if (LOG.isDebugEnabled()) {
                 LOG.debug("TimeEvent emitted at time " + timeEvent.getTimestamp() + " msecs (" + timeEvent.getMillisSinceLastMark() + " msecs since last).");
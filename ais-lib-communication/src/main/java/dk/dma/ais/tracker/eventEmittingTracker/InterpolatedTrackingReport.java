@@ -16,11 +16,13 @@
 
 package dk.dma.ais.tracker.eventEmittingTracker;
 
+import com.google.common.base.MoreObjects;
 import dk.dma.commons.util.DateTimeUtil;
 import dk.dma.enav.model.geometry.Position;
 import net.jcip.annotations.NotThreadSafe;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 @NotThreadSafe
 public final class InterpolatedTrackingReport extends TrackingReport {
@@ -68,4 +70,35 @@ public final class InterpolatedTrackingReport extends TrackingReport {
         return trueHeading;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InterpolatedTrackingReport)) {
+            return false;
+        }
+        InterpolatedTrackingReport that = (InterpolatedTrackingReport) o;
+        return timestamp == that.timestamp
+                && Objects.equals(position, that.position)
+                && Float.compare(courseOverGround, that.courseOverGround) == 0
+                && Float.compare(speedOverGround, that.speedOverGround) == 0
+                && Float.compare(trueHeading, that.trueHeading) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, position, courseOverGround, speedOverGround, trueHeading);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("timestamp", timestamp)
+                .add("position", position)
+                .add("courseOverGround", courseOverGround)
+                .add("speedOverGround", speedOverGround)
+                .add("trueHeading", trueHeading)
+                .toString();
+    }
 }
@@ -0,0 +1,308 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.tracker.eventEmittingTracker;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.tracker.Target;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackStaleEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackerEvent;
+import dk.dma.enav.model.geometry.grid.Grid;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An EventEmittingTracker which partitions the tracks by MMSI across a number of shards, each updated by its own
+ * thread. This spreads the work of updating and interpolating tracks over several cores.
+ *
+ * The caller of {@link #update(AisPacket)} only decodes the MMSI of the message and hands the packet to its shard.
+ * As a shard is only updated by its own thread, it needs no locking to update its tracks. The events caused by the
+ * updates are posted to the subscribers by a single event thread in the order the packets were received, merged with
+ * the TimeEvents, so subscribers see the same sequence of events as with {@link EventEmittingTrackerImpl}.
+ *
+ * The tracks are updated ahead of the events, so the track of an event may have been updated further when the
+ * subscriber receives it. {@link #get(int)} and {@link #size()} reflect the updates performed by the shards so far.
+ * The tracker must be closed to stop its threads, and can not be updated once closed.
+ *
+ * Subscribers must not update the tracker they subscribe to. An update waits for room in the queue emptied by the
+ * thread posting the events, so an update from that thread, or from a shard thread, could wait forever. Such updates
+ * are rejected with an IllegalStateException.
+ */
+@ThreadSafe
+public class ShardedEventEmittingTracker extends EventEmittingTrackerImpl implements AutoCloseable {
+
+    static final Logger LOG = LoggerFactory.getLogger(ShardedEventEmittingTracker.class);
+
+    /** The number of updates in flight per shard */
+    static final int UPDATES_PER_SHARD = 1024;
+
+    /** Marks the end of the updates */
+    private static final Future<Result> END = new FutureTask<>(() -> null);
+
+    /** Used for naming threads */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** The shards, each with its part of the tracks */
+    private final Shard[] shards;
+
+    /** The thread of each shard */
+    private final ExecutorService[] shardThreads;
+
+    /** The updates in the order they were received */
+    private final BlockingQueue<Future<Result>> updates;
+
+    /** The thread posting the events */
+    private final Thread eventThread;
+
+    /** The threads of the tracker, which must not update it */
+    private final Set<Thread> ownThreads = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    /**
+     * Initialize the tracker.
+     *
+     * @param grid the grid to detect cell changes in
+     * @param numberOfShards the number of shards to partition the tracks across
+     */
+    public ShardedEventEmittingTracker(Grid grid, int numberOfShards) {
+        this(grid, numberOfShards, null);
+    }
+
+    /**
+     * Initialize the tracker.
+     *
+     * @param grid the grid to detect cell changes in
+     * @param numberOfShards the number of shards to partition the tracks across
+     * @param blackListedMmsis MMSI no.'s for which no messages are processed
+     */
+    public ShardedEventEmittingTracker(Grid grid, int numberOfShards, int... blackListedMmsis) {
+        super(grid, Collections.emptyMap(), blackListedMmsis);
+        if (numberOfShards < 1) {
+            throw new IllegalArgumentException("numberOfShards must be at least 1, was " + numberOfShards);
+        }
+        String name = "EventEmittingTracker-" + INSTANCES.incrementAndGet();
+        shards = new Shard[numberOfShards];
+        shardThreads = new ExecutorService[numberOfShards];
+        for (int i = 0; i < numberOfShards; i++) {
+            shards[i] = new Shard(i, grid, blackListedMmsis);
+            String threadName = name + "-shard-" + i;
+            shardThreads[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                ownThreads.add(t);
+                return t;
+            });
+        }
+        updates = new ArrayBlockingQueue<>(numberOfShards * UPDATES_PER_SHARD);
+        eventThread = new Thread(this::postEvents, name + "-events");
+        eventThread.setDaemon(true);
+        ownThreads.add(eventThread);
+        eventThread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException
+     *             if the tracker has been closed, or the update is made by a subscriber of the tracker
+     */
+    @Override
+    public void update(AisPacket packet) {
+        checkUpdateAllowed();
+        AisMessage header = packet.tryGetLazyAisMessage();
+        if (header != null) {
+            Shard shard = shardOf(header.getUserId());
+            submit(shard, () -> {
+                AisMessage aisMessage = packet.tryGetAisMessage();
+                return aisMessage == null ? null
+                        : shard.update(packet.getBestTimestamp(), aisMessage, track -> track.update(packet));
+            });
+        }
+    }
+
+    @Override
+    void update(long timeOfCurrentUpdate, AisMessage aisMessage) {
+        Shard shard = shardOf(aisMessage.getUserId());
+        submit(shard, () -> shard.update(timeOfCurrentUpdate, aisMessage,
+                track -> track.update(timeOfCurrentUpdate, aisMessage)));
+    }
+
+    private void checkUpdateAllowed() {
+        if (closed) {
+            throw new IllegalStateException("The tracker has been closed");
+        }
+        if (ownThreads.contains(Thread.currentThread())) {
+            throw new IllegalStateException("Subscribers must not update the tracker");
+        }
+    }
+
+    private void submit(Shard shard, Callable<Result> update) {
+        checkUpdateAllowed();
+        FutureTask<Result> task = new FutureTask<>(update);
+        try {
+            // Queue before executing, so the queue bounds the number of updates in flight
+            updates.put(task);
+            shardThreads[shard.index].execute(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            // Closed while this update was being submitted
+            throw new IllegalStateException("The tracker has been closed", e);
+        }
+    }
+
+    /** Posts the events of the updates in the order they were received, runs in the event thread. */
+    private void postEvents() {
+        try {
+            for (Future<Result> update = updates.take(); update != END; update = updates.take()) {
+                Result result;
+                try {
+                    result = update.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Failed to update track", e.getCause());
+                    continue;
+                }
+                if (result != null) {
+                    for (TrackerEvent event : result.events) {
+                        post(event);
+                    }
+                    updateTime(result.timeOfUpdate);
+                }
+            }
+        } catch (InterruptedException ignore) {
+            // closed
+        }
+    }
+
+    Shard shardOf(int mmsi) {
+        int h = mmsi * 0x9E3779B9;
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+    }
+
+    @Override
+    public Target get(int mmsi) {
+        return shardOf(mmsi).tracks.get(mmsi);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Track> getTracks() {
+        List<Track> tracks = new ArrayList<>();
+        for (Shard shard : shards) {
+            tracks.addAll(shard.tracks.values());
+        }
+        return tracks;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        int n = 0;
+        for (Shard shard : shards) {
+            n += shard.tracks.size();
+        }
+        return n;
+    }
+
+    /**
+     * Stops the tracker. The updates already received are processed and their events posted before this method
+     * returns.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        updates.put(END);
+        eventThread.join();
+        for (ExecutorService e : shardThreads) {
+            e.shutdown();
+        }
+    }
+
+    /** The events caused by an update */
+    static final class Result {
+        final long timeOfUpdate;
+        final List<TrackerEvent> events;
+
+        Result(long timeOfUpdate, List<TrackerEvent> events) {
+            this.timeOfUpdate = timeOfUpdate;
+            this.events = events;
+        }
+    }
+
+    /** A part of the tracks, only updated by the thread of the shard. */
+    @NotThreadSafe
+    static final class Shard extends EventEmittingTrackerImpl {
+        final int index;
+
+        /** Collects the events of the current update */
+        private List<TrackerEvent> events;
+
+        Shard(int index, Grid grid, int... blackListedMmsis) {
+            super(grid, new ConcurrentHashMap<>(256), blackListedMmsis);
+            this.index = index;
+        }
+
+        Result update(long timeOfCurrentUpdate, AisMessage aisMessage, Consumer<Track> trackUpdater) {
+            events = new ArrayList<>(2);
+            updateTrack(timeOfCurrentUpdate, aisMessage, trackUpdater);
+            Result result = new Result(timeOfCurrentUpdate, events);
+            events = null;
+            return result;
+        }
+
+        @Override
+        void post(TrackerEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        Track getOrCreateTrack(int mmsi) {
+            return tracks.computeIfAbsent(mmsi, Track::new);
+        }
+
+        @Override
+        void removeTrack(int mmsi) {
+            post(new TrackStaleEvent(tracks.remove(mmsi)));
+        }
+    }
+}
@@ -30,20 +30,14 @@ import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-import static java.util.Comparator.comparingLong;
-
 /**
  * The Track class contains the consolidated information known about a given target - likely as the result
  * of several received AIS messages.
@@ -65,14 +59,12 @@ public final class Track extends Target implements Cloneable {
 
     private Lock trackLock = new ReentrantLock();
 
-    private static final Comparator<TrackingReport> byTimestamp = comparingLong(TrackingReport::getTimestamp);
-    private static final Supplier<TreeSet<TrackingReport>> treeSetSupplier = () -> new TreeSet<>(byTimestamp);
     private boolean positionReportPurgeEnable = true;
 
     public final static int MAX_AGE_POSITION_REPORTS_MINUTES = 20;
 
     @GuardedBy("trackLock")
-    private TreeSet<TrackingReport> trackingReports = treeSetSupplier.get();
+    private TrackingReportHistory trackingReports = new TrackingReportHistory();
 
     @GuardedBy("trackLock")
     private final Map<String, Object> properties = new HashMap<>(3);
@@ -138,9 +130,7 @@ public final class Track extends Target implements Cloneable {
         clone.trackLock = new ReentrantLock();
 
         // Deep copy collection
-        TreeSet<TrackingReport> trackingReportsClone = treeSetSupplier.get();
-        clone.trackingReports.forEach(tr -> trackingReportsClone.add(tr));
-        clone.trackingReports = trackingReportsClone;
+        clone.trackingReports = trackingReports.copy();
 
         return clone;
     }
@@ -302,14 +292,7 @@ public final class Track extends Target implements Cloneable {
     public long getTimeOfLastAisTrackingReport() {
         try {
             trackLock.lock();
-            return trackingReports
-                .stream()
-                .filter(tr -> tr instanceof AisTrackingReport)
-                .max(Comparator.comparing(tr -> tr.getTimestamp()))
-                .get()
-                .getTimestamp();
-        } catch(NoSuchElementException e) {
-            return -1;
+            return trackingReports.lastAisTimestamp();
         } finally {
             trackLock.unlock();
         }
@@ -363,12 +346,11 @@ public final class Track extends Target implements Cloneable {
 
             trackingReports.add(trackingReport);
             timeOfLastUpdate = trackingReport.getTimestamp();
-            timeOfLastPositionReport = trackingReports.last().getTimestamp();
+            timeOfLastPositionReport = trackingReports.lastTimestamp();
+            purgeTrackingReports(MAX_AGE_POSITION_REPORTS_MINUTES);
         } finally {
             trackLock.unlock();
         }
-
-        purgeTrackingReports(MAX_AGE_POSITION_REPORTS_MINUTES);
     }
 
     /** Get the oldest reported position report kept. */
@@ -377,7 +359,6 @@ public final class Track extends Target implements Cloneable {
         try {
             trackLock.lock();
             oldestTrackingReport = trackingReports.first();
-        } catch(NoSuchElementException e)  {
         } finally {
             trackLock.unlock();
         }
@@ -390,7 +371,6 @@ public final class Track extends Target implements Cloneable {
         try {
             trackLock.lock();
             mostRecentTrackingReport = trackingReports.last();
-        } catch(NoSuchElementException e)  {
         } finally {
             trackLock.unlock();
         }
@@ -402,14 +382,7 @@ public final class Track extends Target implements Cloneable {
         TrackingReport trackingReportAtT = null;
         try {
             trackLock.lock();
-            Iterator<TrackingReport> iterator = trackingReports.iterator();
-            while(iterator.hasNext()) {
-                trackingReportAtT = iterator.next();
-                if (trackingReportAtT.getTimestamp() == t) {
-                    break;
-                }
-                trackingReportAtT = null;
-            }
+            trackingReportAtT = trackingReports.at(t);
         } finally {
             trackLock.unlock();
         }
@@ -426,7 +399,7 @@ public final class Track extends Target implements Cloneable {
         ImmutableList<TrackingReport> trackingReports1 = null;
         try {
             trackLock.lock();
-            trackingReports1 = ImmutableList.copyOf(trackingReports);
+            trackingReports1 = ImmutableList.copyOf(trackingReports.toList());
         } finally {
             trackLock.unlock();
         }
@@ -441,17 +414,15 @@ public final class Track extends Target implements Cloneable {
      */
     private void purgeTrackingReports(int maxAgeMinutes) {
         if (positionReportPurgeEnable) {
-            TrackingReport newestTrackingReport = getNewestTrackingReport();
-            if (newestTrackingReport != null) {
-                long now = newestTrackingReport.getTimestamp();
-                long oldestKept = now - maxAgeMinutes * 60 * 1000;
-
-                trackLock.lock();
-                try {
-                    trackingReports.removeIf(tr -> tr.getTimestamp() < oldestKept);
-                } finally {
-                    trackLock.unlock();
+            trackLock.lock();
+            try {
+                if (!trackingReports.isEmpty()) {
+                    long now = trackingReports.lastTimestamp();
+                    long oldestKept = now - maxAgeMinutes * 60 * 1000;
+                    trackingReports.purgeOlderThan(oldestKept);
                 }
+            } finally {
+                trackLock.unlock();
             }
         }
     }
@@ -0,0 +1,64 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.tracker.eventEmittingTracker;
+
+import dk.dma.ais.tracker.eventEmittingTracker.events.CellChangedEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.PositionChangedEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TimeEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackStaleEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackerEvent;
+
+/**
+ * A listener for the events of an EventEmittingTracker. The listener is called directly by the tracker for each
+ * event, without the reflection based lookup of the EventBus. Override the methods of the events of interest.
+ *
+ * The methods are called on the thread updating the tracker, so a listener doing heavy work should be wrapped in an
+ * {@link AsyncTrackerEventListener} to be called on a thread of its own.
+ *
+ * @see EventEmittingTracker#addListener(TrackerEventListener)
+ */
+public interface TrackerEventListener {
+
+    /** Called when a track has entered a new grid cell. */
+    default void onCellChanged(CellChangedEvent event) {}
+
+    /** Called when the position of a track has been updated. */
+    default void onPositionChanged(PositionChangedEvent event) {}
+
+    /** Called when a track has gone stale and been removed. */
+    default void onTrackStale(TrackStaleEvent event) {}
+
+    /** Called periodically as the time of the data stream advances. */
+    default void onTime(TimeEvent event) {}
+
+    /**
+     * Called for every event, calls the method of the type of the event.
+     *
+     * @param event the event
+     */
+    default void onEvent(TrackerEvent event) {
+        if (event instanceof PositionChangedEvent) {
+            onPositionChanged((PositionChangedEvent) event);
+        } else if (event instanceof CellChangedEvent) {
+            onCellChanged((CellChangedEvent) event);
+        } else if (event instanceof TimeEvent) {
+            onTime((TimeEvent) event);
+        } else if (event instanceof TrackStaleEvent) {
+            onTrackStale((TrackStaleEvent) event);
+        }
+    }
+}
@@ -33,25 +33,45 @@ import java.util.Map;
 @NotThreadSafe
 public abstract class TrackingReport implements Cloneable {
 
-    private Map<String, Object> properties = new HashMap<>(2);
+    /** The properties, created when the first property is set */
+    private Map<String, Object> properties;
+
+    /** The history keeping the properties of the report, if the report has been added to one */
+    private TrackingReportHistory history;
 
     public Object getProperty(String propertyName) {
-        return properties.get(propertyName);
+        return properties == null ? null : properties.get(propertyName);
     }
 
     public void setProperty(String propertyName, Object propertyValue) {
+        if (properties == null) {
+            properties = history == null ? new HashMap<>(2) : history.propertiesOf(getTimestamp());
+        }
         properties.put(propertyName, propertyValue);
     }
 
     public void removeProperty(String propertyName) {
-        properties.remove(propertyName);
+        if (properties != null) {
+            properties.remove(propertyName);
+        }
+    }
+
+    /** Returns the properties, or null if no property has been set */
+    Map<String, Object> properties() {
+        return properties;
+    }
+
+    /** Shares the properties kept for the report by a history, which may be null if none has been set yet. */
+    void attach(TrackingReportHistory history, Map<String, Object> properties) {
+        this.history = history;
+        this.properties = properties;
     }
 
     @Override
     protected Object clone() throws CloneNotSupportedException {
         TrackingReport clone = (TrackingReport) super.clone();
-        clone.properties = new HashMap<>(2);
-        properties.forEach((k,v) -> properties.put(k,v));
+        clone.properties = properties == null ? null : new HashMap<>(properties);
+        clone.history = null;
         return clone;
     }
 
@@ -0,0 +1,284 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.tracker.eventEmittingTracker;
+
+import dk.dma.enav.model.geometry.Position;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The tracking reports of a track, ordered by timestamp and kept in a ring of parallel primitive arrays.
+ *
+ * Reports are normally added in timely order, which appends them to the ring, and purged from the oldest end, which
+ * only moves the start of the ring. A report with the same timestamp as a report already kept is ignored. Reports are
+ * looked up by timestamp with a binary search.
+ *
+ * The reports are not kept as objects, but created when read, except for the newest report which is kept until the
+ * reports change. Of an AIS report only the raw message is kept, so it is returned as an AisTrackingReport that parses
+ * the packet again if asked for it. Other reports are returned as InterpolatedTrackingReports. Few reports have
+ * properties, so they are kept in a separate map by timestamp and shared with the reports returned. Reports are
+ * typically changed outside the lock of the track, so the map is concurrent.
+ */
+@NotThreadSafe
+final class TrackingReportHistory {
+
+    /** The initial capacity, must be a power of two */
+    static final int INITIAL_CAPACITY = 8;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private float[] coursesOverGround = new float[INITIAL_CAPACITY];
+    private float[] speedsOverGround = new float[INITIAL_CAPACITY];
+    private float[] trueHeadings = new float[INITIAL_CAPACITY];
+
+    /** The raw messages of the AIS reports, null for interpolated reports */
+    private byte[][] rawMessages = new byte[INITIAL_CAPACITY][];
+
+    /** The properties of the reports that have any, by timestamp */
+    private final ConcurrentSkipListMap<Long, Map<String, Object>> properties = new ConcurrentSkipListMap<>();
+
+    /** The index of the oldest report in the arrays */
+    private int first;
+
+    /** The number of reports kept */
+    private int size;
+
+    /** The newest report, null if it has not been read since the reports changed */
+    private TrackingReport last;
+
+    /** Returns the index in the arrays of the i'th oldest report */
+    private int index(int i) {
+        return (first + i) & (timestamps.length - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add a tracking report.
+     *
+     * @return false if a report with the same timestamp is already kept, in which case the report is not added
+     */
+    boolean add(TrackingReport trackingReport) {
+        long timestamp = trackingReport.getTimestamp();
+        int i = size;
+        if (size > 0 && timestamp <= timestamps[index(size - 1)]) {
+            // Not newer than the newest report, find its place
+            i = search(timestamp);
+            if (i >= 0) {
+                return false;
+            }
+            i = -i - 1;
+        }
+        if (size == timestamps.length) {
+            grow();
+        }
+        for (int j = size; j > i; j--) {
+            move(index(j - 1), index(j));
+        }
+        set(index(i), trackingReport);
+        size++;
+        last = null;
+        Map<String, Object> reportProperties = trackingReport.properties();
+        if (reportProperties != null) {
+            properties.put(timestamp, reportProperties);
+        }
+        trackingReport.attach(this, reportProperties);
+        return true;
+    }
+
+    /** Remove the reports older than the given timestamp. */
+    void purgeOlderThan(long timestamp) {
+        while (size > 0 && timestamps[first] < timestamp) {
+            rawMessages[first] = null;
+            first = index(1);
+            size--;
+            last = null;
+        }
+        // Also drops properties set on reports after they were purged
+        properties.headMap(timestamp).clear();
+    }
+
+    /** Returns the i'th oldest report */
+    TrackingReport get(int i) {
+        int j = index(i);
+        Position position = Double.isNaN(latitudes[j]) ? null : Position.create(latitudes[j], longitudes[j]);
+        TrackingReport report;
+        if (rawMessages[j] != null) {
+            report = new AisTrackingReport(rawMessages[j], timestamps[j], position, coursesOverGround[j],
+                    speedsOverGround[j], trueHeadings[j]);
+        } else {
+            report = new InterpolatedTrackingReport(timestamps[j], position, coursesOverGround[j],
+                    speedsOverGround[j], trueHeadings[j]);
+        }
+        report.attach(this, properties.isEmpty() ? null : properties.get(timestamps[j]));
+        return report;
+    }
+
+    /** Returns the properties of the report with the given timestamp, creating them if the report has none. */
+    Map<String, Object> propertiesOf(long timestamp) {
+        return properties.computeIfAbsent(timestamp, t -> new HashMap<>(2));
+    }
+
+    /** Returns the oldest report or null */
+    TrackingReport first() {
+        return size == 0 ? null : get(0);
+    }
+
+    /** Returns the newest report or null */
+    TrackingReport last() {
+        if (size == 0) {
+            return null;
+        }
+        TrackingReport last = this.last;
+        if (last == null) {
+            this.last = last = get(size - 1);
+        } else if (!properties.isEmpty()) {
+            // The properties may have been created through another report with the same timestamp
+            last.attach(this, properties.get(timestamps[index(size - 1)]));
+        }
+        return last;
+    }
+
+    /** Returns the timestamp of the newest report */
+    long lastTimestamp() {
+        return timestamps[index(size - 1)];
+    }
+
+    /** Returns the report with the given timestamp or null */
+    TrackingReport at(long timestamp) {
+        int i = search(timestamp);
+        return i < 0 ? null : get(i);
+    }
+
+    /** Returns the timestamp of the newest AIS report, or -1 if there is none */
+    long lastAisTimestamp() {
+        for (int i = size - 1; i >= 0; i--) {
+            int j = index(i);
+            if (rawMessages[j] != null) {
+                return timestamps[j];
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the reports, oldest first */
+    List<TrackingReport> toList() {
+        List<TrackingReport> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+    /** Returns a copy of the history. */
+    TrackingReportHistory copy() {
+        TrackingReportHistory copy = new TrackingReportHistory();
+        copy.timestamps = timestamps.clone();
+        copy.latitudes = latitudes.clone();
+        copy.longitudes = longitudes.clone();
+        copy.coursesOverGround = coursesOverGround.clone();
+        copy.speedsOverGround = speedsOverGround.clone();
+        copy.trueHeadings = trueHeadings.clone();
+        copy.rawMessages = rawMessages.clone();
+        properties.forEach((t, p) -> copy.properties.put(t, new HashMap<>(p)));
+        copy.first = first;
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    /**
+     * Binary search for the report with the given timestamp.
+     *
+     * @return the position of the report, or (-(insertion point) - 1) if there is none
+     */
+    private int search(long timestamp) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long t = timestamps[index(mid)];
+            if (t < timestamp) {
+                low = mid + 1;
+            } else if (t > timestamp) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void set(int j, TrackingReport trackingReport) {
+        timestamps[j] = trackingReport.getTimestamp();
+        Position position = trackingReport.getPosition();
+        latitudes[j] = position == null ? Double.NaN : position.getLatitude();
+        longitudes[j] = position == null ? Double.NaN : position.getLongitude();
+        coursesOverGround[j] = trackingReport.getCourseOverGround();
+        speedsOverGround[j] = trackingReport.getSpeedOverGround();
+        trueHeadings[j] = trackingReport.getTrueHeading();
+        rawMessages[j] = trackingReport instanceof AisTrackingReport ? ((AisTrackingReport) trackingReport).rawMessage()
+                : null;
+    }
+
+    private void move(int from, int to) {
+        timestamps[to] = timestamps[from];
+        latitudes[to] = latitudes[from];
+        longitudes[to] = longitudes[from];
+        coursesOverGround[to] = coursesOverGround[from];
+        speedsOverGround[to] = speedsOverGround[from];
+        trueHeadings[to] = trueHeadings[from];
+        rawMessages[to] = rawMessages[from];
+    }
+
+    /** Doubles the capacity, moving the oldest report to the start of the arrays. */
+    private void grow() {
+        int length = timestamps.length;
+        int capacity = length * 2;
+        timestamps = unwrap(timestamps, new long[capacity], length);
+        latitudes = unwrap(latitudes, new double[capacity], length);
+        longitudes = unwrap(longitudes, new double[capacity], length);
+        coursesOverGround = unwrap(coursesOverGround, new float[capacity], length);
+        speedsOverGround = unwrap(speedsOverGround, new float[capacity], length);
+        trueHeadings = unwrap(trueHeadings, new float[capacity], length);
+        rawMessages = unwrap(rawMessages, new byte[capacity][], length);
+        first = 0;
+    }
+
+    /** Copies the full ring from oldest to newest into the start of the new array. */
+    private <T> T unwrap(T from, T to, int length) {
+        System.arraycopy(from, first, to, 0, length - first);
+        System.arraycopy(from, 0, to, length - first, first);
+        return to;
+    }
+}
@@ -0,0 +1,256 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.tracker.targetTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import dk.dma.ais.tracker.targetTracker.TargetTracker.MmsiTarget;
+
+/**
+ * A concurrent index of MMSI targets keyed by the primitive MMSI number.
+ * <p>
+ * The index is split into a fixed number of segments, each an open addressing hash table with linear probing. The
+ * targets carry their own MMSI number, so a table slot is just a reference to the target. Lookups are lock free, while
+ * inserts and removals lock the segment. Removed targets leave a tombstone behind that is purged when the segment is
+ * rehashed. Iteration is weakly consistent, like the iterators of {@link java.util.concurrent.ConcurrentHashMap}.
+ */
+@ThreadSafe
+final class MmsiTargetIndex {
+
+    /** The number of segments, must be a power of 2. */
+    private static final int SEGMENTS = 64;
+
+    /** The initial number of slots in a segment, must be a power of 2. */
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    /** Marks a slot where a target has been removed. Never returned from the index. */
+    private static final MmsiTarget TOMBSTONE = new MmsiTarget(-1);
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    MmsiTargetIndex() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Spreads the MMSI numbers, that are far from random, over the hash table.
+     * 
+     * @param mmsi
+     * @return
+     */
+    static int hash(int mmsi) {
+        int h = mmsi;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> 26 & SEGMENTS - 1];
+    }
+
+    /**
+     * Returns the target with the specified MMSI number, or null if there is no such target.
+     * 
+     * @param mmsi
+     * @return
+     */
+    MmsiTarget get(int mmsi) {
+        int h = hash(mmsi);
+        return segmentFor(h).get(mmsi, h);
+    }
+
+    /**
+     * Returns the target with the specified MMSI number, creating it if it does not exist.
+     * 
+     * @param mmsi
+     * @return
+     */
+    MmsiTarget getOrCreate(int mmsi) {
+        int h = hash(mmsi);
+        Segment s = segmentFor(h);
+        MmsiTarget t = s.get(mmsi, h);
+        return t == null ? s.getOrCreate(mmsi, h) : t;
+    }
+
+    /**
+     * Removes the specified target, if it is still in the index.
+     * 
+     * @param target
+     * @return true if the target was removed
+     */
+    boolean remove(MmsiTarget target) {
+        int h = hash(target.mmsi);
+        return segmentFor(h).remove(target, h);
+    }
+
+    /**
+     * Returns the number of targets in the index.
+     * 
+     * @return
+     */
+    int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    /**
+     * Performs the action for each target in the index.
+     * 
+     * @param action
+     */
+    void forEach(Consumer<? super MmsiTarget> action) {
+        for (Segment s : segments) {
+            s.forEach(action);
+        }
+    }
+
+    /**
+     * Returns a stream of all targets in the index. A parallel stream splits the work by segment.
+     * 
+     * @param parallel
+     * @return
+     */
+    Stream<MmsiTarget> stream(boolean parallel) {
+        Stream<Segment> s = Stream.of(segments);
+        return (parallel ? s.parallel() : s).flatMap(Segment::stream);
+    }
+
+    /** A single open addressing hash table. */
+    static final class Segment {
+
+        /** The slots, the table always contains at least one empty slot. Replaced when rehashing. */
+        volatile AtomicReferenceArray<MmsiTarget> table = new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+
+        /** The number of targets in the table. */
+        volatile int size;
+
+        /** The number of slots that are not empty, that is targets and tombstones. */
+        @GuardedBy("this")
+        int used;
+
+        MmsiTarget get(int mmsi, int hash) {
+            AtomicReferenceArray<MmsiTarget> tab = table;
+            int mask = tab.length() - 1;
+            for (int i = hash & mask;; i = i + 1 & mask) {
+                MmsiTarget t = tab.get(i);
+                if (t == null) {
+                    return null;
+                } else if (t.mmsi == mmsi && t != TOMBSTONE) {
+                    return t;
+                }
+            }
+        }
+
+        synchronized MmsiTarget getOrCreate(int mmsi, int hash) {
+            AtomicReferenceArray<MmsiTarget> tab = table;
+            int mask = tab.length() - 1;
+            int free = -1;
+            int i = hash & mask;
+            for (;; i = i + 1 & mask) {
+                MmsiTarget t = tab.get(i);
+                if (t == null) {
+                    break;
+                } else if (t == TOMBSTONE) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if (t.mmsi == mmsi) {
+                    return t;
+                }
+            }
+            MmsiTarget t = new MmsiTarget(mmsi);
+            if (free >= 0) {
+                tab.set(free, t);
+            } else {
+                tab.set(i, t);
+                used++;
+            }
+            size++;
+            if (used > tab.length() - (tab.length() >>> 2)) {
+                rehash(tab);
+            }
+            return t;
+        }
+
+        synchronized boolean remove(MmsiTarget target, int hash) {
+            AtomicReferenceArray<MmsiTarget> tab = table;
+            int mask = tab.length() - 1;
+            for (int i = hash & mask;; i = i + 1 & mask) {
+                MmsiTarget t = tab.get(i);
+                if (t == null) {
+                    return false;
+                } else if (t == target) {
+                    tab.set(i, TOMBSTONE);
+                    size--;
+                    return true;
+                }
+            }
+        }
+
+        /** Rehashes into a new table, growing it if more than half of the slots are targets. */
+        @GuardedBy("this")
+        private void rehash(AtomicReferenceArray<MmsiTarget> tab) {
+            int length = tab.length();
+            if (size > length >>> 1) {
+                length <<= 1;
+            }
+            AtomicReferenceArray<MmsiTarget> newTab = new AtomicReferenceArray<>(length);
+            int mask = length - 1;
+            for (int j = 0; j < tab.length(); j++) {
+                MmsiTarget t = tab.get(j);
+                if (t != null && t != TOMBSTONE) {
+                    int i = hash(t.mmsi) & mask;
+                    while (newTab.get(i) != null) {
+                        i = i + 1 & mask;
+                    }
+                    newTab.set(i, t);
+                }
+            }
+            used = size;
+            table = newTab;
+        }
+
+        void forEach(Consumer<? super MmsiTarget> action) {
+            AtomicReferenceArray<MmsiTarget> tab = table;
+            for (int i = 0; i < tab.length(); i++) {
+                MmsiTarget t = tab.get(i);
+                if (t != null && t != TOMBSTONE) {
+                    action.accept(t);
+                }
+            }
+        }
+
+        Stream<MmsiTarget> stream() {
+            List<MmsiTarget> list = new ArrayList<>(size);
+            forEach(list::add);
+            return list.stream();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.tracker.targetTracker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+import net.jcip.annotations.NotThreadSafe;
+import dk.dma.ais.packet.AisPacketSource;
+import dk.dma.ais.packet.AisPacketTags.SourceType;
+import dk.dma.enav.model.Country;
+
+/**
+ * Constants and encoding helpers of the binary backup format of {@link TargetTrackerFileBackupService}.
+ * <p>
+ * Snapshots and change logs start with {@link #MAGIC} and {@link #VERSION}, followed by segments. A segment has the
+ * size and a CRC32 checksum of its data, followed by the data: a dictionary of the packet sources of the segment, the
+ * number of infos, and each info as the index of its source and the fields written by {@link TargetInfo#writeTo}.
+ * Segments are independent of each other, so they can be decoded in parallel, and a damaged segment only loses the
+ * infos in it.
+ */
+final class TargetBackupFormat {
+
+    static final int MAGIC = 0x41495354; // AIST
+
+    static final int VERSION = 1;
+
+    /** The default number of infos in a segment */
+    static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+    /** The largest segment or byte array accepted when reading, to detect damaged sizes */
+    static final int MAX_SIZE = 1 << 28;
+
+    private TargetBackupFormat() {}
+
+    static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a target backup file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+    }
+
+    /** Writes a byte array that may be null */
+    static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Reads a byte array written by {@link #writeBytes(DataOutput, byte[])} */
+    static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        } else if (length < 0 || length > MAX_SIZE) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeSource(DataOutput out, AisPacketSource source) throws IOException {
+        out.writeBoolean(source != null);
+        if (source != null) {
+            writeString(out, source.getSourceId());
+            Integer baseStation = source.getSourceBaseStation();
+            out.writeInt(baseStation == null ? -1 : baseStation);
+            Country country = source.getSourceCountry();
+            writeString(out, country == null ? null : country.getThreeLetter());
+            SourceType type = source.getSourceType();
+            out.writeByte(type == null ? -1 : type.ordinal());
+            writeString(out, source.getSourceRegion());
+        }
+    }
+
+    static AisPacketSource readSource(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String sourceId = readString(in);
+        int baseStation = in.readInt();
+        String country = readString(in);
+        int type = in.readByte();
+        if (type < -1 || type >= SourceType.values().length) {
+            throw new IOException("Unknown source type " + type);
+        }
+        String region = readString(in);
+        return AisPacketSource.create(sourceId, baseStation == -1 ? null : baseStation,
+                country == null ? null : Country.getByCode(country), type == -1 ? null : SourceType.values()[type],
+                region);
+    }
+
+    /**
+     * Reads the next segment of a file.
+     *
+     * @return the segment, or null at the end of the file
+     * @throws IOException
+     *             if the file ends in the middle of the segment, or the size of the segment is damaged
+     */
+    static Segment readSegment(DataInputStream in) throws IOException {
+        int size;
+        try {
+            size = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (size < 0 || size > MAX_SIZE) {
+            throw new IOException("Invalid segment size " + size);
+        }
+        int checksum = in.readInt();
+        byte[] data = new byte[size];
+        in.readFully(data);
+        return new Segment(data, checksum);
+    }
+
+    /** A segment read from a file, the checksum is verified when decoding it. */
+    static final class Segment {
+        private final byte[] data;
+
+        private final int checksum;
+
+        Segment(byte[] data, int checksum) {
+            this.data = data;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Decodes the infos of the segment.
+         *
+         * @param consumer
+         *            receives the source and info of each info in the segment
+         * @return the number of infos in the segment
+         * @throws IOException
+         *             if the segment is damaged, in which case none of the infos are decoded
+         */
+        int decode(BiConsumer<AisPacketSource, TargetInfo> consumer) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int numberOfSources = in.readInt();
+            if (numberOfSources < 0 || numberOfSources > data.length) {
+                throw new IOException("Invalid number of sources " + numberOfSources);
+            }
+            AisPacketSource[] sources = new AisPacketSource[numberOfSources];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = readSource(in);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int index = in.readInt();
+                if (index < 0 || index >= sources.length) {
+                    throw new IOException("Invalid source index " + index);
+                }
+                consumer.accept(sources[index], TargetInfo.readFrom(in, sources[index]));
+            }
+            return count;
+        }
+    }
+
+    /** Collects infos into a segment. The writer is reset when the segment has been written. */
+    @NotThreadSafe
+    static final class SegmentWriter {
+
+        private final ByteArrayOutputStream infoBytes = new ByteArrayOutputStream(1 << 16);
+
+        private final DataOutputStream infos = new DataOutputStream(infoBytes);
+
+        private final Map<AisPacketSource, Integer> sourceDictionary = new HashMap<>();
+
+        private final List<AisPacketSource> sources = new ArrayList<>();
+
+        private int count;
+
+        void add(TargetInfo info) throws IOException {
+            infos.writeInt(sourceDictionary.computeIfAbsent(info.getPacketSource(), s -> {
+                sources.add(s);
+                return sources.size() - 1;
+            }));
+            info.writeTo(infos);
+            count++;
+        }
+
+        /** Returns the number of infos in the segment */
+        int size() {
+            return count;
+        }
+
+        /** Writes the segment and resets the writer. */
+        void writeTo(OutputStream stream) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(infoBytes.size() + 32 * sources.size() + 8);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(sources.size());
+            for (AisPacketSource s : sources) {
+                writeSource(data, s);
+            }
+            data.writeInt(count);
+            infoBytes.writeTo(data);
+            byte[] b = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(b);
+
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(b.length);
+            out.writeInt((int) crc.getValue());
+            out.write(b);
+
+            infoBytes.reset();
+            sourceDictionary.clear();
+            sources.clear();
+            count = 0;
+        }
+    }
+}
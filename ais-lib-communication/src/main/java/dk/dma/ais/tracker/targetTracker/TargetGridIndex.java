@@ -0,0 +1,271 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.tracker.targetTracker;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import dk.dma.ais.tracker.targetTracker.TargetTracker.MmsiTarget;
+import dk.dma.enav.model.geometry.BoundingBox;
+import dk.dma.enav.model.geometry.CoordinateSystem;
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * A spatial index of MMSI targets in a fixed grid of latitude/longitude cells.
+ * <p>
+ * A target is indexed in the cells of the positions of all its reports, usually a single cell. The index is updated
+ * when the reports of a target change, while holding the lock of the target, and only touches the cells when the
+ * target moves to another cell. Only cells with targets are kept, so the memory used does not depend on the size of
+ * the cells. Lookups are weakly consistent, like the iterators of {@link ConcurrentHashMap}.
+ */
+@ThreadSafe
+final class TargetGridIndex {
+
+    /** The default size of the cells in degrees */
+    static final double DEFAULT_CELL_SIZE = 0.1;
+
+    /** The cells of a target without a position */
+    static final int[] NO_CELLS = new int[0];
+
+    private final double cellSize;
+
+    private final int rows;
+
+    private final int columns;
+
+    /** The targets of each cell with targets, keyed by cell id */
+    private final ConcurrentHashMap<Integer, Set<MmsiTarget>> cells = new ConcurrentHashMap<>();
+
+    TargetGridIndex(double cellSize) {
+        if (!(cellSize > 0 && cellSize <= 90)) {
+            throw new IllegalArgumentException("cellSize must be positive and at most 90 degrees, was " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.rows = (int) Math.ceil(180 / cellSize);
+        this.columns = (int) Math.ceil(360 / cellSize);
+    }
+
+    double getCellSize() {
+        return cellSize;
+    }
+
+    int row(double lat) {
+        return Math.min(rows - 1, Math.max(0, (int) ((lat + 90) / cellSize)));
+    }
+
+    int column(double lon) {
+        return Math.min(columns - 1, Math.max(0, (int) ((lon + 180) / cellSize)));
+    }
+
+    int cellId(int row, int column) {
+        return row * columns + column;
+    }
+
+    /** Returns the id of the cell containing the position */
+    int cellOf(Position position) {
+        return cellId(row(position.getLatitude()), column(position.getLongitude()));
+    }
+
+    /** Returns the bounding box of the cell with the given id */
+    BoundingBox boundingBox(int cellId) {
+        double lat = cellId / columns * cellSize - 90;
+        double lon = cellId % columns * cellSize - 180;
+        return BoundingBox.create(Position.create(lat, lon),
+                Position.create(Math.min(90, lat + cellSize), Math.min(180, lon + cellSize)), CoordinateSystem.CARTESIAN);
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Moves the target to the cells of the positions of its current reports.
+     *
+     * @param target
+     *            the target whose reports have changed
+     */
+    @GuardedBy("target")
+    void reindex(MmsiTarget target) {
+        int[] oldCells = target.cells;
+        int[] newCells = cellsOf(target.infos, oldCells);
+        if (newCells == oldCells) {
+            return;
+        }
+        for (int c : newCells) {
+            if (Arrays.binarySearch(oldCells, c) < 0) {
+                cells.compute(c, (k, set) -> {
+                    if (set == null) {
+                        set = ConcurrentHashMap.newKeySet(4);
+                    }
+                    set.add(target);
+                    return set;
+                });
+            }
+        }
+        for (int c : oldCells) {
+            if (Arrays.binarySearch(newCells, c) < 0) {
+                cells.computeIfPresent(c, (k, set) -> {
+                    set.remove(target);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+        target.cells = newCells;
+    }
+
+    /**
+     * Returns the sorted, distinct cells of the positions of the reports. If they are the current cells, the current
+     * array is returned, so an update that does not move the target allocates nothing.
+     */
+    private int[] cellsOf(TargetInfo[] infos, int[] current) {
+        if (current.length <= Long.SIZE) {
+            long hit = 0;
+            boolean same = true;
+            for (TargetInfo info : infos) {
+                Position p = info.getPosition();
+                if (p != null) {
+                    int i = Arrays.binarySearch(current, cellOf(p));
+                    if (i < 0) {
+                        same = false;
+                        break;
+                    }
+                    hit |= 1L << i;
+                }
+            }
+            if (same && Long.bitCount(hit) == current.length) {
+                return current;
+            }
+        }
+        int[] result = NO_CELLS;
+        for (TargetInfo info : infos) {
+            Position p = info.getPosition();
+            if (p != null) {
+                int c = cellOf(p);
+                if (result.length == 0) {
+                    result = new int[] { c };
+                } else if (Arrays.binarySearch(result, c) < 0) {
+                    result = Arrays.copyOf(result, result.length + 1);
+                    result[result.length - 1] = c;
+                    Arrays.sort(result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the targets of the cell, empty if it has none */
+    Set<MmsiTarget> get(int cellId) {
+        Set<MmsiTarget> set = cells.get(cellId);
+        return set == null ? Collections.<MmsiTarget> emptySet() : set;
+    }
+
+    /**
+     * Performs the action for each target in the cells overlapping the bounding box. A bounding box with a minimum
+     * longitude greater than its maximum longitude crosses the antimeridian. A target is passed once for each of its
+     * cells in the box.
+     */
+    void forEach(BoundingBox bb, Consumer<? super MmsiTarget> action) {
+        forEachCell(bb, (c, set) -> set.forEach(action));
+    }
+
+    /** Performs the action for each cell with targets overlapping the bounding box. */
+    void forEachCell(BoundingBox bb, BiConsumer<Integer, Set<MmsiTarget>> action) {
+        int row0 = row(bb.getMinLat()), row1 = row(bb.getMaxLat());
+        int column0 = column(bb.getMinLon()), column1 = column(bb.getMaxLon());
+        if (bb.getMinLon() <= bb.getMaxLon()) {
+            forEachCell(row0, row1, column0, column1, action);
+        } else if (column1 < column0) {
+            // Crosses the antimeridian, the cells east of the minimum and west of the maximum longitude
+            forEachCell(row0, row1, column0, columns - 1, action);
+            forEachCell(row0, row1, 0, column1, action);
+        } else {
+            // Wraps around nearly all the way, so the ends share a column
+            forEachCell(row0, row1, 0, columns - 1, action);
+        }
+    }
+
+    /**
+     * Performs the action for each target in the cells of the given rows and columns. A target is passed once for each
+     * of its cells in the range.
+     */
+    void forEach(int row0, int row1, int column0, int column1, Consumer<? super MmsiTarget> action) {
+        forEachCell(row0, row1, column0, column1, (c, set) -> set.forEach(action));
+    }
+
+    /** Performs the action for each cell with targets in the given rows and columns. */
+    void forEachCell(int row0, int row1, int column0, int column1, BiConsumer<Integer, Set<MmsiTarget>> action) {
+        long range = (long) (row1 - row0 + 1) * (column1 - column0 + 1);
+        if (range > cells.size()) {
+            // Cheaper to look at the cells with targets
+            cells.forEach((c, set) -> {
+                int r = c / columns, col = c % columns;
+                if (r >= row0 && r <= row1 && col >= column0 && col <= column1) {
+                    action.accept(c, set);
+                }
+            });
+        } else {
+            for (int r = row0; r <= row1; r++) {
+                for (int c = column0; c <= column1; c++) {
+                    int cellId = cellId(r, c);
+                    Set<MmsiTarget> set = cells.get(cellId);
+                    if (set != null) {
+                        action.accept(cellId, set);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the number of cells with targets */
+    int numberOfCells() {
+        return cells.size();
+    }
+
+    /** Returns the number of targets in each cell with targets overlapping the bounding box */
+    Map<Integer, Integer> countByCell(BoundingBox bb) {
+        Map<Integer, Integer> result = new HashMap<>();
+        forEachCell(bb, (c, set) -> {
+            int size = set.size();
+            if (size > 0) {
+                result.put(c, size);
+            }
+        });
+        return result;
+    }
+
+    /** Returns the number of targets in each cell with targets in the given rows and columns */
+    Map<Integer, Integer> countByCell(int row0, int row1, int column0, int column1) {
+        Map<Integer, Integer> result = new HashMap<>();
+        forEachCell(row0, row1, column0, column1, (c, set) -> {
+            int size = set.size();
+            if (size > 0) {
+                result.put(c, size);
+            }
+        });
+        return result;
+    }
+}
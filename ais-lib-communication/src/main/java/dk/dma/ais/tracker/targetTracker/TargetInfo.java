@@ -24,18 +24,21 @@ import dk.dma.ais.message.IVesselPositionMessage;
 import dk.dma.ais.packet.AisPacket;
 import dk.dma.ais.packet.AisPacketSource;
 import dk.dma.ais.tracker.Target;
+import dk.dma.ais.tracker.targetTracker.TargetTracker.MmsiTarget;
 import dk.dma.enav.model.Country;
 import dk.dma.enav.model.geometry.Position;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Immutable information about a target. Whenever we receive a new message from the target. We create a new TargetInfo
- * instance via {@link #updateTarget(TargetInfo, AisPacket, AisTargetType, long, AisPacketSource, Map)}.
+ * instance via {@link #updateTarget(TargetInfo, AisPacket, AisTargetType, long, AisPacketSource, MmsiTarget)}.
  * 
  * @author Kasper Nielsen
  */
@@ -291,12 +294,12 @@ public class TargetInfo extends Target {
      *            the timestamp of the packet
      * @param source
      *            the source of the packet
-     * @param msg24Part0
-     *            a map of cached message type 24 static part 0 messages
+     * @param target
+     *            the target being updated, which caches message type 24 static part 0 messages
      * @return a new target info
      */
     static TargetInfo updateTarget(TargetInfo existing, AisPacket packet, AisTargetType targetType, long timestamp,
-            AisPacketSource source, Map<AisPacketSource, byte[]> msg24Part0) {
+            AisPacketSource source, MmsiTarget target) {
         AisMessage message = packet.tryGetAisMessage();// is non-null
         int mmsi = message.getUserId();
         // ATON and BS targets are easy to handle because they do not contain much other than a position
@@ -311,7 +314,7 @@ public class TargetInfo extends Target {
                     packet.toByteArray(), -1, null, null, -1);
         }
         TargetInfo result = updateTargetWithPosition(existing, packet, message, mmsi, targetType, timestamp, source);
-        return updateTargetWithStatic(packet, message, mmsi, targetType, timestamp, source, result, msg24Part0);
+        return updateTargetWithStatic(packet, message, mmsi, targetType, timestamp, source, result, target);
     }
 
     static TargetInfo updateTargetWithPosition(TargetInfo existing, AisPacket packet, AisMessage message, int mmsi,
@@ -346,7 +349,7 @@ public class TargetInfo extends Target {
     }
 
     static TargetInfo updateTargetWithStatic(AisPacket packet, AisMessage message, int mmsi, AisTargetType targetType,
-            long timestamp, AisPacketSource source, TargetInfo existing, Map<AisPacketSource, byte[]> msg24Part0) {
+            long timestamp, AisPacketSource source, TargetInfo existing, MmsiTarget target) {
         if (message instanceof AisStaticCommon) {
             // only update if never timestamp
             if (existing == null || timestamp >= existing.staticTimestamp) {
@@ -363,12 +366,12 @@ public class TargetInfo extends Target {
                     // AisMessage24 is split into 2 parts, if we get a part 0.
                     // Save in a hash table, where we keep it until we receive part 1
                     if (((AisMessage24) c).getPartNumber() == 0) {
-                        msg24Part0.put(source, packet.toByteArray());
+                        target.putMsg24Part0(source, packet.toByteArray());
                         // we know that existing have not been updated by updateTargetWithPosition because
                         // AisMessage24 only contains static information, so existing=original
                         return existing; // the target is updated when we receive part 1
                     } else {
-                        static0 = msg24Part0.remove(source);
+                        static0 = target.removeMsg24Part0(source);
                         if (static0 == null) {
                             return existing;// We do not have the first part:(
                         }
@@ -391,4 +394,59 @@ public class TargetInfo extends Target {
         return existing;
     }
 
+    /**
+     * Writes the info in the binary format of {@link TargetBackupFormat}, without the packet source.
+     *
+     * @param out
+     *            the output to write to
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(getMmsi());
+        out.writeByte(targetType.ordinal());
+        out.writeLong(positionTimestamp);
+        out.writeBoolean(position != null);
+        if (position != null) {
+            out.writeDouble(position.getLatitude());
+            out.writeDouble(position.getLongitude());
+        }
+        out.writeInt(heading);
+        out.writeFloat(cog);
+        out.writeFloat(sog);
+        out.writeByte(navStatus);
+        TargetBackupFormat.writeBytes(out, positionPacket);
+        out.writeLong(staticTimestamp);
+        TargetBackupFormat.writeBytes(out, staticData1);
+        TargetBackupFormat.writeBytes(out, staticData2);
+        out.writeInt(staticShipType);
+    }
+
+    /**
+     * Reads an info written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in
+     *            the input to read from
+     * @param packetSource
+     *            the source of the info
+     * @return the info
+     */
+    static TargetInfo readFrom(DataInput in, AisPacketSource packetSource) throws IOException {
+        int mmsi = in.readInt();
+        int type = in.readByte();
+        if (type < 0 || type >= AisTargetType.values().length) {
+            throw new IOException("Unknown target type " + type);
+        }
+        long positionTimestamp = in.readLong();
+        Position position = in.readBoolean() ? Position.create(in.readDouble(), in.readDouble()) : null;
+        int heading = in.readInt();
+        float cog = in.readFloat();
+        float sog = in.readFloat();
+        byte navStatus = in.readByte();
+        byte[] positionPacket = TargetBackupFormat.readBytes(in);
+        long staticTimestamp = in.readLong();
+        byte[] staticData1 = TargetBackupFormat.readBytes(in);
+        byte[] staticData2 = TargetBackupFormat.readBytes(in);
+        int staticShipType = in.readInt();
+        return new TargetInfo(packetSource, mmsi, AisTargetType.values()[type], positionTimestamp, position, heading,
+                cog, sog, navStatus, positionPacket, staticTimestamp, staticData1, staticData2, staticShipType);
+    }
 }
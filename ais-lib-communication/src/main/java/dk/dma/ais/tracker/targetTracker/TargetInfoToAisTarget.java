@@ -137,7 +137,7 @@ public class TargetInfoToAisTarget {
         reader.start();
         reader.join();
 
-        tt.targets.values().forEach(new Consumer<MmsiTarget>() {
+        tt.targets.forEach(new Consumer<MmsiTarget>() {
 
             @Override
             public void accept(MmsiTarget t) {
@@ -19,19 +19,30 @@ import dk.dma.ais.message.AisTargetType;
 import dk.dma.ais.packet.AisPacket;
 import dk.dma.ais.packet.AisPacketSource;
 import dk.dma.ais.tracker.Tracker;
+import dk.dma.enav.model.geometry.Area;
+import dk.dma.enav.model.geometry.BoundingBox;
+import dk.dma.enav.model.geometry.Position;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import net.jcip.annotations.GuardedBy;
+
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -39,6 +50,14 @@ import static java.util.Objects.requireNonNull;
  * <p>
  * There are no automatically cleanup instead users must regularly cleanup targets by calling
  * {@link #removeAll(Predicate)}
+ * <p>
+ * Targets are indexed by their primitive MMSI number, and the reports from the different sources of a target are kept
+ * in a small array. This keeps the memory overhead per target low, even with a global picture of hundreds of
+ * thousands of targets.
+ * <p>
+ * The targets are also indexed in a grid of latitude/longitude cells by the positions of their reports, which is kept
+ * up to date as the targets are updated. Spatial queries such as {@link #findWithin(Area)} and
+ * {@link #findNearest(Position, int)} only look at the targets in the cells near the area of interest.
  * 
  * @author Kasper Nielsen
  * @author Jens Tuxen
@@ -46,7 +65,27 @@ import static java.util.Objects.requireNonNull;
 public class TargetTracker implements Tracker {
 
     /** All targets that we are currently monitoring. */
-    final ConcurrentHashMap<Integer, MmsiTarget> targets = new ConcurrentHashMap<>();
+    final MmsiTargetIndex targets = new MmsiTargetIndex();
+
+    /** The targets indexed by the cells of their positions. */
+    final TargetGridIndex grid;
+
+    /**
+     * Creates a new tracker indexing positions in cells of {@value TargetGridIndex#DEFAULT_CELL_SIZE} degrees.
+     */
+    public TargetTracker() {
+        this(TargetGridIndex.DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a new tracker indexing positions in cells of the given size.
+     *
+     * @param cellSize
+     *            the size of the cells of the spatial index in degrees of latitude and longitude
+     */
+    public TargetTracker(double cellSize) {
+        this.grid = new TargetGridIndex(cellSize);
+    }
 
     /**
      * Returns the number of targets that is being tracked. This is usually a lot faster than invoking
@@ -56,8 +95,8 @@ public class TargetTracker implements Tracker {
      */
     public int count(Predicate<? super AisPacketSource> predicate) {
         LongAdder la = new LongAdder();
-        targets.values().stream().forEach(t -> {
-            for (TargetInfo i : t.values()) {
+        targets.forEach(t -> {
+            for (TargetInfo i : t.infos) {
                 if (predicate.test(i.getPacketSource())) {
                     la.increment();
                     return;
@@ -74,8 +113,8 @@ public class TargetTracker implements Tracker {
      */
     public int countNumberOfReports() {
         LongAdder la = new LongAdder();
-        targets.values().forEach(t -> {
-            la.add(t.size());
+        targets.forEach(t -> {
+            la.add(t.infos.length);
         });
         return la.intValue();
     }
@@ -105,7 +144,14 @@ public class TargetTracker implements Tracker {
      */
     public Set<AisPacketSource> getPacketSourcesForMMSI(int mmsi) {
         MmsiTarget t = targets.get(mmsi);
-        return t == null ? Collections.emptySet() : new HashSet<>(t.keySet());
+        if (t == null) {
+            return Collections.emptySet();
+        }
+        Set<AisPacketSource> sources = new HashSet<>();
+        for (TargetInfo i : t.infos) {
+            sources.add(i.getPacketSource());
+        }
+        return sources;
     }
 
     /**
@@ -117,16 +163,14 @@ public class TargetTracker implements Tracker {
      */
     public void removeAll(Predicate<? super TargetInfo> predicate) {
         requireNonNull(predicate);
-        targets.values().stream().forEach(t -> {
-            for (TargetInfo i : t.values()) {
+        targets.forEach(t -> {
+            for (TargetInfo i : t.infos) {
                 if (predicate.test(i)) {
-                    t.remove(i.getPacketSource(), i);
+                    t.remove(i, grid);
                 }
             }
             // race with update mechanism is handled in #tryUpdate
-            if (t.isEmpty()) {
-                targets.remove(t.mmsi, t);
-            }
+            t.removeIfEmpty(targets);
         });
     }
 
@@ -139,18 +183,16 @@ public class TargetTracker implements Tracker {
      */
     public void removeAll(BiPredicate<? super AisPacketSource, ? super TargetInfo> predicate) {
         requireNonNull(predicate);
-        targets.forEachValue(10, t -> {
-            for (Map.Entry<AisPacketSource, TargetInfo> e : t.entrySet()) {
-                if (predicate.test(e.getKey(), e.getValue())) {
-                    t.remove(e.getKey(), e.getValue());
+        targets.stream(true).forEach(t -> {
+            for (TargetInfo i : t.infos) {
+                if (predicate.test(i.getPacketSource(), i)) {
+                    t.remove(i, grid);
                 }
             }
             // if there are no more targets just remove it
             // tryUpdate contains functionality to make sure we do not have
             // any consistency issues.
-            if (t.isEmpty()) {
-                targets.remove(t.mmsi, t);
-            }
+            t.removeIfEmpty(targets);
         });
     }
 
@@ -192,7 +234,7 @@ public class TargetTracker implements Tracker {
     public Stream<TargetInfo> stream(Predicate<? super AisPacketSource> sourcePredicate, Predicate<? super TargetInfo> targetPredicate) {
         requireNonNull(targetPredicate, "targetPredicate is null");
         requireNonNull(sourcePredicate, "sourcePredicate is null");
-        return targets.values().parallelStream().map(t -> t.getLatest(sourcePredicate)).filter(e -> e != null).filter(targetPredicate);
+        return targets.stream(true).map(t -> t.getLatest(sourcePredicate)).filter(e -> e != null).filter(targetPredicate);
     }
 
     /**
@@ -225,7 +267,151 @@ public class TargetTracker implements Tracker {
     public Stream<TargetInfo> streamSequential(Predicate<? super AisPacketSource> sourcePredicate, Predicate<? super TargetInfo> targetPredicate) {
         requireNonNull(targetPredicate, "targetPredicate is null");
         requireNonNull(sourcePredicate, "sourcePredicate is null");
-        return targets.values().stream().map(t -> t.getLatest(sourcePredicate)).filter(e -> e != null).filter(targetPredicate);
+        return targets.stream(false).map(t -> t.getLatest(sourcePredicate)).filter(e -> e != null).filter(targetPredicate);
+    }
+
+    /**
+     * Returns the targets with a position within the specified area.
+     *
+     * @param area
+     *            the area
+     * @return the latest target info of the targets within the area
+     */
+    public List<TargetInfo> findWithin(Area area) {
+        return findWithin(area, s -> true);
+    }
+
+    /**
+     * Returns the targets with a position within the specified area, using the reports from the sources accepted by
+     * the predicate.
+     *
+     * @param area
+     *            the area
+     * @param sourcePredicate
+     *            the predicate on AIS packet source
+     * @return the latest target info of the targets within the area
+     */
+    public List<TargetInfo> findWithin(Area area, Predicate<? super AisPacketSource> sourcePredicate) {
+        requireNonNull(area, "area is null");
+        requireNonNull(sourcePredicate, "sourcePredicate is null");
+        BoundingBox bb = area.getBoundingBox();
+        List<TargetInfo> result = new ArrayList<>();
+        Set<MmsiTarget> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        grid.forEach(bb, t -> {
+            // Targets with positions in several cells may be seen more than once, also if they move meanwhile
+            if (!seen.add(t)) {
+                return;
+            }
+            TargetInfo info = t.getLatest(sourcePredicate);
+            if (info != null && info.getPosition() != null && area.contains(info.getPosition())) {
+                result.add(info);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the targets nearest to the specified position.
+     *
+     * @param position
+     *            the position
+     * @param k
+     *            the maximum number of targets to return
+     * @return the latest target info of up to k targets, nearest first
+     */
+    public List<TargetInfo> findNearest(Position position, int k) {
+        return findNearest(position, k, s -> true);
+    }
+
+    /**
+     * Returns the targets nearest to the specified position, using the reports from the sources accepted by the
+     * predicate. The cells are searched in rings around the cell of the position, until no target in the next ring
+     * can be nearer than the k'th nearest target found.
+     *
+     * @param position
+     *            the position
+     * @param k
+     *            the maximum number of targets to return
+     * @param sourcePredicate
+     *            the predicate on AIS packet source
+     * @return the latest target info of up to k targets, nearest first
+     */
+    public List<TargetInfo> findNearest(Position position, int k, Predicate<? super AisPacketSource> sourcePredicate) {
+        requireNonNull(position, "position is null");
+        requireNonNull(sourcePredicate, "sourcePredicate is null");
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, was " + k);
+        }
+        NearestTargets nearest = new NearestTargets(position, k, sourcePredicate);
+        int row = grid.row(position.getLatitude());
+        int column = grid.column(position.getLongitude());
+        for (int ring = 0;; ring++) {
+            if (nearest.isFull() && nearest.lowerBound(ring, grid.getCellSize()) > nearest.kthDistance()) {
+                break;
+            }
+            long searched = (long) (2 * ring + 1) * (2 * ring + 1);
+            if (2 * ring + 1 >= grid.getColumns() || searched > 4L * grid.numberOfCells()) {
+                // The rings have grown larger than the occupied part of the grid, look at all targets instead
+                nearest.clear();
+                grid.forEach(0, grid.getRows() - 1, 0, grid.getColumns() - 1, nearest);
+                break;
+            }
+            int row0 = Math.max(0, row - ring), row1 = Math.min(grid.getRows() - 1, row + ring);
+            for (int r = row0; r <= row1; r++) {
+                boolean edge = r == row - ring || r == row + ring;
+                for (int c = column - ring; c <= column + ring; c += edge || ring == 0 ? 1 : 2 * ring) {
+                    // Wrap around at the antimeridian
+                    int wrapped = Math.floorMod(c, grid.getColumns());
+                    grid.get(grid.cellId(r, wrapped)).forEach(nearest);
+                }
+            }
+        }
+        return nearest.toList();
+    }
+
+    /**
+     * Returns the number of targets in each cell of the spatial index that has targets. A target is counted in the
+     * cells of the positions of all its reports.
+     *
+     * @return the number of targets keyed by cell id
+     * @see #getCellBoundingBox(int)
+     */
+    public Map<Integer, Integer> countByCell() {
+        return grid.countByCell(0, grid.getRows() - 1, 0, grid.getColumns() - 1);
+    }
+
+    /**
+     * Returns the number of targets in each cell of the spatial index overlapping the bounding box.
+     *
+     * @param boundingBox
+     *            the bounding box
+     * @return the number of targets keyed by cell id
+     * @see #getCellBoundingBox(int)
+     */
+    public Map<Integer, Integer> countByCell(BoundingBox boundingBox) {
+        return grid.countByCell(boundingBox);
+    }
+
+    /**
+     * Returns the id of the cell of the spatial index containing the position.
+     *
+     * @param position
+     *            the position
+     * @return the id of the cell
+     */
+    public int getCellId(Position position) {
+        return grid.cellOf(position);
+    }
+
+    /**
+     * Returns the bounding box of a cell of the spatial index.
+     *
+     * @param cellId
+     *            the id of the cell
+     * @return the bounding box of the cell
+     */
+    public BoundingBox getCellBoundingBox(int cellId) {
+        return grid.boundingBox(cellId);
     }
 
     /**
@@ -234,20 +420,21 @@ public class TargetTracker implements Tracker {
      *
      * @param mmsi
      *            the MMSI number
-     * @param c
-     *            a consumer that can use the MMSI target
+     * @param source
+     *            the source of the report
+     * @param f
+     *            a function computing the new report of the source from the existing one
      */
-    private void tryUpdate(int mmsi, Consumer<MmsiTarget> c) {
+    private void tryUpdate(int mmsi, AisPacketSource source,
+            BiFunction<MmsiTarget, TargetInfo, TargetInfo> f) {
         for (;;) {
             // Lets first get the target. Or create a new target if it does not
             // currently exist
-            MmsiTarget t = targets.computeIfAbsent(mmsi, i -> new MmsiTarget(mmsi));
-            c.accept(t);
+            MmsiTarget t = targets.getOrCreate(mmsi);
 
-            // We can get some very rare races with the cleanup method. So we
-            // just need to check that the mmsi target we
-            // just updated/created is the same now
-            if (t == targets.get(mmsi)) {
+            // The update fails if the cleanup method has just removed the
+            // target from the index, in which case we create a new one
+            if (t.update(source, f, grid)) {
                 return;
             }
         }
@@ -270,12 +457,9 @@ public class TargetTracker implements Tracker {
             AisTargetType targetType = message.getTargetType();
             // only update if there is a target type
             if (targetType != null) {
-                tryUpdate(
-                        message.getUserId(),
-                        t -> t.compute(
-                                AisPacketSource.create(packet),
-                                (source, existing) -> TargetInfo.updateTarget(existing, packet, targetType,
-                                        date.getTime(), source, t.msg24Part0)));
+                AisPacketSource source = AisPacketSource.create(packet);
+                tryUpdate(message.getUserId(), source, (t, existing) -> TargetInfo.updateTarget(existing, packet,
+                        targetType, date.getTime(), source, t));
             }
         }
     }
@@ -289,26 +473,154 @@ public class TargetTracker implements Tracker {
      *            the target info
      */
     void update(AisPacketSource packetSource, TargetInfo targetInfo) {
-        tryUpdate(targetInfo.getMmsi(),
-                t -> t.merge(packetSource, targetInfo, (ex, newOne) -> ex == null ? newOne : ex.merge(newOne)));
+        tryUpdate(targetInfo.getMmsi(), packetSource, (t, ex) -> ex == null ? targetInfo : ex.merge(targetInfo));
     }
 
     /**
      * A single ship containing multiple reports for different combinations of sources.
      */
-    @SuppressWarnings("serial")
-    static class MmsiTarget extends ConcurrentHashMap<AisPacketSource, TargetInfo> {
+    static final class MmsiTarget {
+
+        /** An empty array of reports. */
+        private static final TargetInfo[] NO_INFOS = new TargetInfo[0];
 
         /** The MMSI number */
         final int mmsi;
 
-        /** A cache of AIS messages 24 part 0. */
-        final ConcurrentHashMap<AisPacketSource, byte[]> msg24Part0 = new ConcurrentHashMap<>();
+        /** The latest report for each source. The array is never modified, but replaced on every update. */
+        volatile TargetInfo[] infos = NO_INFOS;
+
+        /** A cache of AIS messages 24 part 0, created when the first part 0 is received. */
+        @GuardedBy("this")
+        private Map<AisPacketSource, byte[]> msg24Part0;
+
+        /** The cells of the grid index the target is in, sorted. Only modified while holding the lock. */
+        volatile int[] cells = TargetGridIndex.NO_CELLS;
+
+        /** Set when the target has been removed from the index, after which it can no longer be updated. */
+        @GuardedBy("this")
+        private boolean removed;
 
         MmsiTarget(int mmsi) {
             this.mmsi = mmsi;
         }
 
+        /**
+         * Updates the report of the specified source.
+         *
+         * @param source
+         *            the source of the report
+         * @param f
+         *            a function computing the new report from the existing one, which is null if there is none
+         * @param grid
+         *            the grid index to move the target in
+         * @return false if the target has been removed from the index, and the update was not performed
+         */
+        synchronized boolean update(AisPacketSource source, BiFunction<MmsiTarget, TargetInfo, TargetInfo> f,
+                TargetGridIndex grid) {
+            if (removed) {
+                return false;
+            }
+            TargetInfo[] infos = this.infos;
+            int index = indexOf(infos, source);
+            TargetInfo existing = index < 0 ? null : infos[index];
+            TargetInfo info = f.apply(this, existing);
+            if (info == existing) {
+                return true;
+            } else if (info == null) {
+                this.infos = without(infos, index);
+            } else if (index < 0) {
+                TargetInfo[] newInfos = Arrays.copyOf(infos, infos.length + 1);
+                newInfos[infos.length] = info;
+                this.infos = newInfos;
+            } else {
+                TargetInfo[] newInfos = infos.clone();
+                newInfos[index] = info;
+                this.infos = newInfos;
+            }
+            grid.reindex(this);
+            return true;
+        }
+
+        /**
+         * Removes the specified report, if it is still the latest report of its source.
+         *
+         * @param info
+         *            the report to remove
+         * @param grid
+         *            the grid index to move the target in
+         */
+        synchronized void remove(TargetInfo info, TargetGridIndex grid) {
+            TargetInfo[] infos = this.infos;
+            for (int i = 0; i < infos.length; i++) {
+                if (infos[i] == info) {
+                    this.infos = without(infos, i);
+                    grid.reindex(this);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Removes this target from the specified index if it has no reports.
+         *
+         * @param index
+         *            the index of targets
+         */
+        synchronized void removeIfEmpty(MmsiTargetIndex index) {
+            if (!removed && infos.length == 0) {
+                removed = true;
+                index.remove(this);
+            }
+        }
+
+        /**
+         * Saves part 0 of an AIS message 24 until part 1 is received.
+         *
+         * @param source
+         *            the source of the message
+         * @param packet
+         *            the raw packet
+         */
+        @GuardedBy("this")
+        void putMsg24Part0(AisPacketSource source, byte[] packet) {
+            if (msg24Part0 == null) {
+                msg24Part0 = new HashMap<>(2);
+            }
+            msg24Part0.put(source, packet);
+        }
+
+        /**
+         * Removes and returns the saved part 0 of an AIS message 24.
+         *
+         * @param source
+         *            the source of the message
+         * @return the raw packet, or null if no part 0 has been received from the source
+         */
+        @GuardedBy("this")
+        byte[] removeMsg24Part0(AisPacketSource source) {
+            return msg24Part0 == null ? null : msg24Part0.remove(source);
+        }
+
+        private static int indexOf(TargetInfo[] infos, AisPacketSource source) {
+            for (int i = 0; i < infos.length; i++) {
+                if (infos[i].getPacketSource().equals(source)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static TargetInfo[] without(TargetInfo[] infos, int index) {
+            if (infos.length == 1) {
+                return NO_INFOS;
+            }
+            TargetInfo[] newInfos = new TargetInfo[infos.length - 1];
+            System.arraycopy(infos, 0, newInfos, 0, index);
+            System.arraycopy(infos, index + 1, newInfos, index, newInfos.length - index);
+            return newInfos;
+        }
+
         /**
          * Returns the newest position and static data.
          *
@@ -320,7 +632,7 @@ public class TargetTracker implements Tracker {
             // This method is fairly optimized to avoid creating excessive objects.
             TargetInfo bestStatic = null;
             TargetInfo bestPosition = null;
-            for (TargetInfo i : values()) {
+            for (TargetInfo i : infos) {
                 if (predicate.test(i.getPacketSource())) {
                     if (i.hasStaticInfo()
                             && (bestStatic == null || i.getStaticTimestamp() > bestStatic.getStaticTimestamp())) {
@@ -341,4 +653,98 @@ public class TargetTracker implements Tracker {
             }
         }
     }
+
+    /** Collects the k targets nearest to a position, used by {@link TargetTracker#findNearest(Position, int)}. */
+    static final class NearestTargets implements Consumer<MmsiTarget> {
+
+        /** The mean radius of the earth in meters, reduced a bit as the distances are measured on the ellipsoid */
+        private static final double EARTH_RADIUS = 6371008.8 * 0.99;
+
+        private final Position position;
+
+        private final int k;
+
+        private final Predicate<? super AisPacketSource> sourcePredicate;
+
+        /** The nearest targets found, farthest first */
+        private final PriorityQueue<Nearest> nearest;
+
+        private final Set<MmsiTarget> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        NearestTargets(Position position, int k, Predicate<? super AisPacketSource> sourcePredicate) {
+            this.position = position;
+            this.k = k;
+            this.sourcePredicate = sourcePredicate;
+            this.nearest = new PriorityQueue<>(Math.min(k, 1024), (a, b) -> Double.compare(b.distance, a.distance));
+        }
+
+        @Override
+        public void accept(MmsiTarget t) {
+            // Targets with positions in several cells, or moving while searched, may be seen more than once
+            if (!seen.add(t)) {
+                return;
+            }
+            TargetInfo info = t.getLatest(sourcePredicate);
+            Position p = info == null ? null : info.getPosition();
+            if (p != null) {
+                double distance = position.geodesicDistanceTo(p);
+                if (nearest.size() < k) {
+                    nearest.add(new Nearest(info, distance));
+                } else if (distance < nearest.peek().distance) {
+                    nearest.poll();
+                    nearest.add(new Nearest(info, distance));
+                }
+            }
+        }
+
+        boolean isFull() {
+            return nearest.size() == k;
+        }
+
+        double kthDistance() {
+            return nearest.peek().distance;
+        }
+
+        /**
+         * Returns a lower bound of the distance to any position in the cells of the given ring around the cell of the
+         * position, and the rings beyond it. The cells are at least ring - 1 cells away in latitude or longitude.
+         */
+        double lowerBound(int ring, double cellSize) {
+            if (ring <= 1) {
+                return 0;
+            }
+            double degrees = (ring - 1) * cellSize;
+            double maxLat = Math.min(90, Math.abs(position.getLatitude()) + (ring + 1) * cellSize);
+            double lon = Math.toRadians(Math.min(180, degrees));
+            // The shortest distance along a parallel of the latitude farthest from equator
+            double alongParallel = 2 * EARTH_RADIUS * Math.asin(Math.cos(Math.toRadians(maxLat)) * Math.sin(lon / 2));
+            return Math.min(EARTH_RADIUS * Math.toRadians(degrees), alongParallel);
+        }
+
+        void clear() {
+            nearest.clear();
+            seen.clear();
+        }
+
+        /** Returns the targets found, nearest first */
+        List<TargetInfo> toList() {
+            Nearest[] a = nearest.toArray(new Nearest[nearest.size()]);
+            Arrays.sort(a, (x, y) -> Double.compare(x.distance, y.distance));
+            List<TargetInfo> result = new ArrayList<>(a.length);
+            for (Nearest n : a) {
+                result.add(n.info);
+            }
+            return result;
+        }
+
+        static final class Nearest {
+            final TargetInfo info;
+            final double distance;
+
+            Nearest(TargetInfo info, double distance) {
+                this.info = info;
+                this.distance = distance;
+            }
+        }
+    }
 }
@@ -16,37 +16,60 @@ package dk.dma.ais.tracker.targetTracker;
 
 import com.google.common.util.concurrent.AbstractScheduledService;
 import dk.dma.ais.packet.AisPacketSource;
+import dk.dma.ais.tracker.targetTracker.TargetBackupFormat.Segment;
+import dk.dma.ais.tracker.targetTracker.TargetBackupFormat.SegmentWriter;
 import dk.dma.ais.tracker.targetTracker.TargetTracker.MmsiTarget;
-import dk.dma.commons.util.io.IoUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.DecimalFormat;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Takes care of backing up and restoring in case of a crash.
+ * <p>
+ * The targets are backed up in a binary snapshot of all target infos, followed by a change log with the infos that
+ * have changed since. Every second the changed infos are appended to the log, and every
+ * {@value #CHANGES_PER_SNAPSHOT} seconds a new snapshot is written and the previous snapshot and log deleted. The
+ * files are written in checksummed segments in the format of {@link TargetBackupFormat}.
+ * <p>
+ * When restoring, the latest snapshot and its log are read sequentially while the segments are decoded and merged into
+ * the tracker by a thread per processor. Merging keeps the newest report of each target and source, so the segments
+ * can be applied in any order. A damaged segment is skipped, and the log is read up to a segment cut short by a crash.
+ * Targets removed from the tracker are only removed from the backup by the next snapshot.
+ * <p>
+ * If there is no snapshot, the serialized backup files of former versions of the service are restored instead, and
+ * deleted once the first snapshot has been written. Files of former versions that cannot be restored are kept.
  * 
  * @author Kasper Nielsen
  */
@@ -55,21 +78,38 @@ public class TargetTrackerFileBackupService extends AbstractScheduledService {
     /** The logger. */
     private static final Logger LOG = LoggerFactory.getLogger(TargetTrackerFileBackupService.class);
 
+    /** The number of times the changes are written to the log before a new snapshot is written. */
+    static final int CHANGES_PER_SNAPSHOT = 100;
+
+    /** The names of the snapshots and logs, with the generation of the backup. */
+    private static final Pattern BACKUP_FILE = Pattern.compile("targets-(\\d{10})\\.(snapshot|log)(\\.tmp)?");
+
+    /** The names of the files written by former versions of the service. */
+    private static final String OLD_BACKUP_FILE_PREFIX = "aisviewer_backup-";
+
+    /** The suffix of a full backup of a former version of the service, which the partial backups follow. */
+    private static final String OLD_FULL_BACKUP_SUFFIX = "-00";
+
     /** The folder to backup files to. */
     private final Path backupFolder;
 
-    BackupFile f;
+    /** The tracker that we are make backups and restoring from. */
+    private final TargetTracker tracker;
 
-    /** A random string appended to each backup file. To distinguish them from backup files created by former runs. */
-    private final String prefix = Integer.toString(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), 36)
-            .toUpperCase();
+    /** The infos in the current snapshot and log. */
+    private Set<TargetInfo> backedUpTargets = Collections.emptySet();
 
-    /** The tracker that we are make backups and restoring from. */
-    private final dk.dma.ais.tracker.targetTracker.TargetTracker tracker;
+    /** The generation of the current snapshot and log. */
+    private long generation;
+
+    /** The current log, null if a new snapshot must be written. */
+    private FileChannel log;
+
+    /** The number of times the changes have been written to the current log. */
+    private int changesSinceSnapshot;
 
-    /** A list of those targets that have been backed up. */
-    private final Set<dk.dma.ais.tracker.targetTracker.TargetInfo> backedUpTargets = Collections
-            .newSetFromMap(new IdentityHashMap<dk.dma.ais.tracker.targetTracker.TargetInfo, Boolean>());
+    /** Whether the files of former versions have been restored, and can be deleted after the next snapshot. */
+    private boolean oldBackupFilesRestored;
 
     /**
      * Creates a new backup service.
@@ -79,78 +119,154 @@ public class TargetTrackerFileBackupService extends AbstractScheduledService {
      * @param backupFolder
      *            the folder to backup and restore from
      */
-    public TargetTrackerFileBackupService(dk.dma.ais.tracker.targetTracker.TargetTracker tracker, Path backupFolder) {
+    public TargetTrackerFileBackupService(TargetTracker tracker, Path backupFolder) {
         this.tracker = requireNonNull(tracker);
         this.backupFolder = requireNonNull(backupFolder);
     }
 
-    void restoreBackupFiles() throws IOException, ClassNotFoundException {
-        List<Path> paths = new ArrayList<>();
+    /**
+     * Restores the latest snapshot and its log into the tracker, or the files of former versions if there is no
+     * snapshot.
+     *
+     * @return the number of infos restored
+     */
+    long restoreBackupFiles() throws IOException, InterruptedException {
+        long latest = -1;
+        List<Path> oldFiles = new ArrayList<>();
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupFolder)) {
             for (Path path : stream) {
-                if (path.getFileName().toString().endsWith("-00")) {
-                    paths.add(path);
+                String name = path.getFileName().toString();
+                Matcher m = BACKUP_FILE.matcher(name);
+                if (m.matches() && m.group(2).equals("snapshot") && m.group(3) == null) {
+                    latest = Math.max(latest, Long.parseLong(m.group(1)));
+                } else if (name.startsWith(OLD_BACKUP_FILE_PREFIX)) {
+                    oldFiles.add(path);
                 }
             }
         }
-        Path latestFull = IoUtil.findLatestModified(paths);
-        if (latestFull != null) {
-            LOG.info("Trying to restore backup files " + latestFull);
-            String format = latestFull.getFileName().toString();
-            format = format.substring(0, format.length() - 3);// strip -00
+        if (latest < 0) {
+            return oldFiles.isEmpty() ? 0 : restoreOldBackupFiles(oldFiles);
+        }
+        if (!oldFiles.isEmpty()) {
+            LOG.warn("Ignoring {} backup files of a former version in {}, as there is a newer snapshot",
+                    oldFiles.size(), backupFolder);
+        }
+        generation = latest;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Restorer restorer = new Restorer(executor, 2 * threads);
+            restorer.restore(snapshotPath(latest));
+            if (Files.exists(logPath(latest))) {
+                restorer.restore(logPath(latest));
+            }
+            return restorer.awaitCompletion();
+        } finally {
+            executor.shutdown();
+        }
+    }
 
-            ArrayList<Path> files = new ArrayList<>();
-            for (Path path : Files.newDirectoryStream(backupFolder)) {
-                if (path.getFileName().toString().startsWith(format)) {
-                    files.add(path);
+    /**
+     * Restores the latest full backup of a former version of the service, and the partial backups following it. The
+     * files are only deleted by the next snapshot if all of them could be read.
+     *
+     * @param oldFiles
+     *            the backup files of former versions
+     * @return the number of infos restored
+     */
+    private long restoreOldBackupFiles(List<Path> oldFiles) {
+        Path latestFull = null;
+        FileTime latestModified = null;
+        for (Path path : oldFiles) {
+            if (path.getFileName().toString().endsWith(OLD_FULL_BACKUP_SUFFIX)) {
+                try {
+                    FileTime modified = Files.getLastModifiedTime(path);
+                    if (latestModified == null || modified.compareTo(latestModified) > 0) {
+                        latestFull = path;
+                        latestModified = modified;
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Cannot read backup file " + path, e);
                 }
             }
-            Collections.sort(files); // make sure they are read in the right order
-
-            for (Path path : files) {
-                LOG.info("Restoring backup file " + path);
-                try (InputStream fos = Files.newInputStream(path);
-                        BufferedInputStream bos = new BufferedInputStream(fos);
-                        GZIPInputStream gos = new GZIPInputStream(bos);
-                        ObjectInputStream oos = new ObjectInputStream(gos)) {
-                    AisPacketSource sb = (AisPacketSource) oos.readObject();
-                    dk.dma.ais.tracker.targetTracker.TargetInfo ti = (dk.dma.ais.tracker.targetTracker.TargetInfo) oos.readObject();
-                    while (sb != null && ti != null) {
-                        tracker.update(sb, ti);
-                        sb = (AisPacketSource) oos.readObject();
-                        ti = (dk.dma.ais.tracker.targetTracker.TargetInfo) oos.readObject();
+        }
+        if (latestFull == null) {
+            LOG.warn("Keeping backup files of a former version in {}, no full backup found", backupFolder);
+            return 0;
+        }
+        String name = latestFull.getFileName().toString();
+        String prefix = name.substring(0, name.length() - OLD_FULL_BACKUP_SUFFIX.length());
+        List<Path> files = new ArrayList<>();
+        for (Path path : oldFiles) {
+            if (path.getFileName().toString().startsWith(prefix)) {
+                files.add(path);
+            }
+        }
+        Collections.sort(files); // the full backup first, then the partial backups in order
+
+        long restored = 0;
+        for (Path path : files) {
+            LOG.info("Restoring backup file of a former version " + path);
+            try (InputStream in = Files.newInputStream(path);
+                    ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(in)))) {
+                // Pairs of packet source and target info, ending with two nulls
+                for (;;) {
+                    AisPacketSource source = (AisPacketSource) ois.readObject();
+                    TargetInfo info = (TargetInfo) ois.readObject();
+                    if (source == null || info == null) {
+                        break;
                     }
+                    tracker.update(source, info);
+                    restored++;
                 }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                LOG.warn("Cannot restore backup file " + path + ", keeping the backup files of the former version", e);
+                return restored;
             }
         }
+        oldBackupFilesRestored = true;
+        return restored;
     }
 
     /** {@inheritDoc} */
     @Override
-    protected void startUp() throws Exception{
+    protected void startUp() throws Exception {
         LOG.info("{} startUp", TargetTrackerFileBackupService.class);
         // If this is the first run, we check if there are any files to restore
         try {
-            restoreBackupFiles();
+            long start = System.nanoTime();
+            long restored = restoreBackupFiles();
+            LOG.info("Restored {} target infos in {} ms", restored, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+                    - start));
         } catch (Exception e) {
             LOG.error("Cannot restore from backup", e);
         }
-        f = new BackupFile();
     }
 
     /** {@inheritDoc} */
     @Override
     protected void runOneIteration() throws Exception {
-        Path p = f.toPath(backupFolder, prefix);
         try {
-            if (f.isFull()) {
-                backedUpTargets.clear(); // clear all backed up files
+            if (log == null || changesSinceSnapshot >= CHANGES_PER_SNAPSHOT) {
+                writeSnapshot();
+            } else {
+                writeChanges();
             }
-            writeBackupFile(p);
-            f = f.next();
         } catch (Exception e) {
-            LOG.error("Failed to write backup to " + p, e);
-            f = f.nextFull();
+            LOG.error("Failed to write backup to " + backupFolder, e);
+            closeLog(); // start over with a new snapshot
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void shutDown() throws Exception {
+        try {
+            if (log != null) {
+                writeChanges();
+            }
+        } finally {
+            closeLog();
         }
     }
 
@@ -160,76 +276,180 @@ public class TargetTrackerFileBackupService extends AbstractScheduledService {
         return Scheduler.newFixedRateSchedule(0, 1, TimeUnit.SECONDS);
     }
 
-    private void writeBackupFile(Path p) throws IOException {
-        // We write to a temporary file, to make sure we only have complete valid backup files in the folder
-        Path temporaryFile = Files.createTempFile(p.getFileName().toString(), ".tmp");
-        boolean isFullBackup = true;
-        // Serialize all sourceBundle->TargetInfo mappings
-        try (OutputStream fos = Files.newOutputStream(temporaryFile);
-                BufferedOutputStream bos = new BufferedOutputStream(fos);
-                GZIPOutputStream gos = new GZIPOutputStream(bos);
-                ObjectOutputStream oos = new ObjectOutputStream(gos)) {
-            for (MmsiTarget t : tracker.targets.values()) {
-                for (Entry<AisPacketSource, dk.dma.ais.tracker.targetTracker.TargetInfo> e : t.entrySet()) {
-                    // Serialize it, if it is a full backup or if the backup flag has not yet been set
-                    if (backedUpTargets.add(e.getValue())) {
-                        oos.writeObject(e.getKey());
-                        oos.writeObject(e.getValue());
-                    } else {
-                        isFullBackup = false; // at least one file has already been backed up elsewhere
+    /** Writes a snapshot of all targets in a new generation, starts its log and deletes the older backup files. */
+    void writeSnapshot() throws IOException {
+        closeLog();
+        long next = generation + 1;
+        Path snapshot = snapshotPath(next);
+        // We write to a temporary file, to make sure we only have complete valid snapshots in the folder
+        Path temporaryFile = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        Set<TargetInfo> written = Collections.newSetFromMap(new IdentityHashMap<>());
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    1 << 16));
+            TargetBackupFormat.writeHeader(out);
+            SegmentWriter segment = new SegmentWriter();
+            for (Iterator<MmsiTarget> it = tracker.targets.stream(false).iterator(); it.hasNext();) {
+                for (TargetInfo i : it.next().infos) {
+                    written.add(i);
+                    segment.add(i);
+                    if (segment.size() == TargetBackupFormat.DEFAULT_SEGMENT_SIZE) {
+                        segment.writeTo(out);
                     }
                 }
             }
-            // Write footer, 2 nulls mean end of stream
-            oos.writeObject(null);
-            oos.writeObject(null);
+            if (segment.size() > 0) {
+                segment.writeTo(out);
+            }
+            out.flush();
+            channel.force(true);
         }
+        Files.move(temporaryFile, snapshot, StandardCopyOption.ATOMIC_MOVE);
 
-        // move the temporary file to the correct spot
-        Files.move(temporaryFile, p);
+        FileChannel newLog = FileChannel.open(logPath(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(newLog));
+            TargetBackupFormat.writeHeader(out);
+            out.flush();
+        } catch (IOException e) {
+            newLog.close();
+            throw e;
+        }
+        log = newLog;
+        generation = next;
+        backedUpTargets = written;
+        changesSinceSnapshot = 0;
+        deleteOldBackupFiles();
+    }
 
-        // If this backup is a full backup, delete old backup files
-        if (isFullBackup) {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupFolder)) {
-                for (Path path : stream) {
-                    if (!path.equals(p)) { // delete all files but the full backup we just wrote
-                        Files.delete(path);
+    /** Appends the infos that have changed since the last snapshot or log write to the log. */
+    void writeChanges() throws IOException {
+        Set<TargetInfo> current = Collections.newSetFromMap(new IdentityHashMap<>(backedUpTargets.size()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(log), 1 << 16));
+        SegmentWriter segment = new SegmentWriter();
+        int changes = 0;
+        for (Iterator<MmsiTarget> it = tracker.targets.stream(false).iterator(); it.hasNext();) {
+            for (TargetInfo i : it.next().infos) {
+                current.add(i);
+                if (!backedUpTargets.contains(i)) {
+                    segment.add(i);
+                    changes++;
+                    if (segment.size() == TargetBackupFormat.DEFAULT_SEGMENT_SIZE) {
+                        segment.writeTo(out);
                     }
                 }
             }
         }
+        if (segment.size() > 0) {
+            segment.writeTo(out);
+        }
+        if (changes > 0) {
+            out.flush();
+            log.force(false);
+        }
+        backedUpTargets = current;
+        changesSinceSnapshot++;
     }
 
-    /** Wrapping the versioning */
-    static class BackupFile {
-        final int majorBackupVersion;
-        final int minorBackupVersion;
-
-        BackupFile() {
-            this(1, 0);
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close backup log", e);
+            }
+            log = null;
         }
+    }
 
-        private BackupFile(int major, int minor) {
-            this.majorBackupVersion = major;
-            this.minorBackupVersion = minor;
+    /**
+     * Deletes the backup files of older generations, and the files of former versions of the service if they have
+     * been restored.
+     */
+    private void deleteOldBackupFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupFolder)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                Matcher m = BACKUP_FILE.matcher(name);
+                if (m.matches() ? Long.parseLong(m.group(1)) < generation : oldBackupFilesRestored
+                        && name.startsWith(OLD_BACKUP_FILE_PREFIX)) {
+                    Files.delete(path);
+                }
+            }
         }
+        oldBackupFilesRestored = false;
+    }
 
-        boolean isFull() {
-            return minorBackupVersion == 0;
-        }
+    Path snapshotPath(long generation) {
+        return backupFolder.resolve(String.format("targets-%010d.snapshot", generation));
+    }
+
+    Path logPath(long generation) {
+        return backupFolder.resolve(String.format("targets-%010d.log", generation));
+    }
+
+    /** Reads backup files, and decodes and merges their segments into the tracker in parallel. */
+    private class Restorer {
+
+        private final ExecutorService executor;
+
+        /** Bounds the number of segments read but not yet merged */
+        private final Semaphore permits;
 
-        BackupFile next() {
-            return minorBackupVersion == 99 ? nextFull() : new BackupFile(majorBackupVersion, minorBackupVersion + 1);
+        private final int maxPermits;
+
+        private final AtomicLong restored = new AtomicLong();
+
+        private final AtomicInteger damaged = new AtomicInteger();
+
+        Restorer(ExecutorService executor, int maxSegmentsInFlight) {
+            this.executor = executor;
+            this.maxPermits = maxSegmentsInFlight;
+            this.permits = new Semaphore(maxSegmentsInFlight);
         }
 
-        BackupFile nextFull() {
-            return new BackupFile((majorBackupVersion + 1) % 100000, 0);
+        void restore(Path path) throws IOException, InterruptedException {
+            LOG.info("Restoring backup file " + path);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path),
+                    1 << 16))) {
+                TargetBackupFormat.readHeader(in);
+                for (;;) {
+                    Segment segment;
+                    try {
+                        segment = TargetBackupFormat.readSegment(in);
+                    } catch (IOException e) {
+                        // Most likely a segment cut short by a crash, the rest of the file cannot be read
+                        LOG.warn("Stopped reading " + path + " at an incomplete segment", e);
+                        return;
+                    }
+                    if (segment == null) {
+                        return;
+                    }
+                    permits.acquire();
+                    executor.execute(() -> {
+                        try {
+                            restored.addAndGet(segment.decode(tracker::update));
+                        } catch (IOException | RuntimeException e) {
+                            damaged.incrementAndGet();
+                            LOG.error("Skipped damaged segment in " + path, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            }
         }
 
-        Path toPath(Path directory, String prefix) {
-            return directory.resolve("aisviewer_backup-" + prefix + "-"
-                    + new DecimalFormat("00000").format(majorBackupVersion) + "-"
-                    + new DecimalFormat("00").format(minorBackupVersion));
+        /** Waits for the segments read to be merged, and returns the number of infos restored. */
+        long awaitCompletion() throws InterruptedException {
+            permits.acquire(maxPermits);
+            permits.release(maxPermits);
+            if (damaged.get() > 0) {
+                LOG.warn("Skipped {} damaged segments", damaged.get());
+            }
+            return restored.get();
         }
     }
 }
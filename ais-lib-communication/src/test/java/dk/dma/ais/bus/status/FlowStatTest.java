@@ -0,0 +1,54 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.bus.status;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FlowStatTest {
+
+    @Test
+    public void testRate() {
+        FlowStat stat = new FlowStat(60000);
+        assertNull(stat.getLastReceived());
+        assertEquals(0, stat.getRate(1000000), 0);
+
+        // 10 packets per second for 30 seconds
+        long start = 1000000;
+        for (int i = 0; i < 300; i++) {
+            stat.received(1, start + i * 100);
+        }
+        assertEquals(start + 299 * 100, stat.getLastReceived().longValue());
+        assertEquals(10, stat.getRate(start + 30000), 0.5);
+
+        // Receptions older than the interval are forgotten
+        assertEquals(0, stat.getRate(start + 100000), 0);
+    }
+
+    @Test
+    public void testBatchAndWrap() {
+        FlowStat stat = new FlowStat(10000);
+        long start = 500000;
+        // Run for several intervals with 100 packets per second in batches
+        for (int s = 0; s < 50; s++) {
+            stat.received(100, start + s * 1000);
+        }
+        double rate = stat.getRate(start + 50000);
+        assertEquals(100, rate, 10);
+    }
+
+}
@@ -0,0 +1,177 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.bus.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TcpBroadcastServerTest {
+
+    static final String MSG = "!AIVDM,1,1,,A,13u?etPv2;0n:dDPwUM1U1Cb069D,0*24 ";
+
+    TcpBroadcastServer server;
+
+    int port;
+
+    final List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void createServer() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            port = s.getLocalPort();
+        }
+        server = new TcpBroadcastServer();
+        server.getServerConf().setPort(port);
+        server.getClientConf().setBufferSize(1000000);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.cancel();
+        for (Socket s : sockets) {
+            s.close();
+        }
+    }
+
+    Socket connect(int expectedClients) throws Exception {
+        Socket s = null;
+        for (int i = 0; s == null; i++) {
+            s = new Socket();
+            // Keep the socket buffers small so slow clients fall behind quickly
+            s.setReceiveBufferSize(16 * 1024);
+            try {
+                s.connect(new InetSocketAddress("localhost", port));
+            } catch (IOException e) {
+                // Server not listening yet
+                s.close();
+                s = null;
+                assertTrue(i < 100);
+                Thread.sleep(50);
+            }
+        }
+        sockets.add(s);
+        for (int i = 0; server.getClients().size() < expectedClients; i++) {
+            assertTrue(i < 100);
+            Thread.sleep(50);
+        }
+        return s;
+    }
+
+    static Thread reader(final Socket s, final int count, final List<String> received) {
+        Thread t = new Thread(() -> {
+            try {
+                BufferedReader r = new BufferedReader(new InputStreamReader(s.getInputStream(),
+                        StandardCharsets.US_ASCII));
+                for (int i = 0; i < count; i++) {
+                    received.add(r.readLine());
+                }
+            } catch (IOException ignore) {}
+        });
+        t.start();
+        return t;
+    }
+
+    @Test
+    public void testAllClientsReceiveAll() throws Exception {
+        server.start();
+        int count = 20000;
+        List<List<String>> received = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            List<String> r = new ArrayList<>();
+            received.add(r);
+            threads.add(reader(connect(i + 1), count, r));
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(server.send(MSG + i));
+        }
+        for (int i = 0; i < threads.size(); i++) {
+            threads.get(i).join(10000);
+            List<String> r = received.get(i);
+            assertEquals(count, r.size());
+            for (int j = 0; j < count; j++) {
+                assertEquals(MSG + j, r.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testSlowClientDisconnected() throws Exception {
+        server.getBroadcastConf().setRingBufferSize(2 * TcpBroadcastServer.CHUNK_SIZE);
+        server.getBroadcastConf().setSlowClientPolicy(TcpBroadcastServerConf.SlowClientPolicy.DISCONNECT);
+        server.start();
+        connect(1);
+        // The client never reads, so it falls behind once the socket buffers are full
+        for (int i = 0; i < 1000000 && !server.getClients().isEmpty(); i++) {
+            server.send(MSG + i);
+            if (i % 1000 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        for (int i = 0; !server.getClients().isEmpty(); i++) {
+            assertTrue(i < 100);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testSlowClientDropped() throws Exception {
+        server.getBroadcastConf().setRingBufferSize(2 * TcpBroadcastServer.CHUNK_SIZE);
+        server.start();
+        Socket s = connect(1);
+        List<String> received = new ArrayList<>();
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            server.send(MSG + i);
+            if (i % 1000 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        TcpClient client = server.getClients().iterator().next();
+        for (int i = 0; client.getStatus().getInCount() < count; i++) {
+            assertTrue(i < 100);
+            Thread.sleep(50);
+        }
+        assertTrue(client.getStatus().getOverflowCount() > 0);
+
+        // What was received is whole lines in order
+        reader(s, count, received).join(10000);
+        int last = -1;
+        for (String line : received) {
+            if (line == null) {
+                break;
+            }
+            assertTrue(line.startsWith(MSG));
+            int n = Integer.parseInt(line.substring(MSG.length()));
+            assertTrue(n > last);
+            last = n;
+        }
+        assertEquals(1, server.getClients().size());
+    }
+}
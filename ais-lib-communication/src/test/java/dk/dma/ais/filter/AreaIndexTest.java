@@ -0,0 +1,104 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Area;
+import dk.dma.enav.model.geometry.BoundingBox;
+import dk.dma.enav.model.geometry.Circle;
+import dk.dma.enav.model.geometry.CoordinateSystem;
+import dk.dma.enav.model.geometry.Position;
+
+public class AreaIndexTest {
+
+    @Test
+    public void testEmpty() {
+        assertFalse(AreaIndex.EMPTY.contains(Position.create(55, 11)));
+    }
+
+    @Test
+    public void testEdges() {
+        BoundingBox bbox = BoundingBox.create(Position.create(55.0, 10.0), Position.create(55.5, 10.5),
+                CoordinateSystem.CARTESIAN);
+        AreaIndex index = new AreaIndex(Collections.singletonList(bbox));
+        assertTrue(index.contains(Position.create(55.0, 10.0)));
+        assertTrue(index.contains(Position.create(55.5, 10.5)));
+        assertTrue(index.contains(Position.create(55.25, 10.25)));
+        assertFalse(index.contains(Position.create(55.51, 10.25)));
+        assertFalse(index.contains(Position.create(54.99, 10.25)));
+        assertFalse(index.contains(Position.create(55.25, 10.51)));
+    }
+
+    /**
+     * The index must give the same answer as testing every area
+     */
+    @Test
+    public void testSameAsLinear() {
+        Random r = new Random(42);
+        List<Area> areas = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            double lat = 50 + r.nextDouble() * 10;
+            double lon = 5 + r.nextDouble() * 15;
+            if (i % 3 == 0) {
+                areas.add(new Circle(lat, lon, 1000 + r.nextDouble() * 20000, CoordinateSystem.GEODETIC));
+            } else {
+                areas.add(BoundingBox.create(Position.create(lat, lon),
+                        Position.create(lat + r.nextDouble() * 0.5, lon + r.nextDouble() * 0.5), CoordinateSystem.CARTESIAN));
+            }
+        }
+        AreaIndex index = new AreaIndex(areas);
+        assertEquals(300, index.getAreas().size());
+
+        int inside = 0;
+        for (int i = 0; i < 20000; i++) {
+            Position p = Position.create(49 + r.nextDouble() * 12, 4 + r.nextDouble() * 17);
+            boolean expected = false;
+            for (Area area : areas) {
+                expected |= area.contains(p);
+            }
+            assertEquals(expected, index.contains(p));
+            inside += expected ? 1 : 0;
+        }
+        assertTrue(inside > 0);
+    }
+
+    /**
+     * An area crossing the antimeridian must match on both sides of it
+     */
+    @Test
+    public void testAntimeridian() {
+        Circle circle = new Circle(0, 179.95, 20000, CoordinateSystem.GEODETIC);
+        BoundingBox bbox = BoundingBox.create(Position.create(10, 170), Position.create(11, 171),
+                CoordinateSystem.CARTESIAN);
+        AreaIndex index = new AreaIndex(Arrays.asList(circle, bbox));
+        assertTrue(index.contains(Position.create(0, 179.98)));
+        assertTrue(index.contains(Position.create(0, -179.95)));
+        assertFalse(index.contains(Position.create(0, -179.5)));
+        assertTrue(index.contains(Position.create(10.5, 170.5)));
+        assertFalse(index.contains(Position.create(0, 170.5)));
+    }
+
+}
@@ -0,0 +1,126 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DuplicateWindowTest {
+
+    @Test
+    public void testWindow() {
+        DuplicateWindow window = new DuplicateWindow(10000, 1000);
+        long hash = DuplicateWindow.hash("155C1v0vif0r:s`OjGpM0b@F0<6R");
+        assertNotEquals(hash, DuplicateWindow.hash("155C1v0vif0r:s`OjGpM0b@F0<6S"));
+
+        long now = 1000000;
+        assertFalse(window.isDuplicate(hash, now));
+        assertTrue(window.isDuplicate(hash, now + 1));
+        assertTrue(window.isDuplicate(hash, now + 9999));
+        // Window has passed
+        assertFalse(window.isDuplicate(hash, now + 10000));
+        assertTrue(window.isDuplicate(hash, now + 15000));
+        // Still found after the generation it was put in is no longer the newest
+        for (int i = 0; i < 100; i++) {
+            window.isDuplicate(i, now + 15000 + i * 40);
+        }
+        assertTrue(window.isDuplicate(hash, now + 19999));
+        assertFalse(window.isDuplicate(hash, now + 20000));
+    }
+
+    @Test
+    public void testGrowWindow() {
+        DuplicateWindow window = new DuplicateWindow(700, 8000);
+        long now = 1000000;
+        assertFalse(window.isDuplicate(1, now));
+        window.setWindowSize(7000);
+        assertFalse(window.isDuplicate(2, now + 1000));
+        for (int i = 0; i < 1000; i++) {
+            window.isDuplicate(DuplicateWindow.hash("msg" + i), now + 1000 + i * 100);
+        }
+        // Within the new window
+        assertTrue(window.isDuplicate(DuplicateWindow.hash("msg990"), now + 106000));
+        // Generations are still started as time passes, and the expired ones dropped
+        assertTrue(window.size() < 100);
+    }
+
+    @Test
+    public void testMaxEntries() {
+        DuplicateWindow window = new DuplicateWindow(10000, 800);
+        long now = 1000000;
+        for (int i = 0; i < 100000; i++) {
+            assertFalse(window.isDuplicate(DuplicateWindow.hash("msg" + i), now + i / 100));
+            assertTrue(window.size() <= 800);
+        }
+        // The newest are remembered
+        assertTrue(window.isDuplicate(DuplicateWindow.hash("msg99999"), now + 1000));
+    }
+
+    @Test
+    public void testReuseGenerations() {
+        // Many more ticks than generations, so the tables of dropped generations are reused
+        DuplicateWindow window = new DuplicateWindow(7000, 800);
+        long now = 1000000;
+        for (int tick = 0; tick < 1000; tick++) {
+            long t = now + tick * 1000L;
+            for (int i = 0; i < 10; i++) {
+                assertFalse(window.isDuplicate(DuplicateWindow.hash(tick + "/" + i), t));
+            }
+            if (tick >= 6) {
+                // Seen 6 seconds ago, within the window
+                assertTrue(window.isDuplicate(DuplicateWindow.hash((tick - 6) + "/3"), t + 500));
+            }
+            if (tick >= 8) {
+                // Expired, and remembered again
+                assertFalse(window.isDuplicate(DuplicateWindow.hash((tick - 8) + "/4"), t + 500));
+            }
+            assertTrue(window.size() <= 800);
+        }
+        // Time jumping far ahead leaves nothing to be found
+        assertFalse(window.isDuplicate(DuplicateWindow.hash("999/0"), now + 10000000));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final DuplicateWindow window = new DuplicateWindow(60000, 100000);
+        final AtomicInteger passed = new AtomicInteger();
+        final long now = System.currentTimeMillis();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        if (!window.isDuplicate(DuplicateWindow.hash("msg" + i), now)) {
+                            passed.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(20000, passed.get());
+    }
+
+}
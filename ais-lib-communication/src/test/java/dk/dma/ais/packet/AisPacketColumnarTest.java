@@ -0,0 +1,152 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.sentence.CommentBlock;
+
+public class AisPacketColumnarTest {
+
+    static List<AisPacket> read(String resource) throws IOException {
+        List<AisPacket> packets = new ArrayList<>();
+        try (AisPacketReader r = AisPacketReader.createFromSystemResource(resource, false)) {
+            r.forEachRemaining(packets::add);
+        }
+        return packets;
+    }
+
+    static byte[] write(List<AisPacket> packets, int blockSize) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        AisPacketColumnarOutputSink sink = new AisPacketColumnarOutputSink(blockSize);
+        sink.header(bos);
+        long count = 0;
+        for (AisPacket p : packets) {
+            sink.process(bos, p, ++count);
+        }
+        sink.footer(bos, count);
+        return bos.toByteArray();
+    }
+
+    static List<String> strings(Iterable<AisPacket> packets) {
+        List<String> result = new ArrayList<>();
+        for (AisPacket p : packets) {
+            result.add(p.getStringMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (String resource : new String[] { "stream_example.txt", "small_cb_example.txt", "replay_dump.txt" }) {
+            List<AisPacket> packets = read(resource);
+            byte[] data = write(packets, 100);
+            try (AisPacketColumnarReader r = new AisPacketColumnarReader(new ByteArrayInputStream(data))) {
+                assertEquals(resource, strings(packets), strings(r));
+                assertEquals((packets.size() + 99) / 100, r.getNumberOfBlocksRead());
+            }
+        }
+    }
+
+    @Test
+    public void testNonArmoredPayload() throws IOException {
+        List<AisPacket> packets = new ArrayList<>();
+        packets.add(AisPacket.from("!AIVDM,1,1,,B,13@ng7P01dPeo~~~~~~~~4,0*3F"));
+        packets.add(AisPacket.from("\\c:1241544035*4A\\!AIVDM,1,1,,B,,0*00\r\n!AIVDO,2,1,5,A,bad payload,0*11"));
+        byte[] data = write(packets, 10);
+        try (AisPacketColumnarReader r = new AisPacketColumnarReader(new ByteArrayInputStream(data))) {
+            assertEquals(strings(packets), strings(r));
+        }
+    }
+
+    @Test
+    public void testSkipBlocks() throws IOException {
+        List<AisPacket> packets = read("stream_example.txt");
+        byte[] data = write(packets, 100);
+        long from = packets.get(packets.size() / 2).getBestTimestamp();
+        long to = packets.get(packets.size() * 3 / 4).getBestTimestamp();
+        List<String> expected = new ArrayList<>();
+        for (AisPacket p : packets) {
+            if (p.getBestTimestamp() >= from && p.getBestTimestamp() < to) {
+                expected.add(p.getStringMessage());
+            }
+        }
+        try (AisPacketColumnarReader r = new AisPacketColumnarReader(new ByteArrayInputStream(data))) {
+            r.setTimeInterval(from, to);
+            assertEquals(expected, strings(r));
+            assertTrue(r.getNumberOfBlocksSkipped() > 0);
+        }
+
+        AisMessage m = packets.get(0).tryGetAisMessage();
+        expected.clear();
+        for (AisPacket p : packets) {
+            AisMessage pm = p.tryGetLazyAisMessage();
+            if (pm != null && pm.getUserId() == m.getUserId()) {
+                expected.add(p.getStringMessage());
+            }
+        }
+        try (AisPacketColumnarReader r = new AisPacketColumnarReader(new ByteArrayInputStream(data))) {
+            r.setMmsiRange(m.getUserId(), m.getUserId());
+            assertEquals(expected, strings(r));
+        }
+    }
+
+    @Test
+    public void testMessageTypesAndSourceIds() throws IOException {
+        List<AisPacket> packets = new ArrayList<>();
+        int n = 0;
+        for (AisPacket p : read("stream_example.txt")) {
+            // Tag the VDM lines with a source id
+            String text = p.getStringMessage();
+            int vdm = text.indexOf('!');
+            if (vdm >= 0 && text.indexOf('\\') < 0) {
+                CommentBlock cb = new CommentBlock();
+                cb.addString(AisPacketTags.SOURCE_ID_KEY, n++ % 3 == 0 ? "A" : "B");
+                packets.add(AisPacket.from(cb.encode() + text.substring(vdm)));
+            }
+        }
+        byte[] data = write(packets, 100);
+        List<String> expected = new ArrayList<>();
+        for (AisPacket p : packets) {
+            AisMessage m = p.tryGetLazyAisMessage();
+            if (m != null && m.getMsgId() == 5 && "A".equals(p.getTags().getSourceId())) {
+                expected.add(p.getStringMessage());
+            }
+        }
+        assertTrue(expected.size() > 0);
+        try (AisPacketColumnarReader r = new AisPacketColumnarReader(new ByteArrayInputStream(data))) {
+            r.setMessageTypes(5).setSourceIds("A");
+            assertEquals(expected, strings(r));
+        }
+
+        // No block has the source, so only the source column is decompressed
+        try (AisPacketColumnarReader r = new AisPacketColumnarReader(new ByteArrayInputStream(data))) {
+            r.setSourceIds("C");
+            assertEquals(0, strings(r).size());
+            assertEquals(0, r.getNumberOfBlocksRead());
+            assertEquals((packets.size() + 99) / 100, r.getNumberOfBlocksSkipped());
+        }
+    }
+}
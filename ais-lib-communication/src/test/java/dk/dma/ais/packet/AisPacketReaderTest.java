@@ -0,0 +1,156 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.sentence.Vdm;
+
+public class AisPacketReaderTest {
+
+    /** Repeats the example stream, so the packets span several decoding batches. */
+    static byte[] example(int times) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream is = ClassLoader.getSystemResourceAsStream("stream_example.txt")) {
+            byte[] buf = new byte[8192];
+            for (int n = is.read(buf); n > 0; n = is.read(buf)) {
+                bos.write(buf, 0, n);
+            }
+        }
+        byte[] single = bos.toByteArray();
+        for (int i = 1; i < times; i++) {
+            bos.write(single);
+        }
+        return bos.toByteArray();
+    }
+
+    static List<AisPacket> readAll(AisPacketReader r) throws IOException {
+        List<AisPacket> packets = new ArrayList<>();
+        r.forEachRemaining(packets::add);
+        assertNull(r.readPacket());
+        return packets;
+    }
+
+    @Test
+    public void testParallelDecodingKeepsOrder() throws IOException {
+        byte[] data = example(2);
+        List<AisPacket> expected = readAll(new AisPacketReader(new ByteArrayInputStream(data)));
+        for (int threads : new int[] { 1, 3 }) {
+            try (AisPacketReader r = new AisPacketReader(new ByteArrayInputStream(data))
+                    .setDecodingThreads(threads)) {
+                List<AisPacket> actual = readAll(r);
+                assertEquals(expected.size(), actual.size());
+                assertEquals(expected.size(), r.getNumberOfPacketsRead());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getStringMessage(), actual.get(i).getStringMessage());
+                    AisMessage m = expected.get(i).tryGetAisMessage();
+                    AisMessage a = actual.get(i).tryGetAisMessage();
+                    assertEquals(m == null ? null : m.toString(), a == null ? null : a.toString());
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testParallelDecodingReaderFails() throws IOException {
+        byte[] data = example(2);
+        // The stream fails in the middle of the data
+        InputStream failing = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos > data.length / 2) {
+                    throw new IllegalStateException("failed");
+                }
+                return super.read(b, off, Math.min(len, 1024));
+            }
+
+            @Override
+            public synchronized int read() {
+                if (pos > data.length / 2) {
+                    throw new IllegalStateException("failed");
+                }
+                return super.read();
+            }
+        };
+        try (AisPacketReader r = new AisPacketReader(failing).setDecodingThreads(2)) {
+            int read = 0;
+            try {
+                while (r.readPacket() != null) {
+                    read++;
+                }
+                fail("expected the failure of the stream");
+            } catch (IllegalStateException e) {
+                assertEquals("failed", e.getMessage());
+            }
+            assertTrue(read > 0);
+        }
+    }
+
+    @Test
+    public void testRecycling() throws IOException {
+        byte[] data = example(2);
+        List<AisPacket> expected = readAll(new AisPacketReader(new ByteArrayInputStream(data)));
+        Set<Vdm> vdms = Collections.newSetFromMap(new IdentityHashMap<Vdm, Boolean>());
+        try (AisPacketReader r = new AisPacketReader(new ByteArrayInputStream(data)).setRecycling(true)) {
+            int i = 0;
+            for (AisPacket p = r.readPacket(); p != null; p = r.readPacket(), i++) {
+                // Packets are only valid until the next one is read, so compare right away
+                assertEquals(expected.get(i).getStringMessage(), p.getStringMessage());
+                AisMessage m = expected.get(i).tryGetAisMessage();
+                AisMessage a = p.tryGetAisMessage();
+                assertEquals(m == null ? null : m.toString(), a == null ? null : a.toString());
+                vdms.add(p.getVdm());
+            }
+            assertEquals(expected.size(), i);
+        }
+        assertEquals(2, vdms.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRecyclingWithDecodingThreads() throws IOException {
+        new AisPacketReader(new ByteArrayInputStream(new byte[0])).setDecodingThreads(2).setRecycling(true);
+    }
+
+    @Test
+    public void testParallelDecodingEmpty() throws IOException {
+        try (AisPacketReader r = new AisPacketReader(new ByteArrayInputStream(new byte[0])).setDecodingThreads(2)) {
+            assertEquals(0, readAll(r).size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDecodingThreadsAfterRead() throws IOException {
+        try (AisPacketReader r = new AisPacketReader(new ByteArrayInputStream(example(1))).setDecodingThreads(2)) {
+            r.readPacket();
+            r.setDecodingThreads(4);
+        }
+    }
+}
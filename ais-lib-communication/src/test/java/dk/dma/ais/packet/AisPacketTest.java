@@ -29,13 +29,20 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.function.Consumer;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class AisPacketTest {
 
@@ -180,4 +187,37 @@ public class AisPacketTest {
 
         assertThat(messageFromPacketVdm, is(not(nullValue())));
     }
+
+    @Test
+    public void lazyMessageTest() throws SentenceException {
+        AisPacket packet = AisPacket.readFromString("!AIVDM,1,1,,A,15MgK45P3@G?fl0E`JbR0OwT0@MS,0*4E");
+        assertTrue(AisPacketFilters.filterOnMessageMmsi(366730000).test(packet));
+        assertTrue(AisPacketFilters.filterOnMessageId(1, 3).test(packet));
+        AisMessage lazy = packet.tryGetLazyAisMessage();
+        assertTrue(lazy.isLazy());
+
+        assertSame(lazy, packet.tryGetAisMessage());
+        assertFalse(lazy.isLazy());
+
+        // Message 1 with only 90 bits is rejected as by the full decoding
+        packet = AisPacket.readFromString("!AIVDM,1,1,,A,15MgK45P3@G?fl0,0*23");
+        assertNull(packet.tryGetLazyAisMessage());
+        assertFalse(AisPacketFilters.filterOnMessageMmsi(366730000).test(packet));
+        assertFalse(AisPacketFilters.filterOnMessageId(1).test(packet));
+        assertNull(packet.tryGetAisMessage());
+        assertNull(packet.tryGetAisMessage());
+    }
+
+    @Test
+    public void toByteArrayTest() throws SentenceException {
+        String line = "!AIVDM,1,1,,A,15MgK45P3@G?fl0E`JbR0OwT0@MS,0*4E";
+        AisPacket packet = AisPacket.readFromString(line);
+        assertArrayEquals(line.getBytes(StandardCharsets.US_ASCII), packet.toByteArray());
+
+        // Characters outside US-ASCII are replaced, as by String.getBytes
+        packet = AisPacket.readFromString("\\s:caf\u00e9,c:1354719387*B1\\" + line);
+        assertEquals('\u00e9', packet.getStringMessage().charAt(6));
+        assertArrayEquals(packet.getStringMessage().getBytes(StandardCharsets.US_ASCII), packet.toByteArray());
+        assertEquals('?', packet.toByteArray()[6]);
+    }
 }
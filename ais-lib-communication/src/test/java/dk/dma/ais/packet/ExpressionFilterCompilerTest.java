@@ -0,0 +1,85 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static dk.dma.ais.packet.AisPacketFiltersExpressionFilterParser.parseExpressionFilter;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import dk.dma.ais.packet.ExpressionFilterCompiler.Group;
+import dk.dma.ais.packet.ExpressionFilterCompiler.Junction;
+
+public class ExpressionFilterCompilerTest {
+
+    final List<AisPacket> packets = Arrays.asList(AisTestPackets.p1(), AisTestPackets.p2(), AisTestPackets.p3(),
+            AisTestPackets.p5());
+
+    @Test
+    public void testCompiledSameAsInterpreted() {
+        Predicate<AisPacket> id = AisPacketFilters.filterOnMessageId(5);
+        Predicate<AisPacket> country = AisPacketFilters.filterOnSourceType(AisPacketTags.SourceType.TERRESTRIAL);
+        Predicate<AisPacket> position = AisPacketFilters.filterOnMessageId(1, 2, 3);
+        Predicate<AisPacket> never = p -> false;
+
+        List<Predicate<AisPacket>> trees = Arrays.asList(new Junction(true, id, country),
+                new Junction(false, id, position), new Junction(true, new Group(new Junction(false, never, id)),
+                        new Junction(false, position, new Junction(true, country, id))),
+                new Junction(false, new Junction(true, id, never), new Group(new Junction(true, never, position))));
+        for (Predicate<AisPacket> tree : trees) {
+            Predicate<AisPacket> compiled = ExpressionFilterCompiler.compile(tree);
+            assertFalse(compiled instanceof Junction || compiled instanceof Group);
+            assertEquals(tree.toString(), compiled.toString());
+            for (AisPacket p : packets) {
+                assertEquals(tree.test(p), compiled.test(p));
+            }
+        }
+    }
+
+    @Test
+    public void testFlatten() {
+        Predicate<AisPacket> p = p1 -> true;
+        Junction j = new Junction(true, new Junction(true, p, p), new Junction(false, p, p));
+        assertEquals(3, j.predicates.length);
+    }
+
+    @Test
+    public void testParse() {
+        Predicate<AisPacket> filter = parseExpressionFilter("m.id = 4 | (m.id = 1,2,3 & m.sog >= 0) | m.id = 5 & m.mmsi = 1");
+        assertFalse(filter instanceof Junction);
+        for (AisPacket p : packets) {
+            int id = p.tryGetAisMessage().getMsgId();
+            assertEquals(id <= 4, filter.test(p));
+        }
+    }
+
+    @Test
+    public void testCache() {
+        String expression = "m.id = 1,2,3 & m.sog > 5";
+        assertSame(parseExpressionFilter(expression), parseExpressionFilter(expression));
+        // Filters on targets have state, and are not shared
+        expression = "t.type = 60 & m.sog > 5";
+        assertNotSame(parseExpressionFilter(expression), parseExpressionFilter(expression));
+    }
+
+}
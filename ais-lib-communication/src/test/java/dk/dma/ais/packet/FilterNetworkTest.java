@@ -0,0 +1,167 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.packet;
+
+import static org.junit.Assert.assertEquals;
+import static dk.dma.ais.packet.AisPacketFiltersExpressionFilterParser.parseExpressionTree;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import dk.dma.ais.packet.ExpressionFilterCompiler.Condition;
+import dk.dma.ais.packet.ExpressionFilterCompiler.Junction;
+
+public class FilterNetworkTest {
+
+    final List<AisPacket> packets = Arrays.asList(AisTestPackets.p1(), AisTestPackets.p2(), AisTestPackets.p3(),
+            AisTestPackets.p5());
+
+    @Test
+    public void testConditionEvaluatedOncePerPacket() {
+        AtomicInteger evaluations = new AtomicInteger();
+        Condition c1 = new Condition("m.id=5", p -> evaluations.incrementAndGet() > 0);
+        Condition c2 = new Condition("m.id=5", p -> evaluations.incrementAndGet() > 0);
+
+        FilterNetwork network = new FilterNetwork();
+        FilterNetwork.Node n1 = network.compile(c1);
+        FilterNetwork.Node n2 = network.compile(new Junction(false, c2, p -> false));
+        assertEquals(1, network.getSharedConditionCount());
+
+        FilterNetwork.Evaluation evaluation = network.evaluate(AisTestPackets.p1());
+        n1.test(evaluation);
+        n2.test(evaluation);
+        assertEquals(1, evaluations.get());
+
+        evaluation = network.evaluate(AisTestPackets.p2());
+        n2.test(evaluation);
+        n1.test(evaluation);
+        assertEquals(2, evaluations.get());
+
+        network.release(n1);
+        assertEquals(1, network.getSharedConditionCount());
+        network.release(n2);
+        assertEquals(0, network.getSharedConditionCount());
+    }
+
+    @Test
+    public void testPrivatePredicatesCompiled() {
+        FilterNetwork network = new FilterNetwork();
+        Condition c = new Condition("m.id=5", p -> true);
+        FilterNetwork.Node n = network.compile(new Junction(false, c, new Junction(true, p -> true, p -> false)));
+        FilterNetwork.Node privateNode = ((FilterNetwork.JunctionNode) n).nodes[1];
+        assertFalse(((FilterNetwork.PredicateNode) privateNode).predicate instanceof Junction);
+        assertFalse(privateNode.test(network.evaluate(AisTestPackets.p1())));
+        assertTrue(n.test(network.evaluate(AisTestPackets.p1())));
+        network.release(n);
+        assertEquals(0, network.getSharedConditionCount());
+    }
+
+    @Test
+    public void testStreamMatchesPredicates() {
+        String[] expressions = { "m.id = 5", "m.id = 5 | m.id = 1,2,3", "(m.id = 1,2,3 & m.sog >= 0) | m.id = 5",
+                "m.id = 1,2,3 & m.sog > 5", "m.sog >= 0" };
+        AisPacketStream stream = AisPacketStream.newStream();
+        List<List<AisPacket>> received = new ArrayList<>();
+        List<AisPacketStream.Subscription> subscriptions = new ArrayList<>();
+        for (String e : expressions) {
+            List<AisPacket> l = new ArrayList<>();
+            received.add(l);
+            subscriptions.add(stream.filter(e).subscribe(l::add));
+        }
+        AisPacketStream chained = stream.filter("m.id = 1,2,3").filter("m.sog >= 0");
+        List<AisPacket> chainedReceived = new ArrayList<>();
+        subscriptions.add(chained.subscribe(chainedReceived::add));
+
+        for (AisPacket p : packets) {
+            stream.add(p);
+        }
+        for (int i = 0; i < expressions.length; i++) {
+            List<AisPacket> expected = new ArrayList<>();
+            for (AisPacket p : packets) {
+                if (AisPacketFilters.parseExpressionFilter(expressions[i]).test(p)) {
+                    expected.add(p);
+                }
+            }
+            assertEquals(expressions[i], expected, received.get(i));
+        }
+        List<AisPacket> expected = new ArrayList<>();
+        for (AisPacket p : packets) {
+            if (AisPacketFilters.parseExpressionFilter("m.id = 1,2,3 & m.sog >= 0").test(p)) {
+                expected.add(p);
+            }
+        }
+        assertEquals(expected, chainedReceived);
+
+        subscriptions.forEach(AisPacketStream.Subscription::cancel);
+        assertEquals(0, ((AisPacketStreamImpl) stream).network.getSharedConditionCount());
+    }
+
+    @Test
+    public void testExpressionTreeCached() {
+        String expression = "m.id = 1,2,3 & m.sog > 5";
+        assertSame(parseExpressionTree(expression), parseExpressionTree(expression));
+        // Filters on targets have state, and are not shared
+        expression = "t.type = 60 & m.sog > 5";
+        assertNotSame(parseExpressionTree(expression), parseExpressionTree(expression));
+    }
+
+    /**
+     * Filters may keep state, so packets must be filtered one at a time, in the order they are delivered
+     */
+    @Test
+    public void testFiltersEvaluatedInOrder() throws InterruptedException {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        List<AisPacket> filtered = new ArrayList<>();
+        AisPacketStream stream = AisPacketStream.newStream();
+        List<AisPacket> received = Collections.synchronizedList(new ArrayList<AisPacket>());
+        AisPacketStream.Subscription s = stream.filter(p -> {
+            if (inside.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            filtered.add(p);
+            inside.decrementAndGet();
+            return true;
+        }).subscribe(received::add);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    stream.add(packets.get(i % packets.size()));
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        s.cancel();
+
+        assertEquals(0, overlaps.get());
+        assertEquals(8000, filtered.size());
+        assertEquals(filtered, received);
+    }
+}
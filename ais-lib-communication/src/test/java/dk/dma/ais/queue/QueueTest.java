@@ -16,6 +16,8 @@ package dk.dma.ais.queue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -38,4 +40,142 @@ public class QueueTest {
 
     }
 
+    @Test
+    public void testRingBufferPushPull() throws MessageQueueOverflowException, InterruptedException {
+        IMessageQueue<Integer> q = new RingBufferMessageQueue<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            q.push(i);
+        }
+        try {
+            q.push(1000);
+            Assert.fail("Expected overflow");
+        } catch (MessageQueueOverflowException e) {
+        }
+        List<Integer> list = q.pull(new ArrayList<Integer>(), 100);
+        Assert.assertEquals(100, list.size());
+        Assert.assertEquals(0, list.get(0).intValue());
+        Assert.assertEquals(99, list.get(99).intValue());
+
+        Assert.assertEquals(100, q.pull().intValue());
+        list = q.pullAll(new ArrayList<Integer>());
+        Assert.assertEquals(899, list.size());
+        Assert.assertEquals(999, list.get(898).intValue());
+    }
+
+    @Test
+    public void testRingBufferProducers() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            final IMessageQueue<Integer> q = new RingBufferMessageQueue<>(64, waitStrategy);
+            final int producers = 4;
+            final int count = 5000;
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < count; i++) {
+                                q.put(producer * count + i);
+                            }
+                        } catch (InterruptedException e) {
+                        }
+                    }
+                });
+                t.setDaemon(true);
+                t.start();
+            }
+            // Elements from each producer must arrive in order
+            int[] next = new int[producers];
+            List<Integer> list = new ArrayList<>();
+            int received = 0;
+            while (received < producers * count) {
+                list.clear();
+                q.pull(list, 100);
+                for (Integer e : list) {
+                    int producer = e / count;
+                    Assert.assertEquals(next[producer]++, e % count);
+                }
+                received += list.size();
+            }
+        }
+    }
+
+    @Test
+    public void testRingBufferInterrupt() throws InterruptedException {
+        final IMessageQueue<Integer> q = new RingBufferMessageQueue<>(10, WaitStrategy.PARK);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    q.pull();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        t.start();
+        Thread.sleep(50);
+        t.interrupt();
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBatchPushPull() throws InterruptedException {
+        for (MessageQueueType type : MessageQueueType.values()) {
+            IMessageQueue<Integer> q = type.newQueue(100, WaitStrategy.PARK);
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                batch.add(i);
+            }
+            Assert.assertEquals(60, q.pushAll(batch));
+            // Only 40 more fits
+            Assert.assertEquals(40, q.pushAll(batch));
+            Assert.assertEquals(0, q.pushAll(batch));
+
+            List<Integer> list = q.pullAll(new ArrayList<Integer>());
+            Assert.assertEquals(100, list.size());
+            Assert.assertEquals(59, list.get(59).intValue());
+            Assert.assertEquals(39, list.get(99).intValue());
+        }
+    }
+
+    @Test
+    public void testBatchPutAll() throws InterruptedException {
+        for (MessageQueueType type : MessageQueueType.values()) {
+            final IMessageQueue<Integer> q = type.newQueue(16, WaitStrategy.PARK);
+            final List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                batch.add(i);
+            }
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        q.putAll(batch);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+            t.start();
+            List<Integer> list = new ArrayList<>();
+            while (list.size() < batch.size()) {
+                q.pull(list, 10);
+            }
+            Assert.assertEquals(batch, list);
+            t.join(5000);
+        }
+    }
+
+    @Test
+    public void testOfferTimeout() throws InterruptedException {
+        BlockingMessageQueue<Integer> q = new BlockingMessageQueue<>(2);
+        Assert.assertTrue(q.offer(1, 0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(q.offer(2, 0, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(q.offer(3, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, q.pull().intValue());
+        Assert.assertTrue(q.offer(3, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, q.size());
+    }
+
 }
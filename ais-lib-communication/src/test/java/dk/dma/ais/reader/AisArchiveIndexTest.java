@@ -0,0 +1,147 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketReader;
+
+public class AisArchiveIndexTest {
+
+    Path file;
+
+    @Before
+    public void copyArchive() throws IOException {
+        file = Files.createTempFile("aisarchive", ".txt");
+        try (InputStream is = ClassLoader.getSystemResourceAsStream("stream_example.txt")) {
+            Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @After
+    public void deleteArchive() throws IOException {
+        Files.deleteIfExists(AisArchiveIndex.indexFileFor(file));
+        Files.delete(file);
+    }
+
+    static List<String> find(List<AisPacket> packets, int mmsi, long from, long to) {
+        List<String> result = new ArrayList<>();
+        for (AisPacket p : packets) {
+            AisMessage m = p.tryGetLazyAisMessage();
+            long t = p.getBestTimestamp();
+            if (m != null && m.getUserId() == mmsi && (t == -1 ? from == Long.MIN_VALUE : t >= from && t < to)) {
+                result.add(p.getStringMessage());
+            }
+        }
+        return result;
+    }
+
+    static List<String> strings(List<AisPacket> packets) {
+        List<String> result = new ArrayList<>();
+        for (AisPacket p : packets) {
+            result.add(p.getStringMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void testFindSameAsScan() throws IOException {
+        List<AisPacket> all = new ArrayList<>();
+        try (AisPacketReader r = new AisPacketReader(Files.newInputStream(file))) {
+            r.forEachRemaining(all::add);
+        }
+        AisArchiveIndex index = AisArchiveIndex.build(file, 60000, 1024);
+        assertTrue(index.getBlockCount() > 100);
+        assertEquals(Files.size(file), index.getFileSize());
+
+        index.write(AisArchiveIndex.indexFileFor(file));
+        AisIndexedFileReader reader = new AisIndexedFileReader(file);
+        assertEquals(index.getEntryCount(), reader.getIndex().getEntryCount());
+        assertEquals(index.getBlockCount(), reader.getIndex().getBlockCount());
+
+        Set<Integer> mmsis = new LinkedHashSet<>();
+        for (AisPacket p : all) {
+            AisMessage m = p.tryGetLazyAisMessage();
+            if (m != null && mmsis.size() < 20) {
+                mmsis.add(m.getUserId());
+            }
+        }
+        long start = all.get(0).getBestTimestamp();
+        long middle = all.get(all.size() / 2).getBestTimestamp();
+        for (int mmsi : mmsis) {
+            assertEquals(find(all, mmsi, Long.MIN_VALUE, Long.MAX_VALUE),
+                    strings(reader.find(mmsi, Long.MIN_VALUE, Long.MAX_VALUE)));
+            assertEquals(find(all, mmsi, start, middle), strings(reader.find(mmsi, start, middle)));
+            assertEquals(find(all, mmsi, middle, Long.MAX_VALUE), strings(reader.find(mmsi, middle, Long.MAX_VALUE)));
+        }
+        assertEquals(0, reader.find(-1, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOutOfDate() throws IOException {
+        AisArchiveIndex.build(file).write(AisArchiveIndex.indexFileFor(file));
+        Files.write(file, new byte[] { '\n' }, StandardOpenOption.APPEND);
+        new AisIndexedFileReader(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testModifiedWithSameSize() throws IOException {
+        AisArchiveIndex index = AisArchiveIndex.build(file);
+        index.write(AisArchiveIndex.indexFileFor(file));
+        assertTrue(index.isUpToDate(file));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(index.getLastModified() + 1000));
+        assertEquals(index.getFileSize(), Files.size(file));
+        new AisIndexedFileReader(file);
+    }
+
+    @Test
+    public void testWithoutFinalLineTerminator() throws IOException {
+        List<AisPacket> all = new ArrayList<>();
+        try (AisPacketReader r = new AisPacketReader(Files.newInputStream(file))) {
+            r.forEachRemaining(all::add);
+        }
+        AisPacket last = all.get(all.size() - 1);
+        int mmsi = last.tryGetLazyAisMessage().getUserId();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        AisArchiveIndex index = AisArchiveIndex.build(file, 60000, 1);
+        assertEquals(bytes.length - 1, index.getFileSize());
+        assertEquals(bytes.length - 1, index.getBlockEnd(index.getBlockCount() - 1));
+        AisIndexedFileReader reader = new AisIndexedFileReader(file, index);
+        assertEquals(find(all, mmsi, Long.MIN_VALUE, Long.MAX_VALUE),
+                strings(reader.find(mmsi, Long.MIN_VALUE, Long.MAX_VALUE)));
+    }
+}
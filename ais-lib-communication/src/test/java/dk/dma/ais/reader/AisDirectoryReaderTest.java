@@ -0,0 +1,187 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dk.dma.ais.packet.AisPacket;
+
+public class AisDirectoryReaderTest {
+
+    Path dir;
+
+    @Before
+    public void createArchive() throws IOException {
+        dir = Files.createTempDirectory("aisarchive");
+        for (String name : new String[] { "stream_example.txt", "replay_dump.txt", "replay_dump.txt.gz",
+                "small_cb_example.txt" }) {
+            try (InputStream is = ClassLoader.getSystemResourceAsStream(name)) {
+                Files.copy(is, dir.resolve(name));
+            }
+        }
+    }
+
+    @After
+    public void deleteArchive() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path p : files) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    static List<AisPacket> read(AisDirectoryReader reader) throws InterruptedException {
+        List<AisPacket> packets = Collections.synchronizedList(new ArrayList<>());
+        reader.registerPacketHandler(packets::add);
+        reader.start();
+        reader.join();
+        return packets;
+    }
+
+    static List<String> strings(List<AisPacket> packets) {
+        List<String> result = new ArrayList<>();
+        for (AisPacket p : packets) {
+            result.add(p.getStringMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void testParallelSameAsSequential() throws Exception {
+        List<AisPacket> expected = read(AisReaders.createDirectoryReader(dir.toString(), "*", false));
+        assertFalse(expected.isEmpty());
+
+        AisDirectoryReader reader = AisReaders.createDirectoryReader(dir.toString(), "*", false);
+        reader.setThreads(3);
+        reader.setChunkSize(4096);
+        assertEquals(strings(expected), strings(read(reader)));
+        assertEquals(expected.size(), reader.getNumberOfLinesRead());
+    }
+
+    @Test
+    public void testMergeByTimestamp() throws Exception {
+        List<AisPacket> expected = read(AisReaders.createDirectoryReader(dir.toString(), "*", false));
+
+        AisDirectoryReader reader = AisReaders.createDirectoryReader(dir.toString(), "*", false);
+        reader.setThreads(2);
+        reader.setChunkSize(4096);
+        reader.setMergeByTimestamp(true);
+        List<AisPacket> merged = read(reader);
+        assertEquals(expected.size(), merged.size());
+
+        // The same packets, possibly in another order
+        List<String> sequential = strings(expected);
+        List<String> actual = strings(merged);
+        Collections.sort(sequential);
+        Collections.sort(actual);
+        assertEquals(sequential, actual);
+    }
+
+    @Test
+    public void testMergeByTimestampInterleavedFiles() throws Exception {
+        // Split the packets in timestamp order over three files, so that the files interleave in time
+        List<AisPacket> packets = new ArrayList<>(read(AisReaders.createDirectoryReader(dir.toString(),
+                "stream_example.txt", false)));
+        packets.removeIf(p -> p.getBestTimestamp() < 0);
+        packets.sort(Comparator.comparingLong(AisPacket::getBestTimestamp));
+        assertTrue(packets.size() > 100);
+        assertTrue(packets.get(0).getBestTimestamp() < packets.get(packets.size() - 1).getBestTimestamp());
+        List<List<String>> files = Arrays.asList(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (int i = 0; i < packets.size(); i++) {
+            files.get(i % files.size()).add(packets.get(i).getStringMessage());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Files.write(dir.resolve("interleaved" + i + ".txt"), files.get(i), StandardCharsets.US_ASCII);
+        }
+
+        AisDirectoryReader reader = AisReaders.createDirectoryReader(dir.toString(), "interleaved*", false);
+        reader.setThreads(2);
+        reader.setChunkSize(4096);
+        reader.setMergeByTimestamp(true);
+        List<AisPacket> merged = read(reader);
+        assertEquals(packets.size(), merged.size());
+        for (int i = 1; i < merged.size(); i++) {
+            assertTrue(merged.get(i - 1).getBestTimestamp() <= merged.get(i).getBestTimestamp());
+        }
+        List<String> expected = strings(packets);
+        List<String> actual = strings(merged);
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testMergeByTimestampConsecutiveFiles() throws Exception {
+        // Split the packets in timestamp order over files covering consecutive periods, named in reverse order
+        List<AisPacket> packets = new ArrayList<>(read(AisReaders.createDirectoryReader(dir.toString(),
+                "stream_example.txt", false)));
+        packets.removeIf(p -> p.getBestTimestamp() < 0);
+        packets.sort(Comparator.comparingLong(AisPacket::getBestTimestamp));
+        int days = 4;
+        for (int i = 0; i < days; i++) {
+            List<String> lines = strings(packets.subList(i * packets.size() / days, (i + 1) * packets.size() / days));
+            Files.write(dir.resolve("day" + (days - i) + ".txt"), lines, StandardCharsets.US_ASCII);
+        }
+
+        AisDirectoryReader reader = AisReaders.createDirectoryReader(dir.toString(), "day*", false);
+        reader.setThreads(2);
+        reader.setChunkSize(4096);
+        reader.setMergeByTimestamp(true);
+        List<AisPacket> merged = read(reader);
+        assertEquals(packets.size(), merged.size());
+        for (int i = 1; i < merged.size(); i++) {
+            assertTrue(merged.get(i - 1).getBestTimestamp() <= merged.get(i).getBestTimestamp());
+        }
+        List<String> expected = strings(packets);
+        List<String> actual = strings(merged);
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testEndsGroup() {
+        assertTrue(endsGroup("!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B"));
+        assertTrue(endsGroup("\\g:2-2-1234,c:1241544035*4A\\!BSVDO,2,2,3,B,00000000000,2*3C"));
+        assertFalse(endsGroup("!AIVDM,2,1,3,B,55NBjP01mtGIL@CW;SM<D60P5Ld000000000000P0`<3557l0<50@kk@K5h@00,0*66"));
+        assertFalse(endsGroup("$PGHP,1,2010,6,11,11,46,11,390,231,45,992190934,1,2B*5B"));
+        assertFalse(endsGroup("\\c:1241544035*4A\\"));
+        assertFalse(endsGroup(""));
+    }
+
+    static boolean endsGroup(String line) {
+        byte[] bytes = line.getBytes();
+        return MappedArchiveFile.endsGroup(bytes, bytes.length);
+    }
+}
@@ -0,0 +1,216 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.net.HostAndPort;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketReader;
+
+public class AisTcpReaderEngineTest {
+
+    ServerSocket server;
+
+    byte[] data;
+
+    int expected;
+
+    final List<AisPacket> packets = new ArrayList<>();
+
+    final List<Socket> accepted = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void startServer() throws Exception {
+        data = Files.readAllBytes(Paths.get(ClassLoader.getSystemResource("stream_example.txt").toURI()));
+        try (AisPacketReader r = AisPacketReader.createFromSystemResource("stream_example.txt", false)) {
+            for (AisPacket p = r.readPacket(); p != null; p = r.readPacket()) {
+                packets.add(p);
+            }
+        }
+        expected = packets.size();
+        server = new ServerSocket(0);
+        Thread t = new Thread(() -> {
+            try {
+                for (;;) {
+                    Socket s = server.accept();
+                    accepted.add(s);
+                    try {
+                        OutputStream os = s.getOutputStream();
+                        // Write in small pieces to exercise lines split across reads
+                        for (int i = 0; i < data.length; i += 100) {
+                            os.write(data, i, Math.min(100, data.length - i));
+                            os.flush();
+                        }
+                    } catch (IOException ignore) {
+                        // closed by the client, serve the next one
+                    }
+                }
+            } catch (IOException ignore) {}
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+        for (Socket s : accepted) {
+            s.close();
+        }
+    }
+
+    static CountDownLatch count(AisReader reader, int packets, List<AisPacket> received) {
+        CountDownLatch latch = new CountDownLatch(packets);
+        reader.registerPacketHandler(p -> {
+            received.add(p);
+            latch.countDown();
+        });
+        return latch;
+    }
+
+    @Test
+    public void testManyReadersOnOneThread() throws Exception {
+        try (AisTcpReaderEngine engine = new AisTcpReaderEngine(1)) {
+            List<AisPacket> r1 = new CopyOnWriteArrayList<>();
+            List<AisPacket> r2 = new CopyOnWriteArrayList<>();
+            AisTcpReader reader1 = AisReaders.createReader("localhost", server.getLocalPort());
+            AisTcpReader reader2 = AisReaders.createReader("localhost", server.getLocalPort());
+            CountDownLatch l1 = count(reader1, expected, r1);
+            CountDownLatch l2 = count(reader2, expected, r2);
+            reader1.start(engine);
+            reader2.start(engine);
+            assertTrue(l1.await(10, TimeUnit.SECONDS));
+            assertTrue(l2.await(10, TimeUnit.SECONDS));
+            assertEquals(AisReader.Status.CONNECTED, reader1.getStatus());
+            reader1.stopReader();
+            reader2.stopReader();
+
+            assertEquals(AisDirectoryReaderTest.strings(packets),
+                    AisDirectoryReaderTest.strings(r1.subList(0, expected)));
+            assertEquals(AisDirectoryReaderTest.strings(packets),
+                    AisDirectoryReaderTest.strings(r2.subList(0, expected)));
+        }
+    }
+
+    @Test
+    public void testFailoverToNextHost() throws Exception {
+        int deadPort;
+        try (ServerSocket s = new ServerSocket(0)) {
+            deadPort = s.getLocalPort();
+        }
+        try (AisTcpReaderEngine engine = new AisTcpReaderEngine(2)) {
+            // The last host is tried first
+            AisTcpReader reader = AisReaders.createReader("localhost:" + server.getLocalPort() + ",localhost:"
+                    + deadPort);
+            reader.setReconnectInterval(100);
+            CountDownLatch l = count(reader, expected, new CopyOnWriteArrayList<>());
+            reader.start(engine);
+            assertTrue(l.await(10, TimeUnit.SECONDS));
+            assertEquals(server.getLocalPort(), reader.getPort());
+            reader.stopReader();
+        }
+    }
+
+    @Test
+    public void testUnexpectedFailureOnlyFailsItsConnection() throws Exception {
+        try (AisTcpReaderEngine engine = new AisTcpReaderEngine(1)) {
+            AtomicBoolean armed = new AtomicBoolean();
+            AtomicBoolean thrown = new AtomicBoolean();
+            // Fails once in the I/O thread after the first packet has been received
+            AisTcpReader failing = new AisTcpReader() {
+                @Override
+                protected boolean isShutdown() {
+                    if (armed.compareAndSet(true, false)) {
+                        thrown.set(true);
+                        throw new IllegalStateException("failed");
+                    }
+                    return super.isShutdown();
+                }
+            };
+            failing.addHostPort(HostAndPort.fromParts("localhost", server.getLocalPort()));
+            failing.setReconnectInterval(100);
+            failing.registerPacketHandler(p -> armed.compareAndSet(false, !thrown.get()));
+            CountDownLatch l1 = count(failing, expected, new CopyOnWriteArrayList<>());
+            AisTcpReader other = AisReaders.createReader("localhost", server.getLocalPort());
+            List<AisPacket> received = new CopyOnWriteArrayList<>();
+            CountDownLatch l2 = count(other, expected, received);
+            failing.start(engine);
+            other.start(engine);
+            assertTrue(l1.await(10, TimeUnit.SECONDS));
+            assertTrue(l2.await(10, TimeUnit.SECONDS));
+            assertTrue(thrown.get());
+            failing.stopReader();
+            other.stopReader();
+            assertEquals(AisDirectoryReaderTest.strings(packets),
+                    AisDirectoryReaderTest.strings(received.subList(0, expected)));
+        }
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        try (AisTcpReaderEngine engine = new AisTcpReaderEngine(1)) {
+            AisTcpReader reader = AisReaders.createReader("localhost", server.getLocalPort());
+            CountDownLatch l = count(reader, 1, new CopyOnWriteArrayList<>());
+            reader.start(engine);
+            assertTrue(l.await(10, TimeUnit.SECONDS));
+            byte[] message = "$AIABM,1,1,0,219000000,0,6,0,0*00\r\n".getBytes(StandardCharsets.US_ASCII);
+            reader.outputStream.write(message);
+            byte[] read = new byte[message.length];
+            InputStream in = accepted.get(0).getInputStream();
+            for (int n = 0; n < read.length;) {
+                int r = in.read(read, n, read.length - n);
+                assertTrue(r > 0);
+                n += r;
+            }
+            assertArrayEquals(message, read);
+            reader.stopReader();
+        }
+    }
+
+    @Test
+    public void testIsAbk() {
+        assertTrue(ByteLineParser.isAbk(ascii("$AIABK,2573,A,6,0,3*24")));
+        assertTrue(ByteLineParser.isAbk(ascii("\\g:1-2-0001*4A\\$AIABK,2573,A,6,0,3*24")));
+        assertEquals(false, ByteLineParser.isAbk(ascii("!AIVDM,1,1,,A,13u?etPv2;0n:dDPwUM1U1Cb069D,0*24")));
+    }
+
+    static ByteBuffer ascii(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,169 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketReader;
+
+public class AisUdpReaderTest {
+
+    AisUdpReader reader;
+
+    int port;
+
+    final List<AisPacket> received = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void createReader() throws IOException {
+        try (DatagramSocket s = new DatagramSocket(0)) {
+            port = s.getLocalPort();
+        }
+        reader = AisReaders.createUdpReader(port);
+        reader.setReceiveBufferSize(1024 * 1024);
+        reader.registerPacketHandler(received::add);
+    }
+
+    @After
+    public void stopReader() throws InterruptedException {
+        reader.stopReader();
+        reader.join(5000);
+    }
+
+    void startReader() throws InterruptedException {
+        reader.start();
+        for (int i = 0; reader.getStatus() != AisReader.Status.CONNECTED; i++) {
+            assertTrue(i < 100);
+            Thread.sleep(20);
+        }
+    }
+
+    void send(DatagramSocket socket, String datagram) throws IOException {
+        byte[] bytes = datagram.getBytes(StandardCharsets.US_ASCII);
+        socket.send(new DatagramPacket(bytes, bytes.length, InetAddress.getLoopbackAddress(), port));
+    }
+
+    void awaitReceived(int count) throws InterruptedException {
+        for (int i = 0; received.size() < count; i++) {
+            assertTrue("received " + received.size() + " of " + count, i < 250);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testLinePerDatagram() throws Exception {
+        List<String> expected = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        try (AisPacketReader r = AisPacketReader.createFromSystemResource("small_example.txt", false)) {
+            for (AisPacket p = r.readPacket(); p != null; p = r.readPacket()) {
+                expected.add(p.getStringMessage());
+                lines.addAll(p.getStringMessageLines());
+            }
+        }
+        startReader();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            for (String line : lines) {
+                send(socket, line + "\r\n");
+            }
+        }
+        awaitReceived(expected.size());
+        List<String> actual = new ArrayList<>();
+        for (AisPacket p : received) {
+            actual.add(p.getStringMessage());
+        }
+        assertEquals(expected, actual);
+        assertEquals(lines.size(), reader.getNumberOfDatagramsReceived());
+    }
+
+    @Test
+    public void testManyLinesPerDatagram() throws Exception {
+        startReader();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            // The last line is not terminated
+            send(socket, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B\r\n"
+                    + "!AIVDM,2,1,3,A,802R5Ph0Bk@Ch@Fln<ljQhs2HGwwwwwwwwwwwwwwwwwwwwwwwwwwwwww,0*48\n"
+                    + "!AIVDM,2,2,3,A,wwt,2*63");
+            send(socket, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B");
+        }
+        awaitReceived(3);
+        assertEquals(2, received.get(1).getStringMessageLines().size());
+        assertEquals(2, reader.getNumberOfDatagramsReceived());
+    }
+
+    @Test
+    public void testInvalidLinesCounted() throws Exception {
+        startReader();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            send(socket, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2C\r\n");
+            send(socket, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B\r\n");
+        }
+        awaitReceived(1);
+        assertEquals(1, reader.getNumberOfInvalidLines());
+    }
+
+    @Test
+    public void testHandlerExceptionsNotCountedAsInvalid() throws Exception {
+        reader.registerPacketHandler(p -> {
+            if (received.size() == 1) {
+                throw new IllegalStateException("handler failure");
+            }
+        });
+        startReader();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            send(socket, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B\r\n");
+            send(socket, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B\r\n");
+        }
+        awaitReceived(2);
+        assertEquals(0, reader.getNumberOfInvalidLines());
+    }
+
+    @Test
+    public void testManyReceiveThreads() throws Exception {
+        reader.setReceiveThreads(4);
+        startReader();
+        List<DatagramSocket> senders = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                senders.add(new DatagramSocket());
+            }
+            for (int i = 0; i < 100; i++) {
+                for (DatagramSocket s : senders) {
+                    send(s, "!AIVDM,1,1,,B,402=481uaUcf;OQ55JS9ITi025Jp,0*2B\r\n");
+                }
+            }
+        } finally {
+            for (DatagramSocket s : senders) {
+                s.close();
+            }
+        }
+        awaitReceived(800);
+        assertEquals(800, reader.getNumberOfDatagramsReceived());
+    }
+}
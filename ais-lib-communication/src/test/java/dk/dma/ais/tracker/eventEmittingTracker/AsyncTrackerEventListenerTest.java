@@ -0,0 +1,201 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.tracker.eventEmittingTracker;
+
+import dk.dma.ais.tracker.eventEmittingTracker.events.CellChangedEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.PositionChangedEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TimeEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackStaleEvent;
+import dk.dma.enav.model.geometry.grid.Grid;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncTrackerEventListenerTest {
+
+    /** Records the events like {@link ShardedEventEmittingTrackerTest.EventRecorder} */
+    static class ListenerRecorder implements TrackerEventListener {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        volatile Thread thread;
+
+        @Override
+        public void onCellChanged(CellChangedEvent event) {
+            thread = Thread.currentThread();
+            events.add("cell " + event.getTrack().getMmsi() + " " + event.getOldCellId());
+        }
+
+        @Override
+        public void onPositionChanged(PositionChangedEvent event) {
+            events.add("position " + event.getTrack().getMmsi() + " " + event.getOldPosition());
+        }
+
+        @Override
+        public void onTrackStale(TrackStaleEvent event) {
+            events.add("stale " + event.getTrack().getMmsi());
+        }
+
+        @Override
+        public void onTime(TimeEvent event) {
+            events.add("time " + event.getTimestamp());
+        }
+    }
+
+    @Test
+    public void testSameEventsAsSubscriber() throws Exception {
+        EventEmittingTrackerImpl tracker = new EventEmittingTrackerImpl(Grid.createSize(100));
+        ShardedEventEmittingTrackerTest.EventRecorder expected = new ShardedEventEmittingTrackerTest.EventRecorder();
+        tracker.registerSubscriber(expected);
+        ListenerRecorder direct = new ListenerRecorder();
+        tracker.addListener(direct);
+        ListenerRecorder async = new ListenerRecorder();
+        AsyncTrackerEventListener listener = new AsyncTrackerEventListener(async, 16,
+                AsyncTrackerEventListener.OverflowPolicy.BLOCK);
+        tracker.addListener(listener);
+
+        ShardedEventEmittingTrackerTest.readPackets().forEach(tracker::update);
+        listener.close();
+
+        assertTrue(expected.events.size() > 100);
+        assertEquals(expected.events, direct.events);
+        assertEquals(expected.events, async.events);
+        assertEquals(0, listener.getDroppedCount());
+        assertEquals(Thread.currentThread(), direct.thread);
+        assertNotEquals(Thread.currentThread(), async.thread);
+    }
+
+    @Test
+    public void testFailingListener() throws Exception {
+        EventEmittingTrackerImpl tracker = new EventEmittingTrackerImpl(Grid.createSize(100));
+        ShardedEventEmittingTrackerTest.EventRecorder expected = new ShardedEventEmittingTrackerTest.EventRecorder();
+        tracker.registerSubscriber(expected);
+        tracker.addListener(new TrackerEventListener() {
+            @Override
+            public void onTime(TimeEvent event) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        ListenerRecorder direct = new ListenerRecorder();
+        tracker.addListener(direct);
+
+        // The failure does not reach the update, nor keep the event from the others
+        ShardedEventEmittingTrackerTest.readPackets().forEach(tracker::update);
+        assertTrue(expected.events.stream().anyMatch(e -> e.startsWith("time ")));
+        assertEquals(expected.events, direct.events);
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ListenerRecorder slow = new ListenerRecorder() {
+            @Override
+            public void onTime(TimeEvent event) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ignore) {}
+                super.onTime(event);
+            }
+        };
+        AsyncTrackerEventListener listener = new AsyncTrackerEventListener(slow, 10,
+                AsyncTrackerEventListener.OverflowPolicy.DROP);
+        for (int i = 0; i < 100; i++) {
+            listener.onEvent(new TimeEvent(Instant.ofEpochMilli(i), null));
+        }
+        // At most the events of one pull are handed over while the queue is full
+        assertTrue(listener.getDroppedCount() >= 100 - 2 * 10);
+        blocked.countDown();
+        listener.close();
+
+        // The events not dropped are received in order
+        assertEquals(100 - listener.getDroppedCount(), slow.events.size());
+        for (int i = 1; i < slow.events.size(); i++) {
+            long previous = Instant.parse(slow.events.get(i - 1).substring(5)).toEpochMilli();
+            assertTrue(Instant.parse(slow.events.get(i).substring(5)).toEpochMilli() > previous);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testEventsAfterCloseDropped() throws Exception {
+        ListenerRecorder recorder = new ListenerRecorder();
+        AsyncTrackerEventListener listener = new AsyncTrackerEventListener(recorder, 10,
+                AsyncTrackerEventListener.OverflowPolicy.BLOCK);
+        listener.onEvent(new TimeEvent(Instant.ofEpochMilli(1), null));
+        listener.close();
+        // Would wait forever for the stopped reader once the queue is full
+        for (int i = 0; i < 100; i++) {
+            listener.onEvent(new TimeEvent(Instant.ofEpochMilli(i + 2), null));
+        }
+        assertEquals(Collections.singletonList("time " + Instant.ofEpochMilli(1)), recorder.events);
+        assertEquals(0, listener.getQueueSize());
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitingProducersReleasedByClose() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ListenerRecorder slow = new ListenerRecorder() {
+            @Override
+            public void onTime(TimeEvent event) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ignore) {}
+                super.onTime(event);
+            }
+        };
+        AsyncTrackerEventListener listener = new AsyncTrackerEventListener(slow, 2,
+                AsyncTrackerEventListener.OverflowPolicy.BLOCK);
+        // More producers waiting for room than the queue holds
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 5; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    listener.onEvent(new TimeEvent(Instant.ofEpochMilli(i), null));
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            while (producer.getState() == Thread.State.RUNNABLE) {
+                Thread.sleep(1);
+            }
+        }
+        Thread closer = new Thread(() -> {
+            try {
+                listener.close();
+            } catch (InterruptedException ignore) {}
+        });
+        closer.start();
+        while (closer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        blocked.countDown();
+        closer.join();
+
+        // The producers must not wait forever for the stopped reader
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(slow.events.size() < 5000);
+    }
+}
@@ -0,0 +1,131 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.tracker.eventEmittingTracker;
+
+import com.google.common.eventbus.Subscribe;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketReader;
+import dk.dma.ais.tracker.eventEmittingTracker.events.CellChangedEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.PositionChangedEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TimeEvent;
+import dk.dma.ais.tracker.eventEmittingTracker.events.TrackStaleEvent;
+import dk.dma.enav.model.geometry.grid.Grid;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedEventEmittingTrackerTest {
+
+    final Grid grid = Grid.createSize(100);
+
+    /** Records the events as strings, with the values known when the event was created */
+    public static class EventRecorder {
+        final List<String> events = new ArrayList<>();
+
+        @Subscribe
+        public void onCellChanged(CellChangedEvent event) {
+            events.add("cell " + event.getTrack().getMmsi() + " " + event.getOldCellId());
+        }
+
+        @Subscribe
+        public void onPositionChanged(PositionChangedEvent event) {
+            events.add("position " + event.getTrack().getMmsi() + " " + event.getOldPosition());
+        }
+
+        @Subscribe
+        public void onTrackStale(TrackStaleEvent event) {
+            events.add("stale " + event.getTrack().getMmsi());
+        }
+
+        @Subscribe
+        public void onTime(TimeEvent event) {
+            events.add("time " + event.getTimestamp());
+        }
+    }
+
+    static List<AisPacket> readPackets() throws IOException {
+        List<AisPacket> packets = new ArrayList<>();
+        try (AisPacketReader r = new AisPacketReader(ClassLoader.getSystemResourceAsStream("stream_example.txt"))) {
+            r.forEachRemaining(p -> {
+                if (p.tryGetAisMessage() != null) {
+                    packets.add(p);
+                }
+            });
+        }
+        return packets;
+    }
+
+    @Test
+    public void testSameEventsAsUnsharded() throws Exception {
+        List<AisPacket> packets = readPackets();
+
+        EventEmittingTrackerImpl expectedTracker = new EventEmittingTrackerImpl(grid);
+        EventRecorder expected = new EventRecorder();
+        expectedTracker.registerSubscriber(expected);
+        packets.forEach(expectedTracker::update);
+        assertTrue(expected.events.size() > 100);
+
+        for (int shards : new int[] { 1, 4 }) {
+            EventRecorder actual = new EventRecorder();
+            ShardedEventEmittingTracker tracker = new ShardedEventEmittingTracker(grid, shards);
+            tracker.registerSubscriber(actual);
+            // Read the packets again, so the messages are decoded by the shards
+            readPackets().forEach(tracker::update);
+            tracker.close();
+
+            assertEquals(expected.events, actual.events);
+            assertEquals(expectedTracker.size(), tracker.size());
+            assertEquals(expectedTracker.size(), tracker.getTracks().size());
+            for (Track track : expectedTracker.getTracks()) {
+                assertNotNull(tracker.get(track.getMmsi()));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateAfterClose() throws Exception {
+        ShardedEventEmittingTracker tracker = new ShardedEventEmittingTracker(grid, 2);
+        tracker.close();
+        tracker.update(readPackets().get(0));
+    }
+
+    @Test
+    public void testSubscriberMustNotUpdate() throws Exception {
+        List<AisPacket> packets = readPackets();
+        ShardedEventEmittingTracker tracker = new ShardedEventEmittingTracker(grid, 2);
+        List<Exception> failures = new ArrayList<>();
+        tracker.registerSubscriber(new Object() {
+            @Subscribe
+            public void onPositionChanged(PositionChangedEvent event) {
+                try {
+                    tracker.update(packets.get(0));
+                } catch (IllegalStateException e) {
+                    failures.add(e);
+                }
+            }
+        });
+        packets.forEach(tracker::update);
+        tracker.close();
+        assertTrue(failures.size() > 0);
+    }
+}
@@ -16,6 +16,7 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TrackTest {
@@ -160,6 +161,63 @@ public class TrackTest {
         trackingReports.forEach(p -> assertTrue(p.getTimestamp() >=  oldestKept));
     }
 
+    @Test
+    public void testGetTrackingReportAt() {
+        long t0 = new GregorianCalendar(2014, 02, 11, 12, 00, 00).getTimeInMillis();
+        // Add reports out of order, and more than fit in the initial capacity
+        for (int i = 0; i < 50; i += 2) {
+            track.update(t0 + i * 1000, Position.create(56.00, 12.00 + i / 100.0), 45.0f, 10.1f, 10.1f);
+        }
+        for (int i = 1; i < 50; i += 2) {
+            track.update(t0 + i * 1000, Position.create(56.00, 12.00 + i / 100.0), 45.0f, 10.1f, 10.1f);
+        }
+        // A report at the same time as a kept report is ignored
+        track.update(t0, Position.create(57.00, 13.00), 45.0f, 10.1f, 10.1f);
+
+        List<TrackingReport> trackingReports = track.getTrackingReports();
+        assertEquals(50, trackingReports.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(t0 + i * 1000, trackingReports.get(i).getTimestamp());
+            TrackingReport trackingReport = track.getTrackingReportAt(t0 + i * 1000);
+            assertEquals(t0 + i * 1000, trackingReport.getTimestamp());
+            assertEquals(12.00 + i / 100.0, trackingReport.getPosition().getLongitude(), 1e-9);
+        }
+        assertNull(track.getTrackingReportAt(t0 + 500));
+        assertEquals(t0 + 49000, track.getTimeOfLastPositionReport());
+
+        // Wrap around the ring while purging
+        for (int i = 1; i <= 100; i++) {
+            track.update(t0 + 49000 + i * 60000, Position.create(56.00, 12.00), 45.0f, 10.1f, 10.1f);
+            assertEquals(t0 + 49000 + i * 60000, track.getNewestTrackingReport().getTimestamp());
+            assertTrue(track.getOldestTrackingReport().getTimestamp() >= t0 + 49000 + (i - track.MAX_AGE_POSITION_REPORTS_MINUTES) * 60000);
+        }
+        assertEquals(track.MAX_AGE_POSITION_REPORTS_MINUTES + 1, track.getTrackingReports().size());
+        assertEquals(-1, track.getTimeOfLastAisTrackingReport());
+    }
+
+    @Test
+    public void testTrackingReportProperties() {
+        long t0 = new GregorianCalendar(2014, 02, 11, 12, 00, 00).getTimeInMillis();
+        track.update(t0, Position.create(56.00, 12.00), 45.0f, 10.1f, 10.1f);
+        track.update(t0 + 1000, Position.create(56.00, 12.01), 45.0f, 10.1f, 10.1f);
+
+        // Properties set on a report read from the track are kept by the track
+        track.getTrackingReportAt(t0).setProperty("key", "value");
+        assertEquals("value", track.getTrackingReportAt(t0).getProperty("key"));
+        assertEquals("value", track.getOldestTrackingReport().getProperty("key"));
+        assertNull(track.getTrackingReportAt(t0 + 1000).getProperty("key"));
+        track.getTrackingReports().get(0).removeProperty("key");
+        assertNull(track.getTrackingReportAt(t0).getProperty("key"));
+
+        track.getNewestTrackingReport().setProperty("key", 1);
+        assertEquals(1, track.getTrackingReportAt(t0 + 1000).getProperty("key"));
+
+        // And are dropped with the report
+        track.update(t0 + 30 * 60000, Position.create(56.00, 12.03), 45.0f, 10.1f, 10.1f);
+        assertEquals(1, track.getTrackingReports().size());
+        assertNull(track.getNewestTrackingReport().getProperty("key"));
+    }
+
     @Test
     public void testPredictEast() {
         track.update(new GregorianCalendar(2014, 02, 11, 12, 32, 00).getTimeInMillis(), Position.create(56.00, 12.00), 90.0f, 1.0f, 1.0f);
@@ -264,6 +322,34 @@ public class TrackTest {
         }
     }
 
+    @Test
+    public void testAisTrackingReportsReadFromHistory() throws Exception {
+        AisPacket packet = AisPacket.from("$PGHP,1,2014,4,10,13,30,28,385,219,,2190067,1,12*26\r\n"
+                + "!BSVDM,1,1,,A,13@ng7P01dPeo6`OOc:onVAp0p@W,0*12");
+        AisTrackingReport added = new AisTrackingReport(packet);
+        Track track = new Track(219000606);
+        track.update(packet);
+
+        TrackingReport newest = track.getNewestTrackingReport();
+        assertSame(newest, track.getNewestTrackingReport());
+        assertEquals(added, newest);
+        assertEquals(added.getTimestamp(), newest.getTimestamp());
+        assertEquals(added.getPosition(), newest.getPosition());
+        assertEquals(added.getCourseOverGround(), newest.getCourseOverGround(), 0);
+        assertEquals(added.getSpeedOverGround(), newest.getSpeedOverGround(), 0);
+        assertEquals(added.getTrueHeading(), newest.getTrueHeading(), 0);
+        assertEquals(packet.getStringMessage(), ((AisTrackingReport) newest).getPacket().getStringMessage());
+        assertEquals(added, track.getTrackingReportAt(packet.getBestTimestamp()));
+
+        // Properties set through another report of the same timestamp are seen by the newest report
+        track.getTrackingReportAt(packet.getBestTimestamp()).setProperty("key", "value");
+        assertEquals("value", track.getNewestTrackingReport().getProperty("key"));
+
+        track.update(packet.getBestTimestamp() + 5000, Position.create(55, 11), 22f, 2.4f, 25f);
+        assertNotSame(newest, track.getNewestTrackingReport());
+        assertTrue(track.getNewestTrackingReport() instanceof InterpolatedTrackingReport);
+    }
+
     @Test
     public void testClone() throws CloneNotSupportedException {
         Track track = new Track(219000606);
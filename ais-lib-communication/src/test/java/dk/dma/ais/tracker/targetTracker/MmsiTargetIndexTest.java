@@ -0,0 +1,121 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.tracker.targetTracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import dk.dma.ais.tracker.targetTracker.TargetTracker.MmsiTarget;
+
+/**
+ * Tests {@link MmsiTargetIndex}
+ */
+public class MmsiTargetIndexTest {
+
+    @Test
+    public void getOrCreate() {
+        MmsiTargetIndex index = new MmsiTargetIndex();
+        assertNull(index.get(219000001));
+        MmsiTarget t = index.getOrCreate(219000001);
+        assertEquals(219000001, t.mmsi);
+        assertSame(t, index.get(219000001));
+        assertSame(t, index.getOrCreate(219000001));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void manyTargets() {
+        MmsiTargetIndex index = new MmsiTargetIndex();
+        for (int mmsi = 219000000; mmsi < 219100000; mmsi++) {
+            index.getOrCreate(mmsi);
+        }
+        assertEquals(100000, index.size());
+        for (int mmsi = 219000000; mmsi < 219100000; mmsi++) {
+            assertEquals(mmsi, index.get(mmsi).mmsi);
+        }
+        assertNull(index.get(219100000));
+
+        Set<Integer> mmsis = new HashSet<>();
+        index.forEach(t -> mmsis.add(t.mmsi));
+        assertEquals(100000, mmsis.size());
+        assertEquals(100000, index.stream(true).count());
+        assertEquals(100000, index.stream(false).count());
+    }
+
+    @Test
+    public void remove() {
+        MmsiTargetIndex index = new MmsiTargetIndex();
+        for (int mmsi = 0; mmsi < 10000; mmsi++) {
+            index.getOrCreate(mmsi);
+        }
+        for (int mmsi = 0; mmsi < 10000; mmsi += 2) {
+            assertTrue(index.remove(index.get(mmsi)));
+        }
+        assertEquals(5000, index.size());
+        for (int mmsi = 0; mmsi < 10000; mmsi++) {
+            assertEquals(mmsi % 2 == 1, index.get(mmsi) != null);
+        }
+        // A removed target is not removed again, and a new target is created in its place
+        MmsiTarget removed = new MmsiTarget(2);
+        assertFalse(index.remove(removed));
+        assertNotSame(removed, index.getOrCreate(2));
+        assertEquals(5001, index.size());
+
+        // Reusing the slots of removed targets must not grow the index without bounds
+        for (int i = 0; i < 100; i++) {
+            for (int mmsi = 0; mmsi < 10000; mmsi += 2) {
+                index.remove(index.getOrCreate(mmsi));
+            }
+        }
+        assertEquals(5000, index.size());
+        assertEquals(5000, index.stream(false).count());
+    }
+
+    @Test
+    public void concurrentGetOrCreate() throws InterruptedException {
+        MmsiTargetIndex index = new MmsiTargetIndex();
+        MmsiTarget[][] results = new MmsiTarget[4][50000];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            MmsiTarget[] result = results[i];
+            threads[i] = new Thread(() -> {
+                for (int mmsi = 0; mmsi < result.length; mmsi++) {
+                    result[mmsi] = index.getOrCreate(mmsi);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(50000, index.size());
+        // All threads must see the same target for a MMSI number
+        for (int mmsi = 0; mmsi < 50000; mmsi++) {
+            MmsiTarget t = index.get(mmsi);
+            for (MmsiTarget[] result : results) {
+                assertSame(t, result[mmsi]);
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.tracker.targetTracker;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketReader;
+import dk.dma.ais.tracker.targetTracker.TargetTracker.MmsiTarget;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TargetTrackerFileBackupServiceTest {
+
+    Path dir;
+
+    List<AisPacket> packets = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("targetbackup");
+        try (AisPacketReader r = new AisPacketReader(ClassLoader.getSystemResourceAsStream("stream_example.txt"))) {
+            r.forEachRemaining(p -> {
+                if (p.tryGetAisMessage() != null) {
+                    packets.add(p);
+                }
+            });
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path p : files) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /** Returns a description of each target info of the tracker */
+    static Set<String> infos(TargetTracker tracker) {
+        Set<String> result = new HashSet<>();
+        tracker.targets.forEach(t -> {
+            for (TargetInfo i : t.infos) {
+                result.add(i.getMmsi() + " " + i.getPacketSource() + " " + i.getTargetType() + " "
+                        + i.getPositionTimestamp() + " " + i.getPosition() + " " + i.getCog() + " " + i.getSog() + " "
+                        + i.getHeading() + " " + i.getNavStatus() + " " + Arrays.toString(i.positionPacket) + " "
+                        + i.getStaticTimestamp() + " " + i.getStaticShipType() + " " + Arrays.toString(i.staticData1)
+                        + " " + Arrays.toString(i.staticData2));
+            }
+        });
+        return result;
+    }
+
+    static long numberOfInfos(TargetTracker tracker) {
+        return tracker.targets.stream(false).mapToLong(t -> t.infos.length).sum();
+    }
+
+    @Test
+    public void testRestoreSnapshotAndLog() throws Exception {
+        TargetTracker tracker = new TargetTracker();
+        TargetTrackerFileBackupService service = new TargetTrackerFileBackupService(tracker, dir);
+        packets.subList(0, packets.size() / 2).forEach(tracker::update);
+        service.writeSnapshot();
+        packets.subList(packets.size() / 2, packets.size()).forEach(tracker::update);
+        service.writeChanges();
+        service.writeChanges(); // nothing has changed
+        service.shutDown();
+        assertTrue(Files.size(service.logPath(1)) > 8);
+
+        TargetTracker restored = new TargetTracker();
+        TargetTrackerFileBackupService restoreService = new TargetTrackerFileBackupService(restored, dir);
+        // Infos changed since the snapshot are in both the snapshot and the log
+        assertTrue(restoreService.restoreBackupFiles() >= numberOfInfos(tracker));
+        assertEquals(infos(tracker), infos(restored));
+        assertEquals(tracker.countByCell(), restored.countByCell());
+
+        // A new snapshot replaces the old files
+        restoreService.writeSnapshot();
+        restoreService.shutDown();
+        assertFalse(Files.exists(service.snapshotPath(1)));
+        assertFalse(Files.exists(service.logPath(1)));
+        TargetTracker restoredAgain = new TargetTracker();
+        new TargetTrackerFileBackupService(restoredAgain, dir).restoreBackupFiles();
+        assertEquals(infos(tracker), infos(restoredAgain));
+    }
+
+    @Test
+    public void testDamagedFiles() throws Exception {
+        TargetTracker tracker = new TargetTracker();
+        TargetTrackerFileBackupService service = new TargetTrackerFileBackupService(tracker, dir);
+        packets.subList(0, packets.size() / 2).forEach(tracker::update);
+        service.writeSnapshot();
+        long inSnapshot = numberOfInfos(tracker);
+        Set<String> snapshotInfos = infos(tracker);
+        packets.subList(packets.size() / 2, packets.size()).forEach(tracker::update);
+        service.writeChanges();
+        service.shutDown();
+
+        // A log cut short by a crash is read up to the incomplete segment
+        try (FileChannel ch = FileChannel.open(service.logPath(1), StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 10);
+        }
+        TargetTracker restored = new TargetTracker();
+        assertEquals(inSnapshot, new TargetTrackerFileBackupService(restored, dir).restoreBackupFiles());
+        assertEquals(snapshotInfos, infos(restored));
+
+        // A damaged segment is skipped
+        byte[] snapshot = Files.readAllBytes(service.snapshotPath(1));
+        snapshot[snapshot.length - 100]++;
+        Files.write(service.snapshotPath(1), snapshot);
+        restored = new TargetTracker();
+        long restoredInfos = new TargetTrackerFileBackupService(restored, dir).restoreBackupFiles();
+        assertTrue(restoredInfos < inSnapshot);
+        assertTrue(snapshotInfos.containsAll(infos(restored)));
+    }
+
+    /** Writes the infos of the targets in the serialized format of former versions of the backup service */
+    static void writeOldBackupFile(Path path, List<MmsiTarget> targets) throws IOException {
+        try (OutputStream os = Files.newOutputStream(path);
+                ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(os))) {
+            for (MmsiTarget t : targets) {
+                for (TargetInfo i : t.infos) {
+                    oos.writeObject(i.getPacketSource());
+                    oos.writeObject(i);
+                }
+            }
+            oos.writeObject(null);
+            oos.writeObject(null);
+        }
+    }
+
+    @Test
+    public void testRestoreOldBackupFiles() throws Exception {
+        TargetTracker tracker = new TargetTracker();
+        packets.forEach(tracker::update);
+        List<MmsiTarget> targets = new ArrayList<>();
+        tracker.targets.forEach(targets::add);
+        Path full = dir.resolve("aisviewer_backup-20140101-00000-00");
+        Path partial = dir.resolve("aisviewer_backup-20140101-00000-01");
+        writeOldBackupFile(full, targets.subList(0, targets.size() / 2));
+        writeOldBackupFile(partial, targets.subList(targets.size() / 2, targets.size()));
+
+        TargetTracker restored = new TargetTracker();
+        TargetTrackerFileBackupService service = new TargetTrackerFileBackupService(restored, dir);
+        assertEquals(numberOfInfos(tracker), service.restoreBackupFiles());
+        assertEquals(infos(tracker), infos(restored));
+
+        // The files of the former version are deleted once migrated to a snapshot
+        service.writeSnapshot();
+        service.shutDown();
+        assertFalse(Files.exists(full));
+        assertFalse(Files.exists(partial));
+        TargetTracker restoredAgain = new TargetTracker();
+        new TargetTrackerFileBackupService(restoredAgain, dir).restoreBackupFiles();
+        assertEquals(infos(tracker), infos(restoredAgain));
+    }
+
+    @Test
+    public void testKeepDamagedOldBackupFiles() throws Exception {
+        Path full = dir.resolve("aisviewer_backup-20140101-00000-00");
+        Files.write(full, new byte[] { 1, 2, 3 });
+        TargetTrackerFileBackupService service = new TargetTrackerFileBackupService(new TargetTracker(), dir);
+        assertEquals(0, service.restoreBackupFiles());
+        service.writeSnapshot();
+        service.shutDown();
+        assertTrue(Files.exists(full));
+    }
+}
@@ -17,10 +17,20 @@ package dk.dma.ais.tracker.targetTracker;
 
 import dk.dma.ais.data.AisTarget;
 import dk.dma.ais.data.AisVesselTarget;
+import dk.dma.ais.message.AisMessage3;
+import dk.dma.ais.message.AisPosition;
+import dk.dma.ais.packet.AisPacket;
 import dk.dma.ais.packet.AisPacketSource;
 import dk.dma.ais.reader.AisReader;
 import dk.dma.ais.reader.AisReaders;
+import dk.dma.ais.sentence.CommentBlock;
+import dk.dma.ais.sentence.Vdm;
 import dk.dma.enav.model.Country;
+import dk.dma.enav.model.geometry.Area;
+import dk.dma.enav.model.geometry.BoundingBox;
+import dk.dma.enav.model.geometry.Circle;
+import dk.dma.enav.model.geometry.CoordinateSystem;
+import dk.dma.enav.model.geometry.Position;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -28,16 +38,19 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TargetTrackerTest {
 
@@ -174,4 +187,94 @@ public class TargetTrackerTest {
         ).count());
     }
 
+    @Test
+    public void testFindWithin() {
+        assertFindWithin(BoundingBox.create(Position.create(54, 8), Position.create(58, 16), CoordinateSystem.GEODETIC));
+        assertFindWithin(new Circle(55.7, 12.6, 50000, CoordinateSystem.GEODETIC));
+        assertFindWithin(new Circle(0, 0, 1000, CoordinateSystem.GEODETIC));
+    }
+
+    private void assertFindWithin(Area area) {
+        Set<Integer> expected = targetTracker.stream()
+                .filter(t -> t.getPosition() != null && area.contains(t.getPosition())).map(TargetInfo::getMmsi)
+                .collect(Collectors.toSet());
+        List<TargetInfo> found = targetTracker.findWithin(area);
+        assertEquals(expected.size(), found.size());
+        assertEquals(expected, found.stream().map(TargetInfo::getMmsi).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void testFindNearest() {
+        for (Position p : new Position[] { Position.create(55.7, 12.6), Position.create(64.2, -51.7),
+                Position.create(0, 0), Position.create(-33.9, 151.2) }) {
+            for (int k : new int[] { 1, 10, 100 }) {
+                // Compare the distances, as targets at the same distance may come in any order
+                List<Double> expected = targetTracker.stream().filter(t -> t.getPosition() != null)
+                        .map(t -> p.geodesicDistanceTo(t.getPosition())).sorted().limit(k)
+                        .collect(Collectors.toList());
+                List<Double> found = targetTracker.findNearest(p, k).stream()
+                        .map(t -> p.geodesicDistanceTo(t.getPosition())).collect(Collectors.toList());
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void testCountByCell() {
+        Map<Integer, Integer> counts = targetTracker.countByCell();
+        assertTrue(counts.values().stream().mapToInt(Integer::intValue).sum() >= targetTracker.stream()
+                .filter(t -> t.getPosition() != null).count());
+        for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
+            BoundingBox cell = targetTracker.getCellBoundingBox(e.getKey());
+            Position center = Position.create((cell.getMinLat() + cell.getMaxLat()) / 2,
+                    (cell.getMinLon() + cell.getMaxLon()) / 2);
+            assertEquals(e.getKey().intValue(), targetTracker.getCellId(center));
+        }
+
+        BoundingBox bb = BoundingBox.create(Position.create(54, 8), Position.create(58, 16), CoordinateSystem.GEODETIC);
+        Map<Integer, Integer> inside = targetTracker.countByCell(bb);
+        assertTrue(counts.entrySet().containsAll(inside.entrySet()));
+        assertTrue(inside.values().stream().mapToInt(Integer::intValue).sum() >= targetTracker.findWithin(bb).size());
+
+        targetTracker.removeAll((source, target) -> true);
+        assertTrue(targetTracker.countByCell().isEmpty());
+        assertTrue(targetTracker.findWithin(bb).isEmpty());
+        assertTrue(targetTracker.findNearest(Position.create(55.7, 12.6), 10).isEmpty());
+    }
+
+    /** Returns a position report from the MMSI */
+    static AisPacket positionReport(int mmsi, Position position, long timestamp) throws Exception {
+        AisMessage3 message = new AisMessage3();
+        message.setUserId(mmsi);
+        message.setPos(new AisPosition(position));
+        CommentBlock cb = new CommentBlock();
+        cb.addTimestamp(new Date(timestamp));
+        return AisPacket.from(cb.encode() + Vdm.createSentences(message, 0)[0]);
+    }
+
+    @Test
+    public void testFindNearestTargetMovedWhileSearched() throws Exception {
+        TargetTracker tracker = new TargetTracker();
+        long now = System.currentTimeMillis();
+        tracker.update(positionReport(219000001, Position.create(55.75, 12.65), now));
+        tracker.update(positionReport(219000002, Position.create(55.75, 12.95), now));
+        Position position = Position.create(55.75, 12.65);
+
+        TargetTracker.NearestTargets nearest = new TargetTracker.NearestTargets(position, 2, s -> true);
+        TargetTracker.MmsiTarget moving = tracker.targets.get(219000001);
+        int[] cells = moving.cells;
+        nearest.accept(moving);
+        // The target moves to the next cell, where the search reaches it again before the other target
+        tracker.update(positionReport(219000001, Position.create(55.75, 12.75), now + 1000));
+        assertNotEquals(cells[0], moving.cells[0]);
+        assertEquals(1, moving.cells.length);
+        nearest.accept(moving);
+        nearest.accept(tracker.targets.get(219000002));
+
+        List<TargetInfo> found = nearest.toList();
+        assertEquals(2, found.size());
+        // The moving target is found where it was first seen
+        assertEquals(219000001, found.get(0).getMmsi());
+        assertEquals(219000002, found.get(1).getMmsi());
+    }
 }
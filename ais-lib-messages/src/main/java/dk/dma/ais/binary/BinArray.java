@@ -18,13 +18,23 @@ import java.util.Arrays;
 
 /**
  * Class to represent a binary array with utility methods to add and extract values
+ * <p>
+ * Bits are packed most significant bit first into an array of longs, so bit number <code>i</code> is found in word
+ * <code>i / 64</code> at position <code>63 - i % 64</code>. Any field of at most 64 bits can be extracted with at most
+ * two word reads and a few shifts.
  */
 public class BinArray {
 
+    /** Number of bits in a word of the backing array. */
+    private static final int WORD_BITS = 64;
+
+    /** Number of six bit characters that fit in a word. */
+    private static final int CHARS_PER_WORD = WORD_BITS / 6;
+
     /** Precompiled list of int to six bit mappings. */
     private static final int[] INT_TO_SIX_BIT;
 
-    private boolean[] bitSet = new boolean[1024];
+    private long[] words = new long[1024 / WORD_BITS];
 
     private int length;
     private int readPtr;
@@ -50,11 +60,53 @@ public class BinArray {
      *            the minimum acceptable number of bits.
      */
     private void ensureCapacity(int bitsRequired) {
-        if (bitSet.length < bitsRequired) {
+        int wordsRequired = (bitsRequired + WORD_BITS - 1) / WORD_BITS;
+        if (words.length < wordsRequired) {
             // Allocate larger of doubled size or required size
-            int request = Math.max(2 * bitSet.length, bitsRequired);
-            bitSet = Arrays.copyOf(bitSet, request);
+            int request = Math.max(2 * words.length, wordsRequired);
+            words = Arrays.copyOf(words, request);
+        }
+    }
+
+    /**
+     * Write the lowest bits number of bits of val at the end of the array. Capacity must have been ensured and bits
+     * must be between 1 and 64.
+     * 
+     * @param val
+     * @param bits
+     */
+    private void writeBits(long val, int bits) {
+        if (bits < WORD_BITS) {
+            val &= (1L << bits) - 1;
+        }
+        int index = length / WORD_BITS;
+        int free = WORD_BITS - length % WORD_BITS;
+        if (bits <= free) {
+            words[index] |= val << free - bits;
+        } else {
+            int rest = bits - free;
+            words[index] |= val >>> rest;
+            words[index + 1] |= val << WORD_BITS - rest;
+        }
+        length += bits;
+    }
+
+    /**
+     * Read bits number of bits starting at bit position from. Bits must be between 1 and 64.
+     * 
+     * @param from
+     * @param bits
+     * @return
+     */
+    private long readBits(int from, int bits) {
+        int index = from / WORD_BITS;
+        int offset = from % WORD_BITS;
+        long val = words[index] << offset >>> WORD_BITS - bits;
+        int rest = offset + bits - WORD_BITS;
+        if (rest > 0) {
+            val |= words[index + 1] >>> WORD_BITS - rest;
         }
+        return val;
     }
 
     /**
@@ -65,28 +117,42 @@ public class BinArray {
      * @throws SixbitException
      */
     public void appendSixbit(String str, int padBits) throws SixbitException {
+        appendSixbit((CharSequence) str, padBits);
+    }
+
+    /**
+     * Append bits from a sixbit encoded character sequence
+     * 
+     * @param str
+     * @param padBits
+     * @throws SixbitException
+     */
+    public void appendSixbit(CharSequence str, int padBits) throws SixbitException {
         if (str.length() == 0) {
             return;
         }
         int len = str.length() * 6 - padBits;
-        int length = this.length;
         ensureCapacity(length + len);
-        boolean[] bitSet = this.bitSet; // store it in a local variable
 
+        // Collect up to ten characters at a time and write them as one 60 bit value
         int slen = str.length() - 1;
+        long acc = 0;
+        int count = 0;
         for (int i = 0; i < slen; i++) {
             char chr = str.charAt(i);
             int binVal = INT_TO_SIX_BIT[chr];
             if (binVal == -1) {
                 throw new SixbitException("Illegal sixbit ascii char: " + chr);
             }
-            bitSet[length] = (binVal & 32) > 0;
-            bitSet[length + 1] = (binVal & 16) > 0;
-            bitSet[length + 2] = (binVal & 8) > 0;
-            bitSet[length + 3] = (binVal & 4) > 0;
-            bitSet[length + 4] = (binVal & 2) > 0;
-            bitSet[length + 5] = (binVal & 1) > 0;
-            length += 6;
+            acc = acc << 6 | binVal;
+            if (++count == CHARS_PER_WORD) {
+                writeBits(acc, count * 6);
+                acc = 0;
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            writeBits(acc, count * 6);
         }
 
         // Process the last char which might be padded
@@ -96,21 +162,9 @@ public class BinArray {
             throw new SixbitException("Illegal sixbit ascii char: " + chr);
         }
         int bits = 6 - padBits;
-        switch (bits) {
-        case 6:
-            bitSet[length + 5] = (binVal & 1) > 0;
-        case 5:
-            bitSet[length + 4] = (binVal & 2) > 0;
-        case 4:
-            bitSet[length + 3] = (binVal & 4) > 0;
-        case 3:
-            bitSet[length + 2] = (binVal & 8) > 0;
-        case 2:
-            bitSet[length + 1] = (binVal & 16) > 0;
-        case 1:
-            bitSet[length] = (binVal & 32) > 0;
+        if (bits > 0) {
+            writeBits(binVal >>> padBits, bits);
         }
-        this.length = length + bits;
     }
 
     /**
@@ -121,8 +175,10 @@ public class BinArray {
     public void append(BinArray binArray) {
         int len = binArray.length;
         ensureCapacity(length + len);
-        System.arraycopy(binArray.bitSet, 0, bitSet, length, len);
-        length += len;
+        for (int i = 0; i < len; i += WORD_BITS) {
+            int bits = Math.min(WORD_BITS, len - i);
+            writeBits(binArray.readBits(i, bits), bits);
+        }
     }
 
     /**
@@ -132,13 +188,16 @@ public class BinArray {
      * @param bits
      */
     public void append(long val, int bits) {
-        long powMask = 1;
+        if (bits <= 0) {
+            return;
+        }
         ensureCapacity(length + bits);
-        for (int i = length + bits - 1; i >= length; i--) {
-            bitSet[i] = (val & powMask) > 0;
-            powMask <<= 1;
+        if (bits > WORD_BITS) {
+            // Only the lowest 64 bits can be represented, the leading bits are zero
+            length += bits - WORD_BITS;
+            bits = WORD_BITS;
         }
-        length += bits;
+        writeBits(val, bits);
     }
 
     /**
@@ -182,15 +241,12 @@ public class BinArray {
         if (to >= length) {
             throw new SixbitException(length + " is not enough bits. At least " + to + " expected.");
         }
-        long val = 0;
-        long powMask = 1;
-        for (int i = to; i >= from; i--) {
-            if (bitSet[i]) {
-                val += powMask;
-            }
-            powMask <<= 1;
+        if (to < from) {
+            return 0;
         }
-        return val;
+        // Only the lowest 64 bits fit in the result
+        from = Math.max(from, to - WORD_BITS + 1);
+        return readBits(from, to - from + 1);
     }
 
     /**
@@ -212,7 +268,7 @@ public class BinArray {
     }
 
     public int size() {
-        return bitSet.length;
+        return words.length * WORD_BITS;
     }
 
     /**
@@ -271,4 +327,13 @@ public class BinArray {
     public void doneReading() {
         readPtr = 0;
     }
+
+    /**
+     * Removes all bits, keeping the allocated capacity for reuse
+     */
+    public void clear() {
+        Arrays.fill(words, 0, (length + WORD_BITS - 1) / WORD_BITS, 0L);
+        length = 0;
+        readPtr = 0;
+    }
 }
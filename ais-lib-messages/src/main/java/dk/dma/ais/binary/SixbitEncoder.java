@@ -102,6 +102,7 @@ public class SixbitEncoder {
         StringBuilder buf = new StringBuilder();
         int start = 0;
         int stop = 0;
+        padBits = 0;
         while (start < binArray.getLength()) {
             stop = start + 6 - 1;
             if (stop >= binArray.getLength()) {
@@ -59,6 +59,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @throws BitExhaustionException
      */
     public AisApplicationMessage getApplicationMessage() throws SixbitException {
+        ensureDecoded();
         if (appMessage != null) {
             return appMessage;
         }
@@ -77,6 +78,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @return
      */
     public SixbitEncoder getBinaryData() {
+        ensureDecoded();
         SixbitEncoder encoder = new SixbitEncoder();
         encoder.addVal(dac, 10);
         encoder.addVal(fi, 6);
@@ -85,26 +87,32 @@ public abstract class AisBinaryMessage extends AisMessage {
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     public int getDac() {
+        ensureDecoded();
         return dac;
     }
 
     public void setDac(int dac) {
+        ensureDecoded();
         this.dac = dac;
     }
 
     public int getFi() {
+        ensureDecoded();
         return fi;
     }
 
     public void setFi(int fi) {
+        ensureDecoded();
         this.fi = fi;
     }
 
@@ -114,6 +122,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @return
      */
     public BinArray getData() {
+        ensureDecoded();
         return data;
     }
 
@@ -123,6 +132,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @param data
      */
     public void setData(BinArray data) {
+        ensureDecoded();
         this.data = data;
     }
 
@@ -132,6 +142,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @return
      */
     public AisApplicationMessage getAppMessage() {
+        ensureDecoded();
         return appMessage;
     }
 
@@ -141,6 +152,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @param appMessage
      */
     public void setAppMessage(AisApplicationMessage appMessage) {
+        ensureDecoded();
         this.dac = appMessage.getDac();
         this.fi = appMessage.getFi();
         this.appMessage = appMessage;
@@ -153,6 +165,7 @@ public abstract class AisBinaryMessage extends AisMessage {
      * @throws SixbitException
      */
     public void setBinary(BinArray binArray) throws SixbitException {
+        ensureDecoded();
         this.dac = (int) binArray.getVal(10);
         this.fi = (int) binArray.getVal(6);
         this.data = binArray;
@@ -161,6 +174,7 @@ public abstract class AisBinaryMessage extends AisMessage {
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", spare=");
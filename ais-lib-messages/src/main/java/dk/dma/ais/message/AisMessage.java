@@ -22,6 +22,8 @@ import dk.dma.ais.proprietary.IProprietaryTag;
 import dk.dma.ais.sentence.Vdm;
 import dk.dma.enav.model.geometry.Position;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
@@ -47,6 +49,12 @@ public abstract class AisMessage implements Serializable {
     protected int userId; // 30 bit: MMSI number
     protected transient Vdm vdm; // The VDM encapsulating the AIS message
 
+    /** True while the fields after the MMSI have not been decoded from the VDM */
+    private transient volatile boolean lazy;
+
+    /** The error of a failed lazy decoding */
+    private transient Exception lazyError;
+
     /**
      * Constructor given message id
      * 
@@ -79,6 +87,82 @@ public abstract class AisMessage implements Serializable {
         this.userId = (int) binArray.getVal(30);
     }
 
+    /**
+     * Parse the message from the VDM. Extending classes that parse all fields in one method override this.
+     * 
+     * @throws AisMessageException
+     * @throws SixbitException
+     */
+    public void parse() throws AisMessageException, SixbitException {
+        parse(vdm.getBinArray());
+    }
+
+    /**
+     * Returns true if this message was created by {@link #getInstance(Vdm, boolean)} in lazy mode and its fields has
+     * not been decoded yet.
+     * 
+     * @return
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Decode all fields of a lazily created message. Does nothing if the message has already been decoded.
+     * 
+     * @throws AisMessageException
+     * @throws SixbitException
+     */
+    public void decode() throws AisMessageException, SixbitException {
+        if (lazy) {
+            decodeLazy();
+        }
+    }
+
+    /**
+     * Must be called by extending classes before any field beyond the message header is read or written.
+     * 
+     * @throws IllegalStateException
+     *             if the message was created lazily and the fields could not be decoded
+     */
+    protected final void ensureDecoded() {
+        if (lazy) {
+            try {
+                decodeLazy();
+            } catch (AisMessageException | SixbitException e) {
+                throw new IllegalStateException("Failed to decode message " + msgId + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private synchronized void decodeLazy() throws AisMessageException, SixbitException {
+        if (!lazy) {
+            return;
+        }
+        if (lazyError == null) {
+            BinArray binArray = vdm.getBinArray();
+            // Position the binary array where the VDM leaves it, just after the message id
+            binArray.doneReading();
+            binArray.getVal(6);
+            try {
+                parse();
+                lazy = false;
+                return;
+            } catch (AisMessageException | SixbitException e) {
+                lazyError = e;
+            }
+        }
+        if (lazyError instanceof AisMessageException) {
+            throw (AisMessageException) lazyError;
+        }
+        throw (SixbitException) lazyError;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureDecoded();
+        out.defaultWriteObject();
+    }
+
     /**
      * Base encode method to be called by all extending classes
      * 
@@ -108,6 +192,7 @@ public abstract class AisMessage implements Serializable {
     }
 
     public void setRepeat(int repeat) {
+        ensureDecoded();
         this.repeat = repeat;
     }
 
@@ -116,6 +201,7 @@ public abstract class AisMessage implements Serializable {
     }
 
     public void setUserId(int userId) {
+        ensureDecoded();
         this.userId = userId;
     }
 
@@ -221,6 +307,31 @@ public abstract class AisMessage implements Serializable {
      * @throws SixbitException
      */
     public static AisMessage getInstance(Vdm vdm) throws AisMessageException, SixbitException {
+        return getInstance(vdm, false);
+    }
+
+    /**
+     * Given VDM return the encapsulated AIS message. In lazy mode only the message id, repeat indicator and MMSI are
+     * decoded here, the remaining fields are decoded from the VDM the first time any of them is accessed. This is
+     * useful when most messages are only routed or filtered on type or MMSI.
+     * <p>
+     * A lazily created message is only validated on the header and the length required by its type. If the remaining
+     * fields cannot be decoded {@link #decode()} throws the decoding error, and the accessors of the fields throw an
+     * {@link IllegalStateException}. The VDM must not be modified while the message is lazy.
+     * 
+     * @param vdm
+     * @param lazy
+     * @return AisMessage
+     * @throws AisMessageException
+     * @throws SixbitException
+     */
+    public static AisMessage getInstance(Vdm vdm, boolean lazy) throws AisMessageException, SixbitException {
+        if (lazy) {
+            AisMessage message = newLazyInstance(vdm);
+            if (message != null) {
+                return message;
+            }
+        }
         AisMessage message;
 
         switch (vdm.getMsgId()) {
@@ -313,6 +424,145 @@ public abstract class AisMessage implements Serializable {
         return message;
     }
 
+    /**
+     * Create a message with only the header decoded, or null if the message type cannot be decoded lazily
+     * 
+     * @param vdm
+     * @return
+     * @throws AisMessageException
+     * @throws SixbitException
+     */
+    private static AisMessage newLazyInstance(Vdm vdm) throws AisMessageException, SixbitException {
+        AisMessage message;
+        switch (vdm.getMsgId()) {
+        case 1:
+            message = new AisMessage1();
+            break;
+        case 2:
+            message = new AisMessage2();
+            break;
+        case 3:
+            message = new AisMessage3();
+            break;
+        case 4:
+            message = new AisMessage4();
+            break;
+        case 5:
+            message = new AisMessage5();
+            break;
+        case 6:
+            message = new AisMessage6();
+            break;
+        case 7:
+            message = new AisMessage7();
+            break;
+        case 8:
+            message = new AisMessage8();
+            break;
+        case 9:
+            message = new AisMessage9();
+            break;
+        case 10:
+            message = new AisMessage10();
+            break;
+        case 11:
+            message = new AisMessage11();
+            break;
+        case 12:
+            message = new AisMessage12();
+            break;
+        case 13:
+            message = new AisMessage13();
+            break;
+        case 14:
+            message = new AisMessage14();
+            break;
+        case 17:
+            message = new AisMessage17();
+            break;
+        case 18:
+            message = new AisMessage18();
+            break;
+        case 19:
+            message = new AisMessage19();
+            break;
+        case 21:
+            message = new AisMessage21();
+            break;
+        case 24:
+            message = new AisMessage24();
+            break;
+        case 27:
+            message = new AisMessage27();
+            break;
+        default:
+            return null;
+        }
+        BinArray binArray = vdm.getBinArray();
+        if (binArray.getLength() < 38 || !hasValidLength(vdm.getMsgId(), binArray)) {
+            throw new AisMessageException("Message " + vdm.getMsgId() + " wrong length " + binArray.getLength());
+        }
+        message.vdm = vdm;
+        message.msgId = vdm.getMsgId();
+        message.repeat = (int) binArray.getVal(6, 7);
+        message.userId = (int) binArray.getVal(8, 37);
+        message.lazy = true;
+        return message;
+    }
+
+    /**
+     * Checks the length of a message in the same way as the constructor of its type, so a lazily created message is
+     * only returned if the full decoding would not fail on the length
+     * 
+     * @param msgId
+     * @param binArray
+     *            the binary message, at least 38 bits long
+     * @return
+     * @throws SixbitException
+     */
+    private static boolean hasValidLength(int msgId, BinArray binArray) throws SixbitException {
+        int length = binArray.getLength();
+        switch (msgId) {
+        case 1:
+        case 2:
+        case 3:
+        case 9:
+            return length >= 168;
+        case 4:
+        case 11:
+        case 18:
+            return length == 168;
+        case 5:
+            return length >= 424;
+        case 6:
+            return length >= 88 && length <= 1008;
+        case 7:
+        case 13:
+            return length >= 72 && length <= 168;
+        case 8:
+            return length >= 56 && length <= 1008;
+        case 10:
+            return length == 72;
+        case 12:
+            return length >= 72 && length <= 1008;
+        case 14:
+            return length >= 40 && length <= 1008;
+        case 17:
+            return length >= 80 && length <= 816;
+        case 19:
+            return length == 312;
+        case 21:
+            return length >= 272 && length <= 360;
+        case 24:
+            // Part B, any part number but 0, is longer than part A
+            return length >= 160 && (length >= 168 || binArray.getVal(38, 39) == 0);
+        case 27:
+            return length == 96;
+        default:
+            return true;
+        }
+    }
+
     /**
      * Utility to trim text from AIS message
      * 
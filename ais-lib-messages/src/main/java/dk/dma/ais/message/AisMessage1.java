@@ -92,6 +92,7 @@ public class AisMessage1 extends AisPositionMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(slotTimeout, 3);
         encoder.addVal(subMessage, 14);
@@ -99,23 +100,28 @@ public class AisMessage1 extends AisPositionMessage {
     }
 
     public int getSlotTimeout() {
+        ensureDecoded();
         return slotTimeout;
     }
 
     public void setSlotTimeout(int slotTimeout) {
+        ensureDecoded();
         this.slotTimeout = slotTimeout;
     }
 
     public int getSubMessage() {
+        ensureDecoded();
         return subMessage;
     }
 
     public void setSubMessage(int subMessage) {
+        ensureDecoded();
         this.subMessage = subMessage;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", slotTimeout=");
@@ -66,6 +66,7 @@ public class AisMessage10 extends AisMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(this.spare1, 2);
         encoder.addVal(this.destination, 30);
@@ -75,6 +76,7 @@ public class AisMessage10 extends AisMessage {
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", spare1=");
@@ -88,26 +90,32 @@ public class AisMessage10 extends AisMessage {
     }
 
     public int getSpare1() {
+        ensureDecoded();
         return spare1;
     }
 
     public void setSpare1(int spare1) {
+        ensureDecoded();
         this.spare1 = spare1;
     }
 
     public int getDestination() {
+        ensureDecoded();
         return destination;
     }
 
     public void setDestination(int destination) {
+        ensureDecoded();
         this.destination = destination;
     }
 
     public int getSpare2() {
+        ensureDecoded();
         return spare2;
     }
 
     public void setSpare2(int spare2) {
+        ensureDecoded();
         this.spare2 = spare2;
     }
 
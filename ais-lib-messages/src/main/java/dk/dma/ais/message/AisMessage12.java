@@ -57,6 +57,7 @@ public class AisMessage12 extends AisMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(seqNum, 2);
         encoder.addVal(destination, 30);
@@ -73,11 +74,13 @@ public class AisMessage12 extends AisMessage {
      * @throws SixbitException
      */
     public void setMessage(BinArray binArray) throws SixbitException {
+        ensureDecoded();
         message = binArray.getString(binArray.getLength() / 6);
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", destination=");
@@ -95,42 +98,52 @@ public class AisMessage12 extends AisMessage {
     }
 
     public int getSeqNum() {
+        ensureDecoded();
         return seqNum;
     }
 
     public void setSeqNum(int seqNum) {
+        ensureDecoded();
         this.seqNum = seqNum;
     }
 
     public long getDestination() {
+        ensureDecoded();
         return destination;
     }
 
     public void setDestination(long destination) {
+        ensureDecoded();
         this.destination = destination;
     }
 
     public int getRetransmit() {
+        ensureDecoded();
         return retransmit;
     }
 
     public void setRetransmit(int retransmit) {
+        ensureDecoded();
         this.retransmit = retransmit;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     public String getMessage() {
+        ensureDecoded();
         return message;
     }
 
     public void setMessage(String message) {
+        ensureDecoded();
         this.message = message;
     }
 
@@ -51,6 +51,7 @@ public class AisMessage14 extends AisMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(spare, 2);
         encoder.addString(message);
@@ -64,19 +65,23 @@ public class AisMessage14 extends AisMessage {
      * @throws SixbitException
      */
     public void setMessage(BinArray binArray) throws SixbitException {
+        ensureDecoded();
         message = binArray.getString(binArray.getLength() / 6);
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public String getMessage() {
+        ensureDecoded();
         return message;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", message=");
@@ -84,99 +84,123 @@ public class AisMessage17 extends AisMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         throw new UnsupportedOperationException();
     }
 
     public int getSpare1() {
+        ensureDecoded();
         return spare1;
     }
 
     public void setSpare1(int spare1) {
+        ensureDecoded();
         this.spare1 = spare1;
     }
 
     public int getLon() {
+        ensureDecoded();
         return lon;
     }
 
     public void setLon(int lon) {
+        ensureDecoded();
         this.lon = lon;
     }
 
     public int getLat() {
+        ensureDecoded();
         return lat;
     }
 
     public void setLat(int lat) {
+        ensureDecoded();
         this.lat = lat;
     }
 
     public int getSpare2() {
+        ensureDecoded();
         return spare2;
     }
 
     public void setSpare2(int spare2) {
+        ensureDecoded();
         this.spare2 = spare2;
     }
 
     public int getMessageType() {
+        ensureDecoded();
         return messageType;
     }
 
     public void setMessageType(int messageType) {
+        ensureDecoded();
         this.messageType = messageType;
     }
 
     public int getStationId() {
+        ensureDecoded();
         return stationId;
     }
 
     public void setStationId(int stationId) {
+        ensureDecoded();
         this.stationId = stationId;
     }
 
     public int getzCount() {
+        ensureDecoded();
         return zCount;
     }
 
     public void setzCount(int zCount) {
+        ensureDecoded();
         this.zCount = zCount;
     }
 
     public int getSeqNum() {
+        ensureDecoded();
         return seqNum;
     }
 
     public void setSeqNum(int seqNum) {
+        ensureDecoded();
         this.seqNum = seqNum;
     }
 
     public int getDataWordCount() {
+        ensureDecoded();
         return dataWordCount;
     }
 
     public void setDataWordCount(int dataWordCount) {
+        ensureDecoded();
         this.dataWordCount = dataWordCount;
     }
 
     public int getHealth() {
+        ensureDecoded();
         return health;
     }
 
     public void setHealth(int health) {
+        ensureDecoded();
         this.health = health;
     }
 
     public int[] getDataWords() {
+        ensureDecoded();
         return dataWords;
     }
 
     public void setDataWords(int[] dataWords) {
+        ensureDecoded();
         this.dataWords = dataWords;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", spare1=");
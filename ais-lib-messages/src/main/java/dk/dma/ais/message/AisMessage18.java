@@ -170,6 +170,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(spareAfterUserId, 8);
         encoder.addVal(sog, 10);
@@ -196,6 +197,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the spareAfterUserId
      */
     public int getSpareAfterUserId() {
+        ensureDecoded();
         return spareAfterUserId;
     }
 
@@ -204,6 +206,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the spareAfterUserId to set
      */
     public void setSpareAfterUserId(int spareAfterUserId) {
+        ensureDecoded();
         this.spareAfterUserId = spareAfterUserId;
     }
 
@@ -211,6 +214,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the sog
      */
     public int getSog() {
+        ensureDecoded();
         return sog;
     }
 
@@ -219,6 +223,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the sog to set
      */
     public void setSog(int sog) {
+        ensureDecoded();
         this.sog = sog;
     }
 
@@ -226,6 +231,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the posAcc
      */
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
@@ -234,6 +240,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the posAcc to set
      */
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
@@ -241,11 +248,13 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the pos
      */
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     @Override
     public Position getValidPosition() {
+        ensureDecoded();
         AisPosition pos = this.pos;
         return pos == null ? null : pos.getGeoLocation();
     }
@@ -255,6 +264,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the pos to set
      */
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
@@ -262,6 +272,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the cog
      */
     public int getCog() {
+        ensureDecoded();
         return cog;
     }
 
@@ -270,6 +281,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the cog to set
      */
     public void setCog(int cog) {
+        ensureDecoded();
         this.cog = cog;
     }
 
@@ -277,6 +289,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the trueHeading
      */
     public int getTrueHeading() {
+        ensureDecoded();
         return trueHeading;
     }
 
@@ -285,6 +298,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the trueHeading to set
      */
     public void setTrueHeading(int trueHeading) {
+        ensureDecoded();
         this.trueHeading = trueHeading;
     }
 
@@ -292,6 +306,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the utcSec
      */
     public int getUtcSec() {
+        ensureDecoded();
         return utcSec;
     }
 
@@ -300,6 +315,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the utcSec to set
      */
     public void setUtcSec(int utcSec) {
+        ensureDecoded();
         this.utcSec = utcSec;
     }
 
@@ -307,6 +323,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the spare
      */
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
@@ -315,6 +332,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the spare to set
      */
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
@@ -322,6 +340,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the classBUnitFlag
      */
     public int getClassBUnitFlag() {
+        ensureDecoded();
         return classBUnitFlag;
     }
 
@@ -330,6 +349,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the classBUnitFlag to set
      */
     public void setClassBUnitFlag(int classBUnitFlag) {
+        ensureDecoded();
         this.classBUnitFlag = classBUnitFlag;
     }
 
@@ -337,6 +357,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the classBDisplayFlag
      */
     public int getClassBDisplayFlag() {
+        ensureDecoded();
         return classBDisplayFlag;
     }
 
@@ -345,6 +366,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the classBDisplayFlag to set
      */
     public void setClassBDisplayFlag(int classBDisplayFlag) {
+        ensureDecoded();
         this.classBDisplayFlag = classBDisplayFlag;
     }
 
@@ -352,6 +374,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the classBDscFlag
      */
     public int getClassBDscFlag() {
+        ensureDecoded();
         return classBDscFlag;
     }
 
@@ -360,6 +383,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the classBDscFlag to set
      */
     public void setClassBDscFlag(int classBDscFlag) {
+        ensureDecoded();
         this.classBDscFlag = classBDscFlag;
     }
 
@@ -367,6 +391,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the classBBandFlag
      */
     public int getClassBBandFlag() {
+        ensureDecoded();
         return classBBandFlag;
     }
 
@@ -375,6 +400,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the classBBandFlag to set
      */
     public void setClassBBandFlag(int classBBandFlag) {
+        ensureDecoded();
         this.classBBandFlag = classBBandFlag;
     }
 
@@ -382,6 +408,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the classBMsg22Flag
      */
     public int getClassBMsg22Flag() {
+        ensureDecoded();
         return classBMsg22Flag;
     }
 
@@ -390,6 +417,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the classBMsg22Flag to set
      */
     public void setClassBMsg22Flag(int classBMsg22Flag) {
+        ensureDecoded();
         this.classBMsg22Flag = classBMsg22Flag;
     }
 
@@ -397,6 +425,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the modeFlag
      */
     public int getModeFlag() {
+        ensureDecoded();
         return modeFlag;
     }
 
@@ -405,6 +434,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the modeFlag to set
      */
     public void setModeFlag(int modeFlag) {
+        ensureDecoded();
         this.modeFlag = modeFlag;
     }
 
@@ -412,6 +442,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the raimFlag
      */
     public int getRaim() {
+        ensureDecoded();
         return raim;
     }
 
@@ -420,6 +451,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the raimFlag to set
      */
     public void setRaim(int raim) {
+        ensureDecoded();
         this.raim = raim;
     }
 
@@ -427,6 +459,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the commStateSelectorFlag
      */
     public int getCommStateSelectorFlag() {
+        ensureDecoded();
         return commStateSelectorFlag;
     }
 
@@ -435,6 +468,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the commStateSelectorFlag to set
      */
     public void setCommStateSelectorFlag(int commStateSelectorFlag) {
+        ensureDecoded();
         this.commStateSelectorFlag = commStateSelectorFlag;
     }
 
@@ -442,6 +476,7 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      * @return the commState
      */
     public int getCommState() {
+        ensureDecoded();
         return commState;
     }
 
@@ -450,11 +485,13 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
      *            the commState to set
      */
     public void setCommState(int commState) {
+        ensureDecoded();
         this.commState = commState;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", classBBandFlag=");
@@ -496,18 +533,22 @@ public class AisMessage18 extends AisMessage implements IVesselPositionMessage {
     }
 
     public boolean isPositionValid() {
+        ensureDecoded();
         return pos.getGeoLocation() != null;
     }
 
     public boolean isCogValid() {
+        ensureDecoded();
         return cog < 3600;
     }
 
     public boolean isSogValid() {
+        ensureDecoded();
         return sog < 1023;
     }
 
     public boolean isHeadingValid() {
+        ensureDecoded();
         return trueHeading < 360;
     }
 
@@ -148,6 +148,7 @@ public class AisMessage19 extends AisStaticCommon implements IVesselPositionMess
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(spare1, 8);
         encoder.addVal(sog, 10);
@@ -174,6 +175,7 @@ public class AisMessage19 extends AisStaticCommon implements IVesselPositionMess
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", spare1=");
@@ -219,138 +221,170 @@ public class AisMessage19 extends AisStaticCommon implements IVesselPositionMess
     }
 
     public int getSpare1() {
+        ensureDecoded();
         return spare1;
     }
 
     public void setSpare1(int spare1) {
+        ensureDecoded();
         this.spare1 = spare1;
     }
 
     public int getSog() {
+        ensureDecoded();
         return sog;
     }
 
     public void setSog(int sog) {
+        ensureDecoded();
         this.sog = sog;
     }
 
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
     @Override
     public Position getValidPosition() {
+        ensureDecoded();
         AisPosition pos = this.pos;
         return pos == null ? null : pos.getGeoLocation();
     }
 
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
     public int getCog() {
+        ensureDecoded();
         return cog;
     }
 
     public void setCog(int cog) {
+        ensureDecoded();
         this.cog = cog;
     }
 
     public int getTrueHeading() {
+        ensureDecoded();
         return trueHeading;
     }
 
     public void setTrueHeading(int trueHeading) {
+        ensureDecoded();
         this.trueHeading = trueHeading;
     }
 
     public int getUtcSec() {
+        ensureDecoded();
         return utcSec;
     }
 
     public void setUtcSec(int utcSec) {
+        ensureDecoded();
         this.utcSec = utcSec;
     }
 
     public int getSpare2() {
+        ensureDecoded();
         return spare2;
     }
 
     public void setSpare2(int spare2) {
+        ensureDecoded();
         this.spare2 = spare2;
     }
 
     public int getPosType() {
+        ensureDecoded();
         return posType;
     }
 
     public void setPosType(int posType) {
+        ensureDecoded();
         this.posType = posType;
     }
 
     public int getRaimFlag() {
+        ensureDecoded();
         return raimFlag;
     }
 
     public void setRaimFlag(int raimFlag) {
+        ensureDecoded();
         this.raimFlag = raimFlag;
     }
 
     public int getDte() {
+        ensureDecoded();
         return dte;
     }
 
     public void setDte(int dte) {
+        ensureDecoded();
         this.dte = dte;
     }
 
     public int getModeFlag() {
+        ensureDecoded();
         return modeFlag;
     }
 
     public void setModeFlag(int modeFlag) {
+        ensureDecoded();
         this.modeFlag = modeFlag;
     }
 
     public int getSpare3() {
+        ensureDecoded();
         return spare3;
     }
 
     public void setSpare3(int spare3) {
+        ensureDecoded();
         this.spare3 = spare3;
     }
 
     @Override
     public boolean isPositionValid() {
+        ensureDecoded();
         Position geo = pos.getGeoLocation();
         return geo != null;
     }
 
     @Override
     public boolean isCogValid() {
+        ensureDecoded();
         return cog < 3600;
     }
 
     @Override
     public boolean isSogValid() {
+        ensureDecoded();
         return sog < 1023;
     }
 
     @Override
     public boolean isHeadingValid() {
+        ensureDecoded();
         return trueHeading < 360;
     }
 
     @Override
     public int getRaim() {
+        ensureDecoded();
         return getRaimFlag();
     }
 
@@ -40,6 +40,7 @@ public class AisMessage2 extends AisMessage1 {
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append("]");
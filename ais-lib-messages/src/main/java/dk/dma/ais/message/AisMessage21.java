@@ -96,161 +96,200 @@ public class AisMessage21 extends AisMessage implements IPositionMessage, IDimen
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         throw new UnsupportedOperationException();
     }
 
     public int getAtonType() {
+        ensureDecoded();
         return atonType;
     }
 
     public void setAtonType(int atonType) {
+        ensureDecoded();
         this.atonType = atonType;
     }
 
     public String getName() {
+        ensureDecoded();
         return name;
     }
 
     public void setName(String name) {
+        ensureDecoded();
         this.name = name;
     }
 
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
     @Override
     public Position getValidPosition() {
+        ensureDecoded();
         AisPosition pos = this.pos;
         return pos == null ? null : pos.getGeoLocation();
     }
 
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
     public int getDimBow() {
+        ensureDecoded();
         return dimBow;
     }
 
     public void setDimBow(int dimBow) {
+        ensureDecoded();
         this.dimBow = dimBow;
     }
 
     public int getDimStern() {
+        ensureDecoded();
         return dimStern;
     }
 
     public void setDimStern(int dimStern) {
+        ensureDecoded();
         this.dimStern = dimStern;
     }
 
     public int getDimPort() {
+        ensureDecoded();
         return dimPort;
     }
 
     public void setDimPort(int dimPort) {
+        ensureDecoded();
         this.dimPort = dimPort;
     }
 
     public int getDimStarboard() {
+        ensureDecoded();
         return dimStarboard;
     }
 
     public void setDimStarboard(int dimStarboard) {
+        ensureDecoded();
         this.dimStarboard = dimStarboard;
     }
 
     public int getPosType() {
+        ensureDecoded();
         return posType;
     }
 
     public void setPosType(int posType) {
+        ensureDecoded();
         this.posType = posType;
     }
 
     public int getUtcSec() {
+        ensureDecoded();
         return utcSec;
     }
 
     public void setUtcSec(int utcSec) {
+        ensureDecoded();
         this.utcSec = utcSec;
     }
 
     public int getOffPosition() {
+        ensureDecoded();
         return offPosition;
     }
 
     public void setOffPosition(int offPosition) {
+        ensureDecoded();
         this.offPosition = offPosition;
     }
 
     public int getRegional() {
+        ensureDecoded();
         return regional;
     }
 
     public void setRegional(int regional) {
+        ensureDecoded();
         this.regional = regional;
     }
 
     public int getRaim() {
+        ensureDecoded();
         return raim;
     }
 
     public void setRaim(int raim) {
+        ensureDecoded();
         this.raim = raim;
     }
 
     public int getVirtual() {
+        ensureDecoded();
         return virtual;
     }
 
     public void setVirtual(int virtual) {
+        ensureDecoded();
         this.virtual = virtual;
     }
 
     public int getAssigned() {
+        ensureDecoded();
         return assigned;
     }
 
     public void setAssigned(int assigned) {
+        ensureDecoded();
         this.assigned = assigned;
     }
 
     public int getSpare1() {
+        ensureDecoded();
         return spare1;
     }
 
     public void setSpare1(int spare1) {
+        ensureDecoded();
         this.spare1 = spare1;
     }
 
     public String getNameExt() {
+        ensureDecoded();
         return nameExt;
     }
 
     public void setNameExt(String nameExt) {
+        ensureDecoded();
         this.nameExt = nameExt;
     }
 
     public int getSpare2() {
+        ensureDecoded();
         return spare2;
     }
 
     public void setSpare2(int spare2) {
+        ensureDecoded();
         this.spare2 = spare2;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", assigned=");
@@ -92,35 +92,43 @@ public class AisMessage24 extends AisStaticCommon {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         throw new UnsupportedOperationException();
     }
 
     public int getPartNumber() {
+        ensureDecoded();
         return partNumber;
     }
 
     public void setPartNumber(int partNumber) {
+        ensureDecoded();
         this.partNumber = partNumber;
     }
 
     public String getVendorId() {
+        ensureDecoded();
         return vendorId;
     }
 
     public void setVendorId(String vendorId) {
+        ensureDecoded();
         this.vendorId = vendorId;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", partNumber=");
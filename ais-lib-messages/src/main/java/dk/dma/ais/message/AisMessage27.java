@@ -101,6 +101,7 @@ public class AisMessage27 extends AisMessage implements IPositionMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(posAcc, 1);
         encoder.addVal(raim, 1);
@@ -118,71 +119,88 @@ public class AisMessage27 extends AisMessage implements IPositionMessage {
     }
 
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
     public int getRaim() {
+        ensureDecoded();
         return raim;
     }
 
     public void setRaim(int raim) {
+        ensureDecoded();
         this.raim = raim;
     }
 
     public int getNavStatus() {
+        ensureDecoded();
         return navStatus;
     }
 
     public void setNavStatus(int navStatus) {
+        ensureDecoded();
         this.navStatus = navStatus;
     }
 
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
     public int getSog() {
+        ensureDecoded();
         return sog;
     }
 
     public void setSog(int sog) {
+        ensureDecoded();
         this.sog = sog;
     }
 
     public int getCog() {
+        ensureDecoded();
         return cog;
     }
 
     public void setCog(int cog) {
+        ensureDecoded();
         this.cog = cog;
     }
 
     public int getGnssPosStatus() {
+        ensureDecoded();
         return gnssPosStatus;
     }
 
     public void setGnssPosStatus(int gnssPosStatus) {
+        ensureDecoded();
         this.gnssPosStatus = gnssPosStatus;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         final StringBuilder builder = new StringBuilder();
         builder.append(super.toString()).append(", ");
         builder.append("posAcc=").append(posAcc);
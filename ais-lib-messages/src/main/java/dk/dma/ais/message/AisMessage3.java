@@ -57,6 +57,7 @@ public class AisMessage3 extends AisPositionMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(slotIncrement, 13);
         encoder.addVal(numSlots, 3);
@@ -65,19 +66,23 @@ public class AisMessage3 extends AisPositionMessage {
     }
 
     public int getSlotIncrement() {
+        ensureDecoded();
         return slotIncrement;
     }
 
     public int getNumSlots() {
+        ensureDecoded();
         return numSlots;
     }
 
     public int getKeep() {
+        ensureDecoded();
         return keep;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", keep=");
@@ -120,6 +120,7 @@ public class AisMessage5 extends AisStaticCommon {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(version, 2);
         encoder.addVal(imo, 30);
@@ -140,30 +141,37 @@ public class AisMessage5 extends AisStaticCommon {
     }
 
     public int getVersion() {
+        ensureDecoded();
         return version;
     }
 
     public void setVersion(int version) {
+        ensureDecoded();
         this.version = version;
     }
 
     public long getImo() {
+        ensureDecoded();
         return imo;
     }
 
     public void setImo(long imo) {
+        ensureDecoded();
         this.imo = imo;
     }
 
     public int getPosType() {
+        ensureDecoded();
         return posType;
     }
 
     public void setPosType(int posType) {
+        ensureDecoded();
         this.posType = posType;
     }
 
     public long getEta() {
+        ensureDecoded();
         return eta;
     }
 
@@ -173,6 +181,7 @@ public class AisMessage5 extends AisStaticCommon {
      * @return date
      */
     public Date getEtaDate() {
+        ensureDecoded();
         int min = (int) (eta & 0x3F);
         int hour = (int) (eta & 0x7C0) >> 6;
         int day = (int) (eta & 0xF800) >> 11;
@@ -194,43 +203,53 @@ public class AisMessage5 extends AisStaticCommon {
     }
 
     public void setEta(long eta) {
+        ensureDecoded();
         this.eta = eta;
     }
 
     public int getDraught() {
+        ensureDecoded();
         return draught;
     }
 
     public void setDraught(int draught) {
+        ensureDecoded();
         this.draught = draught;
     }
 
     public String getDest() {
+        ensureDecoded();
         return dest;
     }
 
     public void setDest(String dest) {
+        ensureDecoded();
         this.dest = dest;
     }
 
     public int getDte() {
+        ensureDecoded();
         return dte;
     }
 
     public void setDte(int dte) {
+        ensureDecoded();
         this.dte = dte;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", callsign=");
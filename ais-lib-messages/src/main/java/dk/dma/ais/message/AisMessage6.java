@@ -60,6 +60,7 @@ public class AisMessage6 extends AisBinaryMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(seqNum, 2);
         encoder.addVal(destination, 30);
@@ -72,31 +73,38 @@ public class AisMessage6 extends AisBinaryMessage {
     }
 
     public int getSeqNum() {
+        ensureDecoded();
         return seqNum;
     }
 
     public void setSeqNum(int seqNum) {
+        ensureDecoded();
         this.seqNum = seqNum;
     }
 
     public long getDestination() {
+        ensureDecoded();
         return destination;
     }
 
     public void setDestination(long destination) {
+        ensureDecoded();
         this.destination = destination;
     }
 
     public int getRetransmit() {
+        ensureDecoded();
         return retransmit;
     }
 
     public void setRetransmit(int retransmit) {
+        ensureDecoded();
         this.retransmit = retransmit;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", destination=");
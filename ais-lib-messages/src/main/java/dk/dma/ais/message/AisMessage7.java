@@ -88,6 +88,7 @@ public class AisMessage7 extends AisMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(spare, 2);
         encoder.addVal(dest1, 30);
@@ -102,79 +103,98 @@ public class AisMessage7 extends AisMessage {
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     public long getDest1() {
+        ensureDecoded();
         return dest1;
     }
 
     public void setDest1(long dest1) {
+        ensureDecoded();
         this.dest1 = dest1;
     }
 
     public int getSeq1() {
+        ensureDecoded();
         return seq1;
     }
 
     public void setSeq1(int seq1) {
+        ensureDecoded();
         this.seq1 = seq1;
     }
 
     public long getDest2() {
+        ensureDecoded();
         return dest2;
     }
 
     public void setDest2(long dest2) {
+        ensureDecoded();
         this.dest2 = dest2;
     }
 
     public int getSeq2() {
+        ensureDecoded();
         return seq2;
     }
 
     public void setSeq2(int seq2) {
+        ensureDecoded();
         this.seq2 = seq2;
     }
 
     public long getDest3() {
+        ensureDecoded();
         return dest3;
     }
 
     public void setDest3(long dest3) {
+        ensureDecoded();
         this.dest3 = dest3;
     }
 
     public int getSeq3() {
+        ensureDecoded();
         return seq3;
     }
 
     public void setSeq3(int seq3) {
+        ensureDecoded();
         this.seq3 = seq3;
     }
 
     public long getDest4() {
+        ensureDecoded();
         return dest4;
     }
 
     public void setDest4(long dest4) {
+        ensureDecoded();
         this.dest4 = dest4;
     }
 
     public int getSeq4() {
+        ensureDecoded();
         return seq4;
     }
 
     public void setSeq4(int seq4) {
+        ensureDecoded();
         this.seq4 = seq4;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", spare=");
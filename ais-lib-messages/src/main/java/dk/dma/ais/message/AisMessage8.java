@@ -53,6 +53,7 @@ public class AisMessage8 extends AisBinaryMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(spare, 2);
         encoder.addVal(dac, 10);
@@ -63,6 +64,7 @@ public class AisMessage8 extends AisBinaryMessage {
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append("]");
@@ -183,6 +183,7 @@ public class AisMessage9 extends AisMessage implements IPositionMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(this.altitude, 12);
         encoder.addVal(this.sog, 10);
@@ -205,6 +206,7 @@ public class AisMessage9 extends AisMessage implements IPositionMessage {
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", altitude=");
@@ -242,122 +244,152 @@ public class AisMessage9 extends AisMessage implements IPositionMessage {
     }
 
     public int getAltitude() {
+        ensureDecoded();
         return altitude;
     }
 
     public void setAltitude(int altitude) {
+        ensureDecoded();
         this.altitude = altitude;
     }
 
     public int getSog() {
+        ensureDecoded();
         return sog;
     }
 
     public void setSog(int sog) {
+        ensureDecoded();
         this.sog = sog;
     }
 
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
     public int getCog() {
+        ensureDecoded();
         return cog;
     }
 
     public void setCog(int cog) {
+        ensureDecoded();
         this.cog = cog;
     }
 
     public int getUtcSec() {
+        ensureDecoded();
         return utcSec;
     }
 
     public void setUtcSec(int utcSec) {
+        ensureDecoded();
         this.utcSec = utcSec;
     }
 
     public int getRegionalReserved() {
+        ensureDecoded();
         return regionalReserved;
     }
 
     public void setRegionalReserved(int regionalReserved) {
+        ensureDecoded();
         this.regionalReserved = regionalReserved;
     }
 
     public int getDte() {
+        ensureDecoded();
         return dte;
     }
 
     public void setDte(int dte) {
+        ensureDecoded();
         this.dte = dte;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     public int getAssigned() {
+        ensureDecoded();
         return assigned;
     }
 
     public void setAssigned(int assigned) {
+        ensureDecoded();
         this.assigned = assigned;
     }
 
     public int getRaim() {
+        ensureDecoded();
         return raim;
     }
 
     public void setRaim(int raim) {
+        ensureDecoded();
         this.raim = raim;
     }
 
     public int getCommStateSelectorFlag() {
+        ensureDecoded();
         return commStateSelectorFlag;
     }
 
     public void setCommStateSelectorFlag(int commStateSelectorFlag) {
+        ensureDecoded();
         this.commStateSelectorFlag = commStateSelectorFlag;
     }
 
     public int getSyncState() {
+        ensureDecoded();
         return syncState;
     }
 
     public void setSyncState(int syncState) {
+        ensureDecoded();
         this.syncState = syncState;
     }
 
     public int getSlotTimeout() {
+        ensureDecoded();
         return slotTimeout;
     }
 
     public void setSlotTimeout(int slotTimeout) {
+        ensureDecoded();
         this.slotTimeout = slotTimeout;
     }
 
     public int getSubMessage() {
+        ensureDecoded();
         return subMessage;
     }
 
     public void setSubMessage(int subMessage) {
+        ensureDecoded();
         this.subMessage = subMessage;
     }
 
@@ -190,6 +190,7 @@ public abstract class AisPositionMessage extends AisMessage implements IVesselPo
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", cog=");
@@ -220,18 +221,22 @@ public abstract class AisPositionMessage extends AisMessage implements IVesselPo
     }
 
     public int getNavStatus() {
+        ensureDecoded();
         return navStatus;
     }
 
     public void setNavStatus(int navStatus) {
+        ensureDecoded();
         this.navStatus = navStatus;
     }
 
     public int getRot() {
+        ensureDecoded();
         return rot;
     }
 
     public Float getSensorRot() {
+        ensureDecoded();
         if (rot == 128) {
             return null;
         }
@@ -244,60 +249,74 @@ public abstract class AisPositionMessage extends AisMessage implements IVesselPo
     }
 
     public void setRot(int rot) {
+        ensureDecoded();
         this.rot = rot;
     }
 
     public int getSog() {
+        ensureDecoded();
         return sog;
     }
 
     public void setSog(int sog) {
+        ensureDecoded();
         this.sog = sog;
     }
 
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
     @Override
     public final Position getValidPosition() {
+        ensureDecoded();
         AisPosition pos = this.pos;
         return pos == null ? null : pos.getGeoLocation();
     }
 
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
     public int getCog() {
+        ensureDecoded();
         return cog;
     }
 
     public void setCog(int cog) {
+        ensureDecoded();
         this.cog = cog;
     }
 
     public int getTrueHeading() {
+        ensureDecoded();
         return trueHeading;
     }
 
     public void setTrueHeading(int trueHeading) {
+        ensureDecoded();
         this.trueHeading = trueHeading;
     }
 
     public int getUtcSec() {
+        ensureDecoded();
         return utcSec;
     }
 
     public void setUtcSec(int utcSec) {
+        ensureDecoded();
         this.utcSec = utcSec;
     }
 
@@ -305,6 +324,7 @@ public abstract class AisPositionMessage extends AisMessage implements IVesselPo
      * @return the specialManIndicator
      */
     public int getSpecialManIndicator() {
+        ensureDecoded();
         return specialManIndicator;
     }
 
@@ -313,51 +333,63 @@ public abstract class AisPositionMessage extends AisMessage implements IVesselPo
      *            the specialManIndicator to set
      */
     public void setSpecialManIndicator(int specialManIndicator) {
+        ensureDecoded();
         this.specialManIndicator = specialManIndicator;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     public int getRaim() {
+        ensureDecoded();
         return raim;
     }
 
     public void setRaim(int raim) {
+        ensureDecoded();
         this.raim = raim;
     }
 
     public int getSyncState() {
+        ensureDecoded();
         return syncState;
     }
 
     public void setSyncState(int syncState) {
+        ensureDecoded();
         this.syncState = syncState;
     }
 
     public boolean isPositionValid() {
+        ensureDecoded();
         Position geo = pos.getGeoLocation();
         return geo != null;
     }
 
     public boolean isCogValid() {
+        ensureDecoded();
         return cog < 3600;
     }
 
     public boolean isSogValid() {
+        ensureDecoded();
         return sog < 1023;
     }
 
     public boolean isHeadingValid() {
+        ensureDecoded();
         return trueHeading < 360;
     }
 
     public boolean isRotValid() {
+        ensureDecoded();
         return rot > -128;
     }
 }
@@ -86,58 +86,72 @@ public abstract class AisStaticCommon extends AisMessage implements IDimensionMe
     }
 
     public String getCallsign() {
+        ensureDecoded();
         return callsign;
     }
 
     public void setCallsign(String callsign) {
+        ensureDecoded();
         this.callsign = callsign;
     }
 
     public String getName() {
+        ensureDecoded();
         return name;
     }
 
     public void setName(String name) {
+        ensureDecoded();
         this.name = name;
     }
 
     public int getShipType() {
+        ensureDecoded();
         return shipType;
     }
 
     public void setShipType(int shipType) {
+        ensureDecoded();
         this.shipType = shipType;
     }
 
     public int getDimBow() {
+        ensureDecoded();
         return dimBow;
     }
 
     public void setDimBow(int dimBow) {
+        ensureDecoded();
         this.dimBow = dimBow;
     }
 
     public int getDimStern() {
+        ensureDecoded();
         return dimStern;
     }
 
     public void setDimStern(int dimStern) {
+        ensureDecoded();
         this.dimStern = dimStern;
     }
 
     public int getDimPort() {
+        ensureDecoded();
         return dimPort;
     }
 
     public void setDimPort(int dimPort) {
+        ensureDecoded();
         this.dimPort = dimPort;
     }
 
     public int getDimStarboard() {
+        ensureDecoded();
         return dimStarboard;
     }
 
     public void setDimStarboard(int dimStarboard) {
+        ensureDecoded();
         this.dimStarboard = dimStarboard;
     }
 
@@ -33,11 +33,13 @@ public class AisUnsupportedMessageType extends AisMessage {
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         throw new UnsupportedOperationException();
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(" TO BE IMPLEMENTED ");
@@ -92,6 +92,7 @@ public abstract class UTCDateResponseMessage extends AisMessage implements IPosi
 
     @Override
     public SixbitEncoder getEncoded() {
+        ensureDecoded();
         SixbitEncoder encoder = super.encode();
         encoder.addVal(utcYear, 14);
         encoder.addVal(utcMonth, 4);
@@ -113,54 +114,67 @@ public abstract class UTCDateResponseMessage extends AisMessage implements IPosi
     }
 
     public int getUtcYear() {
+        ensureDecoded();
         return utcYear;
     }
 
     public void setUtcYear(int utcYear) {
+        ensureDecoded();
         this.utcYear = utcYear;
     }
 
     public int getUtcMonth() {
+        ensureDecoded();
         return utcMonth;
     }
 
     public void setUtcMonth(int utcMonth) {
+        ensureDecoded();
         this.utcMonth = utcMonth;
     }
 
     public int getUtcDay() {
+        ensureDecoded();
         return utcDay;
     }
 
     public void setUtcDay(int utcDay) {
+        ensureDecoded();
         this.utcDay = utcDay;
     }
 
     public int getUtcHour() {
+        ensureDecoded();
         return utcHour;
     }
 
     public void setUtcHour(int utcHour) {
+        ensureDecoded();
         this.utcHour = utcHour;
     }
 
     public int getUtcMinute() {
+        ensureDecoded();
         return utcMinute;
     }
 
     public void setUtcMinute(int utcMinute) {
+        ensureDecoded();
         this.utcMinute = utcMinute;
     }
 
     public int getUtcSecond() {
+        ensureDecoded();
         return utcSecond;
     }
 
     public void setUtcSecond(int utcSecond) {
+        ensureDecoded();
         this.utcSecond = utcSecond;
     }
 
     public Date getDate() {
+        ensureDecoded();
         Calendar cal = Calendar.getInstance();
         cal.set(Calendar.YEAR, getUtcYear());
         cal.set(Calendar.MONTH, getUtcMonth() - 1);
@@ -173,32 +187,39 @@ public abstract class UTCDateResponseMessage extends AisMessage implements IPosi
     }
 
     public int getPosAcc() {
+        ensureDecoded();
         return posAcc;
     }
 
     public void setPosAcc(int posAcc) {
+        ensureDecoded();
         this.posAcc = posAcc;
     }
 
     @Override
     public Position getValidPosition() {
+        ensureDecoded();
         AisPosition pos = this.pos;
         return pos == null ? null : pos.getGeoLocation();
     }
 
     public AisPosition getPos() {
+        ensureDecoded();
         return pos;
     }
 
     public void setPos(AisPosition pos) {
+        ensureDecoded();
         this.pos = pos;
     }
 
     public int getPosType() {
+        ensureDecoded();
         return posType;
     }
 
     public void setPosType(int posType) {
+        ensureDecoded();
         this.posType = posType;
     }
 
@@ -206,6 +227,7 @@ public abstract class UTCDateResponseMessage extends AisMessage implements IPosi
      * @return the transmissionControl
      */
     public int getTransmissionControl() {
+        ensureDecoded();
         return transmissionControl;
     }
 
@@ -214,51 +236,63 @@ public abstract class UTCDateResponseMessage extends AisMessage implements IPosi
      *            the transmissionControl to set
      */
     public void setTransmissionControl(int transmissionControl) {
+        ensureDecoded();
         this.transmissionControl = transmissionControl;
     }
 
     public int getSpare() {
+        ensureDecoded();
         return spare;
     }
 
     public void setSpare(int spare) {
+        ensureDecoded();
         this.spare = spare;
     }
 
     public int getRaim() {
+        ensureDecoded();
         return raim;
     }
 
     public void setRaim(int raim) {
+        ensureDecoded();
         this.raim = raim;
     }
 
     public int getSyncState() {
+        ensureDecoded();
         return syncState;
     }
 
     public void setSyncState(int syncState) {
+        ensureDecoded();
         this.syncState = syncState;
     }
 
     public int getSlotTimeout() {
+        ensureDecoded();
         return slotTimeout;
     }
 
     public void setSlotTimeout(int slotTimeout) {
+        ensureDecoded();
         this.slotTimeout = slotTimeout;
     }
 
     public int getSubMessage() {
+        ensureDecoded();
         return subMessage;
     }
 
     public void setSubMessage(int subMessage) {
+        ensureDecoded();
         this.subMessage = subMessage;
     }
 
     @Override
     public String toString() {
+        ensureDecoded();
         StringBuilder builder = new StringBuilder();
         builder.append(super.toString());
         builder.append(", pos=");
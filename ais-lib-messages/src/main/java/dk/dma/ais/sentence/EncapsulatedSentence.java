@@ -43,17 +43,17 @@ public abstract class EncapsulatedSentence extends Sentence {
         super.baseParse(sl);
 
         // Should at least have four fields
-        if (sl.getFields().size() < 4) {
+        if (sl.getFieldCount() < 4) {
             throw new SentenceException("Sentence have less than four fields");
         }
 
         // Get sentence count properties
-        int thisTotal = Sentence.parseInt(sl.getFields().get(1));
-        int thisNum = Sentence.parseInt(sl.getFields().get(2));
+        int thisTotal = sl.getFieldInt(1);
+        int thisNum = sl.getFieldInt(2);
         int thisSeq = 0;
-        if (sl.getFields().get(3).length() > 0) {
+        if (sl.getFieldLength(3) > 0) {
             // null sequence is not fatal
-            thisSeq = Sentence.parseInt(sl.getFields().get(3));
+            thisSeq = sl.getFieldInt(3);
         }
 
         if (lastSeq < 0) {
@@ -81,6 +81,21 @@ public abstract class EncapsulatedSentence extends Sentence {
 
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        msgId = 0;
+        total = 0;
+        sequence = null;
+        lastSeq = -1;
+        num = 0;
+        channel = null;
+        binArray.clear();
+        completePacket = false;
+        sixbitString.setLength(0);
+        padBits = 0;
+    }
+
     /**
      * Encode method to be used by extending classes
      */
@@ -0,0 +1,190 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.sentence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * List of lines kept as ISO-8859-1 bytes in a single buffer. Lines can be added from a {@link SentenceLine} without
+ * creating strings, and a string is only created for a line when it is asked for. The buffer is kept by
+ * {@link #clear()}, so the list can be reused for the next group of lines.
+ */
+@NotThreadSafe
+public class LineList extends AbstractList<String> {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    /** Marks a line added as null */
+    private static final String NULL = new String();
+
+    private byte[] bytes = new byte[128];
+    private int length;
+    private int size;
+    private int[] ends = new int[4];
+    private String[] strings = new String[4];
+
+    /**
+     * Add the whole line, including any line terminator
+     *
+     * @param sl
+     */
+    public void addLine(SentenceLine sl) {
+        add(sl, 0, sl.getLineLength());
+    }
+
+    /**
+     * Add the sentence of the line, without prefix and line terminator
+     *
+     * @param sl
+     */
+    public void addSentence(SentenceLine sl) {
+        if (sl.getSentenceEnd() < 0) {
+            add((String) null);
+        } else {
+            add(sl, sl.getSentenceStart(), sl.getSentenceEnd());
+        }
+    }
+
+    /**
+     * Add the whole line of the sentence line parser to the list. If the list is a LineList no string is created.
+     *
+     * @param lines
+     * @param sl
+     */
+    public static void addLine(List<String> lines, SentenceLine sl) {
+        if (lines instanceof LineList) {
+            ((LineList) lines).addLine(sl);
+        } else {
+            lines.add(sl.getLine());
+        }
+    }
+
+    /**
+     * Add the sentence of the sentence line parser to the list. If the list is a LineList no string is created.
+     *
+     * @param sentences
+     * @param sl
+     */
+    public static void addSentence(List<String> sentences, SentenceLine sl) {
+        if (sentences instanceof LineList) {
+            ((LineList) sentences).addSentence(sl);
+        } else {
+            sentences.add(sl.getSentence());
+        }
+    }
+
+    private void add(SentenceLine sl, int start, int end) {
+        int index = grow(end - start);
+        sl.copyChars(start, end, bytes, length);
+        length += end - start;
+        ends[index] = length;
+    }
+
+    /**
+     * Add the line. Characters outside ISO-8859-1 can not be kept as bytes, and are replaced by '?'.
+     */
+    @Override
+    public boolean add(String line) {
+        int index;
+        if (line == null) {
+            index = grow(0);
+        } else {
+            index = grow(line.length());
+            boolean replaced = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c > 0xFF) {
+                    c = '?';
+                    replaced = true;
+                }
+                bytes[length++] = (byte) c;
+            }
+            if (replaced) {
+                // Keep the string in the list consistent with the bytes
+                line = new String(bytes, length - line.length(), line.length(), StandardCharsets.ISO_8859_1);
+            }
+        }
+        ends[index] = length;
+        strings[index] = line == null ? NULL : line;
+        return true;
+    }
+
+    /** Makes room for a line of count characters and returns its index */
+    private int grow(int count) {
+        if (length + count > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + count));
+        }
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, 2 * size);
+            strings = Arrays.copyOf(strings, 2 * size);
+        }
+        return size++;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        String line = strings[index];
+        if (line == null) {
+            int start = index == 0 ? 0 : ends[index - 1];
+            line = new String(bytes, start, ends[index] - start, StandardCharsets.ISO_8859_1);
+            strings[index] = line;
+        }
+        return line == NULL ? null : line;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(strings, 0, size, null);
+        length = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the lines joined by carriage return line feed as ISO-8859-1 bytes
+     *
+     * @return
+     */
+    public byte[] toJoinedBytes() {
+        if (size <= 1) {
+            return Arrays.copyOf(bytes, length);
+        }
+        byte[] joined = new byte[length + (size - 1) * CRLF.length];
+        int start = 0;
+        int pos = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                System.arraycopy(CRLF, 0, joined, pos, CRLF.length);
+                pos += CRLF.length;
+            }
+            System.arraycopy(bytes, start, joined, pos, ends[i] - start);
+            pos += ends[i] - start;
+            start = ends[i];
+        }
+        return joined;
+    }
+}
@@ -19,7 +19,6 @@ import dk.dma.ais.proprietary.IProprietarySourceTag;
 import dk.dma.ais.proprietary.IProprietaryTag;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -36,8 +35,8 @@ public abstract class Sentence {
     protected int checksum;
     protected String msgChecksum;
     protected String sentenceStr;
-    protected List<String> orgLines = new ArrayList<>();
-    protected List<String> rawSentences = new ArrayList<>();
+    protected List<String> orgLines = new LineList();
+    protected List<String> rawSentences = new LineList();
     protected LinkedList<String> encodedFields;
     protected CommentBlock commentBlock;
     protected LinkedList<IProprietaryTag> tags; // Possible proprietary source tags for the message
@@ -62,6 +61,24 @@ public abstract class Sentence {
      */
     public abstract String getEncoded();
 
+    /**
+     * Clears the sentence so it can be parsed into again, keeping allocated buffers for reuse
+     */
+    public void reset() {
+        delimiter = "!";
+        talker = null;
+        formatter = null;
+        checksum = 0;
+        msgChecksum = null;
+        sentenceStr = null;
+        orgLines.clear();
+        rawSentences.clear();
+        encodedFields = null;
+        commentBlock = null;
+        tags = null;
+        mssisTimestamp = null;
+    }
+
     /**
      * Basic parse of line into sentence parts
      * 
@@ -69,13 +86,12 @@ public abstract class Sentence {
      * @throws SentenceException
      */
     protected void baseParse(SentenceLine sl) throws SentenceException {
-        this.orgLines.add(sl.getLine());
-
-        // Save raw sentence
-        rawSentences.add(sl.getSentence());
+        // Save the line and raw sentence without creating strings, unless set to other lists
+        LineList.addLine(orgLines, sl);
+        LineList.addSentence(rawSentences, sl);
 
         // Check for comment block
-        if (sl.getPrefix().length() > 0 && CommentBlock.hasCommentBlock(sl.getPrefix())) {
+        if (sl.hasCommentBlock()) {
             addCommentBlock(sl.getPrefix());
         }
 
@@ -85,13 +101,13 @@ public abstract class Sentence {
                     + sl.getChecksumString());
         }
 
-        if (sl.getFields().size() < 2) {
+        if (sl.getFieldCount() < 2) {
             throw new SentenceException("Invalid sentence, less than two fields");
         }
 
-        // Check talker/formatter
-        if (sl.getTalker() == null || sl.getFormatter() == null) {
-            throw new SentenceException("Invalid sentence, wrong talker/formatter: " + sl.getFields().get(0));
+        // Check talker/formatter. The formatter is there when the talker is, and is not created as a string here.
+        if (sl.getTalker() == null) {
+            throw new SentenceException("Invalid sentence, wrong talker/formatter: " + sl.getField(0));
         }
         
         // Try to get MSSIS timestamp
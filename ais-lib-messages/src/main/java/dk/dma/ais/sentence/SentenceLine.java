@@ -14,13 +14,21 @@
  */
 package dk.dma.ais.sentence;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
-import dk.dma.ais.proprietary.ProprietaryFactory;
-
 /**
  * Class representing a single sentence line
+ * <p>
+ * The line can be parsed from a string or from a slice of bytes. Parsing only records the offsets of the prefix,
+ * sentence and fields, strings are not created before they are asked for. Fields can be read without creating strings
+ * using {@link #getFieldLength(int)}, {@link #getFieldChar(int, int)}, {@link #getFieldInt(int)} and
+ * {@link #getFieldSequence(int)}.
+ * <p>
+ * When parsing bytes the buffer is not copied and must not be modified until the next call to parse.
  */
 public class SentenceLine {
 
@@ -30,16 +38,48 @@ public class SentenceLine {
     /** Cache of all ASCII strings with length 2 */
     private static final String[] S2 = new String[256 * 256];
 
+    /** Source when parsing strings */
+    private String source;
+
+    /** Source when parsing bytes */
+    private byte[] bytes;
+    private int bytesOffset;
+    private int sourceLength;
+
+    /** Scratch buffer used for byte buffers without an accessible array */
+    private byte[] scratch;
+
     private String line;
     private String talker;
     private String formatter;
     private Character delimiter;
     private String prefix;
     private String sentence;
-    private ArrayList<String> fields = new ArrayList<>();
+    private int prefixEnd;
+    private int sentenceEnd = -1;
+    private int fieldCount;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private String[] fieldStrings = new String[16];
     private int checksum;
     private int checksumField = -1;
 
+    /** Fields as lazily created strings */
+    private final List<String> fields = new AbstractList<String>() {
+        @Override
+        public String get(int index) {
+            return getField(index);
+        }
+
+        @Override
+        public int size() {
+            return fieldCount;
+        }
+    };
+
+    /** Reusable view of a single field */
+    private final FieldSequence fieldSequence = new FieldSequence();
+
     static {
         for (int i = 0; i < 256; i++) {
             S1[i] = Character.toString((char) i);
@@ -58,32 +98,82 @@ public class SentenceLine {
     }
 
     public void clear() {
+        source = null;
+        bytes = null;
+        bytesOffset = 0;
+        sourceLength = 0;
         line = null;
         talker = null;
         formatter = null;
         delimiter = null;
         prefix = null;
         sentence = null;
-        fields.clear();
+        prefixEnd = 0;
+        sentenceEnd = -1;
+        Arrays.fill(fieldStrings, 0, fieldCount, null);
+        fieldCount = 0;
         checksum = 0;
         checksumField = -1;
     }
 
     public void parse(String line) {
         clear();
+        this.source = line;
         this.line = line;
-        int len = line.length();
+        this.sourceLength = line.length();
+        parse();
+    }
+
+    /**
+     * Parse a line from length bytes of buffer starting at offset. The bytes are interpreted as ISO-8859-1 characters.
+     * 
+     * @param buffer
+     * @param offset
+     * @param length
+     */
+    public void parse(byte[] buffer, int offset, int length) {
+        clear();
+        this.bytes = buffer;
+        this.bytesOffset = offset;
+        this.sourceLength = length;
+        parse();
+    }
+
+    /**
+     * Parse a line from the remaining bytes of the buffer. The position of the buffer is not changed.
+     * 
+     * @param buffer
+     */
+    public void parse(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            parse(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            if (scratch == null || scratch.length < length) {
+                scratch = new byte[Math.max(length, 256)];
+            }
+            buffer.duplicate().get(scratch, 0, length);
+            parse(scratch, 0, length);
+        }
+    }
+
+    private char charAt(int index) {
+        return source != null ? source.charAt(index) : (char) (bytes[bytesOffset + index] & 0xFF);
+    }
+
+    private void parse() {
+        int len = sourceLength;
         int checksumStart = 0;
         int ptr = 0;
 
         // Find len without CR LF
-        while (len > 0 && (line.charAt(len - 1) == '\r' || line.charAt(len - 1) == '\n')) {
+        while (len > 0 && (charAt(len - 1) == '\r' || charAt(len - 1) == '\n')) {
             len--;
         }
 
         // Find prefix and start of sentence
         while (ptr < len) {
-            char ch = line.charAt(ptr);
+            char ch = charAt(ptr);
             if (ch == '!' || ch == '$') {
                 delimiter = ch;
                 checksumStart = ptr;
@@ -91,23 +181,22 @@ public class SentenceLine {
             }
             ptr++;
         }
-        this.prefix = convertString(line, 0, ptr);
+        this.prefixEnd = ptr;
 
         if (this.delimiter == null) {
             return;
         }
 
-        int ptrStart = ptr;
         int ps = ptr;
         // Parse into fields
         while (ptr < len) {
-            char ch = line.charAt(ptr);
+            char ch = charAt(ptr);
             if (ch == '*') {
-                fields.add(convertString(line, ps, ptr));
-                this.checksumField = fields.size();
+                addField(ps, ptr);
+                this.checksumField = fieldCount;
                 ps = ptr + 1;
             } else if (ch == ',') {
-                fields.add(convertString(line, ps, ptr));
+                addField(ps, ptr);
                 ps = ptr + 1;
             }
             if (ptr > checksumStart && this.checksumField < 0) {
@@ -116,42 +205,165 @@ public class SentenceLine {
             ptr++;
         }
         if (ps < len) {
-            fields.add(convertString(line, ps, len));
+            addField(ps, len);
         }
-        
+
         // Make sure that a checksum field was actually added
-        if (this.checksumField >= fields.size()) {
+        if (this.checksumField >= fieldCount) {
             this.checksumField = -1;
         }
-        
-        sentence = convertString(line, ptrStart, len);
+
+        sentenceEnd = len;
         // Parse talker and formatter
-        String f = fields.get(0);
-        if (f.length() == 6) {
-            talker = convertString(f, 1, 3);
-            formatter = convertString(f, 3, 6);
+        if (fieldCount > 0 && getFieldLength(0) == 6) {
+            int start = fieldStart[0];
+            talker = S2[(charAt(start + 1) << 8) + charAt(start + 2)];
         }
     }
 
-    private static String convertString(String f, int start, int end) {
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            int request = 2 * fieldCount;
+            fieldStart = Arrays.copyOf(fieldStart, request);
+            fieldEnd = Arrays.copyOf(fieldEnd, request);
+            fieldStrings = Arrays.copyOf(fieldStrings, request);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private String convertString(int start, int end) {
         switch (end - start) {
         case 0:
             return "";
         case 1:
-            return S1[f.charAt(start)];
+            return S1[charAt(start)];
         case 2:
-            return S2[(f.charAt(start) << 8) + f.charAt(start + 1)];
+            return S2[(charAt(start) << 8) + charAt(start + 1)];
         default:
-            return f.substring(start, end);
+            if (source != null) {
+                return start == 0 && end == source.length() ? source : source.substring(start, end);
+            }
+            return new String(bytes, bytesOffset + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private boolean regionMatches(int start, int end, String str) {
+        if (end - start != str.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (charAt(i) != str.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkFieldIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field index: " + index + ", field count: " + fieldCount);
+        }
+    }
+
+    /**
+     * Get the number of fields
+     * 
+     * @return
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Get field as string. The string is created on first access.
+     * 
+     * @param index
+     * @return
+     */
+    public String getField(int index) {
+        checkFieldIndex(index);
+        String field = fieldStrings[index];
+        if (field == null) {
+            field = convertString(fieldStart[index], fieldEnd[index]);
+            fieldStrings[index] = field;
+        }
+        return field;
+    }
+
+    /**
+     * Get the number of characters in field
+     * 
+     * @param index
+     * @return
+     */
+    public int getFieldLength(int index) {
+        checkFieldIndex(index);
+        return fieldEnd[index] - fieldStart[index];
+    }
+
+    /**
+     * Get character at position pos in field
+     * 
+     * @param index
+     * @param pos
+     * @return
+     */
+    public char getFieldChar(int index, int pos) {
+        if (pos < 0 || pos >= getFieldLength(index)) {
+            throw new IndexOutOfBoundsException("Position: " + pos + ", field length: " + getFieldLength(index));
+        }
+        return charAt(fieldStart[index] + pos);
+    }
+
+    /**
+     * Parse field as an integer without creating a string
+     * 
+     * @param index
+     * @return
+     * @throws SentenceException
+     */
+    public int getFieldInt(int index) throws SentenceException {
+        checkFieldIndex(index);
+        int start = fieldStart[index];
+        int end = fieldEnd[index];
+        // Plain decimal numbers that cannot overflow are handled here, anything else by Sentence.parseInt
+        if (end > start && end - start < 10) {
+            int val = 0;
+            for (int i = start; i < end; i++) {
+                int digit = charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Sentence.parseInt(getField(index));
+                }
+                val = val * 10 + digit;
+            }
+            return val;
         }
+        return Sentence.parseInt(getField(index));
+    }
+
+    /**
+     * Get a view of the characters in field. The returned sequence is reused and is only valid until the next call
+     * to this method or to parse.
+     * 
+     * @param index
+     * @return
+     */
+    public CharSequence getFieldSequence(int index) {
+        checkFieldIndex(index);
+        fieldSequence.start = fieldStart[index];
+        fieldSequence.end = fieldEnd[index];
+        return fieldSequence;
     }
 
     public boolean isFormatter(String... formatters) {
-        if (formatter == null) {
+        if (talker == null) {
             return false;
         }
+        int start = fieldStart[0] + 3;
         for (String f : formatters) {
-            if (formatter.equals(f)) {
+            if (regionMatches(start, start + 3, f)) {
                 return true;
             }
         }
@@ -159,7 +371,7 @@ public class SentenceLine {
     }
 
     public boolean hasSentence() {
-        return sentence != null;
+        return sentence != null || sentenceEnd >= 0;
     }
 
     public int getPostfixStart() {
@@ -170,12 +382,21 @@ public class SentenceLine {
     }
 
     public boolean isChecksumMatch() {
-        String strChecksum = getChecksumField();
-        if (strChecksum == null) {
+        if (checksumField < 0) {
             return false;
         }
+        int start = fieldStart[checksumField];
+        int end = fieldEnd[checksumField];
+        // Two hex digits are handled here, anything else by Integer.parseInt
+        if (end - start == 2) {
+            int high = Character.digit(charAt(start), 16);
+            int low = Character.digit(charAt(start + 1), 16);
+            if (high >= 0 && low >= 0) {
+                return (high << 4 | low) == this.checksum;
+            }
+        }
         try {
-            if (Integer.parseInt(strChecksum, 16) != this.checksum) {
+            if (Integer.parseInt(getChecksumField(), 16) != this.checksum) {
                 return false;
             }
         } catch (NumberFormatException e) {
@@ -185,11 +406,21 @@ public class SentenceLine {
     }
 
     public String getSentenceHead() {
-        return delimiter == null || fields.size() == 0 ? null : fields.get(0);
+        return delimiter == null || fieldCount == 0 ? null : getField(0);
     }
 
+    /**
+     * Same as {@link dk.dma.ais.proprietary.ProprietaryFactory#isProprietaryTag(String)} on the sentence head, but
+     * without creating a string
+     * 
+     * @return
+     */
     public boolean isProprietary() {
-        return ProprietaryFactory.isProprietaryTag(getSentenceHead());
+        if (delimiter == null || fieldCount == 0) {
+            return false;
+        }
+        int start = fieldStart[0];
+        return getFieldLength(0) >= 5 && charAt(start) == '$' && charAt(start + 1) == 'P';
     }
 
     public int getChecksum() {
@@ -205,10 +436,66 @@ public class SentenceLine {
     }
 
     public String getChecksumField() {
-        return this.checksumField >= 0 ? fields.get(this.checksumField) : null;
+        return this.checksumField >= 0 ? getField(this.checksumField) : null;
+    }
+
+    /**
+     * Get the number of characters in the line, including any line terminator
+     * 
+     * @return
+     */
+    public int getLineLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Copy the characters of the line, including any line terminator, as ISO-8859-1 bytes into dst starting at offset.
+     * This does not create the line string.
+     * 
+     * @param dst
+     * @param offset
+     */
+    public void getLineBytes(byte[] dst, int offset) {
+        copyChars(0, sourceLength, dst, offset);
+    }
+
+    /**
+     * Copy the characters from start to end as ISO-8859-1 bytes into dst starting at offset
+     */
+    void copyChars(int start, int end, byte[] dst, int offset) {
+        if (bytes != null) {
+            System.arraycopy(bytes, bytesOffset + start, dst, offset, end - start);
+        } else {
+            for (int i = start; i < end; i++) {
+                dst[offset++] = (byte) source.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Determine if the prefix starts with a comment block, without creating the prefix string
+     * 
+     * @return
+     */
+    public boolean hasCommentBlock() {
+        if (prefix != null) {
+            return CommentBlock.hasCommentBlock(prefix);
+        }
+        return prefixEnd > 0 && charAt(0) == '\\';
+    }
+
+    int getSentenceStart() {
+        return prefixEnd;
+    }
+
+    int getSentenceEnd() {
+        return sentenceEnd;
     }
 
     public String getLine() {
+        if (line == null && bytes != null) {
+            line = new String(bytes, bytesOffset, sourceLength, StandardCharsets.ISO_8859_1);
+        }
         return line;
     }
 
@@ -225,6 +512,9 @@ public class SentenceLine {
     }
 
     public String getFormatter() {
+        if (formatter == null && talker != null) {
+            formatter = convertString(fieldStart[0] + 3, fieldEnd[0]);
+        }
         return formatter;
     }
 
@@ -241,14 +531,29 @@ public class SentenceLine {
     }
 
     public String getPrefix() {
+        if (prefix == null && (source != null || bytes != null)) {
+            prefix = convertString(0, prefixEnd);
+        }
         return prefix;
     }
 
+    /**
+     * Get the number of characters before the sentence delimiter
+     * 
+     * @return
+     */
+    public int getPrefixLength() {
+        return prefix != null ? prefix.length() : prefixEnd;
+    }
+
     public void setPrefix(String prefix) {
         this.prefix = prefix;
     }
 
     public String getSentence() {
+        if (sentence == null && sentenceEnd >= 0) {
+            sentence = convertString(prefixEnd, sentenceEnd);
+        }
         return sentence;
     }
 
@@ -264,21 +569,50 @@ public class SentenceLine {
     public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("SentenceLine [line=");
-        builder.append(line);
+        builder.append(getLine());
         builder.append(", talker=");
         builder.append(talker);
         builder.append(", formatter=");
-        builder.append(formatter);
+        builder.append(getFormatter());
         builder.append(", delimiter=");
         builder.append(delimiter);
         builder.append(", prefix=");
-        builder.append(prefix);
+        builder.append(getPrefix());
         builder.append(", sentence=");
-        builder.append(sentence);
+        builder.append(getSentence());
         builder.append(", fields=");
         builder.append(fields);
         builder.append("]");
         return builder.toString();
     }
 
+    /**
+     * Character sequence view of a field in the current line
+     */
+    private final class FieldSequence implements CharSequence {
+
+        private int start;
+        private int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return SentenceLine.this.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return convertString(start, end);
+        }
+    }
+
 }
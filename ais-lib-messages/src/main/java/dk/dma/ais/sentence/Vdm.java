@@ -63,24 +63,25 @@ public class Vdm extends EncapsulatedSentence {
         }
 
         // Check that there at least 8 fields
-        if (sl.getFields().size() < 8) {
+        if (sl.getFieldCount() < 8) {
             throw new SentenceException("Sentence does not have at least 8 fields");
         }
 
         // Channel, relaxed may be null
-        if (sl.getFields().get(4).length() > 0) {
-            this.channel = sl.getFields().get(4).charAt(0);
+        if (sl.getFieldLength(4) > 0) {
+            this.channel = sl.getFieldChar(4, 0);
         } else {
             this.channel = 0;
         }
 
         // Padding bits
-        int padBits = Sentence.parseInt(sl.getFields().get(6));
+        int padBits = sl.getFieldInt(6);
 
         // Six bit field
-        this.sixbitString.append(sl.getFields().get(5));
+        CharSequence sixbit = sl.getFieldSequence(5);
+        this.sixbitString.append(sixbit);
         try {
-            binArray.appendSixbit(sl.getFields().get(5), padBits);
+            binArray.appendSixbit(sixbit, padBits);
         } catch (SixbitException e) {
             throw new SentenceException("Invalid sixbit in VDM: " + e.getMessage() + ": " + sl.getLine());
         }
@@ -98,6 +99,12 @@ public class Vdm extends EncapsulatedSentence {
         return 1;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        ownMessage = false;
+    }
+
     /**
      * Determine if line seems to contain VDM or VDO sentence
      * 
@@ -0,0 +1,94 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.ais.binary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BinArrayTest {
+
+    @Test
+    public void testAppendAcrossWords() throws Exception {
+        BinArray binArray = new BinArray();
+        binArray.append(5, 3);
+        binArray.append(0x123456789ABCDEFL, 61);
+        binArray.append(0x3FFFFFFFFL, 34);
+        binArray.append(1, 1);
+
+        assertEquals(99, binArray.getLength());
+        assertEquals(5, binArray.getVal(3));
+        assertEquals(0x123456789ABCDEFL, binArray.getVal(61));
+        assertEquals(0x3FFFFFFFFL, binArray.getVal(34));
+        assertEquals(1, binArray.getVal(1));
+        assertFalse(binArray.hasMoreBits());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        BinArray binArray = new BinArray();
+        binArray.append(0x123456789ABCDEFL, 61);
+        binArray.append(7, 3);
+        binArray.getVal(10);
+        binArray.clear();
+
+        assertEquals(0, binArray.getLength());
+        assertFalse(binArray.hasMoreBits());
+        binArray.append(5, 3);
+        binArray.append(1, 62);
+        assertEquals(65, binArray.getLength());
+        assertEquals(5, binArray.getVal(3));
+        assertEquals(1, binArray.getVal(62));
+    }
+
+    @Test
+    public void testAppendSixbit() throws Exception {
+        BinArray binArray = new BinArray();
+        binArray.appendSixbit("15MgK45P3@G?fl0E`JbR0OwT0@MS", 0);
+
+        assertEquals(168, binArray.getLength());
+        assertEquals(1, binArray.getVal(6));
+        assertEquals(0, binArray.getVal(2));
+        assertEquals(366730000, binArray.getVal(30));
+    }
+
+    @Test
+    public void testAppendBinArray() throws Exception {
+        BinArray first = new BinArray();
+        first.appendSixbit("63@ndh@l=v9P=dD", 2);
+        BinArray second = new BinArray();
+        second.append(1, 1);
+        second.append(first);
+
+        assertEquals(first.getLength() + 1, second.getLength());
+        for (int i = 0; i < first.getLength(); i++) {
+            assertEquals(first.getVal(i, i), second.getVal(i + 1, i + 1));
+        }
+    }
+
+    @Test(expected = SixbitException.class)
+    public void testNotEnoughBits() throws Exception {
+        BinArray binArray = new BinArray();
+        binArray.append(3, 2);
+        binArray.getVal(3);
+    }
+
+    @Test(expected = SixbitException.class)
+    public void testIllegalChar() throws Exception {
+        new BinArray().appendSixbit("15M!", 0);
+    }
+
+}
@@ -15,9 +15,16 @@
 package dk.dma.ais.message;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
+import dk.dma.ais.binary.SixbitException;
+import dk.dma.ais.sentence.SentenceException;
+import dk.dma.ais.sentence.Vdm;
+
 /**
  * Tests {@link AisMessage}
  * 
@@ -51,5 +58,61 @@ public class AisMessageTest {
         msg.setUserId(970_015_654);
         assertEquals(AisTargetType.SART, msg.getTargetType());
     }
-    
+
+    @Test
+    public void lazyDecodeTest() throws SentenceException, AisMessageException, SixbitException {
+        String line = "!AIVDM,1,1,,A,15MgK45P3@G?fl0E`JbR0OwT0@MS,0*4E";
+        Vdm vdm = new Vdm();
+        vdm.parse(line);
+        AisMessage1 eager = (AisMessage1) AisMessage.getInstance(vdm);
+
+        vdm = new Vdm();
+        vdm.parse(line);
+        AisMessage1 lazy = (AisMessage1) AisMessage.getInstance(vdm, true);
+        assertTrue(lazy.isLazy());
+        assertEquals(1, lazy.getMsgId());
+        assertEquals(366730000, lazy.getUserId());
+        assertEquals(eager.getRepeat(), lazy.getRepeat());
+        assertTrue(lazy.isLazy());
+
+        assertEquals(eager.getSog(), lazy.getSog());
+        assertFalse(lazy.isLazy());
+        assertEquals(eager.toString(), lazy.toString());
+        assertEquals(eager.getEncoded().encode(), lazy.getEncoded().encode());
+    }
+
+    @Test
+    public void lazyDecodeMultiSentenceTest() throws SentenceException, AisMessageException, SixbitException {
+        Vdm vdm = new Vdm();
+        vdm.parse("!AIVDM,2,1,6,B,55ArUT02:nkG<I8GB20nuJ0p5HTu>0hT9860TV16000006420BDi@E53,0*33");
+        vdm.parse("!AIVDM,2,2,6,B,1KUDhH888888880,2*6A");
+        AisMessage5 eager = (AisMessage5) AisMessage.getInstance(vdm);
+
+        AisMessage5 lazy = (AisMessage5) AisMessage.getInstance(vdm, true);
+        assertEquals(eager.getUserId(), lazy.getUserId());
+        assertTrue(lazy.isLazy());
+        lazy.decode();
+        assertFalse(lazy.isLazy());
+        assertEquals(eager.getName(), lazy.getName());
+        assertEquals(eager.getDest(), lazy.getDest());
+        assertEquals(eager.getImo(), lazy.getImo());
+    }
+
+    @Test
+    public void lazyDecodeInvalidTest() throws SentenceException, AisMessageException, SixbitException {
+        // Message 1 with only 90 bits
+        Vdm vdm = new Vdm();
+        vdm.parse("!AIVDM,1,1,,A,15MgK45P3@G?fl0,0*23");
+        try {
+            AisMessage.getInstance(vdm);
+            fail("Expected AisMessageException");
+        } catch (AisMessageException ignore) {}
+
+        // The lazy message is rejected on the length as well
+        try {
+            AisMessage.getInstance(vdm, true);
+            fail("Expected AisMessageException");
+        } catch (AisMessageException ignore) {}
+    }
+
 }
@@ -14,6 +14,9 @@
  */
 package dk.dma.ais.sentence;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -60,5 +63,79 @@ public class SentenceLineTest {
         Assert.assertEquals(sl.getFields().size(), 7);
     }
 
-   
+    @Test
+    public void sentenceLineBytesTest() throws SentenceException {
+        String line = "\\1G2:0125,c:1354719387*0D\\!AIVDM,2,1,4,A,539LiHP2;42`@pE<000<tq@V1<TpL4000000001?1SV@@73R0J0TQCAD,0*1E\r\n";
+        byte[] buffer = ("xx" + line + "yy").getBytes(StandardCharsets.ISO_8859_1);
+        SentenceLine expected = new SentenceLine(line);
+        SentenceLine sl = new SentenceLine();
+        sl.parse(buffer, 2, line.length());
+
+        Assert.assertTrue(sl.hasSentence());
+        Assert.assertTrue(sl.isChecksumMatch());
+        Assert.assertTrue(sl.isFormatter("VDO", "VDM"));
+        Assert.assertFalse(sl.isProprietary());
+        Assert.assertEquals(expected.getFields(), sl.getFields());
+        Assert.assertEquals(expected.getPrefix(), sl.getPrefix());
+        Assert.assertEquals(expected.getSentence(), sl.getSentence());
+        Assert.assertEquals(line, sl.getLine());
+        Assert.assertEquals("AI", sl.getTalker());
+        Assert.assertEquals("VDM", sl.getFormatter());
+        Assert.assertEquals(2, sl.getFieldInt(1));
+        Assert.assertEquals(4, sl.getFieldInt(3));
+        Assert.assertEquals('A', sl.getFieldChar(4, 0));
+        Assert.assertEquals(expected.getFields().get(5), sl.getFieldSequence(5).toString());
+
+        sl.parse(ByteBuffer.wrap("$PGHP,1,2013,3,18,9,19,9,499,219,,2190048,1,28*23".getBytes(StandardCharsets.ISO_8859_1)));
+        Assert.assertTrue(sl.isProprietary());
+        Assert.assertTrue(sl.isChecksumMatch());
+        Assert.assertEquals(15, sl.getFieldCount());
+        Assert.assertEquals(0, sl.getFieldLength(10));
+        Assert.assertEquals(2190048, sl.getFieldInt(11));
+    }
+
+    @Test
+    public void lineListTest() {
+        String line1 = "\\1G2:0125,c:1354719387*0D\\!AIVDM,2,1,4,A,539LiHP2;42`@pE<000<tq@V1<TpL4000000001?1SV@@73R0J0TQCAD,0*1E\r\n";
+        String line2 = "\\2G2:0125*7B\\!AIVDM,2,2,4,A,30H,2*5F";
+        byte[] buffer = line1.getBytes(StandardCharsets.ISO_8859_1);
+        SentenceLine sl = new SentenceLine();
+        LineList lines = new LineList();
+        LineList sentences = new LineList();
+
+        sl.parse(buffer, 0, buffer.length);
+        lines.addLine(sl);
+        sentences.addSentence(sl);
+        sl.parse(line2);
+        lines.addLine(sl);
+        sentences.addSentence(sl);
+        lines.add("extra");
+
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals(line1, lines.get(0));
+        Assert.assertEquals(line2, lines.get(1));
+        Assert.assertEquals("extra", lines.get(2));
+        Assert.assertEquals(new SentenceLine(line1).getSentence(), sentences.get(0));
+        Assert.assertEquals(new SentenceLine(line2).getSentence(), sentences.get(1));
+        Assert.assertEquals(line1 + "\r\n" + line2 + "\r\nextra", new String(lines.toJoinedBytes(), StandardCharsets.ISO_8859_1));
+
+        lines.clear();
+        Assert.assertEquals(0, lines.size());
+        lines.add(null);
+        Assert.assertNull(lines.get(0));
+    }
+
+    @Test
+    public void lineListNonLatin1Test() {
+        LineList lines = new LineList();
+        lines.add("a\u20acb\u00e9");
+        Assert.assertEquals("a?b\u00e9", lines.get(0));
+        Assert.assertEquals("a?b\u00e9", new String(lines.toJoinedBytes(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test(expected = SentenceException.class)
+    public void sentenceLineInvalidIntTest() throws SentenceException {
+        new SentenceLine("!AIVDM,2,x,6,B,55ArUT02,0*33").getFieldInt(2);
+    }
+
 }
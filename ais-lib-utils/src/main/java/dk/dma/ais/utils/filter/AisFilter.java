@@ -201,7 +201,7 @@ public class AisFilter extends AbstractCommandLineTool implements Consumer<AisPa
         if (geometry != null) {
             LocationFilter locationFilter = new LocationFilter();
             Area a = getGeometry(geometry);
-            locationFilter.addFilterGeometry(e -> a.contains(e));
+            locationFilter.addFilterArea(a);
             filters.add(locationFilter);
         }
 